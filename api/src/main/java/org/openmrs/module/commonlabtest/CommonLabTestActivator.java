@@ -10,6 +10,7 @@
 package org.openmrs.module.commonlabtest;
 
 import java.io.File;
+import java.util.Date;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -19,6 +20,12 @@ import org.openmrs.api.AdministrationService;
 import org.openmrs.api.ConceptService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.BaseModuleActivator;
+import org.openmrs.module.commonlabtest.metrics.SlowQueryLogger;
+import org.openmrs.module.commonlabtest.task.MoveLabReportsToStoreTask;
+import org.openmrs.module.commonlabtest.task.ProcessLabTestVoidQueueTask;
+import org.openmrs.scheduler.SchedulerException;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.TaskDefinition;
 import org.openmrs.util.OpenmrsConstants;
 import org.openmrs.util.OpenmrsUtil;
 
@@ -41,10 +48,36 @@ public class CommonLabTestActivator extends BaseModuleActivator {
 
 	public static final String FILE_EXTENSIONS_NAMES = ".bmp ,.jpg ,.jpeg,.jfif,.GIF,.png,.bat,.BPG,.FLV,.AVI,.MOV,.M4P,.MPG,.WMV,.3gp,.RM,.SWF,.3GP,.ACT,.AIFF,.MP3,.WAV,.OGG,.FLAC,.AU,.RAW,.docx,.docm,.dotx,.docb,.dotm,.pdf";
 
+	public static final String MAX_UPLOAD_FILE_SIZE = "commonlabtest.maxFileSize";
+
+	public static final Long DEFAULT_MAX_UPLOAD_FILE_SIZE = 1024L * 1024L * 1024L;
+
 	public static final String LAB_ORDER_TYPE_UUID = "commonlabtest.labOrderTypeUuid";
 
+	public static final String BATCH_FETCH_SIZE = "commonlabtest.batchFetchSize";
+
+	public static final Integer DEFAULT_BATCH_FETCH_SIZE = 500;
+
+	public static final String RESULT_BATCH_SIZE = "commonlabtest.resultBatchSize";
+
+	public static final Integer DEFAULT_RESULT_BATCH_SIZE = 50;
+
+	public static final String ASYNC_VOID = "commonlabtest.asyncVoid";
+
+	public static final String SLOW_QUERY_THRESHOLD = "commonlabtest.slowQueryThresholdMillis";
+
+	public static final Long DEFAULT_SLOW_QUERY_THRESHOLD = 1000L;
+
+	public static final String SLOW_QUERY_PARAMETERS = "commonlabtest.slowQueryParameters";
+
+	private static final long VOID_QUEUE_TASK_INTERVAL = 30L;
+
+	private static final long MOVE_LAB_REPORTS_TASK_INTERVAL = 24L * 60L * 60L;
+
 	ConceptService conceptService;
 
+	private SlowQueryLogger slowQueryLogger;
+
 	File dir = OpenmrsUtil.getDirectoryInApplicationDataDirectory(
 	    Context.getAdministrationService().getGlobalProperty(OpenmrsConstants.GLOBAL_PROPERTY_COMPLEX_OBS_DIR));
 
@@ -78,6 +111,14 @@ public class CommonLabTestActivator extends BaseModuleActivator {
 		log.info("Shutdown Common Lab Test");
 	}
 
+	/**
+	 * @see #willStop()
+	 */
+	@Override
+	public void willStop() {
+		unregisterSlowQueryLogger();
+	}
+
 	public void contextRefreshed() {
 		log.info("========================== Common Lab Test Lab contextRefreshed called ======");
 		conceptService = Context.getConceptService();
@@ -101,7 +142,108 @@ public class CommonLabTestActivator extends BaseModuleActivator {
 		setGlobalProperty(administrationService, TEST_UNITS_CONCEPT_UUID, "162384AAAAAAAAAAAAAAAAAAAAAAAAAAAAAA",
 		    "The UUID of a concept representing a group or set of various measurement units (also used to measure dosage quantity).");
 		setGlobalProperty(administrationService, UPLOAD_FILE_EXTENSIONS, FILE_EXTENSIONS_NAMES);
+		setGlobalProperty(administrationService, MAX_UPLOAD_FILE_SIZE, DEFAULT_MAX_UPLOAD_FILE_SIZE.toString(),
+		    "Maximum size in bytes of an uploaded lab report file, or 0 for no limit.");
 		setGlobalProperty(administrationService, LAB_ORDER_TYPE_UUID, "33ccfcc6-0370-102d-b0e3-001ec94a0cc1",
 		    "The UUID of the Order type representing a Lab Test Order.");
+		setGlobalProperty(administrationService, BATCH_FETCH_SIZE, DEFAULT_BATCH_FETCH_SIZE.toString(),
+		    "Maximum number of lab test Ids put in a single IN list when samples or results of many tests are fetched together.");
+		setGlobalProperty(administrationService, RESULT_BATCH_SIZE, DEFAULT_RESULT_BATCH_SIZE.toString(),
+		    "Number of lab test results written between session flushes, and committed together by the batch results endpoint. Best kept equal to hibernate.jdbc.batch_size.");
+		setGlobalProperty(administrationService, ASYNC_VOID, "false",
+		    "If true, lab tests of voided or unvoided encounters are queued and processed in the background, instead of within the request voiding the encounter. The task processing the queue is scheduled or stopped accordingly when the module starts.");
+		setGlobalProperty(administrationService, SLOW_QUERY_THRESHOLD, DEFAULT_SLOW_QUERY_THRESHOLD.toString(),
+		    "Queries of lab test data which take at least this many milliseconds are logged and listed on the query statistics page. 0 logs every query, a negative value none.");
+		setGlobalProperty(administrationService, SLOW_QUERY_PARAMETERS, "false",
+		    "If true, slow queries are logged and listed with the values they ran with, which may be patient data. Only turn it on while looking into a slow query.");
+		registerSlowQueryLogger(administrationService);
+		registerVoidQueueTask(administrationService);
+		registerMoveLabReportsTask();
+	}
+
+	/**
+	 * Makes the slow query logger of the current module context follow its global properties, in place
+	 * of the one of the previous context, if any
+	 */
+	private void registerSlowQueryLogger(AdministrationService administrationService) {
+		unregisterSlowQueryLogger();
+		slowQueryLogger = Context.getRegisteredComponent("commonlabtest.SlowQueryLogger", SlowQueryLogger.class);
+		slowQueryLogger.configure(administrationService.getGlobalProperty(SLOW_QUERY_THRESHOLD));
+		slowQueryLogger.setRecordParameters(Boolean.parseBoolean(administrationService.getGlobalProperty(
+		    SLOW_QUERY_PARAMETERS, "false")));
+		administrationService.addGlobalPropertyListener(slowQueryLogger);
+	}
+
+	private void unregisterSlowQueryLogger() {
+		if (slowQueryLogger != null) {
+			Context.getAdministrationService().removeGlobalPropertyListener(slowQueryLogger);
+			slowQueryLogger = null;
+		}
+	}
+
+	/**
+	 * Adds the task which drains the queue of lab tests to void, unless it exists already. It is only
+	 * scheduled while lab tests are voided in the background, and stopped once they are not
+	 */
+	private void registerVoidQueueTask(AdministrationService administrationService) {
+		boolean asyncVoid = Boolean.parseBoolean(administrationService.getGlobalProperty(ASYNC_VOID, "false"));
+		SchedulerService schedulerService = Context.getSchedulerService();
+		TaskDefinition taskDefinition = schedulerService.getTaskByName(ProcessLabTestVoidQueueTask.TASK_NAME);
+		if (taskDefinition == null) {
+			registerTask(ProcessLabTestVoidQueueTask.TASK_NAME,
+			    "Voids and unvoids lab tests queued when their encounters were voided or unvoided",
+			    ProcessLabTestVoidQueueTask.class, VOID_QUEUE_TASK_INTERVAL, asyncVoid);
+			return;
+		}
+		if (Boolean.valueOf(asyncVoid).equals(taskDefinition.getStartOnStartup())) {
+			return;
+		}
+		taskDefinition.setStartOnStartup(asyncVoid);
+		try {
+			schedulerService.saveTaskDefinition(taskDefinition);
+			if (asyncVoid) {
+				schedulerService.scheduleTask(taskDefinition);
+			} else {
+				schedulerService.shutdownTask(taskDefinition);
+			}
+		}
+		catch (SchedulerException e) {
+			log.error("Unable to reschedule " + ProcessLabTestVoidQueueTask.TASK_NAME, e);
+		}
+	}
+
+	/**
+	 * Adds the task which moves report files uploaded before the report store existed into it, unless
+	 * it exists already. It is not started automatically, as the move may take a while on large
+	 * installations; start it from the scheduler once, at a quiet time.
+	 */
+	private void registerMoveLabReportsTask() {
+		registerTask(MoveLabReportsToStoreTask.TASK_NAME,
+		    "Moves lab report files from the upload directory into the content-addressed report store",
+		    MoveLabReportsToStoreTask.class, MOVE_LAB_REPORTS_TASK_INTERVAL, false);
+	}
+
+	private void registerTask(String name, String description, Class<?> taskClass, long repeatInterval,
+	        boolean startOnStartup) {
+		SchedulerService schedulerService = Context.getSchedulerService();
+		if (schedulerService.getTaskByName(name) != null) {
+			return;
+		}
+		TaskDefinition taskDefinition = new TaskDefinition();
+		taskDefinition.setName(name);
+		taskDefinition.setDescription(description);
+		taskDefinition.setTaskClass(taskClass.getName());
+		taskDefinition.setStartTime(new Date());
+		taskDefinition.setRepeatInterval(repeatInterval);
+		taskDefinition.setStartOnStartup(startOnStartup);
+		try {
+			schedulerService.saveTaskDefinition(taskDefinition);
+			if (startOnStartup) {
+				schedulerService.scheduleTask(taskDefinition);
+			}
+		}
+		catch (SchedulerException e) {
+			log.error("Unable to schedule " + name, e);
+		}
 	}
 }
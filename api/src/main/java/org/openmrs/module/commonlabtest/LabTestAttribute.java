@@ -14,6 +14,8 @@
  */
 package org.openmrs.module.commonlabtest;
 
+import java.util.Date;
+
 import org.openmrs.attribute.Attribute;
 import org.openmrs.attribute.BaseAttribute;
 
@@ -29,6 +31,14 @@ public class LabTestAttribute extends BaseAttribute<LabTestAttributeType, LabTes
 
 	private Integer labTestAttributeId;
 
+	private Double valueNumeric;
+
+	private Date valueDatetime;
+
+	private Integer valueCoded;
+
+	private Boolean valueBoolean;
+
 	/**
 	 * Default constructor
 	 */
@@ -57,6 +67,50 @@ public class LabTestAttribute extends BaseAttribute<LabTestAttributeType, LabTes
 		setOwner(labTest);
 	}
 
+	/**
+	 * @return the value as number if the attribute type is numeric, otherwise null
+	 */
+	public Double getValueNumeric() {
+		return valueNumeric;
+	}
+
+	public void setValueNumeric(Double valueNumeric) {
+		this.valueNumeric = valueNumeric;
+	}
+
+	/**
+	 * @return the value as date if the attribute type is a date, otherwise null
+	 */
+	public Date getValueDatetime() {
+		return valueDatetime;
+	}
+
+	public void setValueDatetime(Date valueDatetime) {
+		this.valueDatetime = valueDatetime;
+	}
+
+	/**
+	 * @return the Id of the answer concept if the attribute type is coded, otherwise null
+	 */
+	public Integer getValueCoded() {
+		return valueCoded;
+	}
+
+	public void setValueCoded(Integer valueCoded) {
+		this.valueCoded = valueCoded;
+	}
+
+	/**
+	 * @return the value as boolean if the attribute type is boolean, otherwise null
+	 */
+	public Boolean getValueBoolean() {
+		return valueBoolean;
+	}
+
+	public void setValueBoolean(Boolean valueBoolean) {
+		this.valueBoolean = valueBoolean;
+	}
+
 	@Override
 	public Integer getId() {
 		return getLabTestAttributeId();
@@ -22,6 +22,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.search.annotations.Field;
 import org.openmrs.attribute.AttributeType;
 import org.openmrs.attribute.BaseAttributeType;
@@ -34,6 +36,7 @@ import org.openmrs.attribute.BaseAttributeType;
  */
 @Entity(name = "commonlabtest.LabTestAttributeType")
 @Table(name = "commonlabtest_attribute_type")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class LabTestAttributeType extends BaseAttributeType<LabTest> implements AttributeType<LabTest> {
 
 	private static final long serialVersionUID = -5724984364122528275L;
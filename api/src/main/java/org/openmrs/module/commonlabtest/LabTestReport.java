@@ -0,0 +1,148 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.openmrs.User;
+
+/**
+ * Links a {@link LabTest} to a report file in the
+ * {@link org.openmrs.module.commonlabtest.report.LabReportStore}. The file is identified by the
+ * SHA-256 digest of its content, so many reports may share one file; the name it was uploaded with
+ * is kept here.
+ */
+@Entity(name = "commonlabtest.LabTestReport")
+@Table(name = "commonlabtest_report")
+public class LabTestReport implements Serializable {
+
+	private static final long serialVersionUID = 5170470625831204368L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "report_id")
+	private Integer reportId;
+
+	@ManyToOne
+	@JoinColumn(name = "test_order_id", nullable = false)
+	private LabTest labTest;
+
+	@Column(name = "sha256", nullable = false, length = 64)
+	private String sha256;
+
+	@Column(name = "file_size", nullable = false)
+	private Long fileSize;
+
+	@Column(name = "filename", nullable = false, length = 255)
+	private String filename;
+
+	@ManyToOne
+	@JoinColumn(name = "creator")
+	private User creator;
+
+	@Column(name = "date_created", nullable = false)
+	private Date dateCreated;
+
+	/**
+	 * Default constructor
+	 */
+	public LabTestReport() {
+	}
+
+	/**
+	 * @param labTest the lab test the report belongs to
+	 * @param sha256 digest of the stored file
+	 * @param fileSize size of the stored file in bytes
+	 * @param filename name the file was uploaded with
+	 */
+	public LabTestReport(LabTest labTest, String sha256, Long fileSize, String filename) {
+		this.labTest = labTest;
+		this.sha256 = sha256;
+		this.fileSize = fileSize;
+		this.filename = filename;
+	}
+
+	public Integer getReportId() {
+		return reportId;
+	}
+
+	public void setReportId(Integer reportId) {
+		this.reportId = reportId;
+	}
+
+	public LabTest getLabTest() {
+		return labTest;
+	}
+
+	public void setLabTest(LabTest labTest) {
+		this.labTest = labTest;
+	}
+
+	/**
+	 * @return SHA-256 digest of the file, in lower case hex, which is its key in the store
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public void setFileSize(Long fileSize) {
+		this.fileSize = fileSize;
+	}
+
+	/**
+	 * @return name the file was uploaded with
+	 */
+	public String getFilename() {
+		return filename;
+	}
+
+	public void setFilename(String filename) {
+		this.filename = filename;
+	}
+
+	public User getCreator() {
+		return creator;
+	}
+
+	public void setCreator(User creator) {
+		this.creator = creator;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	public void setDateCreated(Date dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+
+	@Override
+	public String toString() {
+		return filename + " (" + sha256 + ")";
+	}
+}
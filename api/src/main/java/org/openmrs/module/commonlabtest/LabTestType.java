@@ -24,6 +24,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.search.annotations.Field;
 import org.openmrs.BaseOpenmrsMetadata;
 import org.openmrs.Concept;
@@ -36,6 +38,7 @@ import org.openmrs.Concept;
  */
 @Entity(name = "commonlabtest.LabTestType")
 @Table(name = "commonlabtest_type")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class LabTestType extends BaseOpenmrsMetadata {
 
 	private static final long serialVersionUID = -4734826044571156784L;
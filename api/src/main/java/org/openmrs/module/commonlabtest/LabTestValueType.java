@@ -0,0 +1,112 @@
+package org.openmrs.module.commonlabtest;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Enumerated type to represent how the value of a {@link LabTestAttribute} is stored besides its
+ * value reference, based on datatype of the {@link LabTestAttributeType}
+ */
+public enum LabTestValueType {
+	NUMERIC, // Stored in value_numeric
+	DATETIME, // Stored in value_datetime
+	CODED, // Concept Id stored in value_coded
+	BOOLEAN, // Stored in value_boolean
+	TEXT; // Only in value_reference
+
+	private static final String[] DATE_PATTERNS = { "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd" };
+
+	/**
+	 * @param datatypeClassname datatype class name of the attribute type, or one of the short names
+	 *            used by the result forms
+	 * @return the value type, TEXT if the datatype is not recognized
+	 */
+	public static LabTestValueType of(String datatypeClassname) {
+		if (datatypeClassname == null) {
+			return TEXT;
+		} else if (datatypeClassname.endsWith("FloatDatatype") || datatypeClassname.equals("Numeric")) {
+			return NUMERIC;
+		} else if (datatypeClassname.endsWith("DateDatatype") || datatypeClassname.endsWith("DateTimeDatatype")
+		        || datatypeClassname.equals("Date") || datatypeClassname.equals("Datetime")) {
+			return DATETIME;
+		} else if (datatypeClassname.endsWith("ConceptDatatype") || datatypeClassname.equals("Coded")) {
+			return CODED;
+		} else if (datatypeClassname.endsWith("BooleanDatatype") || datatypeClassname.equals("Boolean")) {
+			return BOOLEAN;
+		}
+		return TEXT;
+	}
+
+	/**
+	 * @param valueReference the value reference
+	 * @return the finite number, or null if the value is not one
+	 */
+	public static Double toNumeric(String valueReference) {
+		if (valueReference == null) {
+			return null;
+		}
+		try {
+			Double value = Double.valueOf(valueReference.trim());
+			return value.isNaN() || value.isInfinite() ? null : value;
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param valueReference the value reference
+	 * @return the date, or null if the value is not in any of the formats written by the datatypes
+	 *         and result forms
+	 */
+	public static Date toDatetime(String valueReference) {
+		if (valueReference == null) {
+			return null;
+		}
+		String value = valueReference.trim();
+		for (String pattern : DATE_PATTERNS) {
+			SimpleDateFormat format = new SimpleDateFormat(pattern);
+			format.setLenient(false);
+			ParsePosition position = new ParsePosition(0);
+			Date date = format.parse(value, position);
+			if (date != null && position.getIndex() == value.length()) {
+				return date;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param valueReference the value reference
+	 * @return the concept Id, or null if the value is not a number, e.g. a concept UUID
+	 */
+	public static Integer toConceptId(String valueReference) {
+		if (valueReference == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(valueReference.trim());
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param valueReference the value reference
+	 * @return true or false, or null if the value is neither
+	 */
+	public static Boolean toBoolean(String valueReference) {
+		if (valueReference == null) {
+			return null;
+		}
+		String value = valueReference.trim();
+		if (value.equalsIgnoreCase("true")) {
+			return Boolean.TRUE;
+		} else if (value.equalsIgnoreCase("false")) {
+			return Boolean.FALSE;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,196 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.openmrs.User;
+
+/**
+ * An order whose {@link LabTest} is still to be voided or unvoided, after its encounter was. Items
+ * are written in the transaction which voids the encounter and removed once processed, so the queue
+ * survives restarts. Processing an item is idempotent, since the same order may be queued again or
+ * an item may be processed twice if the server stops in between.
+ */
+@Entity(name = "commonlabtest.LabTestVoidQueueItem")
+@Table(name = "commonlabtest_void_queue")
+public class LabTestVoidQueueItem implements Serializable {
+
+	private static final long serialVersionUID = -3425127310389764187L;
+
+	public enum Action {
+		VOID,
+		UNVOID
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "queue_item_id")
+	private Integer queueItemId;
+
+	@Column(name = "order_id", nullable = false)
+	private Integer orderId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "action", nullable = false, length = 10)
+	private Action action;
+
+	@Column(name = "void_reason", length = 255)
+	private String voidReason;
+
+	@Column(name = "attempts", nullable = false)
+	private Integer attempts = 0;
+
+	@Column(name = "last_error", length = 1024)
+	private String lastError;
+
+	@Column(name = "failed", nullable = false)
+	private Boolean failed = false;
+
+	@ManyToOne
+	@JoinColumn(name = "creator")
+	private User creator;
+
+	@Column(name = "date_created", nullable = false)
+	private Date dateCreated;
+
+	@Column(name = "next_attempt_date", nullable = false)
+	private Date nextAttemptDate;
+
+	/**
+	 * Default constructor
+	 */
+	public LabTestVoidQueueItem() {
+	}
+
+	/**
+	 * @param orderId Id of the voided or unvoided order
+	 * @param action what to do with the lab test of the order
+	 * @param voidReason reason to void the lab test with
+	 */
+	public LabTestVoidQueueItem(Integer orderId, Action action, String voidReason) {
+		this.orderId = orderId;
+		this.action = action;
+		this.voidReason = voidReason;
+	}
+
+	public Integer getQueueItemId() {
+		return queueItemId;
+	}
+
+	public void setQueueItemId(Integer queueItemId) {
+		this.queueItemId = queueItemId;
+	}
+
+	public Integer getOrderId() {
+		return orderId;
+	}
+
+	public void setOrderId(Integer orderId) {
+		this.orderId = orderId;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	public void setAction(Action action) {
+		this.action = action;
+	}
+
+	public String getVoidReason() {
+		return voidReason;
+	}
+
+	public void setVoidReason(String voidReason) {
+		this.voidReason = voidReason;
+	}
+
+	/**
+	 * @return number of failed attempts to process this item
+	 */
+	public Integer getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(Integer attempts) {
+		this.attempts = attempts;
+	}
+
+	/**
+	 * @return message of the last failure, or null
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	/**
+	 * @return true if processing was given up after too many failed attempts. The item then stays in
+	 *         the queue, holding back later items of its order, until it is fixed and reset by hand
+	 */
+	public Boolean getFailed() {
+		return failed;
+	}
+
+	public void setFailed(Boolean failed) {
+		this.failed = failed;
+	}
+
+	/**
+	 * @return the user who voided or unvoided the encounter
+	 */
+	public User getCreator() {
+		return creator;
+	}
+
+	public void setCreator(User creator) {
+		this.creator = creator;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	public void setDateCreated(Date dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+
+	/**
+	 * @return the earliest time to process this item
+	 */
+	public Date getNextAttemptDate() {
+		return nextAttemptDate;
+	}
+
+	public void setNextAttemptDate(Date nextAttemptDate) {
+		this.nextAttemptDate = nextAttemptDate;
+	}
+
+	@Override
+	public String toString() {
+		return action + " lab test of order " + orderId;
+	}
+}
@@ -10,13 +10,21 @@
 package org.openmrs.module.commonlabtest.aop;
 
 import java.lang.reflect.Method;
-import java.util.Set;
-import java.util.logging.Logger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.openmrs.Encounter;
 import org.openmrs.Order;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
 import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
 import org.springframework.aop.AfterReturningAdvice;
 
@@ -26,6 +34,8 @@ import org.springframework.aop.AfterReturningAdvice;
 
 public class AfterOrderVoidAdvice implements AfterReturningAdvice {
 
+	private static final Log log = LogFactory.getLog(AfterOrderVoidAdvice.class);
+
 	/*
 	 * (non-Javadoc) * @see
 	 * org.springframework.aop.AfterReturningAdvice#afterReturning(java.lang.
@@ -35,50 +45,98 @@ public class AfterOrderVoidAdvice implements AfterReturningAdvice {
 	 */
 	@Override
 	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
-
-		CommonLabTestService commonLabTestService;
-
+		if (returnValue == null) {
+			return;
+		}
 		if (method.getName().equalsIgnoreCase("voidEncounter")) {
-			if (returnValue != null) {
-
-				Encounter encounter = (Encounter) returnValue;
-				Set<Order> orders = (Set<Order>) encounter.getOrders();
-
-				for (Order o : orders) {
-					if (o.getVoided()) {
-						Logger.getAnonymousLogger().info(" ==== > Order # " + o.getOrderId() + " Voided: " + o.getVoided());
-						// void corresponding LabTest entity that has one to one mapping to this Order
-						commonLabTestService = Context.getService(CommonLabTestService.class);
-						LabTest labTest = commonLabTestService.getLabTest(o.getOrderId());
-						if (labTest != null) {
-							commonLabTestService.voidLabTest(labTest, o.getVoidReason());
-							Logger.getAnonymousLogger().info(
-							    " ==== > Lab Test # " + labTest.getTestOrderId() + " Voided: " + labTest.getVoided());
-						}
-					}
+			// void corresponding LabTest entities that have one to one mapping to the voided Orders
+			Map<Integer, Order> orders = getOrders((Encounter) returnValue, true);
+			if (orders.isEmpty()) {
+				return;
+			}
+			CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+			if (isAsyncVoid()) {
+				for (Order order : orders.values()) {
+					commonLabTestService.queueLabTestVoid(order, LabTestVoidQueueItem.Action.VOID);
+				}
+				return;
+			}
+			// Tests are voided with the reason of their order, so group them by it
+			Map<String, List<LabTest>> labTestsByVoidReason = new LinkedHashMap<String, List<LabTest>>();
+			for (LabTest labTest : commonLabTestService.getLabTestsByOrderIds(orders.keySet())) {
+				if (labTest.getVoided()) {
+					continue;
+				}
+				String voidReason = orders.get(labTest.getTestOrderId()).getVoidReason();
+				if (!labTestsByVoidReason.containsKey(voidReason)) {
+					labTestsByVoidReason.put(voidReason, new ArrayList<LabTest>());
+				}
+				labTestsByVoidReason.get(voidReason).add(labTest);
+			}
+			for (Map.Entry<String, List<LabTest>> entry : labTestsByVoidReason.entrySet()) {
+				commonLabTestService.voidLabTests(entry.getValue(), entry.getKey());
+				if (log.isDebugEnabled()) {
+					log.debug("Voided " + entry.getValue().size() + " lab tests of encounter "
+					        + ((Encounter) returnValue).getEncounterId());
 				}
 			}
-
 		} else if (method.getName().equalsIgnoreCase("unvoidEncounter")) {
-			if (returnValue != null) {
-
-				Encounter encounter = (Encounter) returnValue;
-				Set<Order> orders = (Set<Order>) encounter.getOrders();
-
-				for (Order o : orders) {
-					if (!o.getVoided()) {
-						Logger.getAnonymousLogger().info(" ==== > Order # " + o.getOrderId() + " Voided: " + o.getVoided());
-						// unvoid corresponding LabTest entity that has one to one mapping to this Order
-						commonLabTestService = Context.getService(CommonLabTestService.class);
-						LabTest labTest = commonLabTestService.getLabTest(o.getOrderId());
-						if (labTest != null) {
-							commonLabTestService.unvoidLabTest(labTest);
-							Logger.getAnonymousLogger().info(
-							    " ==== > Lab Test # " + labTest.getTestOrderId() + " Voided: " + labTest.getVoided());
-						}
-					}
+			// unvoid corresponding LabTest entities that have one to one mapping to the unvoided Orders
+			Map<Integer, Order> orders = getOrders((Encounter) returnValue, false);
+			if (orders.isEmpty()) {
+				return;
+			}
+			CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+			if (isAsyncVoid()) {
+				for (Order order : orders.values()) {
+					commonLabTestService.queueLabTestVoid(order, LabTestVoidQueueItem.Action.UNVOID);
+				}
+				return;
+			}
+			List<LabTest> labTests = new ArrayList<LabTest>();
+			for (LabTest labTest : commonLabTestService.getLabTestsByOrderIds(orders.keySet())) {
+				if (labTest.getVoided()) {
+					labTests.add(labTest);
 				}
 			}
+			if (!labTests.isEmpty()) {
+				commonLabTestService.unvoidLabTests(labTests);
+				if (log.isDebugEnabled()) {
+					log.debug("Unvoided " + labTests.size() + " lab tests of encounter "
+					        + ((Encounter) returnValue).getEncounterId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param voided whether to return the voided or the non-voided orders
+	 * @return lab orders of the encounter by their Ids. All orders are returned if global property
+	 *         {@value org.openmrs.module.commonlabtest.CommonLabTestActivator#LAB_ORDER_TYPE_UUID} is
+	 *         not set
+	 */
+	private Map<Integer, Order> getOrders(Encounter encounter, boolean voided) {
+		String labOrderTypeUuid = Context.getAdministrationService().getGlobalProperty(
+		    CommonLabTestActivator.LAB_ORDER_TYPE_UUID);
+		Map<Integer, Order> orders = new HashMap<Integer, Order>();
+		for (Order order : encounter.getOrders()) {
+			if (order.getVoided() != voided) {
+				continue;
+			}
+			if (StringUtils.isBlank(labOrderTypeUuid) || (order.getOrderType() != null
+			        && labOrderTypeUuid.equalsIgnoreCase(order.getOrderType().getUuid()))) {
+				orders.put(order.getOrderId(), order);
+			}
 		}
+		return orders;
+	}
+
+	/**
+	 * @return true if lab tests are to be queued and voided by
+	 *         {@link org.openmrs.module.commonlabtest.task.ProcessLabTestVoidQueueTask}
+	 */
+	private boolean isAsyncVoid() {
+		return Boolean.parseBoolean(
+		    Context.getAdministrationService().getGlobalProperty(CommonLabTestActivator.ASYNC_VOID, "false"));
 	}
 }
@@ -0,0 +1,147 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmrs.module.commonlabtest.LabTestAttributeType;
+
+/**
+ * The attribute types of one {@link org.openmrs.module.commonlabtest.LabTestType} arranged the way
+ * the result forms show them: attribute types which have a group name are gathered under one group
+ * node, and within a group, those which have a multiset name are gathered under one multiset node.
+ * Groups and multisets take the position of their first attribute type. The layout is compiled once
+ * in linear time and is read-only afterwards.
+ */
+public final class AttributeTypeLayout {
+
+	private final List<LabTestAttributeType> attributeTypes;
+
+	private final List<Node> nodes;
+
+	/**
+	 * @param attributeTypes attribute types in the order to show them
+	 */
+	AttributeTypeLayout(List<LabTestAttributeType> attributeTypes) {
+		this.attributeTypes = Collections.unmodifiableList(new ArrayList<LabTestAttributeType>(attributeTypes));
+		List<Node> topNodes = new ArrayList<Node>();
+		Map<String, Node> groups = new HashMap<String, Node>();
+		Map<String, Node> multisets = new HashMap<String, Node>();
+		for (LabTestAttributeType attributeType : attributeTypes) {
+			String groupName = attributeType.getGroupName();
+			if (isEmpty(groupName)) {
+				topNodes.add(new Node(null, attributeType));
+				continue;
+			}
+			Node group = groups.get(groupName);
+			if (group == null) {
+				group = new Node(groupName, null);
+				groups.put(groupName, group);
+				topNodes.add(group);
+			}
+			group.attributeTypes.add(attributeType);
+			String multisetName = attributeType.getMultisetName();
+			if (isEmpty(multisetName)) {
+				group.children.add(new Node(null, attributeType));
+				continue;
+			}
+			String key = groupName + '\u0000' + multisetName;
+			Node multiset = multisets.get(key);
+			if (multiset == null) {
+				multiset = new Node(multisetName, null);
+				multisets.put(key, multiset);
+				group.children.add(multiset);
+			}
+			multiset.attributeTypes.add(attributeType);
+			multiset.children.add(new Node(null, attributeType));
+		}
+		this.nodes = Collections.unmodifiableList(topNodes);
+	}
+
+	/**
+	 * @return all attribute types in the order to show them
+	 */
+	public List<LabTestAttributeType> getAttributeTypes() {
+		return attributeTypes;
+	}
+
+	/**
+	 * @return top level nodes, each either a group or an attribute type without group
+	 */
+	public List<Node> getNodes() {
+		return nodes;
+	}
+
+	private static boolean isEmpty(String name) {
+		return name == null || name.isEmpty();
+	}
+
+	/**
+	 * Either a group of nodes or a single {@link LabTestAttributeType}
+	 */
+	public static final class Node {
+
+		private final String name;
+
+		private final LabTestAttributeType attributeType;
+
+		private final List<Node> children = new ArrayList<Node>();
+
+		private final List<LabTestAttributeType> attributeTypes = new ArrayList<LabTestAttributeType>();
+
+		private Node(String name, LabTestAttributeType attributeType) {
+			this.name = name;
+			this.attributeType = attributeType;
+			if (attributeType != null) {
+				attributeTypes.add(attributeType);
+			}
+		}
+
+		/**
+		 * @return true if this node groups other nodes, false if it holds an attribute type
+		 */
+		public boolean isGroup() {
+			return attributeType == null;
+		}
+
+		/**
+		 * @return group or multiset name, or null if this node holds an attribute type
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the attribute type, or null if this is a group
+		 */
+		public LabTestAttributeType getAttributeType() {
+			return attributeType;
+		}
+
+		/**
+		 * @return nodes in this group, empty if this node holds an attribute type
+		 */
+		public List<Node> getChildren() {
+			return Collections.unmodifiableList(children);
+		}
+
+		/**
+		 * @return all attribute types under this node in the order to show them, including those in
+		 *         multisets of a group
+		 */
+		public List<LabTestAttributeType> getAttributeTypes() {
+			return Collections.unmodifiableList(attributeTypes);
+		}
+	}
+}
@@ -9,9 +9,11 @@
  */
 package org.openmrs.module.commonlabtest.api;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.Concept;
 import org.openmrs.Order;
@@ -23,9 +25,11 @@ import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
 import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestReport;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
 import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -43,6 +47,35 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired) throws APIException;
 
+	/**
+	 * Returns the requested range of all {@link LabTestAttributeType} objects, ordered by name
+	 * 
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttributeType} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired, Integer startIndex, Integer limit)
+	        throws APIException;
+
+	/**
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestAttributeType} objects
+	 * @throws APIException on Exception
+	 */
+	Long getAllLabTestAttributeTypesCount(boolean includeRetired) throws APIException;
+
+	/**
+	 * Returns the snapshot of all lab test types and attribute types. The snapshot is kept in memory
+	 * and read again from the database only after metadata has changed, so forms can look up
+	 * metadata without database access
+	 * 
+	 * @return the current {@link LabTestMetadata} snapshot
+	 * @throws APIException on Exception
+	 */
+	LabTestMetadata getLabTestMetadata() throws APIException;
+
 	/**
 	 * Returns list of all objects of {@link LabTestType}
 	 * 
@@ -52,6 +85,24 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestType> getAllLabTestTypes(boolean includeRetired) throws APIException;
 
+	/**
+	 * Returns the requested range of all {@link LabTestType} objects, ordered by name
+	 * 
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestType} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestType> getAllLabTestTypes(boolean includeRetired, Integer startIndex, Integer limit) throws APIException;
+
+	/**
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestType} objects
+	 * @throws APIException on Exception
+	 */
+	Long getAllLabTestTypesCount(boolean includeRetired) throws APIException;
+
 	/**
 	 * Returns first {@link LabTest} object by given {@link Patient}
 	 * 
@@ -81,6 +132,15 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	LabTest getLabTest(Integer labTestId) throws APIException;
 
+	/**
+	 * Returns the {@link LabTest} objects of many orders at once, e.g. all orders of an encounter
+	 * 
+	 * @param testOrderIds Ids of the orders
+	 * @return {@link LabTest} objects of given orders which have one, in no particular order
+	 * @throws APIException on Exception
+	 */
+	List<LabTest> getLabTestsByOrderIds(Collection<Integer> testOrderIds) throws APIException;
+
 	/**
 	 * Returns a {@link LabTestAttribute} object by its generated ID
 	 * 
@@ -108,6 +168,35 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestAttribute> getLabTestAttributes(Integer testOrderId) throws APIException;
 
+	/**
+	 * Returns the attributes of all given lab tests, fetched in batches instead of one query per test
+	 * 
+	 * @see org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO#getLabTestAttributes(Collection)
+	 * @param labTests the {@link LabTest} objects
+	 * @return {@link LabTestAttribute} object(s) mapped to test order Id
+	 * @throws APIException on Exception
+	 */
+	Map<Integer, List<LabTestAttribute>> getLabTestAttributes(Collection<LabTest> labTests) throws APIException;
+
+	/**
+	 * Returns the requested range of {@link LabTestAttribute} objects of a lab test
+	 * 
+	 * @param testOrderId the order Id
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttribute} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttribute> getLabTestAttributes(Integer testOrderId, Integer startIndex, Integer limit)
+	        throws APIException;
+
+	/**
+	 * @param testOrderId the order Id
+	 * @return number of {@link LabTestAttribute} objects of the lab test
+	 * @throws APIException on Exception
+	 */
+	Long getLabTestAttributesCount(Integer testOrderId) throws APIException;
+
 	/**
 	 * Get a list of {@link LabTestAttribute} objects using various parameters available. This is
 	 * similar to getByExample(...) methods, except that instead of passing similar object, properties
@@ -134,6 +223,59 @@ public interface CommonLabTestService extends OpenmrsService {
 	List<LabTestAttribute> getLabTestAttributes(LabTestAttributeType labTestAttributeType, boolean includeVoided)
 	        throws APIException;
 
+	/**
+	 * Get a list of {@link LabTestAttribute} objects of a numeric attribute type whose value lies in
+	 * given range. The search runs on the stored numeric value, so values which are not numbers are
+	 * never matched
+	 * 
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param min the lowest value, inclusive, or null for no lower bound
+	 * @param max the highest value, inclusive, or null for no upper bound
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttribute> getLabTestAttributesByNumericValue(LabTestAttributeType labTestAttributeType, Double min,
+	        Double max, boolean includeVoided) throws APIException;
+
+	/**
+	 * Get a list of {@link LabTestAttribute} objects of a date attribute type whose value lies in
+	 * given range
+	 * 
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param from the earliest value, inclusive, or null for no lower bound
+	 * @param to the latest value, inclusive, or null for no upper bound
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttribute> getLabTestAttributesByDatetimeValue(LabTestAttributeType labTestAttributeType, Date from,
+	        Date to, boolean includeVoided) throws APIException;
+
+	/**
+	 * Get a list of {@link LabTestAttribute} objects of a coded attribute type with given answer
+	 * 
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param concept the answer {@link Concept}
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttribute> getLabTestAttributesByCodedValue(LabTestAttributeType labTestAttributeType, Concept concept,
+	        boolean includeVoided) throws APIException;
+
+	/**
+	 * Get a list of {@link LabTestAttribute} objects of a boolean attribute type with given value
+	 * 
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param value the value
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttribute> getLabTestAttributesByBooleanValue(LabTestAttributeType labTestAttributeType, Boolean value,
+	        boolean includeVoided) throws APIException;
+
 	/*
 	 * @see CommonLabTestDAO#getLabTestAttributes(Patient, LabTestAttributeType,
 	 * boolean)
@@ -190,6 +332,28 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired) throws APIException;
 
+	/**
+	 * Returns the requested range of {@link LabTestAttributeType} objects against {@link LabTestType}
+	 * object
+	 * 
+	 * @param labTestType the {@link LabTestType} object
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttributeType} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired,
+	        Integer startIndex, Integer limit) throws APIException;
+
+	/**
+	 * @param labTestType the {@link LabTestType} object
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestAttributeType} objects of the given {@link LabTestType}
+	 * @throws APIException on Exception
+	 */
+	Long getLabTestAttributeTypesCount(LabTestType labTestType, boolean includeRetired) throws APIException;
+
 	/**
 	 * Returns a {@link LabTest} object by uuid. It can be called by any authenticated user. It is
 	 * fetched in read only transaction.
@@ -262,6 +426,18 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestSample> getLabTestSamples(LabTest labTest, boolean includeVoided) throws APIException;
 
+	/**
+	 * Returns the samples of all given lab tests, fetched in batches instead of one query per test
+	 * 
+	 * @see org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO#getLabTestSamples(Collection, boolean)
+	 * @param labTests the {@link LabTest} objects
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestSample} object(s) mapped to test order Id
+	 * @throws APIException on Exception
+	 */
+	Map<Integer, List<LabTestSample>> getLabTestSamples(Collection<LabTest> labTests, boolean includeVoided)
+	        throws APIException;
+
 	/*
 	 * @see CommonLabTestDAO#getLabTestSamples(Patient, boolean)
 	 */
@@ -304,6 +480,59 @@ public interface CommonLabTestService extends OpenmrsService {
 	List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
 	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided) throws APIException;
 
+	/**
+	 * Returns the requested range of {@link LabTestSample} objects by matching the given criteria. At
+	 * least one of the first three parameters must be provided, the rest are optional.
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @param patient the {@link Patient} object
+	 * @param sampleIdentifier the identifier of specimen sample
+	 * @param specimenType the {@link Concept} object representing type of specimen
+	 * @param status the {@link LabTestSampleStatus} enumerated type
+	 * @param collector the {@link Provider} object
+	 * @param from the start {@link Date} object representing start of date of creation
+	 * @param to the end {@link Date} object representing end of date of creation
+	 * @param includeVoided include voided objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestSample} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit) throws APIException;
+
+	/**
+	 * @see #getLabTestSamples(LabTest, Patient, String, Concept, LabTestSampleStatus, Provider, Date,
+	 *      Date, boolean)
+	 * @return number of {@link LabTestSample} objects matching the criteria
+	 * @throws APIException on Exception
+	 */
+	Long getLabTestSamplesCount(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided) throws APIException;
+
+	/**
+	 * Returns one page of {@link LabTestSample} objects matching the given criteria, ordered by date
+	 * of creation. All criteria are optional
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @param patient the {@link Patient} object
+	 * @param sampleIdentifier the identifier of specimen sample
+	 * @param specimenType the {@link Concept} object representing type of specimen
+	 * @param status the {@link LabTestSampleStatus} enumerated type
+	 * @param collector the {@link Provider} object
+	 * @param from the start {@link Date} object representing start of date of creation
+	 * @param to the end {@link Date} object representing end of date of creation
+	 * @param includeVoided include voided objects
+	 * @param continuationToken the token returned with previous page, or null for the first page
+	 * @param pageSize maximum number of objects to return
+	 * @return {@link KeysetPage} of {@link LabTestSample} object(s)
+	 * @throws APIException on Exception
+	 */
+	KeysetPage<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize) throws APIException;
+
 	/**
 	 * @param labTestTypeId the generated Id
 	 * @return {@link LabTestType} object(s)
@@ -355,6 +584,59 @@ public interface CommonLabTestService extends OpenmrsService {
 	List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
 	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) throws APIException;
 
+	/**
+	 * Returns the requested range of {@link LabTest} objects matching the given criteria. Only the
+	 * requested rows are fetched from the database
+	 * 
+	 * @param labTestType the {@link LabTestType} object
+	 * @param patient the {@link Patient} object
+	 * @param orderNumber the order number
+	 * @param referenceNumber the reference number
+	 * @param orderConcept the {@link Concept} object
+	 * @param orderer the {@link Provider} object
+	 * @param from the start {@link Date} object
+	 * @param to the end {@link Date} object
+	 * @param includeVoided include voided objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTest} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit) throws APIException;
+
+	/**
+	 * @see #getLabTests(LabTestType, Patient, String, String, Concept, Provider, Date, Date, boolean)
+	 * @return number of {@link LabTest} objects matching the criteria
+	 * @throws APIException on Exception
+	 */
+	Long getLabTestsCount(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) throws APIException;
+
+	/**
+	 * Returns one page of {@link LabTest} objects matching the given criteria, ordered by date of
+	 * creation. Use this instead of the list variant to walk through large worklists: pages are
+	 * located by seeking past the last object of the previous page, so every page costs the same
+	 * 
+	 * @param labTestType the {@link LabTestType} object
+	 * @param patient the {@link Patient} object
+	 * @param orderNumber the order number
+	 * @param referenceNumber the reference number
+	 * @param orderConcept the {@link Concept} object
+	 * @param orderer the {@link Provider} object
+	 * @param from the start {@link Date} object
+	 * @param to the end {@link Date} object
+	 * @param includeVoided include voided objects
+	 * @param continuationToken the token returned with previous page, or null for the first page
+	 * @param pageSize maximum number of objects to return
+	 * @return {@link KeysetPage} of {@link LabTest} object(s)
+	 * @throws APIException on Exception
+	 */
+	KeysetPage<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, String continuationToken,
+	        int pageSize) throws APIException;
+
 	/**
 	 * Returns a list of {@link LabTest} objects by {@link LabTestType}
 	 * 
@@ -395,6 +677,48 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTest> getLabTests(Patient patient, boolean includeVoided) throws APIException;
 
+	/**
+	 * Returns the lab tests of given {@link Patient} as {@link LabTestSummary} rows. Unlike
+	 * {@link #getLabTests(Patient, boolean)}, the rows are read in a single query, which suits
+	 * listings that do not need the complete objects
+	 * 
+	 * @param patient the {@link Patient} object
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestSummary} object(s)
+	 * @throws APIException on Exception
+	 */
+	List<LabTestSummary> getLabTestSummaries(Patient patient, boolean includeVoided) throws APIException;
+
+	/**
+	 * Passes every {@link LabTest} to the callback, one at a time, without loading them all in memory.
+	 * Meant for exports of the entire data. The session is cleared periodically while streaming, so
+	 * the call must not be made while there are unsaved changes
+	 * 
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 * @throws APIException on Exception
+	 */
+	int streamLabTests(boolean includeVoided, LabDataCallback<LabTest> callback) throws APIException;
+
+	/**
+	 * @see #streamLabTests(boolean, LabDataCallback)
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 * @throws APIException on Exception
+	 */
+	int streamLabTestSamples(boolean includeVoided, LabDataCallback<LabTestSample> callback) throws APIException;
+
+	/**
+	 * @see #streamLabTests(boolean, LabDataCallback)
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 * @throws APIException on Exception
+	 */
+	int streamLabTestAttributes(boolean includeVoided, LabDataCallback<LabTestAttribute> callback) throws APIException;
+
 	/**
 	 * Returns a list of {@link LabTest} objects by matching reference number
 	 * 
@@ -462,6 +786,28 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	List<LabTestAttribute> saveLabTestAttributes(List<LabTestAttribute> labTestAttributes) throws APIException;
 
+	/**
+	 * Saves the results of many {@link LabTest} objects at once, e.g. a run exported by an analyzer.
+	 * Existing attributes of all given lab tests are read together; a result replaces every non-voided
+	 * attribute of the same type, older duplicates included, which are voided, unless one of them
+	 * already has the same value and is kept instead. A later result of the same lab test and type
+	 * replaces an earlier one the same way. Results are written in batches of
+	 * {@link #getResultBatchSize()}, all in one transaction
+	 * 
+	 * @param labTestResults result attributes mapped by their lab test
+	 * @return the attributes written, including those voided because they were replaced
+	 * @throws APIException if a result has no attribute type or value
+	 */
+	List<LabTestAttribute> saveLabTestResults(Map<LabTest, Collection<LabTestAttribute>> labTestResults)
+	        throws APIException;
+
+	/**
+	 * @return number of results written between session flushes, as set by the
+	 *         commonlabtest.resultBatchSize global property
+	 * @throws APIException on Exception
+	 */
+	int getResultBatchSize() throws APIException;
+
 	/**
 	 * @param labTestAttributeType the {@link LabTestAttributeType} object to save
 	 * @return saved {@link LabTestAttributeType} object
@@ -523,6 +869,18 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	void voidLabTest(LabTest labTest, String voidReason) throws APIException;
 
+	/**
+	 * Voids many {@link LabTest} objects together. The tests, and the {@link LabTestSample} and
+	 * {@link LabTestAttribute} objects of all the tests, are voided with a few set-based updates
+	 * instead of being saved one by one. Orders which are not voided yet are voided through
+	 * {@link org.openmrs.api.OrderService}
+	 * 
+	 * @param labTests the {@link LabTest} objects to void
+	 * @param voidReason the reason to void
+	 * @throws APIException on Exception
+	 */
+	void voidLabTests(Collection<LabTest> labTests, String voidReason) throws APIException;
+
 	/**
 	 * @param labTestAttribute the {@link LabTestAttribute} object to void
 	 * @param voidReason the reason to void
@@ -557,6 +915,17 @@ public interface CommonLabTestService extends OpenmrsService {
 	 */
 	void unvoidLabTest(LabTest labTest) throws APIException;
 
+	/**
+	 * Unvoids many {@link LabTest} objects together, along with their {@link LabTestSample} and
+	 * {@link LabTestAttribute} objects which were voided with the same reason as the test. They are
+	 * all unvoided with a few set-based updates, and voided orders are unvoided through
+	 * {@link org.openmrs.api.OrderService}
+	 * 
+	 * @param labTests the {@link LabTest} objects to unvoid
+	 * @throws APIException on Exception
+	 */
+	void unvoidLabTests(Collection<LabTest> labTests) throws APIException;
+
 	/**
 	 * @param labTestAttribute the {@link LabTestAttribute} object to unvoid
 	 * @throws APIException on Exception
@@ -589,6 +958,11 @@ public interface CommonLabTestService extends OpenmrsService {
 	void deleteLabTestAttributeType(LabTestAttributeType labTestAttributeType) throws APIException;
 
 	/**
+	 * Deletes a {@link LabTestAttributeType}. If the attributes to delete with it do not fit in one
+	 * batch, the deletion is handed to a
+	 * {@link org.openmrs.module.commonlabtest.task.DeleteLabTestMetadataTask}, which deletes them batch
+	 * by batch in the background and then the type
+	 * 
 	 * @param labTestAttributeType the {@link LabTestAttributeType} object to delete
 	 * @param cascade whether to cascade delete dependent objects or not
 	 * @throws APIException on Exception
@@ -620,11 +994,172 @@ public interface CommonLabTestService extends OpenmrsService {
 
 	/**
 	 * Deletes a LabTestType object and sets {@link LabTestType} of dependent objects to second
-	 * parameter
+	 * parameter. If the lab tests to move do not fit in one batch, the deletion is handed to a
+	 * {@link org.openmrs.module.commonlabtest.task.DeleteLabTestMetadataTask}, which moves them batch by
+	 * batch in the background and then deletes the type
 	 * 
 	 * @param labTestType the {@link LabTestType} object to delete
 	 * @param newObjectForCascade the {@link LabTestType} set to cascaded dependent objects
 	 * @throws APIException on Exception
 	 */
 	void deleteLabTestType(LabTestType labTestType, LabTestType newObjectForCascade) throws APIException;
+
+	/**
+	 * Moves the next batch of {@link LabTest} objects of a {@link LabTestType}, which is going to be
+	 * deleted, to another type. The tests are voided along with their samples and results, using
+	 * set-based updates. Moved tests no longer match the type, so calling this repeatedly until it
+	 * returns 0 processes all of them, and an interrupted run can simply be resumed
+	 * 
+	 * @see #deleteLabTestType(LabTestType, LabTestType)
+	 * @param labTestType the {@link LabTestType} object to be deleted
+	 * @param newLabTestType the {@link LabTestType} to move the tests to
+	 * @param batchSize maximum number of tests to move
+	 * @return number of tests moved, 0 when none is left
+	 * @throws APIException on Exception
+	 */
+	int moveLabTests(LabTestType labTestType, LabTestType newLabTestType, int batchSize) throws APIException;
+
+	/**
+	 * Deletes the next batch of {@link LabTestAttribute} objects of a {@link LabTestAttributeType}.
+	 * Call repeatedly until it returns 0 to delete all of them
+	 * 
+	 * @see #deleteLabTestAttributeType(LabTestAttributeType, boolean)
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param batchSize maximum number of attributes to delete
+	 * @return number of attributes deleted, 0 when none is left
+	 * @throws APIException on Exception
+	 */
+	int deleteLabTestAttributes(LabTestAttributeType labTestAttributeType, int batchSize) throws APIException;
+
+	/**
+	 * Queues the lab test of given order to be voided or unvoided in the background, instead of
+	 * within the current transaction
+	 * 
+	 * @param order the voided or unvoided {@link Order}
+	 * @param action whether to void or unvoid the lab test
+	 * @return the queued {@link LabTestVoidQueueItem}
+	 * @throws APIException on Exception
+	 */
+	LabTestVoidQueueItem queueLabTestVoid(Order order, LabTestVoidQueueItem.Action action) throws APIException;
+
+	/**
+	 * @param maxResults maximum number of items to return
+	 * @return queued items which are due now, in the order they were queued, leaving out failed items
+	 *         and items waiting for an earlier item of their order
+	 * @throws APIException on Exception
+	 */
+	List<LabTestVoidQueueItem> getDueLabTestVoidQueueItems(int maxResults) throws APIException;
+
+	/**
+	 * Removes a processed item from the queue
+	 * 
+	 * @param item the {@link LabTestVoidQueueItem} object
+	 * @throws APIException on Exception
+	 */
+	void completeLabTestVoidQueueItem(LabTestVoidQueueItem item) throws APIException;
+
+	/**
+	 * Records a failure to process an item, and postpones the next attempt by a delay which doubles
+	 * with each failure, up to an hour. After ten failures the item is marked as failed and no longer
+	 * attempted, nor are later items of its order
+	 * 
+	 * @param item the {@link LabTestVoidQueueItem} object
+	 * @param error message of the failure
+	 * @throws APIException on Exception
+	 */
+	void retryLabTestVoidQueueItem(LabTestVoidQueueItem item, String error) throws APIException;
+
+	/**
+	 * @param failedOnly count only items which were given up after too many attempts
+	 * @return number of items in the queue
+	 * @throws APIException on Exception
+	 */
+	long getLabTestVoidQueueSize(boolean failedOnly) throws APIException;
+
+	/**
+	 * @return number of queued items which failed and are waiting for another attempt
+	 * @throws APIException on Exception
+	 */
+	long getRetryingLabTestVoidQueueSize() throws APIException;
+
+	/**
+	 * @return the date the oldest queued item was queued, or null if the queue is empty
+	 * @throws APIException on Exception
+	 */
+	Date getOldestLabTestVoidQueueItemDate() throws APIException;
+
+	/**
+	 * Stores an uploaded report file of a lab test in the
+	 * {@link org.openmrs.module.commonlabtest.report.LabReportStore}, and points the lab test to it.
+	 * Uploading content the store has already adds a reference to the existing file.
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @param in content of the file; not closed
+	 * @param filename name the file was uploaded with
+	 * @return the saved {@link LabTestReport}
+	 * @throws APIException if the file type is not allowed, the file is too large or cannot be written
+	 */
+	LabTestReport saveLabTestReport(LabTest labTest, InputStream in, String filename) throws APIException;
+
+	/**
+	 * Copies the file a lab test refers to into the
+	 * {@link org.openmrs.module.commonlabtest.report.LabReportStore}, regardless of its type and size,
+	 * and points the lab test to the copy. The original file is left in place.
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @return the saved {@link LabTestReport}, or null if the file does not exist
+	 * @throws APIException if the file cannot be copied
+	 */
+	LabTestReport moveLabTestReportToStore(LabTest labTest) throws APIException;
+
+	/**
+	 * @param labTest the {@link LabTest} object
+	 * @return the {@link LabTestReport} saved last for given lab test, or null
+	 * @throws APIException on Exception
+	 */
+	LabTestReport getLabTestReport(LabTest labTest) throws APIException;
+
+	/**
+	 * Returns the next batch of lab tests whose report files are not in the store yet, i.e. were
+	 * uploaded before it existed
+	 * 
+	 * @param afterTestOrderId return only lab tests with greater Ids; null to start from the first
+	 * @param maxResults maximum number of lab tests to return
+	 * @return lab tests ordered by Id
+	 * @throws APIException on Exception
+	 */
+	List<LabTest> getLabTestsWithUnstoredReports(Integer afterTestOrderId, int maxResults) throws APIException;
+
+	/**
+	 * @param filePath path of a report file
+	 * @return number of lab tests referring to the file
+	 * @throws APIException on Exception
+	 */
+	long getLabTestCountByFilePath(String filePath) throws APIException;
+
+	/**
+	 * Requires the privilege to edit lab test metadata, like the other query statistics methods, as
+	 * the slow queries may show the values they ran with
+	 * 
+	 * @return the Hibernate statistics of the lab test entities, collections, queries and caches, and
+	 *         the recent slow queries of lab test data
+	 * @throws APIException on Exception
+	 */
+	LabQueryStatistics getQueryStatistics() throws APIException;
+
+	/**
+	 * Turns the gathering of Hibernate statistics on or off. It is off by default and costs a little
+	 * on every query of the application, not only of this module.
+	 * 
+	 * @param enabled whether to gather statistics
+	 * @throws APIException on Exception
+	 */
+	void setQueryStatisticsEnabled(boolean enabled) throws APIException;
+
+	/**
+	 * Resets the Hibernate statistics of the whole application and forgets the recent slow queries
+	 * 
+	 * @throws APIException on Exception
+	 */
+	void clearQueryStatistics() throws APIException;
 }
@@ -0,0 +1,80 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openmrs.api.APIException;
+
+/**
+ * Position of the last row of a keyset page, i.e. the <code>(date_created, id)</code> pair the next
+ * page has to seek past. It travels to clients as an opaque URL-safe token so that they cannot (and
+ * need not) depend on its contents.
+ */
+public final class KeysetCursor {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String SEPARATOR = ":";
+
+	private final Date dateCreated;
+
+	private final Integer id;
+
+	public KeysetCursor(Date dateCreated, Integer id) {
+		if (dateCreated == null || id == null) {
+			throw new APIException("Both date created and id are required to build a continuation token.");
+		}
+		this.dateCreated = new Date(dateCreated.getTime());
+		this.id = id;
+	}
+
+	public Date getDateCreated() {
+		return new Date(dateCreated.getTime());
+	}
+
+	public Integer getId() {
+		return id;
+	}
+
+	/**
+	 * @return the opaque continuation token for this position
+	 */
+	public String encode() {
+		String raw = dateCreated.getTime() + SEPARATOR + id;
+		return Base64.encodeBase64URLSafeString(raw.getBytes(UTF_8));
+	}
+
+	/**
+	 * Reads a token produced by {@link #encode()}
+	 *
+	 * @param token the continuation token, may be null or empty for the first page
+	 * @return {@link KeysetCursor} object, or null when no token is given
+	 * @throws APIException if the token is malformed
+	 */
+	public static KeysetCursor decode(String token) throws APIException {
+		if (token == null || token.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.decodeBase64(token.trim()), UTF_8);
+			String[] parts = raw.split(SEPARATOR);
+			if (parts.length != 2) {
+				throw new APIException("Invalid continuation token: " + token);
+			}
+			return new KeysetCursor(new Date(Long.parseLong(parts[0])), Integer.valueOf(parts[1]));
+		}
+		catch (NumberFormatException e) {
+			throw new APIException("Invalid continuation token: " + token, e);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated result, along with the token to fetch the page after it
+ *
+ * @param <T> type of the paged objects
+ */
+public final class KeysetPage<T> {
+
+	private final List<T> results;
+
+	private final String continuationToken;
+
+	public KeysetPage(List<T> results, String continuationToken) {
+		this.results = Collections.unmodifiableList(results);
+		this.continuationToken = continuationToken;
+	}
+
+	/**
+	 * @return objects in this page, never null
+	 */
+	public List<T> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return token to pass back for the next page, or null if this is the last page
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+
+	public boolean hasMoreResults() {
+		return continuationToken != null;
+	}
+}
@@ -0,0 +1,27 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+/**
+ * Receives objects one at a time from the streaming methods of {@link CommonLabTestService}. The
+ * session is cleared periodically while streaming, so an implementation should write out what it
+ * needs from each object and must not keep references to it, nor modify it. Lazy associations of
+ * the object may be read. On MySQL the rows are fetched through a server-side cursor, which needs
+ * useCursorFetch=true in the connection URL; without it the driver reads all rows into memory.
+ *
+ * @param <T> type of the streamed objects
+ */
+public interface LabDataCallback<T> {
+
+	/**
+	 * @param object the next object in the stream
+	 */
+	void process(T object);
+}
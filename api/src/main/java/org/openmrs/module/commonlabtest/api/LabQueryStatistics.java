@@ -0,0 +1,311 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.openmrs.module.commonlabtest.metrics.SlowQuery;
+
+/**
+ * Snapshot of the Hibernate statistics of the lab test entities, collections, HQL queries and cache
+ * regions, with the slow queries logged recently. Hibernate gathers statistics only while they are
+ * enabled; they are shared by the whole application.
+ */
+public class LabQueryStatistics {
+
+	private boolean enabled;
+
+	private Date startTime;
+
+	private long slowQueryThresholdMillis;
+
+	private long queryExecutionMaxTime;
+
+	private String queryExecutionMaxTimeQueryString;
+
+	private final List<EntityRow> entities = new ArrayList<EntityRow>();
+
+	private final List<CollectionRow> collections = new ArrayList<CollectionRow>();
+
+	private final List<QueryRow> queries = new ArrayList<QueryRow>();
+
+	private final List<CacheRow> caches = new ArrayList<CacheRow>();
+
+	private final List<SlowQuery> slowQueries = new ArrayList<SlowQuery>();
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * @return when the statistics were last cleared
+	 */
+	public Date getStartTime() {
+		return startTime;
+	}
+
+	public void setStartTime(Date startTime) {
+		this.startTime = startTime;
+	}
+
+	public long getSlowQueryThresholdMillis() {
+		return slowQueryThresholdMillis;
+	}
+
+	public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+		this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+	}
+
+	/**
+	 * @return longest execution time in milliseconds of the lab test HQL queries
+	 */
+	public long getQueryExecutionMaxTime() {
+		return queryExecutionMaxTime;
+	}
+
+	public void setQueryExecutionMaxTime(long queryExecutionMaxTime) {
+		this.queryExecutionMaxTime = queryExecutionMaxTime;
+	}
+
+	public String getQueryExecutionMaxTimeQueryString() {
+		return queryExecutionMaxTimeQueryString;
+	}
+
+	public void setQueryExecutionMaxTimeQueryString(String queryExecutionMaxTimeQueryString) {
+		this.queryExecutionMaxTimeQueryString = queryExecutionMaxTimeQueryString;
+	}
+
+	public List<EntityRow> getEntities() {
+		return entities;
+	}
+
+	public List<CollectionRow> getCollections() {
+		return collections;
+	}
+
+	public List<QueryRow> getQueries() {
+		return queries;
+	}
+
+	public List<CacheRow> getCaches() {
+		return caches;
+	}
+
+	/**
+	 * @return the slow queries logged recently, latest first
+	 */
+	public List<SlowQuery> getSlowQueries() {
+		return slowQueries;
+	}
+
+	/**
+	 * Counts of an entity. Loads read it from the database or the second-level cache, fetches from
+	 * the database only, e.g. when a lazy association is initialized.
+	 */
+	public static class EntityRow {
+
+		private final String name;
+
+		private final long loadCount;
+
+		private final long fetchCount;
+
+		private final long insertCount;
+
+		private final long updateCount;
+
+		private final long deleteCount;
+
+		public EntityRow(String name, long loadCount, long fetchCount, long insertCount, long updateCount,
+		    long deleteCount) {
+			this.name = name;
+			this.loadCount = loadCount;
+			this.fetchCount = fetchCount;
+			this.insertCount = insertCount;
+			this.updateCount = updateCount;
+			this.deleteCount = deleteCount;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getLoadCount() {
+			return loadCount;
+		}
+
+		public long getFetchCount() {
+			return fetchCount;
+		}
+
+		public long getInsertCount() {
+			return insertCount;
+		}
+
+		public long getUpdateCount() {
+			return updateCount;
+		}
+
+		public long getDeleteCount() {
+			return deleteCount;
+		}
+	}
+
+	/**
+	 * Counts of a collection role. A fetch count close to the load count of the owner entity means
+	 * the collection is initialized once per owner.
+	 */
+	public static class CollectionRow {
+
+		private final String role;
+
+		private final long loadCount;
+
+		private final long fetchCount;
+
+		private final long updateCount;
+
+		public CollectionRow(String role, long loadCount, long fetchCount, long updateCount) {
+			this.role = role;
+			this.loadCount = loadCount;
+			this.fetchCount = fetchCount;
+			this.updateCount = updateCount;
+		}
+
+		public String getRole() {
+			return role;
+		}
+
+		public long getLoadCount() {
+			return loadCount;
+		}
+
+		public long getFetchCount() {
+			return fetchCount;
+		}
+
+		public long getUpdateCount() {
+			return updateCount;
+		}
+	}
+
+	/**
+	 * Execution counts and times in milliseconds of an HQL query. Criteria queries are not counted by
+	 * Hibernate; the slow query log covers them.
+	 */
+	public static class QueryRow {
+
+		private final String query;
+
+		private final long executionCount;
+
+		private final long executionRowCount;
+
+		private final long executionAvgTime;
+
+		private final long executionMaxTime;
+
+		private final long cacheHitCount;
+
+		private final long cacheMissCount;
+
+		public QueryRow(String query, long executionCount, long executionRowCount, long executionAvgTime,
+		    long executionMaxTime, long cacheHitCount, long cacheMissCount) {
+			this.query = query;
+			this.executionCount = executionCount;
+			this.executionRowCount = executionRowCount;
+			this.executionAvgTime = executionAvgTime;
+			this.executionMaxTime = executionMaxTime;
+			this.cacheHitCount = cacheHitCount;
+			this.cacheMissCount = cacheMissCount;
+		}
+
+		public String getQuery() {
+			return query;
+		}
+
+		public long getExecutionCount() {
+			return executionCount;
+		}
+
+		public long getExecutionRowCount() {
+			return executionRowCount;
+		}
+
+		public long getExecutionAvgTime() {
+			return executionAvgTime;
+		}
+
+		public long getExecutionMaxTime() {
+			return executionMaxTime;
+		}
+
+		public long getCacheHitCount() {
+			return cacheHitCount;
+		}
+
+		public long getCacheMissCount() {
+			return cacheMissCount;
+		}
+	}
+
+	/**
+	 * Counts of a second-level or query cache region
+	 */
+	public static class CacheRow {
+
+		private final String region;
+
+		private final long hitCount;
+
+		private final long missCount;
+
+		private final long putCount;
+
+		private final double hitRatio;
+
+		public CacheRow(String region, long hitCount, long missCount, long putCount) {
+			this.region = region;
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.putCount = putCount;
+			this.hitRatio = hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount);
+		}
+
+		public String getRegion() {
+			return region;
+		}
+
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		public long getMissCount() {
+			return missCount;
+		}
+
+		public long getPutCount() {
+			return putCount;
+		}
+
+		/**
+		 * @return hits over lookups, between 0 and 1
+		 */
+		public double getHitRatio() {
+			return hitRatio;
+		}
+	}
+}
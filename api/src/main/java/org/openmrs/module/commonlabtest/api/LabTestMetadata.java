@@ -0,0 +1,230 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmrs.Concept;
+import org.openmrs.module.commonlabtest.LabTestAttributeType;
+import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestType;
+
+/**
+ * Immutable snapshot of all {@link LabTestType} and {@link LabTestAttributeType} objects, indexed
+ * for constant time lookups. A snapshot is shared by all threads until the metadata changes, so it
+ * holds copies of the given objects rather than the objects themselves: the copies never belong to a
+ * session, and their associations other than the lab test type of an attribute type are stubs which
+ * hold only an id. The copies must be treated as read-only; load an object through
+ * {@link CommonLabTestService} to modify it or to associate it with another object.
+ *
+ * @see CommonLabTestService#getLabTestMetadata()
+ */
+public final class LabTestMetadata {
+
+	private static final AttributeTypeLayout EMPTY_LAYOUT = new AttributeTypeLayout(
+	        Collections.<LabTestAttributeType> emptyList());
+
+	private final long version;
+
+	private final Map<Integer, LabTestType> labTestTypesById = new HashMap<Integer, LabTestType>();
+
+	private final Map<String, LabTestType> labTestTypesByUuid = new HashMap<String, LabTestType>();
+
+	private final Map<String, LabTestType> labTestTypesByShortName = new HashMap<String, LabTestType>();
+
+	private final Map<LabTestGroup, List<LabTestType>> labTestTypesByGroup = new EnumMap<LabTestGroup, List<LabTestType>>(
+	        LabTestGroup.class);
+
+	private final Map<Integer, LabTestAttributeType> attributeTypesById = new HashMap<Integer, LabTestAttributeType>();
+
+	private final Map<String, LabTestAttributeType> attributeTypesByUuid = new HashMap<String, LabTestAttributeType>();
+
+	private final Map<Integer, AttributeTypeLayout> layoutsByLabTestTypeId = new HashMap<Integer, AttributeTypeLayout>();
+
+	/**
+	 * @param version version of the metadata this snapshot was read at
+	 * @param labTestTypes all lab test types, including retired
+	 * @param attributeTypes all attribute types, including retired
+	 */
+	public LabTestMetadata(long version, Collection<LabTestType> labTestTypes,
+	    Collection<LabTestAttributeType> attributeTypes) {
+		this.version = version;
+		for (LabTestType original : labTestTypes) {
+			LabTestType labTestType = copyOf(original);
+			labTestTypesById.put(labTestType.getId(), labTestType);
+			labTestTypesByUuid.put(labTestType.getUuid(), labTestType);
+			if (labTestType.getShortName() != null && !labTestTypesByShortName.containsKey(labTestType.getShortName())) {
+				labTestTypesByShortName.put(labTestType.getShortName(), labTestType);
+			}
+			if (!labTestType.getRetired() && labTestType.getTestGroup() != null) {
+				if (!labTestTypesByGroup.containsKey(labTestType.getTestGroup())) {
+					labTestTypesByGroup.put(labTestType.getTestGroup(), new ArrayList<LabTestType>());
+				}
+				labTestTypesByGroup.get(labTestType.getTestGroup()).add(labTestType);
+			}
+		}
+		for (Map.Entry<LabTestGroup, List<LabTestType>> entry : labTestTypesByGroup.entrySet()) {
+			Collections.sort(entry.getValue(), new Comparator<LabTestType>() {
+
+				@Override
+				public int compare(LabTestType first, LabTestType second) {
+					return first.getName().compareToIgnoreCase(second.getName());
+				}
+			});
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+
+		List<LabTestAttributeType> sortedAttributeTypes = new ArrayList<LabTestAttributeType>();
+		for (LabTestAttributeType original : attributeTypes) {
+			sortedAttributeTypes.add(copyOf(original));
+		}
+		Collections.sort(sortedAttributeTypes, new Comparator<LabTestAttributeType>() {
+
+			@Override
+			public int compare(LabTestAttributeType first, LabTestAttributeType second) {
+				// Attribute types without sort weight go last
+				if (first.getSortWeight() == null) {
+					return second.getSortWeight() == null ? first.getId().compareTo(second.getId()) : 1;
+				}
+				if (second.getSortWeight() == null) {
+					return -1;
+				}
+				int result = first.getSortWeight().compareTo(second.getSortWeight());
+				return result == 0 ? first.getId().compareTo(second.getId()) : result;
+			}
+		});
+		Map<Integer, List<LabTestAttributeType>> attributeTypesByLabTestTypeId;
+		attributeTypesByLabTestTypeId = new LinkedHashMap<Integer, List<LabTestAttributeType>>();
+		for (LabTestAttributeType attributeType : sortedAttributeTypes) {
+			attributeTypesById.put(attributeType.getId(), attributeType);
+			attributeTypesByUuid.put(attributeType.getUuid(), attributeType);
+			if (attributeType.getRetired() || attributeType.getLabTestType() == null) {
+				continue;
+			}
+			Integer labTestTypeId = attributeType.getLabTestType().getId();
+			if (!attributeTypesByLabTestTypeId.containsKey(labTestTypeId)) {
+				attributeTypesByLabTestTypeId.put(labTestTypeId, new ArrayList<LabTestAttributeType>());
+			}
+			attributeTypesByLabTestTypeId.get(labTestTypeId).add(attributeType);
+		}
+		for (Map.Entry<Integer, List<LabTestAttributeType>> entry : attributeTypesByLabTestTypeId.entrySet()) {
+			layoutsByLabTestTypeId.put(entry.getKey(), new AttributeTypeLayout(entry.getValue()));
+		}
+	}
+
+	private static LabTestType copyOf(LabTestType original) {
+		LabTestType copy = new LabTestType(original.getId());
+		copy.setUuid(original.getUuid());
+		copy.setName(original.getName());
+		copy.setShortName(original.getShortName());
+		copy.setDescription(original.getDescription());
+		copy.setTestGroup(original.getTestGroup());
+		copy.setRequiresSpecimen(original.getRequiresSpecimen());
+		copy.setRetired(original.getRetired());
+		copy.setRetireReason(original.getRetireReason());
+		if (original.getReferenceConcept() != null) {
+			copy.setReferenceConcept(new Concept(original.getReferenceConcept().getConceptId()));
+		}
+		return copy;
+	}
+
+	/**
+	 * The lab test type of the copy is the copy held by this snapshot, so the lab test types must
+	 * have been copied before
+	 */
+	private LabTestAttributeType copyOf(LabTestAttributeType original) {
+		LabTestAttributeType copy = new LabTestAttributeType(original.getId());
+		copy.setUuid(original.getUuid());
+		copy.setName(original.getName());
+		copy.setDescription(original.getDescription());
+		copy.setMinOccurs(original.getMinOccurs());
+		copy.setMaxOccurs(original.getMaxOccurs());
+		copy.setDatatypeClassname(original.getDatatypeClassname());
+		copy.setDatatypeConfig(original.getDatatypeConfig());
+		copy.setPreferredHandlerClassname(original.getPreferredHandlerClassname());
+		copy.setHandlerConfig(original.getHandlerConfig());
+		copy.setSortWeight(original.getSortWeight());
+		copy.setHint(original.getHint());
+		copy.setGroupName(original.getGroupName());
+		copy.setMultisetName(original.getMultisetName());
+		copy.setRetired(original.getRetired());
+		copy.setRetireReason(original.getRetireReason());
+		if (original.getLabTestType() != null) {
+			LabTestType labTestType = labTestTypesById.get(original.getLabTestType().getId());
+			copy.setLabTestType(labTestType == null ? copyOf(original.getLabTestType()) : labTestType);
+		}
+		return copy;
+	}
+
+	/**
+	 * @return version of the metadata this snapshot was read at
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public LabTestType getLabTestType(Integer labTestTypeId) {
+		return labTestTypesById.get(labTestTypeId);
+	}
+
+	public LabTestType getLabTestTypeByUuid(String uuid) {
+		return labTestTypesByUuid.get(uuid);
+	}
+
+	/**
+	 * @param shortName the short name
+	 * @return the first lab test type by name with given short name, or null
+	 */
+	public LabTestType getLabTestTypeByShortName(String shortName) {
+		return labTestTypesByShortName.get(shortName);
+	}
+
+	/**
+	 * @param testGroup the {@link LabTestGroup}
+	 * @return non-retired lab test types of given group ordered by name, never null
+	 */
+	public List<LabTestType> getLabTestTypes(LabTestGroup testGroup) {
+		List<LabTestType> labTestTypes = labTestTypesByGroup.get(testGroup);
+		return labTestTypes == null ? Collections.<LabTestType> emptyList() : labTestTypes;
+	}
+
+	public LabTestAttributeType getLabTestAttributeType(Integer labTestAttributeTypeId) {
+		return attributeTypesById.get(labTestAttributeTypeId);
+	}
+
+	public LabTestAttributeType getLabTestAttributeTypeByUuid(String uuid) {
+		return attributeTypesByUuid.get(uuid);
+	}
+
+	/**
+	 * @param labTestType the {@link LabTestType}
+	 * @return non-retired attribute types of given lab test type ordered by sort weight and id, never null
+	 */
+	public List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType) {
+		return getAttributeTypeLayout(labTestType).getAttributeTypes();
+	}
+
+	/**
+	 * @param labTestType the {@link LabTestType}
+	 * @return layout of the non-retired attribute types of given lab test type, never null
+	 */
+	public AttributeTypeLayout getAttributeTypeLayout(LabTestType labTestType) {
+		AttributeTypeLayout layout = labTestType == null ? null : layoutsByLabTestTypeId.get(labTestType.getId());
+		return layout == null ? EMPTY_LAYOUT : layout;
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api;
+
+import java.util.Date;
+
+import org.openmrs.module.commonlabtest.LabTestGroup;
+
+/**
+ * Read-only row of a patient's lab test listing. It carries only the columns the listing shows, so
+ * that the whole listing can be read in one query instead of loading each {@link
+ * org.openmrs.module.commonlabtest.LabTest} with its order, encounter, users and results
+ */
+public final class LabTestSummary {
+
+	private final Integer testOrderId;
+
+	private final String uuid;
+
+	private final String labReferenceNumber;
+
+	private final String testTypeName;
+
+	private final LabTestGroup testGroup;
+
+	private final Boolean requiresSpecimen;
+
+	private final String encounterTypeName;
+
+	private final Date encounterDatetime;
+
+	private final Date dateCreated;
+
+	private final String createdBy;
+
+	private final String changedBy;
+
+	private final long resultCount;
+
+	private final Date resultDate;
+
+	public LabTestSummary(Integer testOrderId, String uuid, String labReferenceNumber, String testTypeName,
+	    LabTestGroup testGroup, Boolean requiresSpecimen, String encounterTypeName, Date encounterDatetime,
+	    Date dateCreated, String createdBy, String changedBy, long resultCount, Date resultDate) {
+		this.testOrderId = testOrderId;
+		this.uuid = uuid;
+		this.labReferenceNumber = labReferenceNumber;
+		this.testTypeName = testTypeName;
+		this.testGroup = testGroup;
+		this.requiresSpecimen = requiresSpecimen;
+		this.encounterTypeName = encounterTypeName;
+		this.encounterDatetime = encounterDatetime;
+		this.dateCreated = dateCreated;
+		this.createdBy = createdBy;
+		this.changedBy = changedBy;
+		this.resultCount = resultCount;
+		this.resultDate = resultDate;
+	}
+
+	public Integer getTestOrderId() {
+		return testOrderId;
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	public String getLabReferenceNumber() {
+		return labReferenceNumber;
+	}
+
+	public String getTestTypeName() {
+		return testTypeName;
+	}
+
+	public LabTestGroup getTestGroup() {
+		return testGroup;
+	}
+
+	public Boolean getRequiresSpecimen() {
+		return requiresSpecimen;
+	}
+
+	public String getEncounterTypeName() {
+		return encounterTypeName;
+	}
+
+	public Date getEncounterDatetime() {
+		return encounterDatetime;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	/**
+	 * @return username of the creator
+	 */
+	public String getCreatedBy() {
+		return createdBy;
+	}
+
+	/**
+	 * @return username of the last user who changed the test, or null
+	 */
+	public String getChangedBy() {
+		return changedBy;
+	}
+
+	/**
+	 * @return number of result attributes saved against the test
+	 */
+	public long getResultCount() {
+		return resultCount;
+	}
+
+	/**
+	 * @return date when the first result was saved, or null if there are no results
+	 */
+	public Date getResultDate() {
+		return resultDate;
+	}
+
+	public boolean isResultFilled() {
+		return resultCount > 0;
+	}
+}
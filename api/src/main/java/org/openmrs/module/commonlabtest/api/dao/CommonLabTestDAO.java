@@ -1,19 +1,28 @@
 package org.openmrs.module.commonlabtest.api.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.openmrs.Concept;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
+import org.openmrs.User;
 import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
 import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestReport;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
 import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
+import org.openmrs.module.commonlabtest.api.KeysetPage;
+import org.openmrs.module.commonlabtest.api.LabDataCallback;
+import org.openmrs.module.commonlabtest.api.LabQueryStatistics;
+import org.openmrs.module.commonlabtest.api.LabTestSummary;
 
 public interface CommonLabTestDAO {
 
@@ -23,12 +32,40 @@ public interface CommonLabTestDAO {
 	 */
 	List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired);
 
+	/**
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttributeType} objects
+	 */
+	List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired, Integer startIndex, Integer limit);
+
+	/**
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestAttributeType} objects
+	 */
+	Long getAllLabTestAttributeTypesCount(boolean includeRetired);
+
 	/**
 	 * @param includeRetired include retired objects
 	 * @return {@link LabTestType} objects
 	 */
 	List<LabTestType> getAllLabTestTypes(boolean includeRetired);
 
+	/**
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestType} objects
+	 */
+	List<LabTestType> getAllLabTestTypes(boolean includeRetired, Integer startIndex, Integer limit);
+
+	/**
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestType} objects
+	 */
+	Long getAllLabTestTypesCount(boolean includeRetired);
+
 	/**
 	 * @param name the name of lab test type
 	 * @param shortName the short name
@@ -52,6 +89,12 @@ public interface CommonLabTestDAO {
 	 */
 	LabTest getLabTest(Integer labTestId);
 
+	/**
+	 * @param testOrderIds Ids of the orders
+	 * @return {@link LabTest} objects of given orders, in no particular order
+	 */
+	List<LabTest> getLabTestsByOrderIds(Collection<Integer> testOrderIds);
+
 	/**
 	 * @param labTestAttributeId the Id
 	 * @return {@link LabTestAttribute} object
@@ -70,9 +113,37 @@ public interface CommonLabTestDAO {
 	 */
 	List<LabTestAttribute> getLabTestAttributes(Integer testOrderId);
 
+	/**
+	 * Fetches the attributes of many lab tests together, using as few queries as the batch size allows
+	 * 
+	 * @param labTests the {@link LabTest} objects
+	 * @return {@link LabTestAttribute} object(s) mapped to test order Id of each given {@link LabTest}
+	 */
+	Map<Integer, List<LabTestAttribute>> getLabTestAttributes(Collection<LabTest> labTests);
+
+	/**
+	 * @param testOrderId the order Id
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttribute} objects
+	 */
+	List<LabTestAttribute> getLabTestAttributes(Integer testOrderId, Integer startIndex, Integer limit);
+
+	/**
+	 * @param testOrderId the order Id
+	 * @return number of {@link LabTestAttribute} objects
+	 */
+	Long getLabTestAttributesCount(Integer testOrderId);
+
 	/**
 	 * @param labTestAttributeType the {@link LabTestAttributeType} object
-	 * @param valueReference the reference value
+	 * @return number of {@link LabTestAttribute} objects of given type, voided or not
+	 */
+	Long getLabTestAttributesCount(LabTestAttributeType labTestAttributeType);
+
+	/**
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param valueReference the beginning of the reference value, matched ignoring case
 	 * @param from the start {@link Date} object
 	 * @param to the end {@link Date} object
 	 * @param includeVoided include retired objects
@@ -81,6 +152,44 @@ public interface CommonLabTestDAO {
 	List<LabTestAttribute> getLabTestAttributes(LabTestAttributeType labTestAttributeType, String valueReference, Date from,
 	        Date to, boolean includeVoided);
 
+	/**
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param min the lowest value, inclusive, or null for no lower bound
+	 * @param max the highest value, inclusive, or null for no upper bound
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 */
+	List<LabTestAttribute> getLabTestAttributesByNumericValue(LabTestAttributeType labTestAttributeType, Double min,
+	        Double max, boolean includeVoided);
+
+	/**
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param from the earliest value, inclusive, or null for no lower bound
+	 * @param to the latest value, inclusive, or null for no upper bound
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 */
+	List<LabTestAttribute> getLabTestAttributesByDatetimeValue(LabTestAttributeType labTestAttributeType, Date from,
+	        Date to, boolean includeVoided);
+
+	/**
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param concept the answer {@link Concept}
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 */
+	List<LabTestAttribute> getLabTestAttributesByCodedValue(LabTestAttributeType labTestAttributeType, Concept concept,
+	        boolean includeVoided);
+
+	/**
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param value the value
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestAttribute} object(s)
+	 */
+	List<LabTestAttribute> getLabTestAttributesByBooleanValue(LabTestAttributeType labTestAttributeType, Boolean value,
+	        boolean includeVoided);
+
 	/**
 	 * @param patient the {@link Patient} object
 	 * @param labTestAttributeType the {@link LabTestAttributeType} object
@@ -117,6 +226,23 @@ public interface CommonLabTestDAO {
 	 */
 	List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired);
 
+	/**
+	 * @param labTestType the {@link LabTestType} object
+	 * @param includeRetired include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestAttributeType} object(s)
+	 */
+	List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired,
+	        Integer startIndex, Integer limit);
+
+	/**
+	 * @param labTestType the {@link LabTestType} object
+	 * @param includeRetired include retired objects
+	 * @return number of {@link LabTestAttributeType} objects
+	 */
+	Long getLabTestAttributeTypesCount(LabTestType labTestType, boolean includeRetired);
+
 	/**
 	 * @param uuid the unique Id
 	 * @return {@link LabTest} object
@@ -127,17 +253,110 @@ public interface CommonLabTestDAO {
 	 * @param labTestType the {@link LabTestType} object
 	 * @param patient the {@link Patient} object
 	 * @param orderNumber the order number
-	 * @param referenceNumber the reference number
+	 * @param referenceNumber the beginning of the reference number, matched ignoring case
+	 * @param orderConcept the {@link Order} concept object
+	 * @param orderer the {@link Provider} object
+	 * @param from the start {@link Date} object
+	 * @param to the end {@link Date} object
+	 * @param includeVoided include retired objects
+	 * @return {@link LabTest} object(s)
+	 */
+	List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided);
+
+	/**
+	 * Same as {@link #getLabTests(LabTestType, Patient, String, String, Concept, Provider, Date, Date, boolean)},
+	 * but only returns the requested range of objects
+	 * 
+	 * @param labTestType the {@link LabTestType} object
+	 * @param patient the {@link Patient} object
+	 * @param orderNumber the order number
+	 * @param referenceNumber the beginning of the reference number, matched ignoring case
 	 * @param orderConcept the {@link Order} concept object
 	 * @param orderer the {@link Provider} object
 	 * @param from the start {@link Date} object
 	 * @param to the end {@link Date} object
 	 * @param includeVoided include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
 	 * @return {@link LabTest} object(s)
 	 */
 	List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit);
+
+	/**
+	 * @param labTestType the {@link LabTestType} object
+	 * @param patient the {@link Patient} object
+	 * @param orderNumber the order number
+	 * @param referenceNumber the beginning of the reference number, matched ignoring case
+	 * @param orderConcept the {@link Order} concept object
+	 * @param orderer the {@link Provider} object
+	 * @param from the start {@link Date} object
+	 * @param to the end {@link Date} object
+	 * @param includeVoided include retired objects
+	 * @return number of {@link LabTest} objects matching the criteria
+	 */
+	Long getLabTestsCount(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
 	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided);
 
+	/**
+	 * Returns one page of {@link LabTest} objects ordered by date of creation and Id. The page is found
+	 * by seeking past the position encoded in the continuation token rather than skipping rows, so
+	 * every page costs the same
+	 * 
+	 * @param labTestType the {@link LabTestType} object
+	 * @param patient the {@link Patient} object
+	 * @param orderNumber the order number
+	 * @param referenceNumber the beginning of the reference number, matched ignoring case
+	 * @param orderConcept the {@link Order} concept object
+	 * @param orderer the {@link Provider} object
+	 * @param from the start {@link Date} object
+	 * @param to the end {@link Date} object
+	 * @param includeVoided include retired objects
+	 * @param continuationToken token of the previous page, null for the first page
+	 * @param pageSize maximum number of objects in the page
+	 * @return {@link KeysetPage} of {@link LabTest} object(s)
+	 */
+	KeysetPage<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, String continuationToken,
+	        int pageSize);
+
+	/**
+	 * Returns the lab tests of given patient as {@link LabTestSummary} rows, read in a single query
+	 * 
+	 * @param patient the {@link Patient} object
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestSummary} object(s) in order of test order Id
+	 */
+	List<LabTestSummary> getLabTestSummaries(Patient patient, boolean includeVoided);
+
+	/**
+	 * Streams all {@link LabTest} objects in order of Id through a forward-only cursor. The session is
+	 * cleared periodically, so memory use does not grow with the number of objects
+	 * 
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 */
+	int streamLabTests(boolean includeVoided, LabDataCallback<LabTest> callback);
+
+	/**
+	 * @see #streamLabTests(boolean, LabDataCallback)
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 */
+	int streamLabTestSamples(boolean includeVoided, LabDataCallback<LabTestSample> callback);
+
+	/**
+	 * @see #streamLabTests(boolean, LabDataCallback)
+	 * @param includeVoided include voided objects
+	 * @param callback the {@link LabDataCallback} to receive each object
+	 * @return number of objects streamed
+	 */
+	int streamLabTestAttributes(boolean includeVoided, LabDataCallback<LabTestAttribute> callback);
+
 	/**
 	 * @param labTestSampleId the generated Id
 	 * @return {@link LabTestSample} object
@@ -157,6 +376,15 @@ public interface CommonLabTestDAO {
 	 */
 	List<LabTestSample> getLabTestSamples(LabTest labTest, boolean includeVoided);
 
+	/**
+	 * Fetches the samples of many lab tests together, using as few queries as the batch size allows
+	 * 
+	 * @param labTests the {@link LabTest} objects
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTestSample} object(s) mapped to test order Id of each given {@link LabTest}
+	 */
+	Map<Integer, List<LabTestSample>> getLabTestSamples(Collection<LabTest> labTests, boolean includeVoided);
+
 	/**
 	 * @param collector the {@link Provider} object
 	 * @param includeVoided include retired objects
@@ -177,7 +405,7 @@ public interface CommonLabTestDAO {
 	 * 
 	 * @param labTest the {@link LabTest} object
 	 * @param patient the {@link Patient} object
-	 * @param sampleIdentifier the identifier of specimen sample
+	 * @param sampleIdentifier the beginning of the identifier of specimen sample, matched ignoring case
 	 * @param specimenType the {@link Concept} object representing type of specimen
 	 * @param status the {@link LabTestSampleStatus} enumerated type
 	 * @param orderer the {@link Provider} object
@@ -189,6 +417,65 @@ public interface CommonLabTestDAO {
 	List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
 	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided);
 
+	/**
+	 * Same as
+	 * {@link #getLabTestSamples(LabTest, Patient, String, Concept, LabTestSampleStatus, Provider, Date, Date, boolean)},
+	 * but only returns the requested range of objects
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @param patient the {@link Patient} object
+	 * @param sampleIdentifier the beginning of the identifier of specimen sample, matched ignoring case
+	 * @param specimenType the {@link Concept} object representing type of specimen
+	 * @param status the {@link LabTestSampleStatus} enumerated type
+	 * @param collector the {@link Provider} object
+	 * @param from the start {@link Date} object representing start of date of creation
+	 * @param to the end {@link Date} object representing end of date of creation
+	 * @param includeVoided include retired objects
+	 * @param startIndex index of the first object to return, null to start from the first
+	 * @param limit maximum number of objects to return, null for no limit
+	 * @return {@link LabTestSample} object(s)
+	 */
+	List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit);
+
+	/**
+	 * @param labTest the {@link LabTest} object
+	 * @param patient the {@link Patient} object
+	 * @param sampleIdentifier the beginning of the identifier of specimen sample, matched ignoring case
+	 * @param specimenType the {@link Concept} object representing type of specimen
+	 * @param status the {@link LabTestSampleStatus} enumerated type
+	 * @param collector the {@link Provider} object
+	 * @param from the start {@link Date} object representing start of date of creation
+	 * @param to the end {@link Date} object representing end of date of creation
+	 * @param includeVoided include retired objects
+	 * @return number of {@link LabTestSample} objects matching the criteria
+	 */
+	Long getLabTestSamplesCount(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided);
+
+	/**
+	 * Returns one page of {@link LabTestSample} objects ordered by date of creation and Id. Unlike
+	 * {@link #getLabTestSamples(LabTest, Patient, String, Concept, LabTestSampleStatus, Provider, Date, Date, boolean)}
+	 * all the criteria are optional, so that a whole worklist can be paged through
+	 * 
+	 * @param labTest the {@link LabTest} object
+	 * @param patient the {@link Patient} object
+	 * @param sampleIdentifier the beginning of the identifier of specimen sample, matched ignoring case
+	 * @param specimenType the {@link Concept} object representing type of specimen
+	 * @param status the {@link LabTestSampleStatus} enumerated type
+	 * @param collector the {@link Provider} object
+	 * @param from the start {@link Date} object representing start of date of creation
+	 * @param to the end {@link Date} object representing end of date of creation
+	 * @param includeVoided include retired objects
+	 * @param continuationToken token of the previous page, null for the first page
+	 * @param pageSize maximum number of objects in the page
+	 * @return {@link KeysetPage} of {@link LabTestSample} object(s)
+	 */
+	KeysetPage<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize);
+
 	/**
 	 * @param labTestTypeId the generated Id
 	 * @return {@link LabTestType} object
@@ -234,6 +521,93 @@ public interface CommonLabTestDAO {
 	List<LabTestSample> getNLabTestSamples(Patient patient, LabTestSampleStatus status, int n, boolean firstNObjects,
 	        boolean lastNObjects, boolean includeVoided);
 
+	/**
+	 * Voids the non-voided samples of given lab tests with set-based updates, instead of loading and
+	 * saving each sample. Samples already loaded in the session are voided the same way, without being
+	 * written again
+	 * 
+	 * @param labTests the {@link LabTest} objects
+	 * @param voidReason the reason to void
+	 * @param voidedBy the {@link User} voiding
+	 * @param dateVoided the {@link Date} of voiding
+	 * @return number of samples voided
+	 */
+	int voidLabTestSamples(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided);
+
+	/**
+	 * Voids the non-voided attributes of given lab tests with set-based updates
+	 * 
+	 * @see #voidLabTestSamples(Collection, String, User, Date)
+	 * @param labTests the {@link LabTest} objects
+	 * @param voidReason the reason to void
+	 * @param voidedBy the {@link User} voiding
+	 * @param dateVoided the {@link Date} of voiding
+	 * @return number of attributes voided
+	 */
+	int voidLabTestAttributes(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided);
+
+	/**
+	 * Voids given non-voided lab tests with set-based updates. Their orders are left alone
+	 * 
+	 * @see #voidLabTestSamples(Collection, String, User, Date)
+	 * @param labTests the {@link LabTest} objects
+	 * @param voidReason the reason to void
+	 * @param voidedBy the {@link User} voiding
+	 * @param dateVoided the {@link Date} of voiding
+	 * @return number of lab tests voided
+	 */
+	int voidLabTests(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided);
+
+	/**
+	 * Unvoids given voided lab tests with set-based updates, clearing their void fields. Their orders
+	 * are left alone
+	 * 
+	 * @see #voidLabTestSamples(Collection, String, User, Date)
+	 * @param labTests the {@link LabTest} objects
+	 * @return number of lab tests unvoided
+	 */
+	int unvoidLabTests(Collection<LabTest> labTests);
+
+	/**
+	 * Changes the {@link LabTestType} of given lab tests with set-based updates. Lab tests already
+	 * loaded in the session get the new type as well
+	 * 
+	 * @param labTests the {@link LabTest} objects
+	 * @param labTestType the new {@link LabTestType}
+	 * @return number of lab tests updated
+	 */
+	int setLabTestType(Collection<LabTest> labTests, LabTestType labTestType);
+
+	/**
+	 * Deletes at most the given number of attributes of given type with a single statement
+	 * 
+	 * @param labTestAttributeType the {@link LabTestAttributeType} object
+	 * @param maxResults maximum number of attributes to delete
+	 * @return number of attributes deleted, 0 when none is left
+	 */
+	int purgeLabTestAttributes(LabTestAttributeType labTestAttributeType, int maxResults);
+
+	/**
+	 * Unvoids the samples of given lab tests which were voided with the given reason, with set-based
+	 * updates. Samples already loaded in the session are unvoided the same way
+	 * 
+	 * @param labTests the {@link LabTest} objects
+	 * @param voidReason the reason the samples were voided with
+	 * @return number of samples unvoided
+	 */
+	int unvoidLabTestSamples(Collection<LabTest> labTests, String voidReason);
+
+	/**
+	 * Unvoids the attributes of given lab tests which were voided with the given reason, with
+	 * set-based updates
+	 * 
+	 * @see #unvoidLabTestSamples(Collection, String)
+	 * @param labTests the {@link LabTest} objects
+	 * @param voidReason the reason the attributes were voided with
+	 * @return number of attributes unvoided
+	 */
+	int unvoidLabTestAttributes(Collection<LabTest> labTests, String voidReason);
+
 	/**
 	 * @param labTest the {@link LabTest} object to delete
 	 */
@@ -274,6 +648,17 @@ public interface CommonLabTestDAO {
 	 */
 	LabTestAttribute saveLabTestAttribute(LabTestAttribute labTestAttribute);
 
+	/**
+	 * Saves given attributes in order, flushing the session after every batch so that statements of a
+	 * batch are sent together, and evicting the attributes of the batch so that the session does not
+	 * grow with the input. Other objects in the session are left alone
+	 * 
+	 * @param labTestAttributes the {@link LabTestAttribute} objects
+	 * @param batchSize number of attributes per flush
+	 * @return saved {@link LabTestAttribute} objects
+	 */
+	List<LabTestAttribute> saveLabTestAttributes(List<LabTestAttribute> labTestAttributes, int batchSize);
+
 	/**
 	 * @param labTestAttributeType the {@link LabTestAttributeType} object to save
 	 * @return saved {@link LabTestAttributeType} object
@@ -292,4 +677,82 @@ public interface CommonLabTestDAO {
 	 */
 	LabTestType saveLabTestType(LabTestType labTestType);
 
+	/**
+	 * @param item the {@link LabTestVoidQueueItem} object to save
+	 * @return saved {@link LabTestVoidQueueItem} object
+	 */
+	LabTestVoidQueueItem saveLabTestVoidQueueItem(LabTestVoidQueueItem item);
+
+	/**
+	 * @param item the {@link LabTestVoidQueueItem} object to delete
+	 */
+	void purgeLabTestVoidQueueItem(LabTestVoidQueueItem item);
+
+	/**
+	 * @param now the current {@link Date}
+	 * @param maxResults maximum number of items to return
+	 * @return items due at given time, in the order they were queued, leaving out failed items and
+	 *         those queued after another item of the same order
+	 */
+	List<LabTestVoidQueueItem> getDueLabTestVoidQueueItems(Date now, int maxResults);
+
+	/**
+	 * @param failedOnly count only items which were given up after too many attempts
+	 * @return number of items in the queue
+	 */
+	long getLabTestVoidQueueSize(boolean failedOnly);
+
+	/**
+	 * @return number of items which failed and are waiting for another attempt
+	 */
+	long getRetryingLabTestVoidQueueSize();
+
+	/**
+	 * @return the date the oldest item was queued, or null if the queue is empty
+	 */
+	Date getOldestLabTestVoidQueueItemDate();
+
+	/**
+	 * @param labTestReport the {@link LabTestReport} object to save
+	 * @return saved {@link LabTestReport} object
+	 */
+	LabTestReport saveLabTestReport(LabTestReport labTestReport);
+
+	/**
+	 * @param labTest the {@link LabTest} object
+	 * @return the {@link LabTestReport} saved last for given lab test, or null
+	 */
+	LabTestReport getLabTestReport(LabTest labTest);
+
+	/**
+	 * @param afterTestOrderId return only lab tests with greater Ids; null to start from the first
+	 * @param maxResults maximum number of lab tests to return
+	 * @return lab tests which have a file path but no {@link LabTestReport}, ordered by Id
+	 */
+	List<LabTest> getLabTestsWithUnstoredReports(Integer afterTestOrderId, int maxResults);
+
+	/**
+	 * @param filePath path of a report file
+	 * @return number of lab tests referring to the file
+	 */
+	long getLabTestCountByFilePath(String filePath);
+
+	/**
+	 * @return the Hibernate statistics of the lab test entities, collections, queries and caches, and
+	 *         the recent slow queries
+	 */
+	LabQueryStatistics getQueryStatistics();
+
+	/**
+	 * Turns the gathering of Hibernate statistics on or off, for the whole application
+	 *
+	 * @param enabled whether to gather statistics
+	 */
+	void setQueryStatisticsEnabled(boolean enabled);
+
+	/**
+	 * Resets the Hibernate statistics of the whole application and forgets the recent slow queries
+	 */
+	void clearQueryStatistics();
+
 }
@@ -14,33 +14,78 @@
 package org.openmrs.module.commonlabtest.api.dao.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.sql.JoinType;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.openmrs.BaseOpenmrsData;
+import org.openmrs.BaseOpenmrsObject;
 import org.openmrs.Concept;
 import org.openmrs.OrderType;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
+import org.openmrs.User;
 import org.openmrs.api.context.Context;
+import org.openmrs.customdatatype.NotYetPersistedException;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
 import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
 import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestReport;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
 import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.LabTestValueType;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
+import org.openmrs.module.commonlabtest.api.KeysetCursor;
+import org.openmrs.module.commonlabtest.api.KeysetPage;
+import org.openmrs.module.commonlabtest.api.LabDataCallback;
+import org.openmrs.module.commonlabtest.api.LabQueryStatistics;
+import org.openmrs.module.commonlabtest.api.LabTestSummary;
 import org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO;
+import org.openmrs.module.commonlabtest.metrics.SlowQueryLogger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -52,11 +97,36 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 
 	private static final int MAX_FETCH_LIMIT = 100;
 
+	private static final int MAX_PAGE_SIZE = 1000;
+
+	private static final int MAX_CACHED_UUIDS = 10000;
+
+	private static final int STREAM_CLEAR_INTERVAL = 1000;
+
+	/**
+	 * Query cache region of the lists of {@link LabTestType} and {@link LabTestAttributeType}
+	 */
+	private static final String METADATA_CACHE_REGION = "commonlabtest.metadata";
+
+	/**
+	 * Matches the HQL or SQL queries of this module, by entity or table name
+	 */
+	private static final Pattern MODULE_QUERY_PATTERN = Pattern.compile("commonlabtest|\\bLabTest\\w*\\b");
+
 	protected final Log log = LogFactory.getLog(this.getClass());
 
 	@Autowired
 	private SessionFactory sessionFactory;
 
+	@Autowired
+	private SlowQueryLogger slowQueryLogger;
+
+	private final UuidResolver uuidResolver = new UuidResolver(MAX_CACHED_UUIDS);
+
+	private volatile Boolean caseInsensitiveCollation;
+
+	private volatile boolean cursorFetchChecked;
+
 	public SessionFactory getSessionFactory() {
 		return sessionFactory;
 	}
@@ -65,32 +135,110 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		this.sessionFactory = sessionFactory;
 	}
 
+	public void setSlowQueryLogger(SlowQueryLogger slowQueryLogger) {
+		this.slowQueryLogger = slowQueryLogger;
+	}
+
+	/**
+	 * Overrides the collation detected from the dialect, for databases whose collation is not the
+	 * default of their dialect
+	 * 
+	 * @param caseInsensitiveCollation whether the text columns compare case-insensitively
+	 */
+	public void setCaseInsensitiveCollation(Boolean caseInsensitiveCollation) {
+		this.caseInsensitiveCollation = caseInsensitiveCollation;
+	}
+
+	/**
+	 * All criteria of this DAO are created here, so that the slow ones are logged
+	 */
+	private Criteria createCriteria(Class<?> persistentClass) {
+		return slowQueryLogger.wrap(sessionFactory.getCurrentSession().createCriteria(persistentClass));
+	}
+
+	/**
+	 * @see #createCriteria(Class)
+	 */
+	private Criteria createCriteria(Class<?> persistentClass, String alias) {
+		return slowQueryLogger.wrap(sessionFactory.getCurrentSession().createCriteria(persistentClass, alias));
+	}
+
+	/**
+	 * All HQL queries of this DAO are created here, so that the slow ones are logged
+	 */
+	private Query createQuery(String queryString) {
+		return slowQueryLogger.wrap(sessionFactory.getCurrentSession().createQuery(queryString));
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getAllLabTestAttributeTypes(boolean)
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttributeType.class);
-		criteria.addOrder(Order.asc("name"));
-		if (!includeRetired) {
-			criteria.add(Restrictions.eq("retired", false));
-		}
+		return getAllLabTestAttributeTypes(includeRetired, null, null);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getAllLabTestAttributeTypes(boolean, Integer, Integer)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired, Integer startIndex,
+	        Integer limit) {
+		Criteria criteria = createMetadataCriteria(LabTestAttributeType.class, includeRetired);
+		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("labTestAttributeTypeId"));
+		setPaging(criteria, startIndex, limit);
 		return criteria.list();
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getAllLabTestAttributeTypesCount(boolean)
+	 */
+	@Override
+	public Long getAllLabTestAttributeTypesCount(boolean includeRetired) {
+		return count(createMetadataCriteria(LabTestAttributeType.class, includeRetired));
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getAllLabTestTypes(boolean)
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<LabTestType> getAllLabTestTypes(boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestType.class);
-		criteria.addOrder(Order.asc("name"));
+		return getAllLabTestTypes(includeRetired, null, null);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getAllLabTestTypes(boolean, Integer, Integer)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestType> getAllLabTestTypes(boolean includeRetired, Integer startIndex, Integer limit) {
+		Criteria criteria = createMetadataCriteria(LabTestType.class, includeRetired);
+		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("labTestTypeId"));
+		setPaging(criteria, startIndex, limit);
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getAllLabTestTypesCount(boolean)
+	 */
+	@Override
+	public Long getAllLabTestTypesCount(boolean includeRetired) {
+		return count(createMetadataCriteria(LabTestType.class, includeRetired));
+	}
+
+	/**
+	 * @param metadataClass the metadata class to query
+	 * @param includeRetired include retired objects
+	 * @return cacheable {@link Criteria} object without ordering
+	 */
+	private Criteria createMetadataCriteria(Class<?> metadataClass, boolean includeRetired) {
+		Criteria criteria = createCriteria(metadataClass);
+		criteria.setCacheable(true).setCacheRegion(METADATA_CACHE_REGION);
 		if (!includeRetired) {
 			criteria.add(Restrictions.eq("retired", false));
 		}
-		return criteria.list();
+		return criteria;
 	}
 
 	/**
@@ -101,7 +249,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@SuppressWarnings("unchecked")
 	public List<LabTestType> getLabTestTypes(String name, String shortName, LabTestGroup testGroup, Concept referenceConcept,
 	        boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestType.class);
+		Criteria criteria = createMetadataCriteria(LabTestType.class, includeRetired);
 		if (name != null) {
 			criteria.add(Restrictions.ilike("name", name, MatchMode.START));
 		}
@@ -114,10 +262,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (referenceConcept != null) {
 			criteria.add(Restrictions.ilike("referenceConcept", referenceConcept));
 		}
-		if (!includeRetired) {
-			criteria.add(Restrictions.eq("retired", false));
-		}
-		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("retired")).list();
+		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("retired"));
 		return criteria.list();
 	}
 
@@ -126,7 +271,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTest getLabTest(org.openmrs.Order order) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTest.class);
+		Criteria criteria = createCriteria(LabTest.class);
 		criteria.add(Restrictions.eq("testOrderId", order.getId()));
 		return (LabTest) criteria.uniqueResult();
 	}
@@ -139,6 +284,21 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		return (LabTest) sessionFactory.getCurrentSession().get(LabTest.class, labTestId);
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getLabTestsByOrderIds(java.util.Collection)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTest> getLabTestsByOrderIds(Collection<Integer> testOrderIds) {
+		List<LabTest> labTests = new ArrayList<LabTest>();
+		for (List<Integer> batch : partition(new ArrayList<Integer>(testOrderIds), getBatchFetchSize())) {
+			Criteria criteria = createCriteria(LabTest.class);
+			criteria.add(Restrictions.in("testOrderId", batch));
+			labTests.addAll(criteria.list());
+		}
+		return labTests;
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getLabTestAttribute(java.lang.Integer)
 	 */
@@ -152,9 +312,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestAttribute getLabTestAttributeByUuid(String uuid) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttribute.class);
-		criteria.add(Restrictions.eq("uuid", uuid.toLowerCase()));
-		return (LabTestAttribute) criteria.uniqueResult();
+		return getByUuid(LabTestAttribute.class, uuid);
 	}
 
 	/**
@@ -163,11 +321,66 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@SuppressWarnings("unchecked")
 	@Override
 	public List<LabTestAttribute> getLabTestAttributes(Integer testOrderId) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttribute.class);
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		criteria.add(Restrictions.eq("labTest.testOrderId", testOrderId));
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributes(java.util.Collection)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<Integer, List<LabTestAttribute>> getLabTestAttributes(Collection<LabTest> labTests) {
+		Map<Integer, List<LabTestAttribute>> attributes = new LinkedHashMap<Integer, List<LabTestAttribute>>();
+		List<Integer> testOrderIds = new ArrayList<Integer>();
+		for (LabTest labTest : labTests) {
+			attributes.put(labTest.getTestOrderId(), new ArrayList<LabTestAttribute>());
+			testOrderIds.add(labTest.getTestOrderId());
+		}
+		for (List<Integer> batch : partition(testOrderIds, getBatchFetchSize())) {
+			Criteria criteria = createCriteria(LabTestAttribute.class);
+			criteria.add(Restrictions.in("labTest.testOrderId", batch));
+			for (LabTestAttribute labTestAttribute : (List<LabTestAttribute>) criteria.list()) {
+				attributes.get(labTestAttribute.getLabTest().getTestOrderId()).add(labTestAttribute);
+			}
+		}
+		return attributes;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributes(Integer, Integer, Integer)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<LabTestAttribute> getLabTestAttributes(Integer testOrderId, Integer startIndex, Integer limit) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
 		criteria.add(Restrictions.eq("labTest.testOrderId", testOrderId));
+		criteria.addOrder(Order.asc("labTestAttributeId"));
+		setPaging(criteria, startIndex, limit);
 		return criteria.list();
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesCount(Integer)
+	 */
+	@Override
+	public Long getLabTestAttributesCount(Integer testOrderId) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		criteria.add(Restrictions.eq("labTest.testOrderId", testOrderId));
+		return count(criteria);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesCount(LabTestAttributeType)
+	 */
+	@Override
+	public Long getLabTestAttributesCount(LabTestAttributeType labTestAttributeType) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		criteria.add(Restrictions.eq("attributeType.labTestAttributeTypeId", labTestAttributeType.getId()));
+		return count(criteria);
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getLabTestAttributes(org.openmrs.module.commonlabtest.LabTestAttributeType,
 	 *      java.lang.String, java.util.Date, java.util.Date, boolean)
@@ -176,12 +389,12 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@SuppressWarnings("unchecked")
 	public List<LabTestAttribute> getLabTestAttributes(LabTestAttributeType labTestAttributeType, String valueReference,
 	        Date from, Date to, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttribute.class);
+		Criteria criteria = createCriteria(LabTestAttribute.class);
 		if (labTestAttributeType != null) {
 			criteria.add(Restrictions.eqOrIsNull("attributeType.labTestAttributeTypeId", labTestAttributeType.getId()));
 		}
 		if (valueReference != null) {
-			criteria.add(Restrictions.ilike("valueReference", valueReference, MatchMode.START));
+			criteria.add(startsWithIgnoreCase("valueReference", valueReference));
 		}
 		if (from != null && to != null) {
 			criteria.add(Restrictions.between("dateCreated", from, to));
@@ -192,6 +405,77 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		return criteria.addOrder(Order.asc("labTestAttributeId")).addOrder(Order.asc("voided")).list();
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesByNumericValue(LabTestAttributeType, Double, Double,
+	 *      boolean)
+	 */
+	@Override
+	public List<LabTestAttribute> getLabTestAttributesByNumericValue(LabTestAttributeType labTestAttributeType,
+	        Double min, Double max, boolean includeVoided) {
+		return getLabTestAttributesByTypedValue(labTestAttributeType, "valueNumeric", min, max, includeVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesByDatetimeValue(LabTestAttributeType, Date, Date,
+	 *      boolean)
+	 */
+	@Override
+	public List<LabTestAttribute> getLabTestAttributesByDatetimeValue(LabTestAttributeType labTestAttributeType,
+	        Date from, Date to, boolean includeVoided) {
+		return getLabTestAttributesByTypedValue(labTestAttributeType, "valueDatetime", from, to, includeVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesByCodedValue(LabTestAttributeType, Concept, boolean)
+	 */
+	@Override
+	public List<LabTestAttribute> getLabTestAttributesByCodedValue(LabTestAttributeType labTestAttributeType,
+	        Concept concept, boolean includeVoided) {
+		return getLabTestAttributesByTypedValue(labTestAttributeType, "valueCoded", concept.getConceptId(),
+		    concept.getConceptId(), includeVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributesByBooleanValue(LabTestAttributeType, Boolean, boolean)
+	 */
+	@Override
+	public List<LabTestAttribute> getLabTestAttributesByBooleanValue(LabTestAttributeType labTestAttributeType,
+	        Boolean value, boolean includeVoided) {
+		return getLabTestAttributesByTypedValue(labTestAttributeType, "valueBoolean", value, value, includeVoided);
+	}
+
+	/**
+	 * Searches one of the typed value columns, so that the range is matched by the index on attribute
+	 * type and value instead of parsing value references
+	 *
+	 * @param property name of the typed value property
+	 * @param from lower bound, inclusive, or null for none
+	 * @param to upper bound, inclusive, or null for none
+	 */
+	@SuppressWarnings("unchecked")
+	private List<LabTestAttribute> getLabTestAttributesByTypedValue(LabTestAttributeType labTestAttributeType,
+	        String property, Object from, Object to, boolean includeVoided) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		criteria.add(Restrictions.eq("attributeType", labTestAttributeType));
+		if (from != null && from.equals(to)) {
+			criteria.add(Restrictions.eq(property, from));
+		} else {
+			if (from != null) {
+				criteria.add(Restrictions.ge(property, from));
+			}
+			if (to != null) {
+				criteria.add(Restrictions.le(property, to));
+			}
+			if (from == null && to == null) {
+				criteria.add(Restrictions.isNotNull(property));
+			}
+		}
+		if (!includeVoided) {
+			criteria.add(Restrictions.eq("voided", false));
+		}
+		return criteria.addOrder(Order.asc("labTestAttributeId")).list();
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getLabTestAttributes(Patient, LabTestAttributeType, boolean)
 	 */
@@ -204,7 +488,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		queryString.append(labTestAttributeType == null ? ""
 		        : " and lta.labTestAttributeType.labTestAttributeTypeId = :labTestAttributeType");
 		queryString.append(includeVoided ? "" : " and lta.voided = :voided");
-		Query query = sessionFactory.getCurrentSession().createQuery(queryString.toString());
+		Query query = createQuery(queryString.toString());
 		query.setInteger("patientId", patient.getPatientId());
 		if (labTestAttributeType != null) {
 			query.setInteger("labTestAttributeTypeId", labTestAttributeType.getId());
@@ -229,9 +513,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestAttributeType getLabTestAttributeTypeByUuid(String uuid) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttributeType.class);
-		criteria.add(Restrictions.eq("uuid", uuid.toLowerCase()));
-		return (LabTestAttributeType) criteria.uniqueResult();
+		return getByUuid(LabTestAttributeType.class, uuid);
 	}
 
 	/**
@@ -241,7 +523,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@SuppressWarnings("unchecked")
 	public List<LabTestAttributeType> getLabTestAttributeTypes(String name, String datatypeClassname,
 	        boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttributeType.class);
+		Criteria criteria = createMetadataCriteria(LabTestAttributeType.class, includeRetired);
 		if (name != null) {
 			criteria.add(Restrictions.ilike("name", name, MatchMode.START));
 		}
@@ -249,10 +531,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (datatypeClassname != null) {
 			criteria.add(Restrictions.eq("datatypeClassname", datatypeClassname));
 		}
-		if (!includeRetired) {
-			criteria.add(Restrictions.eq("retired", false));
-		}
-		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("retired")).list();
+		criteria.addOrder(Order.asc("name")).addOrder(Order.asc("retired"));
 
 		return criteria.list();
 	}
@@ -262,25 +541,41 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 *      boolean)
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestAttributeType.class);
+		return getLabTestAttributeTypes(labTestType, includeRetired, null, null);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributeTypes(LabTestType, boolean, Integer, Integer)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired,
+	        Integer startIndex, Integer limit) {
+		Criteria criteria = createMetadataCriteria(LabTestAttributeType.class, includeRetired);
 		criteria.add(Restrictions.eq("labTestType", labTestType));
-		if (!includeRetired) {
-			criteria.add(Restrictions.eq("retired", false));
-		}
-		criteria.addOrder(Order.asc("sortWeight")).addOrder(Order.asc("retired")).list();
+		criteria.addOrder(Order.asc("sortWeight")).addOrder(Order.asc("retired"))
+		        .addOrder(Order.asc("labTestAttributeTypeId"));
+		setPaging(criteria, startIndex, limit);
 		return criteria.list();
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getLabTestAttributeTypesCount(LabTestType, boolean)
+	 */
+	@Override
+	public Long getLabTestAttributeTypesCount(LabTestType labTestType, boolean includeRetired) {
+		Criteria criteria = createMetadataCriteria(LabTestAttributeType.class, includeRetired);
+		criteria.add(Restrictions.eq("labTestType", labTestType));
+		return count(criteria);
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getLabTestByUuid(java.lang.String)
 	 */
 	@Override
 	public LabTest getLabTestByUuid(String uuid) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTest.class);
-		criteria.add(Restrictions.eq("uuid", uuid.toLowerCase()));
-		return (LabTest) criteria.uniqueResult();
+		return getByUuid(LabTest.class, uuid);
 	}
 
 	/**
@@ -289,10 +584,72 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 *      org.openmrs.Provider, java.util.Date, java.util.Date, boolean)
 	 */
 	@Override
+	public List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) {
+		return getLabTests(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer, from, to,
+		    includeVoided, null, null);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTests(LabTestType, Patient, String, String, Concept, Provider, Date,
+	 *      Date, boolean, Integer, Integer)
+	 */
+	@Override
 	@SuppressWarnings("unchecked")
 	public List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit) {
+		Criteria criteria = createLabTestCriteria(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer,
+		    from, to, includeVoided);
+		criteria.addOrder(Order.asc("testOrderId")).addOrder(Order.asc("voided"));
+		setPaging(criteria, startIndex, limit);
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestsCount(LabTestType, Patient, String, String, Concept, Provider,
+	 *      Date, Date, boolean)
+	 */
+	@Override
+	public Long getLabTestsCount(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
 	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTest.class);
+		return count(createLabTestCriteria(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer, from,
+		    to, includeVoided));
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTests(LabTestType, Patient, String, String, Concept, Provider, Date,
+	 *      Date, boolean, String, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public KeysetPage<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber,
+	        String referenceNumber, Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize) {
+		int limit = getPageSize(pageSize);
+		Criteria criteria = createLabTestCriteria(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer,
+		    from, to, includeVoided);
+		addSeekRestriction(criteria, "testOrderId", KeysetCursor.decode(continuationToken));
+		criteria.addOrder(Order.asc("dateCreated")).addOrder(Order.asc("testOrderId"));
+		// Fetch one extra row to tell whether there is a next page
+		criteria.setMaxResults(limit + 1);
+		List<LabTest> list = criteria.list();
+		String nextToken = null;
+		if (list.size() > limit) {
+			list = new ArrayList<LabTest>(list.subList(0, limit));
+			LabTest last = list.get(limit - 1);
+			nextToken = new KeysetCursor(last.getDateCreated(), last.getTestOrderId()).encode();
+		}
+		return new KeysetPage<LabTest>(list, nextToken);
+	}
+
+	/**
+	 * Builds the {@link Criteria} shared by list and keyset variants of getLabTests(...). No ordering is
+	 * applied
+	 */
+	private Criteria createLabTestCriteria(LabTestType labTestType, Patient patient, String orderNumber,
+	        String referenceNumber, Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) {
+		Criteria criteria = createCriteria(LabTest.class);
 		criteria.createAlias("order", "o");
 		if (labTestType != null) {
 			criteria.add(Restrictions.eq("labTestType", labTestType));
@@ -310,7 +667,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 			criteria.add(Restrictions.eq("o.orderer.providerId", orderer.getProviderId()));
 		}
 		if (referenceNumber != null) {
-			criteria.add(Restrictions.ilike("labReferenceNumber", referenceNumber, MatchMode.START));
+			criteria.add(startsWithIgnoreCase("labReferenceNumber", referenceNumber));
 		}
 		if (from != null && to != null) {
 			criteria.add(Restrictions.between("dateCreated", from, to));
@@ -318,8 +675,136 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("o.voided", false));
 		}
-		criteria.addOrder(Order.asc("testOrderId")).addOrder(Order.asc("voided")).list();
-		return criteria.list();
+		return criteria;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestSummaries(Patient, boolean)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestSummary> getLabTestSummaries(Patient patient, boolean includeVoided) {
+		StringBuilder queryString = new StringBuilder();
+		queryString.append("select t.testOrderId, t.uuid, t.labReferenceNumber, tt.name, tt.testGroup, tt.requiresSpecimen,");
+		queryString.append(" et.name, e.encounterDatetime, t.dateCreated, c.username, cb.username,");
+		queryString.append(" (select count(a) from LabTestAttribute a where a.labTest = t),");
+		queryString.append(" (select min(a.dateCreated) from LabTestAttribute a where a.labTest = t)");
+		queryString.append(" from org.openmrs.module.commonlabtest.LabTest t join t.labTestType tt join t.order o");
+		queryString.append(" join o.encounter e join e.encounterType et join t.creator c left join t.changedBy cb");
+		queryString.append(" where o.patient.patientId = :patientId");
+		queryString.append(includeVoided ? "" : " and o.voided = :voided");
+		queryString.append(" order by t.testOrderId");
+		Query query = createQuery(queryString.toString());
+		query.setInteger("patientId", patient.getPatientId());
+		if (!includeVoided) {
+			query.setBoolean("voided", false);
+		}
+		List<LabTestSummary> summaries = new ArrayList<LabTestSummary>();
+		for (Object[] row : (List<Object[]>) query.list()) {
+			summaries.add(new LabTestSummary((Integer) row[0], (String) row[1], (String) row[2], (String) row[3],
+			        (LabTestGroup) row[4], (Boolean) row[5], (String) row[6], (Date) row[7], (Date) row[8],
+			        (String) row[9], (String) row[10], ((Number) row[11]).longValue(), (Date) row[12]));
+		}
+		return summaries;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#streamLabTests(boolean, LabDataCallback)
+	 */
+	@Override
+	public int streamLabTests(boolean includeVoided, LabDataCallback<LabTest> callback) {
+		Criteria criteria = createCriteria(LabTest.class);
+		if (!includeVoided) {
+			criteria.add(Restrictions.eq("voided", false));
+		}
+		return stream(criteria.addOrder(Order.asc("testOrderId")), callback);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#streamLabTestSamples(boolean, LabDataCallback)
+	 */
+	@Override
+	public int streamLabTestSamples(boolean includeVoided, LabDataCallback<LabTestSample> callback) {
+		Criteria criteria = createCriteria(LabTestSample.class);
+		if (!includeVoided) {
+			criteria.add(Restrictions.eq("voided", false));
+		}
+		return stream(criteria.addOrder(Order.asc("labTestSampleId")), callback);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#streamLabTestAttributes(boolean, LabDataCallback)
+	 */
+	@Override
+	public int streamLabTestAttributes(boolean includeVoided, LabDataCallback<LabTestAttribute> callback) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		if (!includeVoided) {
+			criteria.add(Restrictions.eq("voided", false));
+		}
+		return stream(criteria.addOrder(Order.asc("labTestAttributeId")), callback);
+	}
+
+	/**
+	 * Scrolls through the results of given criteria with a read-only, forward-only cursor and clears
+	 * the session every {@link #STREAM_CLEAR_INTERVAL} rows, so that neither the JDBC driver nor the
+	 * session holds more than a window of rows
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> int stream(Criteria criteria, LabDataCallback<T> callback) {
+		Session session = sessionFactory.getCurrentSession();
+		criteria.setReadOnly(true).setCacheMode(CacheMode.IGNORE).setFetchSize(getStreamFetchSize());
+		ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+		int count = 0;
+		try {
+			while (results.next()) {
+				callback.process((T) results.get(0));
+				if (++count % STREAM_CLEAR_INTERVAL == 0) {
+					session.clear();
+				}
+			}
+		}
+		finally {
+			results.close();
+		}
+		return count;
+	}
+
+	/**
+	 * MySQL Connector/J honours a positive fetch size only when the connection URL has
+	 * useCursorFetch=true, and otherwise reads the whole result set into memory. A fetch size of
+	 * {@link Integer#MIN_VALUE} would stream without it, but blocks every other statement on the
+	 * connection until the stream is closed, so callbacks could not load lazy associations
+	 */
+	private int getStreamFetchSize() {
+		Dialect dialect = ((SessionFactoryImplementor) sessionFactory).getDialect();
+		if (dialect instanceof MySQLDialect && !cursorFetchChecked) {
+			String url = Context.getRuntimeProperties().getProperty("connection.url", "");
+			if (!url.contains("useCursorFetch=true")) {
+				log.warn("Add useCursorFetch=true to connection.url, or lab data will be streamed through memory");
+			}
+			cursorFetchChecked = true;
+		}
+		return STREAM_CLEAR_INTERVAL;
+	}
+
+	/**
+	 * Case-insensitive prefix match on an indexed column. ILIKE wraps the column in lower(), which
+	 * keeps the database from using the index, so a plain LIKE is used where the collation already
+	 * ignores case, as the utf8_general_ci collation of OpenMRS on MySQL does
+	 */
+	private Criterion startsWithIgnoreCase(String propertyName, String value) {
+		if (isCaseInsensitiveCollation()) {
+			return Restrictions.like(propertyName, value, MatchMode.START);
+		}
+		return Restrictions.ilike(propertyName, value, MatchMode.START);
+	}
+
+	private boolean isCaseInsensitiveCollation() {
+		if (caseInsensitiveCollation == null) {
+			Dialect dialect = ((SessionFactoryImplementor) sessionFactory).getDialect();
+			caseInsensitiveCollation = dialect instanceof MySQLDialect;
+		}
+		return caseInsensitiveCollation;
 	}
 
 	/**
@@ -335,9 +820,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestSample getLabTestSampleByUuid(String uuid) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
-		criteria.add(Restrictions.eq("uuid", uuid.toLowerCase()));
-		return (LabTestSample) criteria.uniqueResult();
+		return getByUuid(LabTestSample.class, uuid);
 	}
 
 	/**
@@ -346,22 +829,48 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	@SuppressWarnings("unchecked")
 	public List<LabTestSample> getLabTestSamples(LabTest labTest, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
+		Criteria criteria = createCriteria(LabTestSample.class);
 		criteria.add(Restrictions.eq("labTest.testOrderId", labTest.getId()));
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("voided", false));
 		}
-		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided")).list();
+		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided"));
 		return criteria.list();
 	}
 
+	/**
+	 * @see CommonLabTestDAO#getLabTestSamples(java.util.Collection, boolean)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Map<Integer, List<LabTestSample>> getLabTestSamples(Collection<LabTest> labTests, boolean includeVoided) {
+		Map<Integer, List<LabTestSample>> samples = new LinkedHashMap<Integer, List<LabTestSample>>();
+		List<Integer> testOrderIds = new ArrayList<Integer>();
+		for (LabTest labTest : labTests) {
+			samples.put(labTest.getTestOrderId(), new ArrayList<LabTestSample>());
+			testOrderIds.add(labTest.getTestOrderId());
+		}
+		for (List<Integer> batch : partition(testOrderIds, getBatchFetchSize())) {
+			Criteria criteria = createCriteria(LabTestSample.class);
+			criteria.add(Restrictions.in("labTest.testOrderId", batch));
+			if (!includeVoided) {
+				criteria.add(Restrictions.eq("voided", false));
+			}
+			criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided"));
+			for (LabTestSample labTestSample : (List<LabTestSample>) criteria.list()) {
+				samples.get(labTestSample.getLabTest().getTestOrderId()).add(labTestSample);
+			}
+		}
+		return samples;
+	}
+
 	/**
 	 * @see CommonLabTestDAO#getLabTestSamples(org.openmrs.Patient, boolean)
 	 */
 	@Override
 	@SuppressWarnings({ "unchecked", "deprecation" })
 	public List<LabTestSample> getLabTestSamples(Patient patient, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
+		Criteria criteria = createCriteria(LabTestSample.class);
 
 		criteria.createAlias("labTest", "labTest", CriteriaSpecification.INNER_JOIN).setFetchMode("labTest", FetchMode.JOIN)
 		        // .add(Restrictions.eq("labTest.order.patient.personId",
@@ -376,7 +885,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("voided", false));
 		}
-		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided")).list();
+		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided"));
 		return criteria.list();
 	}
 
@@ -386,12 +895,12 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	@SuppressWarnings("unchecked")
 	public List<LabTestSample> getLabTestSamples(Provider collector, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
+		Criteria criteria = createCriteria(LabTestSample.class);
 		criteria.add(Restrictions.eq("collector.providerId", collector.getProviderId()));
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("voided", false));
 		}
-		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided")).list();
+		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("voided"));
 		return criteria.list();
 	}
 
@@ -400,16 +909,85 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 * Provider, Date, Date, boolean)
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
 	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to,
 	        boolean includeVoided) {
 		if (labTest == null && patient == null && sampleIdentifier == null) {
 			return null;
 		}
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
-		if (labTest != null) {
-			criteria.add(Restrictions.eq("labTest.testOrderId", labTest.getTestOrderId()));
+		return getLabTestSamples(labTest, patient, sampleIdentifier, specimenType, status, collector, from, to,
+		    includeVoided, null, null);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestSamples(LabTest, Patient, String, Concept, LabTestSampleStatus,
+	 *      Provider, Date, Date, boolean, Integer, Integer)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        Integer startIndex, Integer limit) {
+		if (labTest == null && patient == null && sampleIdentifier == null) {
+			return new ArrayList<LabTestSample>();
+		}
+		Criteria criteria = createLabTestSampleCriteria(labTest, patient, sampleIdentifier, specimenType, status, collector,
+		    from, to, includeVoided);
+		criteria.addOrder(Order.asc("sampleIdentifier")).addOrder(Order.asc("labTestSampleId"));
+		setPaging(criteria, startIndex, limit);
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestSamplesCount(LabTest, Patient, String, Concept,
+	 *      LabTestSampleStatus, Provider, Date, Date, boolean)
+	 */
+	@Override
+	public Long getLabTestSamplesCount(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided) {
+		if (labTest == null && patient == null && sampleIdentifier == null) {
+			return 0L;
+		}
+		return count(createLabTestSampleCriteria(labTest, patient, sampleIdentifier, specimenType, status, collector, from,
+		    to, includeVoided));
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestSamples(LabTest, Patient, String, Concept, LabTestSampleStatus,
+	 *      Provider, Date, Date, boolean, String, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public KeysetPage<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize) {
+		int limit = getPageSize(pageSize);
+		Criteria criteria = createLabTestSampleCriteria(labTest, patient, sampleIdentifier, specimenType, status, collector,
+		    from, to, includeVoided);
+		addSeekRestriction(criteria, "labTestSampleId", KeysetCursor.decode(continuationToken));
+		criteria.addOrder(Order.asc("dateCreated")).addOrder(Order.asc("labTestSampleId"));
+		// Fetch one extra row to tell whether there is a next page
+		criteria.setMaxResults(limit + 1);
+		List<LabTestSample> list = criteria.list();
+		String nextToken = null;
+		if (list.size() > limit) {
+			list = new ArrayList<LabTestSample>(list.subList(0, limit));
+			LabTestSample last = list.get(limit - 1);
+			nextToken = new KeysetCursor(last.getDateCreated(), last.getLabTestSampleId()).encode();
+		}
+		return new KeysetPage<LabTestSample>(list, nextToken);
+	}
+
+	/**
+	 * Builds the {@link Criteria} shared by list and keyset variants of getLabTestSamples(...). No
+	 * ordering is applied
+	 */
+	private Criteria createLabTestSampleCriteria(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to,
+	        boolean includeVoided) {
+		Criteria criteria = createCriteria(LabTestSample.class);
+		if (labTest != null) {
+			criteria.add(Restrictions.eq("labTest.testOrderId", labTest.getTestOrderId()));
 		}
 		if (patient != null) {
 			criteria.createAlias("labTest", "labTest").setFetchMode("labTest", FetchMode.JOIN)
@@ -417,7 +995,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 			        .add(Restrictions.eq("order.patient.personId", patient.getPatientId()));
 		}
 		if (sampleIdentifier != null) {
-			criteria.add(Restrictions.ilike("sampleIdentifier", sampleIdentifier, MatchMode.START));
+			criteria.add(startsWithIgnoreCase("sampleIdentifier", sampleIdentifier));
 		}
 		if (specimenType != null) {
 			criteria.add(Restrictions.eq("specimenType.conceptId", specimenType.getConceptId()));
@@ -434,8 +1012,61 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("voided", false));
 		}
-		criteria.addOrder(Order.asc("sampleIdentifier"));
-		return criteria.list();
+		return criteria;
+	}
+
+	/**
+	 * Restricts the criteria to rows after the given position in <code>(dateCreated, id)</code> order,
+	 * i.e. <code>date_created &gt; d OR (date_created = d AND id &gt; i)</code>
+	 * 
+	 * @param criteria the {@link Criteria} object to restrict
+	 * @param idProperty name of the identifier property
+	 * @param cursor the {@link KeysetCursor} object, nothing is added if null
+	 */
+	private void addSeekRestriction(Criteria criteria, String idProperty, KeysetCursor cursor) {
+		if (cursor == null) {
+			return;
+		}
+		Date dateCreated = cursor.getDateCreated();
+		criteria.add(Restrictions.or(Restrictions.gt("dateCreated", dateCreated),
+		    Restrictions.and(Restrictions.eq("dateCreated", dateCreated), Restrictions.gt(idProperty, cursor.getId()))));
+	}
+
+	/**
+	 * Applies offset paging to the criteria. Null or negative values are ignored
+	 * 
+	 * @param criteria the {@link Criteria} object
+	 * @param startIndex index of the first row
+	 * @param limit maximum number of rows
+	 */
+	private void setPaging(Criteria criteria, Integer startIndex, Integer limit) {
+		if (startIndex != null && startIndex > 0) {
+			criteria.setFirstResult(startIndex);
+		}
+		if (limit != null && limit > 0) {
+			criteria.setMaxResults(limit);
+		}
+	}
+
+	/**
+	 * @param criteria the {@link Criteria} object without ordering
+	 * @return the number of rows matching the criteria
+	 */
+	private Long count(Criteria criteria) {
+		criteria.setProjection(Projections.rowCount());
+		Number count = (Number) criteria.uniqueResult();
+		return count == null ? 0L : count.longValue();
+	}
+
+	/**
+	 * @param pageSize the requested page size
+	 * @return page size bounded between 1 and {@link #MAX_PAGE_SIZE}
+	 */
+	private int getPageSize(int pageSize) {
+		if (pageSize < 1) {
+			return 1;
+		}
+		return pageSize > MAX_PAGE_SIZE ? MAX_PAGE_SIZE : pageSize;
 	}
 
 	/**
@@ -451,46 +1082,56 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestType getLabTestTypeByUuid(String uuid) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestType.class);
-		criteria.add(Restrictions.eq("uuid", uuid.toLowerCase()));
-		return (LabTestType) criteria.uniqueResult();
+		return getByUuid(LabTestType.class, uuid);
 	}
 
 	/**
 	 * @see CommonLabTestDAO#getNLabTests(org.openmrs.Patient, int, boolean, boolean, boolean)
 	 */
 	@Override
-	@SuppressWarnings({ "unchecked", "deprecation" })
 	public List<LabTest> getNLabTests(Patient patient, int n, boolean firstNObjects, boolean lastNObjects,
 	        boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTest.class);
-		List<LabTest> firstN = null;
-		List<LabTest> lastN = null;
-		// Disallow fetching more than 100 records per query
-		criteria.setMaxResults(n > MAX_FETCH_LIMIT ? MAX_FETCH_LIMIT : n);
-		if (patient != null) {
-			criteria.createAlias("order", "o", CriteriaSpecification.INNER_JOIN).setFetchMode("o", FetchMode.JOIN)
-			        .add(Restrictions.eq("o.patient.personId", patient.getPatientId()));
-		}
-		if (!includeVoided) {
-			criteria.add(Restrictions.eq("voided", false));
-		}
+		List<LabTest> list = new ArrayList<LabTest>();
 		if (firstNObjects) {
-			criteria.addOrder(Order.asc("dateCreated"));
-			firstN = criteria.list();
+			list.addAll(getLabTestWindow(patient, n, true, includeVoided));
 		}
 		if (lastNObjects) {
-			criteria.addOrder(Order.desc("dateCreated"));
-			lastN = criteria.list();
+			for (LabTest labTest : getLabTestWindow(patient, n, false, includeVoided)) {
+				// The head and tail overlap when the patient has fewer than 2n tests
+				if (!list.contains(labTest)) {
+					list.add(labTest);
+				}
+			}
 		}
-		List<LabTest> list = new ArrayList<LabTest>();
-		if (firstN != null) {
-			list.addAll(firstN);
+		return list;
+	}
+
+	/**
+	 * Fetches the head (oldest first) or tail (newest first) window of a patient's lab tests. Each
+	 * window is an independent query ordered on <code>(date_created, test_order_id)</code>, so the
+	 * database can stop after reading n rows. Lab tests have no patient column, so the window of a
+	 * patient is found through the patient index of the orders table and sorted after
+	 * 
+	 * @param patient the {@link Patient} object, null for all patients
+	 * @param n size of the window, at most {@link #MAX_FETCH_LIMIT}
+	 * @param head true for the earliest objects, false for the latest
+	 * @param includeVoided include voided objects
+	 * @return {@link LabTest} object(s)
+	 */
+	@SuppressWarnings("unchecked")
+	private List<LabTest> getLabTestWindow(Patient patient, int n, boolean head, boolean includeVoided) {
+		Criteria criteria = createCriteria(LabTest.class);
+		if (patient != null) {
+			criteria.createAlias("order", "o", JoinType.INNER_JOIN)
+			        .add(Restrictions.eq("o.patient.personId", patient.getPatientId()));
 		}
-		if (lastN != null) {
-			list.addAll(lastN);
+		if (!includeVoided) {
+			criteria.add(Restrictions.eq("voided", false));
 		}
-		return list;
+		addWindowOrder(criteria, "testOrderId", head);
+		// Disallow fetching more than 100 records per query
+		criteria.setMaxResults(getWindowSize(n));
+		return criteria.list();
 	}
 
 	/**
@@ -499,17 +1140,34 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 *      boolean)
 	 */
 	@Override
-	@SuppressWarnings({ "unchecked", "deprecation" })
 	public List<LabTestSample> getNLabTestSamples(Patient patient, LabTestSampleStatus status, int n, boolean firstNObjects,
 	        boolean lastNObjects, boolean includeVoided) {
-		Criteria criteria = sessionFactory.getCurrentSession().createCriteria(LabTestSample.class);
-		List<LabTestSample> firstN = null;
-		List<LabTestSample> lastN = null;
-		// Disallow fetching more than 100 records per query
-		criteria.setMaxResults(n > MAX_FETCH_LIMIT ? MAX_FETCH_LIMIT : n);
-		criteria.createAlias("labTest", "labTest", CriteriaSpecification.INNER_JOIN).setFetchMode("labTest", FetchMode.JOIN)
-		        .createAlias("labTest.order", "order", CriteriaSpecification.INNER_JOIN)
-		        .setFetchMode("order", FetchMode.JOIN)
+		List<LabTestSample> list = new ArrayList<LabTestSample>();
+		if (firstNObjects) {
+			list.addAll(getLabTestSampleWindow(patient, status, n, true, includeVoided));
+		}
+		if (lastNObjects) {
+			for (LabTestSample labTestSample : getLabTestSampleWindow(patient, status, n, false, includeVoided)) {
+				// The head and tail overlap when the patient has fewer than 2n samples
+				if (!list.contains(labTestSample)) {
+					list.add(labTestSample);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Fetches the head (oldest first) or tail (newest first) window of a patient's samples
+	 * 
+	 * @see #getLabTestWindow(Patient, int, boolean, boolean)
+	 */
+	@SuppressWarnings("unchecked")
+	private List<LabTestSample> getLabTestSampleWindow(Patient patient, LabTestSampleStatus status, int n, boolean head,
+	        boolean includeVoided) {
+		Criteria criteria = createCriteria(LabTestSample.class);
+		criteria.createAlias("labTest", "labTest", JoinType.INNER_JOIN)
+		        .createAlias("labTest.order", "order", JoinType.INNER_JOIN)
 		        .add(Restrictions.eq("order.patient.personId", patient.getPatientId()));
 		if (status != null) {
 			criteria.add(Restrictions.eq("status", status));
@@ -517,23 +1175,253 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		if (!includeVoided) {
 			criteria.add(Restrictions.eq("voided", false));
 		}
-		if (firstNObjects) {
-			criteria.addOrder(Order.asc("dateCreated"));
-			firstN = criteria.list();
+		addWindowOrder(criteria, "labTestSampleId", head);
+		// Disallow fetching more than 100 records per query
+		criteria.setMaxResults(getWindowSize(n));
+		return criteria.list();
+	}
+
+	/**
+	 * Orders by date of creation and then by Id, so that objects created at the same time come in a
+	 * stable order
+	 */
+	private void addWindowOrder(Criteria criteria, String idProperty, boolean ascending) {
+		if (ascending) {
+			criteria.addOrder(Order.asc("dateCreated")).addOrder(Order.asc(idProperty));
+		} else {
+			criteria.addOrder(Order.desc("dateCreated")).addOrder(Order.desc(idProperty));
 		}
-		if (lastNObjects) {
-			criteria.addOrder(Order.desc("dateCreated"));
-			lastN = criteria.list();
+	}
+
+	/**
+	 * @param n the requested window size
+	 * @return window size bounded between 1 and {@link #MAX_FETCH_LIMIT}
+	 */
+	private int getWindowSize(int n) {
+		if (n < 1) {
+			return 1;
 		}
-		criteria.setMaxResults(n);
-		List<LabTestSample> list = new ArrayList<LabTestSample>();
-		if (firstN != null) {
-			list.addAll(firstN);
+		return n > MAX_FETCH_LIMIT ? MAX_FETCH_LIMIT : n;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#voidLabTestSamples(Collection, String, User, Date)
+	 */
+	@Override
+	public int voidLabTestSamples(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided) {
+		return voidByTestOrderIds(LabTestSample.class, "labTest.testOrderId", labTests, voidReason, voidedBy,
+		    dateVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#voidLabTestAttributes(Collection, String, User, Date)
+	 */
+	@Override
+	public int voidLabTestAttributes(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided) {
+		return voidByTestOrderIds(LabTestAttribute.class, "labTest.testOrderId", labTests, voidReason, voidedBy,
+		    dateVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#unvoidLabTestSamples(Collection, String)
+	 */
+	@Override
+	public int unvoidLabTestSamples(Collection<LabTest> labTests, String voidReason) {
+		return unvoidByTestOrderIds(LabTestSample.class, labTests, voidReason);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#unvoidLabTestAttributes(Collection, String)
+	 */
+	@Override
+	public int unvoidLabTestAttributes(Collection<LabTest> labTests, String voidReason) {
+		return unvoidByTestOrderIds(LabTestAttribute.class, labTests, voidReason);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#voidLabTests(Collection, String, User, Date)
+	 */
+	@Override
+	public int voidLabTests(Collection<LabTest> labTests, String voidReason, User voidedBy, Date dateVoided) {
+		return voidByTestOrderIds(LabTest.class, "testOrderId", labTests, voidReason, voidedBy, dateVoided);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#unvoidLabTests(Collection)
+	 */
+	@Override
+	public int unvoidLabTests(Collection<LabTest> labTests) {
+		Query query = createQuery("update " + LabTest.class.getName()
+		        + " set voided = :voided, voidedBy = null, dateVoided = null, voidReason = null"
+		        + " where voided = true and testOrderId in (:testOrderIds)");
+		query.setBoolean("voided", false);
+		int updated = executeUpdate(query, labTests);
+		for (BaseOpenmrsData labTest : getLoaded(LabTest.class, labTests)) {
+			if (labTest.getVoided()) {
+				labTest.setVoided(false);
+				labTest.setVoidedBy(null);
+				labTest.setDateVoided(null);
+				labTest.setVoidReason(null);
+				resetLoadedState(labTest);
+			}
 		}
-		if (lastN != null) {
-			list.addAll(lastN);
+		return updated;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#setLabTestType(Collection, LabTestType)
+	 */
+	@Override
+	public int setLabTestType(Collection<LabTest> labTests, LabTestType labTestType) {
+		Query query = createQuery("update " + LabTest.class.getName()
+		        + " set labTestType = :labTestType where testOrderId in (:testOrderIds)");
+		query.setParameter("labTestType", labTestType);
+		int updated = executeUpdate(query, labTests);
+		for (BaseOpenmrsData labTest : getLoaded(LabTest.class, labTests)) {
+			((LabTest) labTest).setLabTestType(labTestType);
+			resetLoadedState(labTest);
 		}
-		return list;
+		return updated;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#purgeLabTestAttributes(LabTestAttributeType, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public int purgeLabTestAttributes(LabTestAttributeType labTestAttributeType, int maxResults) {
+		Criteria criteria = createCriteria(LabTestAttribute.class);
+		criteria.add(Restrictions.eq("attributeType.labTestAttributeTypeId", labTestAttributeType.getId()));
+		criteria.setProjection(Projections.id()).addOrder(Order.asc("labTestAttributeId")).setMaxResults(maxResults);
+		List<Integer> ids = criteria.list();
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		Query query = createQuery("delete from " + LabTestAttribute.class.getName()
+		        + " where labTestAttributeId in (:ids)");
+		return query.setParameterList("ids", ids).executeUpdate();
+	}
+
+	/**
+	 * Sets the void fields of all non-voided rows of given entity which belong to given lab tests, in
+	 * one update statement per batch of tests
+	 */
+	private int voidByTestOrderIds(Class<?> persistentClass, String testOrderIdProperty, Collection<LabTest> labTests,
+	        String voidReason, User voidedBy, Date dateVoided) {
+		Query query = createQuery("update " + persistentClass.getName() + " set voided = :voided, voidedBy = :voidedBy,"
+		        + " dateVoided = :dateVoided, voidReason = :voidReason"
+		        + " where voided = false and " + testOrderIdProperty + " in (:testOrderIds)");
+		query.setBoolean("voided", true);
+		query.setParameter("voidedBy", voidedBy);
+		query.setTimestamp("dateVoided", dateVoided);
+		query.setString("voidReason", voidReason);
+		int updated = executeUpdate(query, labTests);
+		for (BaseOpenmrsData object : getLoaded(persistentClass, labTests)) {
+			if (!object.getVoided()) {
+				object.setVoided(true);
+				object.setVoidedBy(voidedBy);
+				object.setDateVoided(dateVoided);
+				object.setVoidReason(voidReason);
+				resetLoadedState(object);
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * Unvoids the rows of given entity which belong to given lab tests and were voided with given
+	 * reason. Like the unvoid handler of OpenMRS, it clears who voided them and when. The reason is kept
+	 * with a prefix, as when a single sample or attribute is unvoided
+	 */
+	private int unvoidByTestOrderIds(Class<?> persistentClass, Collection<LabTest> labTests, String voidReason) {
+		StringBuilder queryString = new StringBuilder();
+		queryString.append("update ").append(persistentClass.getName());
+		queryString.append(" set voided = :voided, voidedBy = null, dateVoided = null,");
+		queryString.append(" voidReason = concat('Previously voided for reason: ', coalesce(voidReason, ''))");
+		queryString.append(" where voided = true and labTest.testOrderId in (:testOrderIds)");
+		queryString.append(voidReason == null ? " and voidReason is null" : " and voidReason = :voidReason");
+		Query query = createQuery(queryString.toString());
+		query.setBoolean("voided", false);
+		if (voidReason != null) {
+			query.setString("voidReason", voidReason);
+		}
+		int updated = executeUpdate(query, labTests);
+		for (BaseOpenmrsData object : getLoaded(persistentClass, labTests)) {
+			if (object.getVoided() && ObjectUtils.equals(voidReason, object.getVoidReason())) {
+				object.setVoided(false);
+				object.setVoidedBy(null);
+				object.setDateVoided(null);
+				object.setVoidReason("Previously voided for reason: " + StringUtils.defaultString(voidReason));
+				resetLoadedState(object);
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * Bulk updates bypass the session, which flushes pending changes before them but does not see
+	 * what they change. The objects they changed which are loaded in the session are found here, to
+	 * apply the same change to them
+	 * 
+	 * @return the loaded objects of given entity which belong to given lab tests
+	 */
+	private List<BaseOpenmrsData> getLoaded(Class<? extends BaseOpenmrsData> persistentClass,
+	        Collection<LabTest> labTests) {
+		Set<Integer> testOrderIds = new HashSet<Integer>();
+		for (LabTest labTest : labTests) {
+			testOrderIds.add(labTest.getTestOrderId());
+		}
+		Session session = sessionFactory.getCurrentSession();
+		List<BaseOpenmrsData> loaded = new ArrayList<BaseOpenmrsData>();
+		for (Object key : session.getStatistics().getEntityKeys()) {
+			EntityKey entityKey = (EntityKey) key;
+			if (!persistentClass.getName().equals(entityKey.getEntityName())) {
+				continue;
+			}
+			BaseOpenmrsData object = (BaseOpenmrsData) session.get(persistentClass, entityKey.getIdentifier());
+			if (object != null && testOrderIds.contains(getTestOrderId(object))) {
+				loaded.add(object);
+			}
+		}
+		return loaded;
+	}
+
+	private Integer getTestOrderId(BaseOpenmrsData object) {
+		if (object instanceof LabTestSample) {
+			return ((LabTestSample) object).getLabTest().getTestOrderId();
+		}
+		if (object instanceof LabTestAttribute) {
+			return ((LabTestAttribute) object).getLabTest().getTestOrderId();
+		}
+		return ((LabTest) object).getTestOrderId();
+	}
+
+	/**
+	 * Makes Hibernate take the current state of a loaded object for the state of its row, which a bulk
+	 * update has already changed, so that the change is not written a second time at flush
+	 */
+	private void resetLoadedState(Object object) {
+		Session session = sessionFactory.getCurrentSession();
+		if (!session.isReadOnly(object)) {
+			session.setReadOnly(object, true);
+			session.setReadOnly(object, false);
+		}
+	}
+
+	/**
+	 * Executes the update query once per batch of test order Ids, bound to :testOrderIds parameter
+	 */
+	private int executeUpdate(Query query, Collection<LabTest> labTests) {
+		List<Integer> testOrderIds = new ArrayList<Integer>();
+		for (LabTest labTest : labTests) {
+			testOrderIds.add(labTest.getTestOrderId());
+		}
+		int updated = 0;
+		for (List<Integer> batch : partition(testOrderIds, getBatchFetchSize())) {
+			query.setParameterList("testOrderIds", batch);
+			updated += query.executeUpdate();
+		}
+		return updated;
 	}
 
 	/**
@@ -542,6 +1430,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	public void purgeLabTest(LabTest labTest) {
 		sessionFactory.getCurrentSession().delete(labTest);
+		uuidResolver.evict(LabTest.class, UuidResolver.canonicalize(labTest.getUuid()));
 	}
 
 	/**
@@ -550,6 +1439,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	public void purgeLabTestAttribute(LabTestAttribute labTestAttribute) {
 		sessionFactory.getCurrentSession().delete(labTestAttribute);
+		uuidResolver.evict(LabTestAttribute.class, UuidResolver.canonicalize(labTestAttribute.getUuid()));
 	}
 
 	/**
@@ -558,6 +1448,8 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	public void purgeLabTestAttributeType(LabTestAttributeType labTestAttributeType) {
 		sessionFactory.getCurrentSession().delete(labTestAttributeType);
+		uuidResolver.evict(LabTestAttributeType.class, UuidResolver.canonicalize(labTestAttributeType.getUuid()));
+		evictMetadataQueries();
 	}
 
 	/**
@@ -566,6 +1458,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	public void purgeLabTestSample(LabTestSample labTestSample) {
 		sessionFactory.getCurrentSession().delete(labTestSample);
+		uuidResolver.evict(LabTestSample.class, UuidResolver.canonicalize(labTestSample.getUuid()));
 	}
 
 	/**
@@ -574,6 +1467,150 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	@Override
 	public void purgeLabTestType(LabTestType labTestType) {
 		sessionFactory.getCurrentSession().delete(labTestType);
+		uuidResolver.evict(LabTestType.class, UuidResolver.canonicalize(labTestType.getUuid()));
+		evictMetadataQueries();
+	}
+
+	/**
+	 * Drops the cached lists of metadata after a {@link LabTestType} or {@link LabTestAttributeType}
+	 * is saved, retired or deleted
+	 */
+	private void evictMetadataQueries() {
+		sessionFactory.getCache().evictQueryRegion(METADATA_CACHE_REGION);
+	}
+
+	/**
+	 * @return maximum number of Ids to put in one IN list, from global property
+	 */
+	private int getBatchFetchSize() {
+		Integer batchFetchSize = Context.getAdministrationService().getGlobalPropertyValue(
+		    CommonLabTestActivator.BATCH_FETCH_SIZE, CommonLabTestActivator.DEFAULT_BATCH_FETCH_SIZE);
+		return batchFetchSize < 1 ? CommonLabTestActivator.DEFAULT_BATCH_FETCH_SIZE : batchFetchSize;
+	}
+
+	/**
+	 * Splits the Ids into consecutive batches of at most given size, keeping the order
+	 */
+	private static <T> List<List<T>> partition(List<T> ids, int batchSize) {
+		List<List<T>> batches = new ArrayList<List<T>>();
+		for (int i = 0; i < ids.size(); i += batchSize) {
+			batches.add(ids.subList(i, Math.min(i + batchSize, ids.size())));
+		}
+		return batches;
+	}
+
+	/**
+	 * Looks up an object by UUID. A UUID resolved before is read by id, which Hibernate can serve from
+	 * its caches; otherwise the unique index on uuid column is queried with the canonical UUID
+	 *
+	 * @param type class of the object
+	 * @param uuid the UUID in any case
+	 * @return the object, or null if not found
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends BaseOpenmrsObject> T getByUuid(Class<T> type, String uuid) {
+		String canonicalUuid = UuidResolver.canonicalize(uuid);
+		if (canonicalUuid == null) {
+			return null;
+		}
+		Session session = sessionFactory.getCurrentSession();
+		Integer id = uuidResolver.getId(type, canonicalUuid);
+		if (id != null) {
+			T object = (T) session.get(type, id);
+			// The id may be stale, e.g. if the transaction that saved it was rolled back
+			if (object != null && canonicalUuid.equals(object.getUuid())) {
+				return object;
+			}
+			uuidResolver.evict(type, canonicalUuid);
+		}
+		T object = (T) createCriteria(type).add(Restrictions.eq("uuid", canonicalUuid)).uniqueResult();
+		if (object != null) {
+			uuidResolver.put(type, canonicalUuid, object.getId());
+		}
+		return object;
+	}
+
+	/**
+	 * Brings the UUID of given object to canonical form before it is written
+	 */
+	private void canonicalizeUuid(BaseOpenmrsObject object) {
+		if (object.getUuid() != null) {
+			object.setUuid(UuidResolver.canonicalize(object.getUuid()));
+		}
+	}
+
+	/**
+	 * Copies the value reference into the typed value column which matches the datatype of the
+	 * attribute type, and clears the others. A value which cannot be converted only stays in the value
+	 * reference
+	 */
+	private void setTypedValues(LabTestAttribute labTestAttribute, Map<String, Integer> conceptIds) {
+		String valueReference = getValueReference(labTestAttribute);
+		LabTestValueType valueType = getValueType(labTestAttribute);
+		labTestAttribute.setValueNumeric(
+		    valueType == LabTestValueType.NUMERIC ? LabTestValueType.toNumeric(valueReference) : null);
+		labTestAttribute.setValueDatetime(
+		    valueType == LabTestValueType.DATETIME ? LabTestValueType.toDatetime(valueReference) : null);
+		labTestAttribute.setValueCoded(valueType == LabTestValueType.CODED ? getConceptId(conceptIds, valueReference)
+		        : null);
+		labTestAttribute.setValueBoolean(
+		    valueType == LabTestValueType.BOOLEAN ? LabTestValueType.toBoolean(valueReference) : null);
+	}
+
+	private String getValueReference(LabTestAttribute labTestAttribute) {
+		try {
+			return labTestAttribute.getValueReference();
+		}
+		catch (NotYetPersistedException e) {
+			return null;
+		}
+	}
+
+	private LabTestValueType getValueType(LabTestAttribute labTestAttribute) {
+		return labTestAttribute.getAttributeType() == null ? LabTestValueType.TEXT
+		        : LabTestValueType.of(labTestAttribute.getAttributeType().getDatatypeClassname());
+	}
+
+	/**
+	 * @param conceptIds concept Ids by UUID, as read by {@link #getConceptIds(Collection)}
+	 * @param valueReference concept Id or UUID
+	 * @return the concept Id, or null if there is no such concept
+	 */
+	private Integer getConceptId(Map<String, Integer> conceptIds, String valueReference) {
+		Integer conceptId = LabTestValueType.toConceptId(valueReference);
+		if (conceptId == null && valueReference != null) {
+			conceptId = conceptIds.get(valueReference.trim());
+		}
+		return conceptId;
+	}
+
+	/**
+	 * Reads the Ids of the concepts referenced by UUID from coded attributes, before any of them is
+	 * saved. The query does not flush the session, so that attributes waiting to be written are not
+	 * written one statement at a time
+	 *
+	 * @return concept Ids by UUID
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Integer> getConceptIds(Collection<LabTestAttribute> labTestAttributes) {
+		Map<String, Integer> conceptIds = new HashMap<String, Integer>();
+		Set<String> uuids = new TreeSet<String>();
+		for (LabTestAttribute labTestAttribute : labTestAttributes) {
+			String valueReference = getValueReference(labTestAttribute);
+			if (getValueType(labTestAttribute) == LabTestValueType.CODED && valueReference != null
+			        && LabTestValueType.toConceptId(valueReference) == null) {
+				uuids.add(valueReference.trim());
+			}
+		}
+		for (List<String> batch : partition(new ArrayList<String>(uuids), getBatchFetchSize())) {
+			List<Object[]> rows = createCriteria(Concept.class).add(Restrictions.in("uuid", batch))
+			        .setProjection(Projections.projectionList().add(Projections.property("uuid")).add(Projections.id()))
+			        .setFlushMode(FlushMode.MANUAL).list();
+			for (Object[] row : rows) {
+				conceptIds.put((String) row[0], (Integer) row[1]);
+			}
+		}
+		return conceptIds;
 	}
 
 	/**
@@ -609,6 +1646,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 		org.openmrs.Order savedOrder = saveLabTestOrder(labTest.getOrder());
 		labTest.setOrder(savedOrder);
 		labTest.setTestOrderId(savedOrder.getOrderId());
+		canonicalizeUuid(labTest);
 		Session session = sessionFactory.getCurrentSession();
 		session.saveOrUpdate(labTest);
 		return labTest;
@@ -619,17 +1657,44 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestAttribute saveLabTestAttribute(LabTestAttribute labTestAttribute) {
-
+		canonicalizeUuid(labTestAttribute);
+		setTypedValues(labTestAttribute, getConceptIds(Collections.singletonList(labTestAttribute)));
 		sessionFactory.getCurrentSession().saveOrUpdate(labTestAttribute);
 		return labTestAttribute;
 	}
 
+	/**
+	 * @see CommonLabTestDAO#saveLabTestAttributes(java.util.List, int)
+	 */
+	@Override
+	public List<LabTestAttribute> saveLabTestAttributes(List<LabTestAttribute> labTestAttributes, int batchSize) {
+		Session session = sessionFactory.getCurrentSession();
+		Map<String, Integer> conceptIds = getConceptIds(labTestAttributes);
+		for (int start = 0; start < labTestAttributes.size(); start += batchSize) {
+			List<LabTestAttribute> batch = labTestAttributes.subList(start,
+			    Math.min(start + batchSize, labTestAttributes.size()));
+			for (LabTestAttribute labTestAttribute : batch) {
+				canonicalizeUuid(labTestAttribute);
+				setTypedValues(labTestAttribute, conceptIds);
+				session.saveOrUpdate(labTestAttribute);
+			}
+			session.flush();
+			// Only the attributes just written leave the session; whatever the caller loaded stays
+			for (LabTestAttribute labTestAttribute : batch) {
+				session.evict(labTestAttribute);
+			}
+		}
+		return labTestAttributes;
+	}
+
 	/**
 	 * @see CommonLabTestDAO#saveLabTestAttributeType(org.openmrs.module.commonlabtest.LabTestAttributeType)
 	 */
 	@Override
 	public LabTestAttributeType saveLabTestAttributeType(LabTestAttributeType labTestAttributeType) {
+		canonicalizeUuid(labTestAttributeType);
 		sessionFactory.getCurrentSession().saveOrUpdate(labTestAttributeType);
+		evictMetadataQueries();
 		return labTestAttributeType;
 	}
 
@@ -638,6 +1703,7 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestSample saveLabTestSample(LabTestSample labTestSample) {
+		canonicalizeUuid(labTestSample);
 		sessionFactory.getCurrentSession().saveOrUpdate(labTestSample);
 		return labTestSample;
 	}
@@ -647,7 +1713,213 @@ public class CommonLabTestDAOImpl implements CommonLabTestDAO {
 	 */
 	@Override
 	public LabTestType saveLabTestType(LabTestType labTestType) {
+		canonicalizeUuid(labTestType);
 		sessionFactory.getCurrentSession().saveOrUpdate(labTestType);
+		evictMetadataQueries();
 		return labTestType;
 	}
+
+	/**
+	 * @see CommonLabTestDAO#saveLabTestVoidQueueItem(org.openmrs.module.commonlabtest.LabTestVoidQueueItem)
+	 */
+	@Override
+	public LabTestVoidQueueItem saveLabTestVoidQueueItem(LabTestVoidQueueItem item) {
+		sessionFactory.getCurrentSession().saveOrUpdate(item);
+		return item;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#purgeLabTestVoidQueueItem(org.openmrs.module.commonlabtest.LabTestVoidQueueItem)
+	 */
+	@Override
+	public void purgeLabTestVoidQueueItem(LabTestVoidQueueItem item) {
+		sessionFactory.getCurrentSession().delete(item);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getDueLabTestVoidQueueItems(java.util.Date, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTestVoidQueueItem> getDueLabTestVoidQueueItems(Date now, int maxResults) {
+		// An item waits for the earlier items of its order, whether postponed or failed for good
+		DetachedCriteria earlierItems = DetachedCriteria.forClass(LabTestVoidQueueItem.class, "earlier");
+		earlierItems.add(Restrictions.eqProperty("earlier.orderId", "item.orderId"));
+		earlierItems.add(Restrictions.ltProperty("earlier.queueItemId", "item.queueItemId"));
+		earlierItems.setProjection(Projections.id());
+		Criteria criteria = createCriteria(LabTestVoidQueueItem.class, "item");
+		criteria.add(Restrictions.eq("failed", false));
+		criteria.add(Restrictions.le("nextAttemptDate", now));
+		criteria.add(Subqueries.notExists(earlierItems));
+		criteria.addOrder(Order.asc("queueItemId"));
+		criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestVoidQueueSize(boolean)
+	 */
+	@Override
+	public long getLabTestVoidQueueSize(boolean failedOnly) {
+		Criteria criteria = createCriteria(LabTestVoidQueueItem.class);
+		if (failedOnly) {
+			criteria.add(Restrictions.eq("failed", true));
+		}
+		return (Long) criteria.setProjection(Projections.rowCount()).uniqueResult();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getRetryingLabTestVoidQueueSize()
+	 */
+	@Override
+	public long getRetryingLabTestVoidQueueSize() {
+		Criteria criteria = createCriteria(LabTestVoidQueueItem.class);
+		criteria.add(Restrictions.gt("attempts", 0)).add(Restrictions.eq("failed", false));
+		return (Long) criteria.setProjection(Projections.rowCount()).uniqueResult();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getOldestLabTestVoidQueueItemDate()
+	 */
+	@Override
+	public Date getOldestLabTestVoidQueueItemDate() {
+		Criteria criteria = createCriteria(LabTestVoidQueueItem.class);
+		return (Date) criteria.setProjection(Projections.min("dateCreated")).uniqueResult();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#saveLabTestReport(LabTestReport)
+	 */
+	@Override
+	public LabTestReport saveLabTestReport(LabTestReport labTestReport) {
+		sessionFactory.getCurrentSession().saveOrUpdate(labTestReport);
+		return labTestReport;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestReport(LabTest)
+	 */
+	@Override
+	public LabTestReport getLabTestReport(LabTest labTest) {
+		Criteria criteria = createCriteria(LabTestReport.class);
+		criteria.add(Restrictions.eq("labTest", labTest));
+		criteria.addOrder(Order.desc("reportId"));
+		criteria.setMaxResults(1);
+		return (LabTestReport) criteria.uniqueResult();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestsWithUnstoredReports(Integer, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<LabTest> getLabTestsWithUnstoredReports(Integer afterTestOrderId, int maxResults) {
+		DetachedCriteria reports = DetachedCriteria.forClass(LabTestReport.class, "report");
+		reports.add(Restrictions.eqProperty("report.labTest.testOrderId", "labTest.testOrderId"));
+		reports.setProjection(Projections.id());
+		Criteria criteria = createCriteria(LabTest.class, "labTest");
+		criteria.add(Restrictions.isNotNull("filePath"));
+		criteria.add(Restrictions.ne("filePath", ""));
+		criteria.add(Subqueries.notExists(reports));
+		if (afterTestOrderId != null) {
+			criteria.add(Restrictions.gt("testOrderId", afterTestOrderId));
+		}
+		criteria.addOrder(Order.asc("testOrderId"));
+		criteria.setMaxResults(maxResults);
+		return criteria.list();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getLabTestCountByFilePath(String)
+	 */
+	@Override
+	public long getLabTestCountByFilePath(String filePath) {
+		Criteria criteria = createCriteria(LabTest.class);
+		criteria.add(Restrictions.eq("filePath", filePath));
+		return (Long) criteria.setProjection(Projections.rowCount()).uniqueResult();
+	}
+
+	/**
+	 * @see CommonLabTestDAO#getQueryStatistics()
+	 */
+	@Override
+	public LabQueryStatistics getQueryStatistics() {
+		Statistics statistics = sessionFactory.getStatistics();
+		LabQueryStatistics queryStatistics = new LabQueryStatistics();
+		queryStatistics.setEnabled(statistics.isStatisticsEnabled());
+		queryStatistics.setStartTime(new Date(statistics.getStartTime()));
+		queryStatistics.setSlowQueryThresholdMillis(slowQueryLogger.getThresholdMillis());
+		for (String entityName : sortedModuleNames(statistics.getEntityNames())) {
+			EntityStatistics entity = statistics.getEntityStatistics(entityName);
+			queryStatistics.getEntities().add(new LabQueryStatistics.EntityRow(entityName, entity.getLoadCount(),
+			        entity.getFetchCount(), entity.getInsertCount(), entity.getUpdateCount(), entity.getDeleteCount()));
+		}
+		for (String role : sortedModuleNames(statistics.getCollectionRoleNames())) {
+			CollectionStatistics collection = statistics.getCollectionStatistics(role);
+			queryStatistics.getCollections().add(new LabQueryStatistics.CollectionRow(role, collection.getLoadCount(),
+			        collection.getFetchCount(), collection.getUpdateCount()));
+		}
+		for (String queryString : statistics.getQueries()) {
+			if (!MODULE_QUERY_PATTERN.matcher(queryString).find()) {
+				continue;
+			}
+			QueryStatistics query = statistics.getQueryStatistics(queryString);
+			queryStatistics.getQueries().add(new LabQueryStatistics.QueryRow(queryString, query.getExecutionCount(),
+			        query.getExecutionRowCount(), query.getExecutionAvgTime(), query.getExecutionMaxTime(),
+			        query.getCacheHitCount(), query.getCacheMissCount()));
+			if (query.getExecutionMaxTime() > queryStatistics.getQueryExecutionMaxTime()) {
+				queryStatistics.setQueryExecutionMaxTime(query.getExecutionMaxTime());
+				queryStatistics.setQueryExecutionMaxTimeQueryString(queryString);
+			}
+		}
+		Collections.sort(queryStatistics.getQueries(), new Comparator<LabQueryStatistics.QueryRow>() {
+
+			@Override
+			public int compare(LabQueryStatistics.QueryRow row1, LabQueryStatistics.QueryRow row2) {
+				return Long.valueOf(row2.getExecutionMaxTime()).compareTo(row1.getExecutionMaxTime());
+			}
+		});
+		for (String region : new TreeSet<String>(Arrays.asList(statistics.getSecondLevelCacheRegionNames()))) {
+			if (!region.contains("commonlabtest")) {
+				continue;
+			}
+			SecondLevelCacheStatistics cache = statistics.getSecondLevelCacheStatistics(region);
+			if (cache != null) {
+				queryStatistics.getCaches().add(new LabQueryStatistics.CacheRow(region, cache.getHitCount(),
+				        cache.getMissCount(), cache.getPutCount()));
+			}
+		}
+		queryStatistics.getSlowQueries().addAll(slowQueryLogger.getRecentQueries());
+		return queryStatistics;
+	}
+
+	/**
+	 * @return the entity names or collection roles of this module among given ones, sorted
+	 */
+	private Set<String> sortedModuleNames(String[] names) {
+		Set<String> moduleNames = new TreeSet<String>();
+		for (String name : names) {
+			if (name.startsWith(LabTest.class.getPackage().getName() + ".")) {
+				moduleNames.add(name);
+			}
+		}
+		return moduleNames;
+	}
+
+	/**
+	 * @see CommonLabTestDAO#setQueryStatisticsEnabled(boolean)
+	 */
+	@Override
+	public void setQueryStatisticsEnabled(boolean enabled) {
+		sessionFactory.getStatistics().setStatisticsEnabled(enabled);
+	}
+
+	/**
+	 * @see CommonLabTestDAO#clearQueryStatistics()
+	 */
+	@Override
+	public void clearQueryStatistics() {
+		sessionFactory.getStatistics().clear();
+		slowQueryLogger.clear();
+	}
 }
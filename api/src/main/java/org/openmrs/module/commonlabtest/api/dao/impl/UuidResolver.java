@@ -0,0 +1,68 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api.dao.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps UUIDs in one canonical (trimmed, lower case) form and remembers the primary keys they
+ * resolved to, so that a repeated lookup by UUID becomes a lookup by id, which Hibernate can answer
+ * from its session or second-level cache. The cache is bounded and evicts the least recently used
+ * entries. Entries are only hints: callers must verify the UUID of the object loaded by the id.
+ */
+final class UuidResolver {
+
+	private final Map<String, Integer> ids;
+
+	UuidResolver(final int maxEntries) {
+		this.ids = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * @param uuid the UUID in any case, may be null
+	 * @return the canonical form of the UUID, or null if none was given
+	 */
+	static String canonicalize(String uuid) {
+		return uuid == null ? null : uuid.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @param type class of the object
+	 * @param canonicalUuid UUID in canonical form
+	 * @return the id last resolved for this UUID, or null if not known
+	 */
+	synchronized Integer getId(Class<?> type, String canonicalUuid) {
+		return ids.get(key(type, canonicalUuid));
+	}
+
+	synchronized void put(Class<?> type, String canonicalUuid, Integer id) {
+		if (canonicalUuid != null && id != null) {
+			ids.put(key(type, canonicalUuid), id);
+		}
+	}
+
+	synchronized void evict(Class<?> type, String canonicalUuid) {
+		ids.remove(key(type, canonicalUuid));
+	}
+
+	private static String key(Class<?> type, String canonicalUuid) {
+		return type.getName() + ':' + canonicalUuid;
+	}
+}
@@ -9,32 +9,59 @@
  */
 package org.openmrs.module.commonlabtest.api.impl;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.openmrs.Concept;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
+import org.openmrs.User;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.APIException;
 import org.openmrs.api.UnchangeablePropertyException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.customdatatype.NotYetPersistedException;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
 import org.openmrs.module.commonlabtest.CommonLabTestConfig;
 import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
 import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestReport;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
 import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.api.KeysetPage;
+import org.openmrs.module.commonlabtest.api.LabDataCallback;
+import org.openmrs.module.commonlabtest.api.LabQueryStatistics;
+import org.openmrs.module.commonlabtest.api.LabTestMetadata;
+import org.openmrs.module.commonlabtest.api.LabTestSummary;
 import org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO;
+import org.openmrs.module.commonlabtest.report.FileSystemLabReportStore;
+import org.openmrs.module.commonlabtest.report.ReportFile;
+import org.openmrs.module.commonlabtest.report.ReportFileWriter;
+import org.openmrs.module.commonlabtest.task.DeleteLabTestMetadataTask;
+import org.openmrs.scheduler.SchedulerException;
+import org.openmrs.scheduler.SchedulerService;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.util.PrivilegeConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,9 +69,20 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class CommonLabTestServiceImpl extends BaseOpenmrsService implements CommonLabTestService {
 
+	private static final long MIN_VOID_QUEUE_RETRY_DELAY = 60000L;
+
+	private static final long MAX_VOID_QUEUE_RETRY_DELAY = 3600000L;
+
+	private static final int MAX_VOID_QUEUE_ATTEMPTS = 10;
+
+	private static final long DELETION_TASK_START_DELAY = 10000L;
+
 	@Autowired
 	CommonLabTestDAO dao;
 
+	@Autowired
+	LabTestMetadataRegistry metadataRegistry;
+
 	/**
 	 * Injected in moduleApplicationContext.xml
 	 * 
@@ -66,6 +104,38 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getAllLabTestAttributeTypes(includeRetired);
 	}
 
+	/*
+	 * @see CommonLabTestService#getAllLabTestAttributeTypes(boolean, Integer,
+	 * Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttributeType> getAllLabTestAttributeTypes(boolean includeRetired, Integer startIndex,
+	        Integer limit) throws APIException {
+		return dao.getAllLabTestAttributeTypes(includeRetired, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getAllLabTestAttributeTypesCount(boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getAllLabTestAttributeTypesCount(boolean includeRetired) throws APIException {
+		return dao.getAllLabTestAttributeTypesCount(includeRetired);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestMetadata()
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public LabTestMetadata getLabTestMetadata() throws APIException {
+		return metadataRegistry.getSnapshot();
+	}
+
 	/*
 	 * 
 	 * 
@@ -78,6 +148,27 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getAllLabTestTypes(includeRetired);
 	}
 
+	/*
+	 * @see CommonLabTestService#getAllLabTestTypes(boolean, Integer, Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestType> getAllLabTestTypes(boolean includeRetired, Integer startIndex, Integer limit)
+	        throws APIException {
+		return dao.getAllLabTestTypes(includeRetired, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getAllLabTestTypesCount(boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getAllLabTestTypesCount(boolean includeRetired) throws APIException {
+		return dao.getAllLabTestTypesCount(includeRetired);
+	}
+
 	/*
 	 * @see CommonLabTestService#getEarliestLabTest(org.openmrs.Patient)
 	 */
@@ -117,6 +208,19 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getLabTest(labTestId);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestsByOrderIds(java.util.Collection)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTest> getLabTestsByOrderIds(Collection<Integer> testOrderIds) throws APIException {
+		if (testOrderIds == null || testOrderIds.isEmpty()) {
+			return new ArrayList<LabTest>();
+		}
+		return dao.getLabTestsByOrderIds(testOrderIds);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTestAttribute(java.lang.Integer)
 	 */
@@ -170,6 +274,100 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getLabTestAttributes(testOrderId);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestAttributes(java.util.Collection)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Map<Integer, List<LabTestAttribute>> getLabTestAttributes(Collection<LabTest> labTests) throws APIException {
+		return dao.getLabTestAttributes(labTests);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributes(Integer, Integer, Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttribute> getLabTestAttributes(Integer testOrderId, Integer startIndex, Integer limit)
+	        throws APIException {
+		return dao.getLabTestAttributes(testOrderId, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributesCount(Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getLabTestAttributesCount(Integer testOrderId) throws APIException {
+		return dao.getLabTestAttributesCount(testOrderId);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributesByNumericValue(LabTestAttributeType, Double, Double,
+	 * boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttribute> getLabTestAttributesByNumericValue(LabTestAttributeType labTestAttributeType,
+	        Double min, Double max, boolean includeVoided) throws APIException {
+		requireAttributeType(labTestAttributeType);
+		return dao.getLabTestAttributesByNumericValue(labTestAttributeType, min, max, includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributesByDatetimeValue(LabTestAttributeType, Date, Date,
+	 * boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttribute> getLabTestAttributesByDatetimeValue(LabTestAttributeType labTestAttributeType,
+	        Date from, Date to, boolean includeVoided) throws APIException {
+		requireAttributeType(labTestAttributeType);
+		return dao.getLabTestAttributesByDatetimeValue(labTestAttributeType, from, to, includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributesByCodedValue(LabTestAttributeType, Concept, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttribute> getLabTestAttributesByCodedValue(LabTestAttributeType labTestAttributeType,
+	        Concept concept, boolean includeVoided) throws APIException {
+		requireAttributeType(labTestAttributeType);
+		if (concept == null) {
+			throw new APIException("Concept must not be null.");
+		}
+		return dao.getLabTestAttributesByCodedValue(labTestAttributeType, concept, includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributesByBooleanValue(LabTestAttributeType, Boolean,
+	 * boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttribute> getLabTestAttributesByBooleanValue(LabTestAttributeType labTestAttributeType,
+	        Boolean value, boolean includeVoided) throws APIException {
+		requireAttributeType(labTestAttributeType);
+		return dao.getLabTestAttributesByBooleanValue(labTestAttributeType, value, includeVoided);
+	}
+
+	/**
+	 * Typed values are indexed by attribute type first, so a search without one is not allowed
+	 */
+	private void requireAttributeType(LabTestAttributeType labTestAttributeType) {
+		if (labTestAttributeType == null) {
+			throw new APIException("Lab test attribute type must not be null.");
+		}
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTestAttributes(org.openmrs.Patient, boolean)
 	 */
@@ -234,6 +432,28 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getLabTestAttributeTypes(labTestType, includeRetired);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestAttributeTypes(LabTestType, boolean,
+	 * Integer, Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestAttributeType> getLabTestAttributeTypes(LabTestType labTestType, boolean includeRetired,
+	        Integer startIndex, Integer limit) throws APIException {
+		return dao.getLabTestAttributeTypes(labTestType, includeRetired, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestAttributeTypesCount(LabTestType, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getLabTestAttributeTypesCount(LabTestType labTestType, boolean includeRetired) throws APIException {
+		return dao.getLabTestAttributeTypesCount(labTestType, includeRetired);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTestByUuid(String)
 	 */
@@ -307,6 +527,17 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return dao.getLabTestSamples(labTest, includeVoided);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestSamples(java.util.Collection, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_SAMPLE_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Map<Integer, List<LabTestSample>> getLabTestSamples(Collection<LabTest> labTests, boolean includeVoided)
+	        throws APIException {
+		return dao.getLabTestSamples(labTests, includeVoided);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTestSamples(Patient, boolean)
 	 */
@@ -349,6 +580,48 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		    includeVoided);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestSamples(LabTest, Patient, String,
+	 * Concept, LabTestSampleStatus, Provider, Date, Date, boolean, Integer, Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_SAMPLE_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        Integer startIndex, Integer limit) throws APIException {
+		return dao.getLabTestSamples(labTest, patient, sampleIdentifier, specimenType, status, collector, from, to,
+		    includeVoided, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestSamplesCount(LabTest, Patient, String,
+	 * Concept, LabTestSampleStatus, Provider, Date, Date, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_SAMPLE_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getLabTestSamplesCount(LabTest labTest, Patient patient, String sampleIdentifier, Concept specimenType,
+	        LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided)
+	        throws APIException {
+		return dao.getLabTestSamplesCount(labTest, patient, sampleIdentifier, specimenType, status, collector, from, to,
+		    includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestSamples(LabTest, Patient, String,
+	 * Concept, LabTestSampleStatus, Provider, Date, Date, boolean, String, int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_SAMPLE_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public KeysetPage<LabTestSample> getLabTestSamples(LabTest labTest, Patient patient, String sampleIdentifier,
+	        Concept specimenType, LabTestSampleStatus status, Provider collector, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize) throws APIException {
+		return dao.getLabTestSamples(labTest, patient, sampleIdentifier, specimenType, status, collector, from, to,
+		    includeVoided, continuationToken, pageSize);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTestType(Integer)
 	 */
@@ -403,6 +676,47 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		    includeVoided);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTests(LabTestType, Patient, String, String,
+	 * Concept, Provider, Date, Date, boolean, Integer, Integer)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided, Integer startIndex,
+	        Integer limit) throws APIException {
+		return dao.getLabTests(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer, from, to,
+		    includeVoided, startIndex, limit);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestsCount(LabTestType, Patient, String,
+	 * String, Concept, Provider, Date, Date, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Long getLabTestsCount(LabTestType labTestType, Patient patient, String orderNumber, String referenceNumber,
+	        Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided) throws APIException {
+		return dao.getLabTestsCount(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer, from, to,
+		    includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTests(LabTestType, Patient, String, String,
+	 * Concept, Provider, Date, Date, boolean, String, int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public KeysetPage<LabTest> getLabTests(LabTestType labTestType, Patient patient, String orderNumber,
+	        String referenceNumber, Concept orderConcept, Provider orderer, Date from, Date to, boolean includeVoided,
+	        String continuationToken, int pageSize) throws APIException {
+		return dao.getLabTests(labTestType, patient, orderNumber, referenceNumber, orderConcept, orderer, from, to,
+		    includeVoided, continuationToken, pageSize);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTests(org.openmrs.module.commonlabtest.
 	 * LabTestType, boolean)
@@ -444,6 +758,47 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return getLabTests(null, patient, null, null, null, null, null, null, includeVoided);
 	}
 
+	/*
+	 * @see CommonLabTestService#getLabTestSummaries(org.openmrs.Patient, boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestSummary> getLabTestSummaries(Patient patient, boolean includeVoided) throws APIException {
+		return dao.getLabTestSummaries(patient, includeVoided);
+	}
+
+	/*
+	 * @see CommonLabTestService#streamLabTests(boolean, LabDataCallback)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public int streamLabTests(boolean includeVoided, LabDataCallback<LabTest> callback) throws APIException {
+		return dao.streamLabTests(includeVoided, callback);
+	}
+
+	/*
+	 * @see CommonLabTestService#streamLabTestSamples(boolean, LabDataCallback)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_SAMPLE_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public int streamLabTestSamples(boolean includeVoided, LabDataCallback<LabTestSample> callback) throws APIException {
+		return dao.streamLabTestSamples(includeVoided, callback);
+	}
+
+	/*
+	 * @see CommonLabTestService#streamLabTestAttributes(boolean, LabDataCallback)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public int streamLabTestAttributes(boolean includeVoided, LabDataCallback<LabTestAttribute> callback)
+	        throws APIException {
+		return dao.streamLabTestAttributes(includeVoided, callback);
+	}
+
 	/*
 	 * @see CommonLabTestService#getLabTests(String, boolean)
 	 */
@@ -560,6 +915,109 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		return labTestAttributes;
 	}
 
+	/*
+	 * @see CommonLabTestService#saveLabTestResults(Map)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.ADD_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public List<LabTestAttribute> saveLabTestResults(Map<LabTest, Collection<LabTestAttribute>> labTestResults)
+	        throws APIException {
+		if (labTestResults.isEmpty()) {
+			return new ArrayList<LabTestAttribute>();
+		}
+		Map<Integer, List<LabTestAttribute>> existingAttributes = dao.getLabTestAttributes(labTestResults.keySet());
+		User user = Context.getAuthenticatedUser();
+		Date date = new Date();
+		// An attribute voided after it was queued is saved once, in its final state
+		Set<LabTestAttribute> attributesToSave = new LinkedHashSet<LabTestAttribute>();
+		for (Map.Entry<LabTest, Collection<LabTestAttribute>> entry : labTestResults.entrySet()) {
+			// All non-voided attributes of each type, older duplicates included
+			Map<Integer, List<LabTestAttribute>> existingByType = new HashMap<Integer, List<LabTestAttribute>>();
+			for (LabTestAttribute existing : existingAttributes.get(entry.getKey().getTestOrderId())) {
+				if (!existing.getVoided()) {
+					getOrCreate(existingByType, existing.getAttributeType().getId()).add(existing);
+				}
+			}
+			for (LabTestAttribute labTestAttribute : entry.getValue()) {
+				if (labTestAttribute.getAttributeType() == null) {
+					throw new APIException("Lab test attribute type must not be null.");
+				}
+				String valueReference;
+				try {
+					valueReference = labTestAttribute.getValueReference();
+				}
+				catch (NotYetPersistedException e) {
+					throw new APIException("Value of " + labTestAttribute.getAttributeType().getName() + " is missing.");
+				}
+				labTestAttribute.setLabTest(entry.getKey());
+				List<LabTestAttribute> existingOfType = getOrCreate(existingByType, labTestAttribute.getAttributeType()
+				        .getId());
+				LabTestAttribute accepted = labTestAttribute;
+				for (LabTestAttribute existing : existingOfType) {
+					if (isSameAttribute(existing, labTestAttribute)) {
+						continue;
+					}
+					if (accepted == labTestAttribute && labTestAttribute.getId() == null
+					        && existing.getValueReference().equals(valueReference)) {
+						// The value is already there, keep the existing attribute instead
+						accepted = existing;
+						continue;
+					}
+					existing.setVoided(true);
+					existing.setVoidedBy(user);
+					existing.setDateVoided(date);
+					existing.setVoidReason("Replaced by batch result");
+					attributesToSave.add(existing);
+				}
+				existingOfType.clear();
+				existingOfType.add(accepted);
+				if (accepted != labTestAttribute) {
+					continue;
+				}
+				// Audit fields are set here, since save handlers do not reach into a map
+				if (labTestAttribute.getCreator() == null) {
+					labTestAttribute.setCreator(user);
+				}
+				if (labTestAttribute.getDateCreated() == null) {
+					labTestAttribute.setDateCreated(date);
+				}
+				if (labTestAttribute.getId() != null) {
+					labTestAttribute.setChangedBy(user);
+					labTestAttribute.setDateChanged(date);
+				}
+				attributesToSave.add(labTestAttribute);
+			}
+		}
+		return dao.saveLabTestAttributes(new ArrayList<LabTestAttribute>(attributesToSave), getResultBatchSize());
+	}
+
+	private static List<LabTestAttribute> getOrCreate(Map<Integer, List<LabTestAttribute>> attributesByType,
+	        Integer attributeTypeId) {
+		List<LabTestAttribute> attributes = attributesByType.get(attributeTypeId);
+		if (attributes == null) {
+			attributes = new ArrayList<LabTestAttribute>();
+			attributesByType.put(attributeTypeId, attributes);
+		}
+		return attributes;
+	}
+
+	private static boolean isSameAttribute(LabTestAttribute existing, LabTestAttribute labTestAttribute) {
+		return existing == labTestAttribute
+		        || (labTestAttribute.getId() != null && labTestAttribute.getId().equals(existing.getId()));
+	}
+
+	/*
+	 * @see CommonLabTestService#getResultBatchSize()
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public int getResultBatchSize() throws APIException {
+		Integer batchSize = Context.getAdministrationService().getGlobalPropertyValue(
+		    CommonLabTestActivator.RESULT_BATCH_SIZE, CommonLabTestActivator.DEFAULT_RESULT_BATCH_SIZE);
+		return batchSize < 1 ? CommonLabTestActivator.DEFAULT_RESULT_BATCH_SIZE : batchSize;
+	}
+
 	/*
 	 * @see CommonLabTestService#saveLabTestAttributeType(LabTestAttributeType)
 	 */
@@ -567,7 +1025,9 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 	@Authorized(CommonLabTestConfig.ADD_LAB_TEST_METADATA_PRIVILEGE)
 	@Transactional
 	public LabTestAttributeType saveLabTestAttributeType(LabTestAttributeType labTestAttributeType) throws APIException {
-		return dao.saveLabTestAttributeType(labTestAttributeType);
+		LabTestAttributeType saved = dao.saveLabTestAttributeType(labTestAttributeType);
+		metadataRegistry.invalidate();
+		return saved;
 	}
 
 	/*
@@ -588,7 +1048,9 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 	@Transactional
 	public LabTestType saveLabTestType(LabTestType labTestType) throws APIException {
 		handleUnknownTestTypeOperation(labTestType);
-		return dao.saveLabTestType(labTestType);
+		LabTestType saved = dao.saveLabTestType(labTestType);
+		metadataRegistry.invalidate();
+		return saved;
 	}
 
 	/**
@@ -619,6 +1081,7 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		labTestType.setRetiredBy(Context.getAuthenticatedUser());
 		labTestType.setRetireReason(retireReason);
 		dao.saveLabTestType(labTestType);
+		metadataRegistry.invalidate();
 	}
 
 	/*
@@ -637,6 +1100,7 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		labTestAttributeType.setRetiredBy(Context.getAuthenticatedUser());
 		labTestAttributeType.setRetireReason(retireReason);
 		dao.saveLabTestAttributeType(labTestAttributeType);
+		metadataRegistry.invalidate();
 	}
 
 	/*
@@ -650,6 +1114,7 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		labTestType.setRetireReason("Previously retired for reason: " + labTestType.getRetireReason());
 		handleUnknownTestTypeOperation(labTestType);
 		dao.saveLabTestType(labTestType);
+		metadataRegistry.invalidate();
 	}
 
 	/*
@@ -662,6 +1127,7 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		labTestAttributeType.setRetired(Boolean.FALSE);
 		labTestAttributeType.setRetireReason("Previously retired for reason: " + labTestAttributeType.getRetireReason());
 		dao.saveLabTestAttributeType(labTestAttributeType);
+		metadataRegistry.invalidate();
 	}
 
 	/*
@@ -690,6 +1156,29 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		dao.saveLabTest(labTest);
 	}
 
+	/*
+	 * @see CommonLabTestService#voidLabTests(Collection, String)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public void voidLabTests(Collection<LabTest> labTests, String voidReason) throws APIException {
+		if (labTests.isEmpty()) {
+			return;
+		}
+		User voidedBy = Context.getAuthenticatedUser();
+		Date dateVoided = new Date();
+		dao.voidLabTestSamples(labTests, voidReason, voidedBy, dateVoided);
+		dao.voidLabTestAttributes(labTests, voidReason, voidedBy, dateVoided);
+		dao.voidLabTests(labTests, voidReason, voidedBy, dateVoided);
+		for (LabTest labTest : labTests) {
+			// Orders of a voided encounter are voided already
+			if (!labTest.getOrder().getVoided()) {
+				Context.getOrderService().voidOrder(labTest.getOrder(), voidReason);
+			}
+		}
+	}
+
 	/*
 	 * @see CommonLabTestService#voidLabTestAttribute(LabTestAttribute, String)
 	 */
@@ -766,6 +1255,34 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		dao.saveLabTest(labTest);
 	}
 
+	/*
+	 * @see CommonLabTestService#unvoidLabTests(Collection)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public void unvoidLabTests(Collection<LabTest> labTests) throws APIException {
+		// Tests voided with the same reason can have their samples and results unvoided together
+		Map<String, List<LabTest>> labTestsByVoidReason = new LinkedHashMap<String, List<LabTest>>();
+		for (LabTest labTest : labTests) {
+			if (!labTestsByVoidReason.containsKey(labTest.getVoidReason())) {
+				labTestsByVoidReason.put(labTest.getVoidReason(), new ArrayList<LabTest>());
+			}
+			labTestsByVoidReason.get(labTest.getVoidReason()).add(labTest);
+		}
+		for (Map.Entry<String, List<LabTest>> entry : labTestsByVoidReason.entrySet()) {
+			dao.unvoidLabTestSamples(entry.getValue(), entry.getKey());
+			dao.unvoidLabTestAttributes(entry.getValue(), entry.getKey());
+		}
+		dao.unvoidLabTests(labTests);
+		for (LabTest labTest : labTests) {
+			// Orders of an unvoided encounter are unvoided already
+			if (labTest.getOrder().getVoided()) {
+				Context.getOrderService().unvoidOrder(labTest.getOrder());
+			}
+		}
+	}
+
 	/*
 	 * @see CommonLabTestService#unvoidLabTestAttribute(LabTestAttribute)
 	 */
@@ -830,17 +1347,28 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 	@Transactional
 	public void deleteLabTestAttributeType(LabTestAttributeType labTestAttributeType, boolean cascade) throws APIException {
 		if (cascade) {
-			List<LabTestAttribute> labTestAttributes = getLabTestAttributes(labTestAttributeType, true);
-			for (LabTestAttribute labTestAttribute : labTestAttributes) {
-				try {
-					dao.purgeLabTestAttribute(labTestAttribute);
-				}
-				catch (Exception e) {
-					throw new APIException(e.getMessage());
-				}
+			int batchSize = getCascadeBatchSize();
+			if (dao.getLabTestAttributesCount(labTestAttributeType) > batchSize) {
+				scheduleDeletion(DeleteLabTestMetadataTask.LAB_TEST_ATTRIBUTE_TYPE_UUID, labTestAttributeType.getUuid(),
+				    null);
+				return;
+			}
+			while (dao.purgeLabTestAttributes(labTestAttributeType, batchSize) > 0) {
+				// Keep deleting until no attribute of this type is left
 			}
 		}
 		dao.purgeLabTestAttributeType(labTestAttributeType);
+		metadataRegistry.invalidate();
+	}
+
+	/*
+	 * @see CommonLabTestService#deleteLabTestAttributes(LabTestAttributeType, int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional
+	public int deleteLabTestAttributes(LabTestAttributeType labTestAttributeType, int batchSize) throws APIException {
+		return dao.purgeLabTestAttributes(labTestAttributeType, batchSize);
 	}
 
 	/*
@@ -882,6 +1410,7 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		} else {
 			throw new APIException("Cannot delete LabTestType because of Foreign Key Violation.");
 		}
+		metadataRegistry.invalidate();
 	}
 
 	/*
@@ -895,6 +1424,60 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		if (newObjectForCascade == null) {
 			newObjectForCascade = getLabTestTypeByUuid(LabTestType.UNKNOWN_TEST_UUID);
 		}
+		if (labTestType.equals(newObjectForCascade)) {
+			throw new APIException("Cannot move LabTest objects to the LabTestType being deleted.");
+		}
+		if (dao.getLabTestsCount(labTestType, null, null, null, null, null, null, null, true) > getCascadeBatchSize()) {
+			scheduleDeletion(DeleteLabTestMetadataTask.LAB_TEST_TYPE_UUID, labTestType.getUuid(),
+			    newObjectForCascade.getUuid());
+			return;
+		}
+		// Replace LabTestType in dependencies
+		handleLabTestTypeDependencies(labTestType, newObjectForCascade, getDeletionMessage(labTestType));
+		dao.purgeLabTestType(labTestType);
+		metadataRegistry.invalidate();
+	}
+
+	/*
+	 * @see CommonLabTestService#moveLabTests(LabTestType, LabTestType, int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional
+	public int moveLabTests(LabTestType labTestType, LabTestType newLabTestType, int batchSize) throws APIException {
+		return moveLabTests(labTestType, newLabTestType, getDeletionMessage(labTestType), batchSize);
+	}
+
+	/**
+	 * Moves the first batch of tests of given type to the new type, voiding the tests, their samples
+	 * and results with set-based updates, which also update the tests loaded in the session. Orders
+	 * are still voided through {@link org.openmrs.api.OrderService}
+	 */
+	private int moveLabTests(LabTestType labTestType, LabTestType newLabTestType, String voidReason, int batchSize) {
+		List<LabTest> labTests = dao.getLabTests(labTestType, null, null, null, null, null, null, null, true, 0,
+		    batchSize);
+		if (labTests.isEmpty()) {
+			return 0;
+		}
+		User voidedBy = Context.getAuthenticatedUser();
+		Date dateVoided = new Date();
+		dao.voidLabTestSamples(labTests, voidReason, voidedBy, dateVoided);
+		dao.voidLabTestAttributes(labTests, voidReason, voidedBy, dateVoided);
+		dao.voidLabTests(labTests, voidReason, voidedBy, dateVoided);
+		dao.setLabTestType(labTests, newLabTestType);
+		for (LabTest labTest : labTests) {
+			if (!labTest.getOrder().getVoided()) {
+				Context.getOrderService().voidOrder(labTest.getOrder(), voidReason);
+			}
+		}
+		return labTests.size();
+	}
+
+	/**
+	 * @param labTestType the {@link LabTestType} being deleted
+	 * @return reason to void or retire the objects depending on given type
+	 */
+	private String getDeletionMessage(LabTestType labTestType) {
 		StringBuilder message = new StringBuilder();
 		message.append("Associated LabTestType: ");
 		message.append(labTestType.getName());
@@ -902,9 +1485,221 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 		message.append(labTestType.getUuid());
 		message.append(") was deleted on ");
 		message.append(Context.getDateFormat().format(new Date()));
-		// Replace LabTestType in dependencies
-		handleLabTestTypeDependencies(labTestType, newObjectForCascade, message.toString());
-		dao.purgeLabTestType(labTestType);
+		return message.toString();
+	}
+
+	/**
+	 * Hands the deletion of a type with more dependent objects than fit in one batch to a
+	 * {@link DeleteLabTestMetadataTask}, which commits each batch in its own transaction. The task is
+	 * started shortly, once the current transaction is committed, and again on startup until it
+	 * completes
+	 * 
+	 * @param typeProperty the task property naming the type to delete
+	 * @param uuid uuid of the type to delete
+	 * @param newLabTestTypeUuid uuid of the type to move lab tests to, or null
+	 */
+	private void scheduleDeletion(String typeProperty, String uuid, String newLabTestTypeUuid) {
+		SchedulerService schedulerService = Context.getSchedulerService();
+		String name = "Delete lab test metadata " + uuid;
+		Context.addProxyPrivilege(PrivilegeConstants.MANAGE_SCHEDULER);
+		try {
+			if (schedulerService.getTaskByName(name) != null) {
+				// Already handed over by an earlier request
+				return;
+			}
+			TaskDefinition taskDefinition = new TaskDefinition();
+			taskDefinition.setName(name);
+			taskDefinition.setDescription("Deletes lab test metadata with too many dependent objects for one request");
+			taskDefinition.setTaskClass(DeleteLabTestMetadataTask.class.getName());
+			taskDefinition.setStartTime(new Date(System.currentTimeMillis() + DELETION_TASK_START_DELAY));
+			taskDefinition.setRepeatInterval(0L);
+			taskDefinition.setStartOnStartup(true);
+			taskDefinition.setProperty(typeProperty, uuid);
+			if (newLabTestTypeUuid != null) {
+				taskDefinition.setProperty(DeleteLabTestMetadataTask.NEW_LAB_TEST_TYPE_UUID, newLabTestTypeUuid);
+			}
+			schedulerService.saveTaskDefinition(taskDefinition);
+			schedulerService.scheduleTask(taskDefinition);
+		}
+		catch (SchedulerException e) {
+			throw new APIException("Unable to schedule the deletion of " + uuid, e);
+		}
+		finally {
+			Context.removeProxyPrivilege(PrivilegeConstants.MANAGE_SCHEDULER);
+		}
+	}
+
+	/**
+	 * @return number of rows to process per statement when cascading a delete
+	 */
+	private int getCascadeBatchSize() {
+		Integer batchSize = Context.getAdministrationService().getGlobalPropertyValue(
+		    CommonLabTestActivator.BATCH_FETCH_SIZE, CommonLabTestActivator.DEFAULT_BATCH_FETCH_SIZE);
+		return batchSize < 1 ? CommonLabTestActivator.DEFAULT_BATCH_FETCH_SIZE : batchSize;
+	}
+
+	/*
+	 * @see CommonLabTestService#queueLabTestVoid(Order, LabTestVoidQueueItem.Action)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public LabTestVoidQueueItem queueLabTestVoid(Order order, LabTestVoidQueueItem.Action action) throws APIException {
+		LabTestVoidQueueItem item = new LabTestVoidQueueItem(order.getOrderId(), action, order.getVoidReason());
+		Date now = new Date();
+		item.setCreator(Context.getAuthenticatedUser());
+		item.setDateCreated(now);
+		item.setNextAttemptDate(now);
+		return dao.saveLabTestVoidQueueItem(item);
+	}
+
+	/*
+	 * @see CommonLabTestService#getDueLabTestVoidQueueItems(int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTestVoidQueueItem> getDueLabTestVoidQueueItems(int maxResults) throws APIException {
+		return dao.getDueLabTestVoidQueueItems(new Date(), maxResults);
+	}
+
+	/*
+	 * @see CommonLabTestService#completeLabTestVoidQueueItem(LabTestVoidQueueItem)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public void completeLabTestVoidQueueItem(LabTestVoidQueueItem item) throws APIException {
+		dao.purgeLabTestVoidQueueItem(item);
+	}
+
+	/*
+	 * @see CommonLabTestService#retryLabTestVoidQueueItem(LabTestVoidQueueItem, String)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.DELETE_LAB_TEST_PRIVILEGE)
+	@Transactional
+	public void retryLabTestVoidQueueItem(LabTestVoidQueueItem item, String error) throws APIException {
+		int attempts = item.getAttempts() + 1;
+		long delay = Math.min(MAX_VOID_QUEUE_RETRY_DELAY, MIN_VOID_QUEUE_RETRY_DELAY << Math.min(attempts - 1, 20));
+		item.setAttempts(attempts);
+		item.setLastError(error != null && error.length() > 1024 ? error.substring(0, 1024) : error);
+		item.setNextAttemptDate(new Date(System.currentTimeMillis() + delay));
+		item.setFailed(attempts >= MAX_VOID_QUEUE_ATTEMPTS);
+		dao.saveLabTestVoidQueueItem(item);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestVoidQueueSize(boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public long getLabTestVoidQueueSize(boolean failedOnly) throws APIException {
+		return dao.getLabTestVoidQueueSize(failedOnly);
+	}
+
+	/*
+	 * @see CommonLabTestService#getRetryingLabTestVoidQueueSize()
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public long getRetryingLabTestVoidQueueSize() throws APIException {
+		return dao.getRetryingLabTestVoidQueueSize();
+	}
+
+	/*
+	 * @see CommonLabTestService#getOldestLabTestVoidQueueItemDate()
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public Date getOldestLabTestVoidQueueItemDate() throws APIException {
+		return dao.getOldestLabTestVoidQueueItemDate();
+	}
+
+	/*
+	 * @see CommonLabTestService#saveLabTestReport(LabTest, InputStream, String)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.ADD_LAB_RESULT_PRIVILEGE)
+	@Transactional
+	public LabTestReport saveLabTestReport(LabTest labTest, InputStream in, String filename) throws APIException {
+		ReportFile reportFile;
+		try {
+			reportFile = FileSystemLabReportStore.fromGlobalProperties().store(in, filename);
+		}
+		catch (IOException e) {
+			throw new APIException("Unable to store report file " + filename, e);
+		}
+		return saveLabTestReport(labTest, reportFile, ReportFileWriter.getSafeFilename(filename));
+	}
+
+	/*
+	 * @see CommonLabTestService#moveLabTestReportToStore(LabTest)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.EDIT_LAB_RESULT_PRIVILEGE)
+	@Transactional
+	public LabTestReport moveLabTestReportToStore(LabTest labTest) throws APIException {
+		File file = new File(labTest.getFilePath());
+		if (!file.isFile()) {
+			return null;
+		}
+		ReportFile reportFile;
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				reportFile = FileSystemLabReportStore.fromGlobalProperties().withoutLimits().store(in, file.getName());
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException e) {
+			throw new APIException("Unable to move report file " + file + " to the store", e);
+		}
+		return saveLabTestReport(labTest, reportFile, file.getName());
+	}
+
+	private LabTestReport saveLabTestReport(LabTest labTest, ReportFile reportFile, String filename) {
+		LabTestReport labTestReport = new LabTestReport(labTest, reportFile.getSha256(), reportFile.getSize(), filename);
+		labTestReport.setCreator(Context.getAuthenticatedUser());
+		labTestReport.setDateCreated(new Date());
+		labTest.setFilePath(reportFile.getFile().getPath());
+		dao.saveLabTest(labTest);
+		return dao.saveLabTestReport(labTestReport);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestReport(LabTest)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_RESULT_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public LabTestReport getLabTestReport(LabTest labTest) throws APIException {
+		return dao.getLabTestReport(labTest);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestsWithUnstoredReports(Integer, int)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_RESULT_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public List<LabTest> getLabTestsWithUnstoredReports(Integer afterTestOrderId, int maxResults) throws APIException {
+		return dao.getLabTestsWithUnstoredReports(afterTestOrderId, maxResults);
+	}
+
+	/*
+	 * @see CommonLabTestService#getLabTestCountByFilePath(String)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.VIEW_LAB_RESULT_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public long getLabTestCountByFilePath(String filePath) throws APIException {
+		return dao.getLabTestCountByFilePath(filePath);
 	}
 
 	/**
@@ -917,15 +1712,9 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 	 */
 	private void handleLabTestTypeDependencies(LabTestType labTestType, LabTestType newObjectForCascade,
 	        String voidMessage) {
-		List<LabTest> labTests = getLabTests(labTestType, true);
-		if (labTests != null) {
-			for (LabTest labTest : labTests) {
-				// Set new LabTestType
-				labTest.setLabTestType(newObjectForCascade);
-				saveLabTest(labTest);
-				// Void with reason
-				voidLabTest(labTest, voidMessage);
-			}
+		int batchSize = getCascadeBatchSize();
+		while (moveLabTests(labTestType, newObjectForCascade, voidMessage, batchSize) > 0) {
+			// Keep moving until no test of this type is left
 		}
 		List<LabTestAttributeType> testAttributeTypes = getLabTestAttributeTypes(labTestType, true);
 		if (testAttributeTypes != null) {
@@ -938,4 +1727,32 @@ public class CommonLabTestServiceImpl extends BaseOpenmrsService implements Comm
 			}
 		}
 	}
+
+	/*
+	 * @see CommonLabTestService#getQueryStatistics()
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.EDIT_LAB_TEST_METADATA_PRIVILEGE)
+	@Transactional(readOnly = true)
+	public LabQueryStatistics getQueryStatistics() throws APIException {
+		return dao.getQueryStatistics();
+	}
+
+	/*
+	 * @see CommonLabTestService#setQueryStatisticsEnabled(boolean)
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.EDIT_LAB_TEST_METADATA_PRIVILEGE)
+	public void setQueryStatisticsEnabled(boolean enabled) throws APIException {
+		dao.setQueryStatisticsEnabled(enabled);
+	}
+
+	/*
+	 * @see CommonLabTestService#clearQueryStatistics()
+	 */
+	@Override
+	@Authorized(CommonLabTestConfig.EDIT_LAB_TEST_METADATA_PRIVILEGE)
+	public void clearQueryStatistics() throws APIException {
+		dao.clearQueryStatistics();
+	}
 }
@@ -0,0 +1,80 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.api.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmrs.module.commonlabtest.api.LabTestMetadata;
+import org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds the current {@link LabTestMetadata} snapshot. Readers get the snapshot without locking;
+ * a change in metadata bumps the version once its transaction completes, and the next reader builds
+ * a new snapshot while the old one stays valid for whoever still holds it.
+ */
+@Component
+public class LabTestMetadataRegistry {
+
+	@Autowired
+	private CommonLabTestDAO dao;
+
+	private final AtomicLong version = new AtomicLong();
+
+	private volatile LabTestMetadata snapshot;
+
+	/**
+	 * Must be called within a transaction, since the snapshot is read from the database when it is
+	 * out of date
+	 *
+	 * @return the current snapshot
+	 */
+	public LabTestMetadata getSnapshot() {
+		LabTestMetadata current = snapshot;
+		if (current != null && current.getVersion() == version.get()) {
+			return current;
+		}
+		return rebuild();
+	}
+
+	/**
+	 * Marks the snapshot out of date when the current transaction completes, or at once if there is
+	 * none. Callers change the metadata first and invalidate afterwards, so that no snapshot read
+	 * before the commit outlives it. A rolled back transaction also marks the snapshot out of date,
+	 * since a snapshot of its uncommitted changes may have been read within it
+	 */
+	public void invalidate() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					version.incrementAndGet();
+				}
+			});
+		} else {
+			version.incrementAndGet();
+		}
+	}
+
+	private synchronized LabTestMetadata rebuild() {
+		long currentVersion = version.get();
+		LabTestMetadata current = snapshot;
+		if (current != null && current.getVersion() == currentVersion) {
+			return current;
+		}
+		current = new LabTestMetadata(currentVersion, dao.getAllLabTestTypes(true), dao.getAllLabTestAttributeTypes(true));
+		snapshot = current;
+		return current;
+	}
+}
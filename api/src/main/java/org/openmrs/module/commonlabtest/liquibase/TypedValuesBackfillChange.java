@@ -0,0 +1,196 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.liquibase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import org.openmrs.module.commonlabtest.LabTestValueType;
+
+/**
+ * Fills the typed value columns of existing lab test attributes from their value references, the
+ * same way {@link org.openmrs.module.commonlabtest.api.dao.CommonLabTestDAO#saveLabTestAttribute}
+ * does for new ones. Attributes are read in batches by Id, so the change runs in constant memory
+ * regardless of the size of the table.
+ */
+public class TypedValuesBackfillChange implements CustomTaskChange {
+
+	private static final int BATCH_SIZE = 1000;
+
+	private static final String SELECT_ATTRIBUTES = "SELECT a.test_attribute_id, t.datatype, a.value_reference"
+	        + " FROM commonlabtest_attribute a"
+	        + " INNER JOIN commonlabtest_attribute_type t ON t.test_attribute_type_id = a.attribute_type_id"
+	        + " WHERE a.test_attribute_id > ? ORDER BY a.test_attribute_id";
+
+	private static final String UPDATE_ATTRIBUTE = "UPDATE commonlabtest_attribute"
+	        + " SET value_numeric = ?, value_datetime = ?, value_coded = ?, value_boolean = ?"
+	        + " WHERE test_attribute_id = ?";
+
+	private static final String SELECT_CONCEPT_ID = "SELECT concept_id FROM concept WHERE uuid = ?";
+
+	private int updatedCount;
+
+	/**
+	 * @see CustomTaskChange#execute(Database)
+	 */
+	@Override
+	public void execute(Database database) throws CustomChangeException {
+		Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+		Map<String, Integer> conceptIds = new HashMap<String, Integer>();
+		PreparedStatement select = null;
+		PreparedStatement update = null;
+		PreparedStatement selectConcept = null;
+		try {
+			select = connection.prepareStatement(SELECT_ATTRIBUTES);
+			select.setMaxRows(BATCH_SIZE);
+			update = connection.prepareStatement(UPDATE_ATTRIBUTE);
+			selectConcept = connection.prepareStatement(SELECT_CONCEPT_ID);
+			int lastId = 0;
+			int rows;
+			do {
+				rows = 0;
+				select.setInt(1, lastId);
+				ResultSet resultSet = select.executeQuery();
+				try {
+					while (resultSet.next() && rows < BATCH_SIZE) {
+						rows++;
+						lastId = resultSet.getInt(1);
+						LabTestValueType valueType = LabTestValueType.of(resultSet.getString(2));
+						if (valueType == LabTestValueType.TEXT) {
+							continue;
+						}
+						String valueReference = resultSet.getString(3);
+						Double valueNumeric = valueType == LabTestValueType.NUMERIC ? LabTestValueType
+						        .toNumeric(valueReference) : null;
+						Date valueDatetime = valueType == LabTestValueType.DATETIME ? LabTestValueType
+						        .toDatetime(valueReference) : null;
+						Integer valueCoded = valueType == LabTestValueType.CODED ? getConceptId(selectConcept,
+						    conceptIds, valueReference) : null;
+						Boolean valueBoolean = valueType == LabTestValueType.BOOLEAN ? LabTestValueType
+						        .toBoolean(valueReference) : null;
+						if (valueNumeric == null && valueDatetime == null && valueCoded == null && valueBoolean == null) {
+							continue;
+						}
+						setOrNull(update, 1, valueNumeric, Types.DOUBLE);
+						setOrNull(update, 2, valueDatetime == null ? null : new Timestamp(valueDatetime.getTime()),
+						    Types.TIMESTAMP);
+						setOrNull(update, 3, valueCoded, Types.INTEGER);
+						setOrNull(update, 4, valueBoolean, Types.BOOLEAN);
+						update.setInt(5, lastId);
+						update.addBatch();
+						updatedCount++;
+					}
+				}
+				finally {
+					resultSet.close();
+				}
+				update.executeBatch();
+			} while (rows == BATCH_SIZE);
+		}
+		catch (SQLException e) {
+			throw new CustomChangeException("Unable to fill typed values of lab test attributes", e);
+		}
+		finally {
+			close(select);
+			close(update);
+			close(selectConcept);
+		}
+	}
+
+	/**
+	 * @param valueReference concept Id or UUID
+	 * @return the concept Id, or null if there is no such concept
+	 */
+	private Integer getConceptId(PreparedStatement selectConcept, Map<String, Integer> conceptIds, String valueReference)
+	        throws SQLException {
+		Integer conceptId = LabTestValueType.toConceptId(valueReference);
+		if (conceptId != null || valueReference == null) {
+			return conceptId;
+		}
+		String uuid = valueReference.trim();
+		if (conceptIds.containsKey(uuid)) {
+			return conceptIds.get(uuid);
+		}
+		selectConcept.setString(1, uuid);
+		ResultSet resultSet = selectConcept.executeQuery();
+		try {
+			conceptId = resultSet.next() ? resultSet.getInt(1) : null;
+		}
+		finally {
+			resultSet.close();
+		}
+		conceptIds.put(uuid, conceptId);
+		return conceptId;
+	}
+
+	private void setOrNull(PreparedStatement statement, int index, Object value, int sqlType) throws SQLException {
+		if (value == null) {
+			statement.setNull(index, sqlType);
+		} else {
+			statement.setObject(index, value, sqlType);
+		}
+	}
+
+	private void close(PreparedStatement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			}
+			catch (SQLException e) {
+				// Nothing left to do with it
+			}
+		}
+	}
+
+	/**
+	 * @see liquibase.change.custom.CustomChange#getConfirmationMessage()
+	 */
+	@Override
+	public String getConfirmationMessage() {
+		return "Filled typed values of " + updatedCount + " lab test attributes";
+	}
+
+	/**
+	 * @see liquibase.change.custom.CustomChange#setUp()
+	 */
+	@Override
+	public void setUp() throws SetupException {
+	}
+
+	/**
+	 * @see liquibase.change.custom.CustomChange#setFileOpener(ResourceAccessor)
+	 */
+	@Override
+	public void setFileOpener(ResourceAccessor resourceAccessor) {
+	}
+
+	/**
+	 * @see liquibase.change.custom.CustomChange#validate(Database)
+	 */
+	@Override
+	public ValidationErrors validate(Database database) {
+		return null;
+	}
+}
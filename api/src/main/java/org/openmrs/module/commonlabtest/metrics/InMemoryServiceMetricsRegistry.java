@@ -0,0 +1,146 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the metrics of each method in memory, with counters which do not block concurrent calls.
+ * The number of labels is bounded: beyond {@link #MAX_METHODS} methods and
+ * {@link #MAX_EXCEPTIONS} exception classes per method, calls are recorded under
+ * {@link #OTHER}.
+ */
+public class InMemoryServiceMetricsRegistry implements ServiceMetricsRegistry {
+
+	public static final int MAX_METHODS = 500;
+
+	public static final int MAX_EXCEPTIONS = 10;
+
+	public static final String OTHER = "other";
+
+	private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<String, Recorder>();
+
+	/**
+	 * @see ServiceMetricsRegistry#record(String, long, int, String)
+	 */
+	@Override
+	public void record(String method, long durationNanos, int rows, String exception) {
+		getRecorder(method).record(durationNanos, rows, exception);
+	}
+
+	/**
+	 * @see ServiceMetricsRegistry#getMethodMetrics()
+	 */
+	@Override
+	public List<MethodMetrics> getMethodMetrics() {
+		List<MethodMetrics> methodMetrics = new ArrayList<MethodMetrics>();
+		for (Map.Entry<String, Recorder> entry : new TreeMap<String, Recorder>(recorders).entrySet()) {
+			methodMetrics.add(entry.getValue().snapshot(entry.getKey()));
+		}
+		return methodMetrics;
+	}
+
+	/**
+	 * @see ServiceMetricsRegistry#clear()
+	 */
+	@Override
+	public void clear() {
+		recorders.clear();
+	}
+
+	private Recorder getRecorder(String method) {
+		Recorder recorder = recorders.get(method);
+		if (recorder == null) {
+			if (recorders.size() >= MAX_METHODS) {
+				method = OTHER;
+			}
+			Recorder newRecorder = new Recorder();
+			recorder = recorders.putIfAbsent(method, newRecorder);
+			if (recorder == null) {
+				recorder = newRecorder;
+			}
+		}
+		return recorder;
+	}
+
+	private static class Recorder {
+
+		private final LongAdder calls = new LongAdder();
+
+		private final LongAdder rows = new LongAdder();
+
+		private final LongAdder latencySum = new LongAdder();
+
+		private final AtomicLong latencyMax = new AtomicLong();
+
+		private final AtomicLongArray latencyBuckets = new AtomicLongArray(MethodMetrics.LATENCY_BUCKETS.length);
+
+		private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+		void record(long durationNanos, int rowCount, String exception) {
+			calls.increment();
+			if (rowCount > 0) {
+				rows.add(rowCount);
+			}
+			latencySum.add(durationNanos);
+			long max = latencyMax.get();
+			while (durationNanos > max && !latencyMax.compareAndSet(max, durationNanos)) {
+				max = latencyMax.get();
+			}
+			double seconds = durationNanos / 1e9;
+			int bucket = 0;
+			while (seconds > MethodMetrics.LATENCY_BUCKETS[bucket]) {
+				bucket++;
+			}
+			latencyBuckets.incrementAndGet(bucket);
+			if (exception != null) {
+				getErrorCounter(exception).incrementAndGet();
+			}
+		}
+
+		private AtomicLong getErrorCounter(String exception) {
+			AtomicLong counter = errors.get(exception);
+			if (counter == null) {
+				if (errors.size() >= MAX_EXCEPTIONS) {
+					exception = OTHER;
+				}
+				AtomicLong newCounter = new AtomicLong();
+				counter = errors.putIfAbsent(exception, newCounter);
+				if (counter == null) {
+					counter = newCounter;
+				}
+			}
+			return counter;
+		}
+
+		MethodMetrics snapshot(String method) {
+			long[] buckets = new long[latencyBuckets.length()];
+			long cumulative = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				cumulative += latencyBuckets.get(i);
+				buckets[i] = cumulative;
+			}
+			Map<String, Long> errorCounts = new TreeMap<String, Long>();
+			for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+				errorCounts.put(entry.getKey(), entry.getValue().get());
+			}
+			return new MethodMetrics(method, calls.sum(), errorCounts, rows.sum(), latencySum.sum(), latencyMax.get(),
+			        buckets);
+		}
+	}
+}
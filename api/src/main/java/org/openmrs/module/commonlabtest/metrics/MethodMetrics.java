@@ -0,0 +1,99 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the metrics of a service method
+ */
+public class MethodMetrics {
+
+	/**
+	 * Upper bounds in seconds of the latency histogram buckets, the last one being unbounded
+	 */
+	public static final double[] LATENCY_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5,
+	        10, Double.POSITIVE_INFINITY };
+
+	private final String method;
+
+	private final long calls;
+
+	private final Map<String, Long> errors;
+
+	private final long rows;
+
+	private final long latencySumNanos;
+
+	private final long latencyMaxNanos;
+
+	private final long[] latencyBuckets;
+
+	/**
+	 * @param latencyBuckets number of calls which took at most each of {@link #LATENCY_BUCKETS}
+	 *            (cumulative)
+	 */
+	public MethodMetrics(String method, long calls, Map<String, Long> errors, long rows, long latencySumNanos,
+	    long latencyMaxNanos, long[] latencyBuckets) {
+		this.method = method;
+		this.calls = calls;
+		this.errors = errors;
+		this.rows = rows;
+		this.latencySumNanos = latencySumNanos;
+		this.latencyMaxNanos = latencyMaxNanos;
+		this.latencyBuckets = latencyBuckets;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * @return number of calls which failed, by simple class name of the exception
+	 */
+	public Map<String, Long> getErrors() {
+		return errors;
+	}
+
+	public long getErrorCount() {
+		long count = 0;
+		for (Long errorCount : errors.values()) {
+			count += errorCount;
+		}
+		return count;
+	}
+
+	/**
+	 * @return total number of objects returned by the calls
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	public long getLatencySumNanos() {
+		return latencySumNanos;
+	}
+
+	public long getLatencyMaxNanos() {
+		return latencyMaxNanos;
+	}
+
+	/**
+	 * @return number of calls which took at most each of {@link #LATENCY_BUCKETS}, cumulative as in a
+	 *         Prometheus histogram
+	 */
+	public long[] getLatencyBuckets() {
+		return latencyBuckets;
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes a {@link ServiceMetricsRegistry} over JMX; moduleApplicationContext.xml registers it
+ * under {@link #OBJECT_NAME}
+ */
+public class ServiceMetrics implements ServiceMetricsMXBean {
+
+	public static final String OBJECT_NAME = "org.openmrs.module.commonlabtest:type=ServiceMetrics";
+
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final ServiceMetricsRegistry registry;
+
+	public ServiceMetrics(ServiceMetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public Map<String, Long> getCallCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (MethodMetrics methodMetrics : registry.getMethodMetrics()) {
+			counts.put(methodMetrics.getMethod(), methodMetrics.getCalls());
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getErrorCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (MethodMetrics methodMetrics : registry.getMethodMetrics()) {
+			counts.put(methodMetrics.getMethod(), methodMetrics.getErrorCount());
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getRowCounts() {
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (MethodMetrics methodMetrics : registry.getMethodMetrics()) {
+			counts.put(methodMetrics.getMethod(), methodMetrics.getRows());
+		}
+		return counts;
+	}
+
+	@Override
+	public Map<String, Double> getMeanLatencyMillis() {
+		Map<String, Double> latencies = new LinkedHashMap<String, Double>();
+		for (MethodMetrics methodMetrics : registry.getMethodMetrics()) {
+			latencies.put(methodMetrics.getMethod(), methodMetrics.getCalls() == 0 ? 0
+			        : methodMetrics.getLatencySumNanos() / NANOS_PER_MILLI / methodMetrics.getCalls());
+		}
+		return latencies;
+	}
+
+	@Override
+	public Map<String, Double> getMaxLatencyMillis() {
+		Map<String, Double> latencies = new LinkedHashMap<String, Double>();
+		for (MethodMetrics methodMetrics : registry.getMethodMetrics()) {
+			latencies.put(methodMetrics.getMethod(), methodMetrics.getLatencyMaxNanos() / NANOS_PER_MILLI);
+		}
+		return latencies;
+	}
+
+	@Override
+	public void reset() {
+		registry.clear();
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openmrs.module.commonlabtest.api.KeysetPage;
+
+/**
+ * Measures every call of a {@link org.openmrs.module.commonlabtest.api.CommonLabTestService}
+ * method: how long it takes, how many objects it returns and which exception it throws, if any. It
+ * is the outermost interceptor of the service proxy in moduleApplicationContext.xml, so the time
+ * includes the authorization checks and the commit of the transaction.
+ */
+public class ServiceMetricsInterceptor implements MethodInterceptor {
+
+	private final ServiceMetricsRegistry registry;
+
+	private final ConcurrentMap<Method, String> methodLabels = new ConcurrentHashMap<Method, String>();
+
+	public ServiceMetricsInterceptor(ServiceMetricsRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * @see MethodInterceptor#invoke(MethodInvocation)
+	 */
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		long start = System.nanoTime();
+		try {
+			Object result = invocation.proceed();
+			registry.record(getMethodLabel(invocation.getMethod()), System.nanoTime() - start, countRows(
+			    invocation.getMethod(), result), null);
+			return result;
+		}
+		catch (Throwable e) {
+			registry.record(getMethodLabel(invocation.getMethod()), System.nanoTime() - start, -1, e.getClass()
+			        .getSimpleName());
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the method name with the simple names of its parameter types, e.g.
+	 *         getLabTests(Patient,boolean), which tells overloads apart while keeping the number of
+	 *         labels that of the methods of the service
+	 */
+	String getMethodLabel(Method method) {
+		String label = methodLabels.get(method);
+		if (label == null) {
+			StringBuilder builder = new StringBuilder(method.getName()).append('(');
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			for (int i = 0; i < parameterTypes.length; i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				builder.append(parameterTypes[i].getSimpleName());
+			}
+			label = builder.append(')').toString();
+			methodLabels.putIfAbsent(method, label);
+		}
+		return label;
+	}
+
+	/**
+	 * @return number of objects returned, or -1 if the method returns a count or nothing at all
+	 */
+	int countRows(Method method, Object result) {
+		Class<?> returnType = method.getReturnType();
+		if (returnType == Void.TYPE || returnType.isPrimitive() || Number.class.isAssignableFrom(returnType)
+		        || Boolean.class == returnType || String.class == returnType) {
+			return -1;
+		}
+		if (result == null) {
+			return 0;
+		} else if (result instanceof Collection) {
+			return ((Collection<?>) result).size();
+		} else if (result instanceof Map) {
+			return ((Map<?, ?>) result).size();
+		} else if (result instanceof KeysetPage) {
+			return ((KeysetPage<?>) result).getResults().size();
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the service metrics, registered as
+ * {@value org.openmrs.module.commonlabtest.metrics.ServiceMetrics#OBJECT_NAME}. Each attribute is a
+ * table by method label.
+ */
+public interface ServiceMetricsMXBean {
+
+	Map<String, Long> getCallCounts();
+
+	Map<String, Long> getErrorCounts();
+
+	Map<String, Long> getRowCounts();
+
+	Map<String, Double> getMeanLatencyMillis();
+
+	Map<String, Double> getMaxLatencyMillis();
+
+	/**
+	 * Discards the metrics recorded so far
+	 */
+	void reset();
+}
@@ -0,0 +1,42 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.List;
+
+/**
+ * Receives the measurements of {@link ServiceMetricsInterceptor} for every call of a
+ * {@link org.openmrs.module.commonlabtest.api.CommonLabTestService} method. The default,
+ * {@link InMemoryServiceMetricsRegistry}, keeps them for the JMX and Prometheus endpoints of the
+ * module; another implementation, e.g. one forwarding to a metrics library, can be plugged in by
+ * defining the commonLabTestMetricsRegistry bean in its place.
+ */
+public interface ServiceMetricsRegistry {
+
+	/**
+	 * Records a call
+	 *
+	 * @param method label of the method, see {@link ServiceMetricsInterceptor#getMethodLabel}
+	 * @param durationNanos time taken by the call
+	 * @param rows number of objects returned, or -1 if the method does not return objects
+	 * @param exception simple class name of the exception thrown, null if the call succeeded
+	 */
+	void record(String method, long durationNanos, int rows, String exception);
+
+	/**
+	 * @return metrics of each method called since the registry was created or cleared, by method label
+	 */
+	List<MethodMetrics> getMethodMetrics();
+
+	/**
+	 * Discards the metrics recorded so far
+	 */
+	void clear();
+}
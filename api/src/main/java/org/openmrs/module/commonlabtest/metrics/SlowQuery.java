@@ -0,0 +1,83 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.util.Date;
+
+/**
+ * A query of the lab test DAO which took longer than the slow query threshold
+ */
+public class SlowQuery {
+
+	private final Date time;
+
+	private final long durationMillis;
+
+	private final String query;
+
+	private final String parameters;
+
+	private final String exception;
+
+	public SlowQuery(Date time, long durationMillis, String query, String parameters, String exception) {
+		this.time = time;
+		this.durationMillis = durationMillis;
+		this.query = query;
+		this.parameters = parameters;
+		this.exception = exception;
+	}
+
+	/**
+	 * @return when the query completed
+	 */
+	public Date getTime() {
+		return time;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return the HQL of a query, or the entity and restrictions of a criteria. Without the
+	 *         restriction values, a criteria is described by its entity and the method which ran it
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the bind parameters of an HQL query, e.g. {voided=false, testOrderIds=[1, 2, 3]}, or
+	 *         null if the values of queries are not recorded
+	 */
+	public String getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return simple class name of the exception thrown by the query, or null if it succeeded
+	 */
+	public String getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(durationMillis).append(" ms: ").append(query);
+		if (parameters != null) {
+			builder.append(' ').append(parameters);
+		}
+		if (exception != null) {
+			builder.append(" threw ").append(exception);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,316 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.Criteria;
+import org.hibernate.Query;
+import org.hibernate.internal.CriteriaImpl;
+import org.openmrs.GlobalProperty;
+import org.openmrs.api.GlobalPropertyListener;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs the queries of the lab test DAO which take longer than
+ * {@value org.openmrs.module.commonlabtest.CommonLabTestActivator#SLOW_QUERY_THRESHOLD}
+ * milliseconds, and keeps the last {@link #MAX_RECENT_QUERIES} of them for the statistics page. A
+ * threshold of 0 logs every query, e.g. to spot a query issued once per lab test; a negative one
+ * turns the logger off. The activator registers it as a listener of the global properties, so that
+ * they are not read for each query.
+ * <p>
+ * The values a query ran with may be patient data, so they are only kept when
+ * {@value org.openmrs.module.commonlabtest.CommonLabTestActivator#SLOW_QUERY_PARAMETERS} is true:
+ * the bind parameters of an HQL query, and the restrictions of a criteria, which has no parameters of
+ * its own and is described by its {@code toString()}. Otherwise an HQL query is kept without its
+ * parameters, and a criteria as its entity and the method which ran it.
+ */
+@Component("commonlabtest.SlowQueryLogger")
+public class SlowQueryLogger implements GlobalPropertyListener {
+
+	public static final int MAX_RECENT_QUERIES = 100;
+
+	/**
+	 * Elements of a collection parameter shown, e.g. of the IN list of a batch of lab test Ids
+	 */
+	private static final int MAX_LOGGED_ELEMENTS = 10;
+
+	private static final Set<String> EXECUTION_METHODS = new HashSet<String>(Arrays.asList("list", "uniqueResult",
+	    "scroll", "iterate", "executeUpdate"));
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private volatile long thresholdMillis = CommonLabTestActivator.DEFAULT_SLOW_QUERY_THRESHOLD;
+
+	private volatile boolean recordParameters;
+
+	private final LinkedList<SlowQuery> recentQueries = new LinkedList<SlowQuery>();
+
+	/**
+	 * @return given criteria, timed unless the logger is off
+	 */
+	public Criteria wrap(Criteria criteria) {
+		if (thresholdMillis < 0) {
+			return criteria;
+		}
+		return (Criteria) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Criteria.class },
+		    new TimingHandler(criteria, false));
+	}
+
+	/**
+	 * @return given HQL query, timed unless the logger is off
+	 */
+	public Query wrap(Query query) {
+		if (thresholdMillis < 0) {
+			return query;
+		}
+		return (Query) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Query.class },
+		    new TimingHandler(query, true));
+	}
+
+	public long getThresholdMillis() {
+		return thresholdMillis;
+	}
+
+	public void setThresholdMillis(long thresholdMillis) {
+		this.thresholdMillis = thresholdMillis;
+	}
+
+	public boolean isRecordParameters() {
+		return recordParameters;
+	}
+
+	public void setRecordParameters(boolean recordParameters) {
+		this.recordParameters = recordParameters;
+	}
+
+	/**
+	 * Sets the threshold from the value of the global property, or to the default if it is not a
+	 * number
+	 */
+	public void configure(String value) {
+		long threshold = CommonLabTestActivator.DEFAULT_SLOW_QUERY_THRESHOLD;
+		if (StringUtils.isNotBlank(value)) {
+			try {
+				threshold = Long.parseLong(value.trim());
+			}
+			catch (NumberFormatException e) {
+				log.warn("Invalid value of " + CommonLabTestActivator.SLOW_QUERY_THRESHOLD + ": " + value);
+			}
+		}
+		setThresholdMillis(threshold);
+	}
+
+	/**
+	 * @return the slow queries recorded since the start or the last {@link #clear()}, latest first
+	 */
+	public List<SlowQuery> getRecentQueries() {
+		synchronized (recentQueries) {
+			return new ArrayList<SlowQuery>(recentQueries);
+		}
+	}
+
+	public void clear() {
+		synchronized (recentQueries) {
+			recentQueries.clear();
+		}
+	}
+
+	/**
+	 * @see GlobalPropertyListener#supportsPropertyName(String)
+	 */
+	@Override
+	public boolean supportsPropertyName(String propertyName) {
+		return CommonLabTestActivator.SLOW_QUERY_THRESHOLD.equals(propertyName)
+		        || CommonLabTestActivator.SLOW_QUERY_PARAMETERS.equals(propertyName);
+	}
+
+	/**
+	 * @see GlobalPropertyListener#globalPropertyChanged(GlobalProperty)
+	 */
+	@Override
+	public void globalPropertyChanged(GlobalProperty newValue) {
+		if (CommonLabTestActivator.SLOW_QUERY_PARAMETERS.equals(newValue.getProperty())) {
+			setRecordParameters(Boolean.parseBoolean(newValue.getPropertyValue()));
+		} else {
+			configure(newValue.getPropertyValue());
+		}
+	}
+
+	/**
+	 * @see GlobalPropertyListener#globalPropertyDeleted(String)
+	 */
+	@Override
+	public void globalPropertyDeleted(String propertyName) {
+		if (CommonLabTestActivator.SLOW_QUERY_PARAMETERS.equals(propertyName)) {
+			setRecordParameters(false);
+		} else {
+			setThresholdMillis(CommonLabTestActivator.DEFAULT_SLOW_QUERY_THRESHOLD);
+		}
+	}
+
+	void record(long durationNanos, String query, Map<String, Object> parameters, Throwable exception) {
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+		long threshold = thresholdMillis;
+		if (threshold < 0 || durationMillis < threshold) {
+			return;
+		}
+		SlowQuery slowQuery = new SlowQuery(new Date(), durationMillis, query,
+		        recordParameters ? formatParameters(parameters) : null,
+		        exception == null ? null : exception.getClass().getSimpleName());
+		log.warn("Slow query, " + slowQuery);
+		synchronized (recentQueries) {
+			recentQueries.addFirst(slowQuery);
+			if (recentQueries.size() > MAX_RECENT_QUERIES) {
+				recentQueries.removeLast();
+			}
+		}
+	}
+
+	private String formatParameters(Map<String, Object> parameters) {
+		if (parameters == null || parameters.isEmpty()) {
+			return null;
+		}
+		StringBuilder builder = new StringBuilder("{");
+		for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+			if (builder.length() > 1) {
+				builder.append(", ");
+			}
+			builder.append(parameter.getKey()).append('=');
+			Object value = parameter.getValue();
+			if (value instanceof Collection) {
+				formatCollection(builder, (Collection<?>) value);
+			} else if (value instanceof Object[]) {
+				formatCollection(builder, Arrays.asList((Object[]) value));
+			} else {
+				builder.append(value);
+			}
+		}
+		return builder.append('}').toString();
+	}
+
+	private void formatCollection(StringBuilder builder, Collection<?> values) {
+		builder.append('[');
+		Iterator<?> iterator = values.iterator();
+		for (int i = 0; i < MAX_LOGGED_ELEMENTS && iterator.hasNext(); i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(iterator.next());
+		}
+		if (iterator.hasNext()) {
+			builder.append(", ... ").append(values.size()).append(" values");
+		}
+		builder.append(']');
+	}
+
+	/**
+	 * Forwards calls to a criteria or query, remembers the parameters bound to an HQL query and times
+	 * the methods which run it. Methods returning the target itself, as the builder methods do, return the
+	 * proxy instead, so that a chain of calls is timed too.
+	 */
+	private class TimingHandler implements InvocationHandler {
+
+		private final Object target;
+
+		private final Map<String, Object> parameters;
+
+		TimingHandler(Object target, boolean query) {
+			this.target = target;
+			this.parameters = query ? new LinkedHashMap<String, Object>() : null;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (parameters != null && isBind(name, args)) {
+				parameters.put(String.valueOf(args[0]), args[1]);
+			}
+			if (!EXECUTION_METHODS.contains(name)) {
+				Object result = invokeTarget(method, args);
+				return result == target ? proxy : result;
+			}
+			long start = System.nanoTime();
+			Throwable exception = null;
+			try {
+				return invokeTarget(method, args);
+			}
+			catch (Throwable e) {
+				exception = e;
+				throw e;
+			}
+			finally {
+				record(System.nanoTime() - start, describe(), parameters, exception);
+			}
+		}
+
+		private Object invokeTarget(Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		/**
+		 * setParameter, setParameterList, setString, setTimestamp etc. take the name or position of
+		 * the parameter, then its value
+		 */
+		private boolean isBind(String name, Object[] args) {
+			return name.startsWith("set") && !"setLockMode".equals(name) && args != null && args.length >= 2
+			        && (args[0] instanceof String || args[0] instanceof Integer);
+		}
+
+		private String describe() {
+			if (parameters != null) {
+				return ((Query) target).getQueryString();
+			}
+			if (recordParameters || !(target instanceof CriteriaImpl)) {
+				return target.toString();
+			}
+			return "Criteria on " + ((CriteriaImpl) target).getEntityOrClassName() + getCaller();
+		}
+
+		/**
+		 * @return the module method which ran the query, e.g. of the DAO, or an empty string
+		 */
+		private String getCaller() {
+			String metricsPackage = SlowQueryLogger.class.getPackage().getName();
+			for (StackTraceElement element : new Throwable().getStackTrace()) {
+				if (element.getClassName().startsWith("org.openmrs.module.commonlabtest.")
+				        && !element.getClassName().startsWith(metricsPackage)) {
+					return " from " + element.getClassName().substring(element.getClassName().lastIndexOf('.') + 1)
+					        + "." + element.getMethodName();
+				}
+			}
+			return "";
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.openmrs.api.APIException;
+
+/**
+ * Keeps each file at {@code <root>/ab/cd/abcd...}, named by the SHA-256 digest of its content and
+ * sharded by the first two bytes of the digest, so that no directory holds more than a small share
+ * of the files. Content is written to a temporary file in the root first and moved into place only
+ * if the store does not have it yet.
+ */
+public class FileSystemLabReportStore implements LabReportStore {
+
+	/**
+	 * Name of the directory within {@link org.openmrs.module.commonlabtest.CommonLabTestActivator#UPLOAD_FILE_DIRECTORY}
+	 * holding the store
+	 */
+	public static final String STORE_DIRECTORY = "store";
+
+	private final File root;
+
+	private final ReportFileWriter writer;
+
+	/**
+	 * @param writer writer whose directory is the root of the store
+	 */
+	public FileSystemLabReportStore(ReportFileWriter writer) {
+		this.root = writer.getDirectory();
+		this.writer = writer;
+	}
+
+	/**
+	 * @return the store within the upload directory, with the extension and size limits set by the
+	 *         global properties
+	 */
+	public static FileSystemLabReportStore fromGlobalProperties() {
+		ReportFileWriter uploadWriter = ReportFileWriter.fromGlobalProperties();
+		return new FileSystemLabReportStore(uploadWriter.withDirectory(new File(uploadWriter.getDirectory(),
+		        STORE_DIRECTORY)));
+	}
+
+	/**
+	 * @return a store with the same root, accepting files of any type and size, e.g. to take over
+	 *         files uploaded before the limits were set
+	 */
+	public FileSystemLabReportStore withoutLimits() {
+		return new FileSystemLabReportStore(new ReportFileWriter(root, Collections.<String> emptySet(), 0));
+	}
+
+	/**
+	 * @see LabReportStore#store(InputStream, String)
+	 */
+	@Override
+	public ReportFile store(InputStream in, String filename) throws IOException {
+		writer.checkFilename(filename);
+		ReportFileWriter.TempFile temp = writer.writeTemp(in);
+		try {
+			File file = getFile(temp.getSha256());
+			if (!file.exists()) {
+				Files.createDirectories(file.getParentFile().toPath());
+				// Another upload of the same content may win the race, which leaves the same file
+				ReportFileWriter.moveAtomically(temp.getPath(), file.toPath());
+			}
+			return new ReportFile(file, temp.getSha256(), temp.getSize());
+		}
+		finally {
+			Files.deleteIfExists(temp.getPath());
+		}
+	}
+
+	/**
+	 * @see LabReportStore#getFile(String)
+	 */
+	@Override
+	public File getFile(String sha256) {
+		if (sha256 == null || !sha256.matches("[0-9a-f]{64}")) {
+			throw new APIException("Invalid SHA-256 digest: " + sha256);
+		}
+		return new File(new File(new File(root, sha256.substring(0, 2)), sha256.substring(2, 4)), sha256);
+	}
+
+	/**
+	 * @see LabReportStore#contains(File)
+	 */
+	@Override
+	public boolean contains(File file) {
+		Path path = file.toPath().toAbsolutePath().normalize();
+		return path.startsWith(root.toPath().toAbsolutePath().normalize());
+	}
+
+	public File getRoot() {
+		return root;
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stores lab report files by the SHA-256 digest of their content. Storing the same content twice
+ * keeps a single file, and files are never overwritten by others of the same name.
+ */
+public interface LabReportStore {
+
+	/**
+	 * Stores the content, unless the store has it already
+	 *
+	 * @param in content of the file; not closed
+	 * @param filename name the file was uploaded with, used to check its type
+	 * @return the stored file
+	 * @throws org.openmrs.api.APIException if the file type is not allowed or the file is too large
+	 * @throws IOException if the file cannot be written
+	 */
+	ReportFile store(InputStream in, String filename) throws IOException;
+
+	/**
+	 * @param sha256 digest of the content, in lower case hex
+	 * @return the file with the given content, which does not exist if the content was never stored
+	 */
+	File getFile(String sha256);
+
+	/**
+	 * @param file any file
+	 * @return true if the file is within this store
+	 */
+	boolean contains(File file);
+}
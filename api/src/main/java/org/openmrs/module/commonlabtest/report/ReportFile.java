@@ -0,0 +1,54 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import java.io.File;
+
+/**
+ * A report file written by {@link ReportFileWriter}, with the digest and size computed while it
+ * was written
+ */
+public final class ReportFile {
+
+	private final File file;
+
+	private final String sha256;
+
+	private final long size;
+
+	public ReportFile(File file, String sha256, long size) {
+		this.file = file;
+		this.sha256 = sha256;
+		this.size = size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return SHA-256 digest of the content, in lower case hex
+	 */
+	public String getSha256() {
+		return sha256;
+	}
+
+	/**
+	 * @return size of the content in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return file.getName() + " (" + size + " bytes, sha256 " + sha256 + ")";
+	}
+}
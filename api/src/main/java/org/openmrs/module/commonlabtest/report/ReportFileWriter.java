@@ -0,0 +1,285 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
+
+/**
+ * Writes uploaded report files to disk in a single pass over the upload stream, which computes the
+ * SHA-256 digest and enforces the size limit on the way. Content goes to a temporary file in the
+ * target directory first and is moved in place atomically once complete, so a failed or rejected
+ * upload never leaves a partial file under the final name.
+ */
+public class ReportFileWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static volatile ExtensionList extensionList = new ExtensionList(null, Collections.<String> emptySet());
+
+	private final File directory;
+
+	private final Set<String> allowedExtensions;
+
+	private final long maxFileSize;
+
+	/**
+	 * @param directory where to write files
+	 * @param allowedExtensions lower case extensions, including the dot; any extension is allowed if
+	 *            empty
+	 * @param maxFileSize maximum size of a file in bytes, or 0 for no limit
+	 */
+	public ReportFileWriter(File directory, Set<String> allowedExtensions, long maxFileSize) {
+		this.directory = directory;
+		this.allowedExtensions = allowedExtensions;
+		this.maxFileSize = maxFileSize;
+	}
+
+	/**
+	 * @return a writer configured by the {@link CommonLabTestActivator#UPLOAD_FILE_DIRECTORY},
+	 *         {@link CommonLabTestActivator#UPLOAD_FILE_EXTENSIONS} and
+	 *         {@link CommonLabTestActivator#MAX_UPLOAD_FILE_SIZE} global properties
+	 */
+	public static ReportFileWriter fromGlobalProperties() {
+		String directory = Context.getAdministrationService().getGlobalProperty(
+		    CommonLabTestActivator.UPLOAD_FILE_DIRECTORY);
+		if (StringUtils.isBlank(directory)) {
+			throw new APIException("Global property " + CommonLabTestActivator.UPLOAD_FILE_DIRECTORY + " is not set");
+		}
+		Long maxFileSize = Context.getAdministrationService().getGlobalPropertyValue(
+		    CommonLabTestActivator.MAX_UPLOAD_FILE_SIZE, CommonLabTestActivator.DEFAULT_MAX_UPLOAD_FILE_SIZE);
+		return new ReportFileWriter(new File(directory), getAllowedExtensions(), Math.max(0, maxFileSize));
+	}
+
+	/**
+	 * @return extensions in the {@link CommonLabTestActivator#UPLOAD_FILE_EXTENSIONS} global
+	 *         property, parsed again only when the property changes
+	 */
+	public static Set<String> getAllowedExtensions() {
+		String value = Context.getAdministrationService().getGlobalProperty(
+		    CommonLabTestActivator.UPLOAD_FILE_EXTENSIONS);
+		ExtensionList current = extensionList;
+		if (!StringUtils.equals(value, current.value)) {
+			current = new ExtensionList(value, parseExtensions(value));
+			extensionList = current;
+		}
+		return current.extensions;
+	}
+
+	/**
+	 * @param extensions comma separated extensions, e.g. ".pdf, .JPG"
+	 * @return the extensions in lower case, each starting with a dot
+	 */
+	public static Set<String> parseExtensions(String extensions) {
+		Set<String> parsed = new HashSet<String>();
+		if (extensions != null) {
+			for (String extension : extensions.split(",")) {
+				extension = extension.trim().toLowerCase(Locale.ENGLISH);
+				if (!extension.isEmpty()) {
+					parsed.add(extension.startsWith(".") ? extension : "." + extension);
+				}
+			}
+		}
+		return Collections.unmodifiableSet(parsed);
+	}
+
+	/**
+	 * @param filename name of the uploaded file, as sent by the client
+	 * @return the name without any path, with spaces replaced by dashes
+	 */
+	public static String getSafeFilename(String filename) {
+		String name = filename == null ? "" : filename;
+		name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+		return name.trim().replace(" ", "-");
+	}
+
+	/**
+	 * @return lower case extension of the file name including the dot, or an empty string if it has
+	 *         none
+	 */
+	public static String getExtension(String filename) {
+		int dot = filename.lastIndexOf('.');
+		return dot == -1 ? "" : filename.substring(dot).toLowerCase(Locale.ENGLISH);
+	}
+
+	public boolean isAllowed(String filename) {
+		return allowedExtensions.isEmpty() || allowedExtensions.contains(getExtension(filename));
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return a writer with the same limits, writing to another directory
+	 */
+	public ReportFileWriter withDirectory(File directory) {
+		return new ReportFileWriter(directory, allowedExtensions, maxFileSize);
+	}
+
+	/**
+	 * Writes the content to a file of the given name in the directory, replacing any file of that name
+	 *
+	 * @param in content of the file; not closed
+	 * @param filename name of the uploaded file, as sent by the client
+	 * @return the written file
+	 * @throws APIException if the file type is not allowed or the file is too large
+	 * @throws IOException if the file cannot be written
+	 */
+	public ReportFile write(InputStream in, String filename) throws IOException {
+		String name = checkFilename(filename);
+		TempFile temp = writeTemp(in);
+		try {
+			Path target = directory.toPath().resolve(name);
+			moveAtomically(temp.getPath(), target);
+			return new ReportFile(target.toFile(), temp.getSha256(), temp.getSize());
+		}
+		finally {
+			Files.deleteIfExists(temp.getPath());
+		}
+	}
+
+	/**
+	 * @param filename name of the uploaded file, as sent by the client
+	 * @return the name to save the file with
+	 * @throws APIException if the name is invalid or the file type is not allowed
+	 */
+	String checkFilename(String filename) {
+		String name = getSafeFilename(filename);
+		if (name.isEmpty() || name.equals(".") || name.equals("..")) {
+			throw new APIException("Invalid file name: " + filename);
+		}
+		if (!isAllowed(name)) {
+			throw new APIException("File type " + getExtension(name) + " is not allowed");
+		}
+		return name;
+	}
+
+	/**
+	 * Copies the content into a new temporary file in the directory, computing its digest and size
+	 *
+	 * @return the temporary file, which the caller must move or delete
+	 */
+	TempFile writeTemp(InputStream in) throws IOException {
+		Files.createDirectories(directory.toPath());
+		Path path = Files.createTempFile(directory.toPath(), ".upload-", ".tmp");
+		boolean written = false;
+		try {
+			MessageDigest digest = newSha256();
+			long size = 0;
+			OutputStream out = Files.newOutputStream(path);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					size += read;
+					if (maxFileSize > 0 && size > maxFileSize) {
+						throw new APIException("File is larger than the maximum of " + maxFileSize + " bytes");
+					}
+					digest.update(buffer, 0, read);
+					out.write(buffer, 0, read);
+				}
+			}
+			finally {
+				out.close();
+			}
+			written = true;
+			return new TempFile(path, Hex.encodeHexString(digest.digest()), size);
+		}
+		finally {
+			if (!written) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/**
+	 * Moves the file in one step where the file system supports it, so that readers see either the old
+	 * or the new file
+	 */
+	static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static MessageDigest newSha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * A completely written temporary file with its digest and size
+	 */
+	static final class TempFile {
+
+		private final Path path;
+
+		private final String sha256;
+
+		private final long size;
+
+		TempFile(Path path, String sha256, long size) {
+			this.path = path;
+			this.sha256 = sha256;
+			this.size = size;
+		}
+
+		Path getPath() {
+			return path;
+		}
+
+		String getSha256() {
+			return sha256;
+		}
+
+		long getSize() {
+			return size;
+		}
+	}
+
+	private static final class ExtensionList {
+
+		private final String value;
+
+		private final Set<String> extensions;
+
+		private ExtensionList(String value, Set<String> extensions) {
+			this.value = value;
+			this.extensions = extensions;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.task;
+
+import org.apache.commons.lang.math.NumberUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
+import org.openmrs.module.commonlabtest.LabTestAttributeType;
+import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.scheduler.TaskDefinition;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Deletes a {@link LabTestType} or a {@link LabTestAttributeType} which has too many dependent
+ * objects to be deleted in one request. The dependent objects are processed in batches, each in its
+ * own transaction, and the progress is saved in the properties of the task, so a run which was
+ * stopped or failed carries on from where it left when the task is started again.
+ * <p>
+ * To use it, add a task in Scheduler administration with this class and either of these properties:
+ * <ul>
+ * <li>{@value #LAB_TEST_TYPE_UUID}, and optionally {@value #NEW_LAB_TEST_TYPE_UUID}; the tests are
+ * voided and moved to the new type, or the Unknown type if none is given</li>
+ * <li>{@value #LAB_TEST_ATTRIBUTE_TYPE_UUID}; the attributes of the type are deleted</li>
+ * </ul>
+ * Property {@value #BATCH_SIZE} optionally sets the number of objects per transaction. The task sets
+ * {@value #PROCESSED} to the number of objects processed so far, and {@value #STATUS} to
+ * {@value #COMPLETED} once the type is deleted.
+ * <p>
+ * {@link CommonLabTestService#deleteLabTestType(LabTestType, LabTestType)} and
+ * {@link CommonLabTestService#deleteLabTestAttributeType(LabTestAttributeType, boolean)} add and start
+ * such a task themselves when the dependent objects do not fit in one batch.
+ */
+public class DeleteLabTestMetadataTask extends AbstractTask {
+
+	private static final Log log = LogFactory.getLog(DeleteLabTestMetadataTask.class);
+
+	public static final String LAB_TEST_TYPE_UUID = "labTestTypeUuid";
+
+	public static final String NEW_LAB_TEST_TYPE_UUID = "newLabTestTypeUuid";
+
+	public static final String LAB_TEST_ATTRIBUTE_TYPE_UUID = "labTestAttributeTypeUuid";
+
+	public static final String BATCH_SIZE = "batchSize";
+
+	public static final String PROCESSED = "processed";
+
+	public static final String STATUS = "status";
+
+	public static final String COMPLETED = "COMPLETED";
+
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			startExecuting();
+			try {
+				if (COMPLETED.equals(getTaskDefinition().getProperty(STATUS))) {
+					return;
+				}
+				if (getTaskDefinition().getProperty(LAB_TEST_TYPE_UUID) != null) {
+					deleteLabTestType();
+				} else if (getTaskDefinition().getProperty(LAB_TEST_ATTRIBUTE_TYPE_UUID) != null) {
+					deleteLabTestAttributeType();
+				} else {
+					log.warn("Neither " + LAB_TEST_TYPE_UUID + " nor " + LAB_TEST_ATTRIBUTE_TYPE_UUID + " is set");
+				}
+			}
+			catch (Exception e) {
+				log.error("Error while deleting lab test metadata", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+
+	private void deleteLabTestType() {
+		CommonLabTestService service = Context.getService(CommonLabTestService.class);
+		String uuid = getTaskDefinition().getProperty(LAB_TEST_TYPE_UUID);
+		String newUuid = getTaskDefinition().getProperty(NEW_LAB_TEST_TYPE_UUID);
+		if (newUuid == null) {
+			newUuid = LabTestType.UNKNOWN_TEST_UUID;
+		}
+		LabTestType labTestType = service.getLabTestTypeByUuid(uuid);
+		LabTestType newLabTestType = service.getLabTestTypeByUuid(newUuid);
+		if (labTestType == null || newLabTestType == null) {
+			log.warn("LabTestType " + (labTestType == null ? uuid : newUuid) + " does not exist");
+			return;
+		}
+		int batchSize = getBatchSize();
+		int moved;
+		while ((moved = service.moveLabTests(labTestType, newLabTestType, batchSize)) > 0) {
+			saveProgress(moved);
+		}
+		service.deleteLabTestType(service.getLabTestTypeByUuid(uuid), service.getLabTestTypeByUuid(newUuid));
+		saveCompleted();
+	}
+
+	private void deleteLabTestAttributeType() {
+		CommonLabTestService service = Context.getService(CommonLabTestService.class);
+		String uuid = getTaskDefinition().getProperty(LAB_TEST_ATTRIBUTE_TYPE_UUID);
+		LabTestAttributeType labTestAttributeType = service.getLabTestAttributeTypeByUuid(uuid);
+		if (labTestAttributeType == null) {
+			log.warn("LabTestAttributeType " + uuid + " does not exist");
+			return;
+		}
+		int batchSize = getBatchSize();
+		int deleted;
+		while ((deleted = service.deleteLabTestAttributes(labTestAttributeType, batchSize)) > 0) {
+			saveProgress(deleted);
+		}
+		service.deleteLabTestAttributeType(service.getLabTestAttributeTypeByUuid(uuid), false);
+		saveCompleted();
+	}
+
+	/**
+	 * Adds the count of the last batch to the saved progress and clears the session, so that memory
+	 * stays flat however many batches are processed
+	 */
+	private void saveProgress(int count) {
+		Context.clearSession();
+		TaskDefinition taskDefinition = getTaskDefinition();
+		int processed = NumberUtils.toInt(taskDefinition.getProperty(PROCESSED)) + count;
+		taskDefinition.setProperty(PROCESSED, String.valueOf(processed));
+		Context.getSchedulerService().saveTaskDefinition(taskDefinition);
+		log.info(taskDefinition.getName() + ": " + processed + " objects processed");
+	}
+
+	private void saveCompleted() {
+		TaskDefinition taskDefinition = getTaskDefinition();
+		taskDefinition.setProperty(STATUS, COMPLETED);
+		Context.getSchedulerService().saveTaskDefinition(taskDefinition);
+	}
+
+	private int getBatchSize() {
+		int batchSize = NumberUtils.toInt(getTaskDefinition().getProperty(BATCH_SIZE));
+		return batchSize < 1 ? CommonLabTestActivator.DEFAULT_BATCH_FETCH_SIZE : batchSize;
+	}
+}
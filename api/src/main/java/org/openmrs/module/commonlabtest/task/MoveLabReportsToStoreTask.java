@@ -0,0 +1,93 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.task;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Moves report files uploaded before the
+ * {@link org.openmrs.module.commonlabtest.report.LabReportStore} existed into it, a batch of lab tests
+ * at a time. Each lab test is moved in its own transaction, and the old file is deleted only once no
+ * lab test refers to it anymore, so the task can be stopped and run again at any point.
+ */
+public class MoveLabReportsToStoreTask extends AbstractTask {
+
+	private static final Log log = LogFactory.getLog(MoveLabReportsToStoreTask.class);
+
+	public static final String TASK_NAME = "Move Lab Reports To Store";
+
+	private static final int BATCH_SIZE = 100;
+
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			startExecuting();
+			try {
+				moveReports();
+			}
+			catch (Exception e) {
+				log.error("Error while moving lab reports to the store", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+
+	private void moveReports() {
+		CommonLabTestService service = Context.getService(CommonLabTestService.class);
+		int moved = 0;
+		int missing = 0;
+		int failed = 0;
+		Integer lastTestOrderId = null;
+		List<LabTest> labTests;
+		do {
+			labTests = service.getLabTestsWithUnstoredReports(lastTestOrderId, BATCH_SIZE);
+			for (LabTest labTest : labTests) {
+				lastTestOrderId = labTest.getTestOrderId();
+				String oldFilePath = labTest.getFilePath();
+				try {
+					if (service.moveLabTestReportToStore(labTest) == null) {
+						log.warn("Report file " + oldFilePath + " of lab test " + lastTestOrderId + " not found");
+						missing++;
+						continue;
+					}
+					moved++;
+				}
+				catch (Exception e) {
+					log.warn("Unable to move report file " + oldFilePath + " of lab test " + lastTestOrderId, e);
+					Context.clearSession();
+					failed++;
+					continue;
+				}
+				// Files uploaded under the same name are shared by several lab tests
+				if (service.getLabTestCountByFilePath(oldFilePath) == 0 && !new File(oldFilePath).delete()) {
+					log.warn("Unable to delete moved report file " + oldFilePath);
+				}
+			}
+			Context.flushSession();
+			Context.clearSession();
+		} while (labTests.size() == BATCH_SIZE);
+		if (moved > 0 || missing > 0 || failed > 0) {
+			log.info("Lab reports: " + moved + " moved to the store, " + missing + " not found, " + failed + " failed");
+		}
+	}
+}
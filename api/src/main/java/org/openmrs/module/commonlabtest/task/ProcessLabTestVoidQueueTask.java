@@ -0,0 +1,124 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.task;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestVoidQueueItem;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * Drains the queue of lab tests to void or unvoid after their encounters were, which
+ * {@link org.openmrs.module.commonlabtest.aop.AfterOrderVoidAdvice} fills when global property
+ * {@value org.openmrs.module.commonlabtest.CommonLabTestActivator#ASYNC_VOID} is true. Each item is
+ * processed in its own transaction; a failed item is retried later, and later items of the same order
+ * wait for it so that a void and an unvoid are never applied out of order. After too many attempts an
+ * item is marked as failed and left in the queue for an administrator to look into. Items are applied
+ * with {@link CommonLabTestService#voidLabTests} and {@link CommonLabTestService#unvoidLabTests}, as
+ * when the encounter is voided synchronously, so an unvoid leaves alone the samples and results voided
+ * for another reason. An item only changes the lab test if it is not already in the wanted state, so
+ * processing it again is harmless.
+ */
+public class ProcessLabTestVoidQueueTask extends AbstractTask {
+
+	private static final Log log = LogFactory.getLog(ProcessLabTestVoidQueueTask.class);
+
+	public static final String TASK_NAME = "Process Lab Test Void Queue";
+
+	private static final int BATCH_SIZE = 100;
+
+	/**
+	 * @see org.openmrs.scheduler.tasks.AbstractTask#execute()
+	 */
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			startExecuting();
+			try {
+				processQueue();
+			}
+			catch (Exception e) {
+				log.error("Error while processing lab test void queue", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+
+	/**
+	 * Processes due items batch by batch until none is left, except those held back by a failure
+	 */
+	private void processQueue() {
+		CommonLabTestService service = Context.getService(CommonLabTestService.class);
+		Set<Integer> blockedOrderIds = new HashSet<Integer>();
+		int processed = 0;
+		int failed = 0;
+		List<LabTestVoidQueueItem> items;
+		do {
+			items = service.getDueLabTestVoidQueueItems(BATCH_SIZE);
+			int processedInBatch = 0;
+			for (LabTestVoidQueueItem item : items) {
+				if (blockedOrderIds.contains(item.getOrderId())) {
+					continue;
+				}
+				try {
+					process(service, item);
+					service.completeLabTestVoidQueueItem(item);
+					processedInBatch++;
+				}
+				catch (Exception e) {
+					Context.clearSession();
+					failed++;
+					blockedOrderIds.add(item.getOrderId());
+					service.retryLabTestVoidQueueItem(item, e.getMessage());
+					if (item.getFailed()) {
+						log.error("Unable to " + item + " after " + item.getAttempts()
+						        + " attempts, giving up. Fix the cause and reset the failed flag of queue item "
+						        + item.getQueueItemId() + " to retry it", e);
+					} else {
+						log.warn("Unable to " + item + ", will retry", e);
+					}
+				}
+			}
+			processed += processedInBatch;
+			Context.flushSession();
+			Context.clearSession();
+			if (processedInBatch == 0) {
+				break;
+			}
+		} while (items.size() == BATCH_SIZE);
+		if (processed > 0 || failed > 0) {
+			log.info("Lab test void queue: " + processed + " processed, " + failed + " failed, "
+			        + service.getLabTestVoidQueueSize(false) + " remaining");
+		}
+	}
+
+	private void process(CommonLabTestService service, LabTestVoidQueueItem item) {
+		LabTest labTest = service.getLabTest(item.getOrderId());
+		if (labTest == null) {
+			return;
+		}
+		// Same calls as the synchronous path, so that only what was voided with the test is unvoided
+		if (item.getAction() == LabTestVoidQueueItem.Action.VOID && !labTest.getVoided()) {
+			service.voidLabTests(Collections.singletonList(labTest), item.getVoidReason());
+		} else if (item.getAction() == LabTestVoidQueueItem.Action.UNVOID && labTest.getVoided()) {
+			service.unvoidLabTests(Collections.singletonList(labTest));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Creates the indexes declared in the module's liquibase.xml on a test database. Test schemas are
+ * generated by Hibernate, which knows nothing of them, so without this queries against the test
+ * database would not be served the way they are in production.
+ */
+public final class ChangelogIndexes {
+
+	private static final String CHANGELOG = "liquibase.xml";
+
+	private ChangelogIndexes() {
+	}
+
+	/**
+	 * Creates every index declared by a createIndex change in the module's changelog, unless it exists
+	 */
+	public static void create(Connection connection) throws Exception {
+		Statement statement = connection.createStatement();
+		try {
+			for (String ddl : readCreateIndexStatements()) {
+				statement.execute(ddl);
+			}
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	private static List<String> readCreateIndexStatements() throws Exception {
+		InputStream in = ChangelogIndexes.class.getClassLoader().getResourceAsStream(CHANGELOG);
+		List<String> statements = new ArrayList<String>();
+		try {
+			Document changelog = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+			NodeList createIndexes = changelog.getElementsByTagName("createIndex");
+			for (int i = 0; i < createIndexes.getLength(); i++) {
+				Element createIndex = (Element) createIndexes.item(i);
+				NodeList columns = createIndex.getElementsByTagName("column");
+				StringBuilder columnNames = new StringBuilder();
+				for (int j = 0; j < columns.getLength(); j++) {
+					if (j > 0) {
+						columnNames.append(", ");
+					}
+					columnNames.append(((Element) columns.item(j)).getAttribute("name"));
+				}
+				statements.add("CREATE INDEX IF NOT EXISTS " + createIndex.getAttribute("indexName") + " ON "
+				        + createIndex.getAttribute("tableName") + " (" + columnNames + ")");
+			}
+		}
+		finally {
+			in.close();
+		}
+		return statements;
+	}
+}
@@ -10,12 +10,18 @@
 package org.openmrs.module.commonlabtest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -26,8 +32,16 @@ import org.openmrs.Order;
 import org.openmrs.Order.Action;
 import org.openmrs.Order.Urgency;
 import org.openmrs.TestOrder;
+import org.openmrs.User;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.api.KeysetPage;
+import org.openmrs.module.commonlabtest.api.LabDataCallback;
+import org.openmrs.module.commonlabtest.api.LabQueryStatistics;
+import org.openmrs.module.commonlabtest.api.LabTestSummary;
 import org.openmrs.module.commonlabtest.api.dao.impl.CommonLabTestDAOImpl;
+import org.openmrs.module.commonlabtest.metrics.SlowQuery;
+import org.openmrs.module.commonlabtest.metrics.SlowQueryLogger;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -41,6 +55,9 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 	@Autowired
 	CommonLabTestDAOImpl dao;
 
+	@Autowired
+	SlowQueryLogger slowQueryLogger;
+
 	@Before
 	public void runBeforeEachTest() throws Exception {
 		super.initTestData();
@@ -61,6 +78,21 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertThat(list, Matchers.hasItems(geneXpert, chestXRay));
 	}
 
+	@Test
+	public final void testGetAllLabTestTypes_shouldNotReturnStaleList() {
+		assertThat(dao.getAllLabTestTypes(false), Matchers.not(Matchers.hasItem(Matchers.hasProperty("name",
+		    Matchers.is("AFB Smear Microscopy")))));
+		LabTestType testType = new LabTestType();
+		testType.setName("AFB Smear Microscopy");
+		testType.setTestGroup(LabTestGroup.BACTERIOLOGY);
+		testType.setReferenceConcept(Context.getConceptService().getConcept(500));
+		dao.saveLabTestType(testType);
+		assertThat(dao.getAllLabTestTypes(false), Matchers.hasItem(testType));
+		testType.setRetired(true);
+		dao.saveLabTestType(testType);
+		assertThat(dao.getAllLabTestTypes(false), Matchers.not(Matchers.hasItem(testType)));
+	}
+
 	@Test
 	public final void testGetLabTestTypesByName() {
 		Context.clearSession();
@@ -83,6 +115,32 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertEquals(labTest, harryGxp);
 	}
 
+	@Test
+	public final void testGetLabTestsWithUnstoredReports() {
+		dao.getLabTest(100).setFilePath("/files/report.pdf");
+		dao.getLabTest(200).setFilePath("/files/report.pdf");
+		LabTest labTest = dao.getLabTest(300);
+		labTest.setFilePath("/store/ab/cd/abcd");
+		LabTestReport labTestReport = new LabTestReport(labTest, "abcd", 1L, "report.pdf");
+		labTestReport.setDateCreated(new Date());
+		dao.saveLabTestReport(labTestReport);
+
+		List<LabTest> labTests = dao.getLabTestsWithUnstoredReports(null, 10);
+		assertEquals(2, labTests.size());
+		assertEquals(Integer.valueOf(100), labTests.get(0).getTestOrderId());
+		assertEquals(Integer.valueOf(200), dao.getLabTestsWithUnstoredReports(100, 10).get(0).getTestOrderId());
+		assertEquals(2, dao.getLabTestCountByFilePath("/files/report.pdf"));
+		assertEquals(labTestReport, dao.getLabTestReport(labTest));
+	}
+
+	@Test
+	public final void testGetLabTestsByOrderIds() {
+		Context.clearSession();
+		List<LabTest> labTests = dao.getLabTestsByOrderIds(Arrays.asList(100, 300, 999));
+		assertEquals(2, labTests.size());
+		assertTrue(labTests.contains(harryGxp));
+	}
+
 	@Test
 	public final void testGetLabTestAttribute() {
 		Context.clearSession();
@@ -167,12 +225,74 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertEquals("should be equal !", retrivedObject, harryGxp);
 	}
 
+	@Test
+	public final void testGetLabTestByUuid_shouldIgnoreCase() {
+		String uuid = harryGxp.getUuid().toUpperCase();
+		assertEquals(harryGxp, dao.getLabTestByUuid(uuid));
+		// Second lookup is resolved by id
+		Context.clearSession();
+		assertEquals(harryGxp, dao.getLabTestByUuid(" " + uuid + " "));
+	}
+
+	@Test
+	public final void testSaveLabTestSample_shouldCanonicalizeUuid() {
+		LabTestSample sample = dao.getLabTestSample(1);
+		String uuid = sample.getUuid();
+		sample.setUuid(uuid.toUpperCase());
+		dao.saveLabTestSample(sample);
+		assertEquals(uuid, sample.getUuid());
+	}
+
 	@Test
 	public final void testGetLabTests() {
 		List<LabTest> allLabTests = dao.getLabTests(null, harry, null, null, null, null, null, null, false);
 		assertThat(allLabTests, Matchers.containsInAnyOrder(harryGxp, harryCxr));
 	}
 
+	@Test
+	public final void testGetLabTestsByReferenceNumber_shouldIgnoreCase() {
+		List<LabTest> list = dao.getLabTests(null, null, null, "gxp-irs", null, null, null, null, false);
+		assertThat(list, Matchers.containsInAnyOrder(harryGxp, hermioneGxp));
+	}
+
+	@Test
+	public final void testGetLabTestSamplesBySampleIdentifier_shouldIgnoreCase() {
+		List<LabTestSample> list = dao.getLabTestSamples(null, null, "gxp-irs12345-", null, null, null, null, null,
+		    false);
+		assertThat(list, Matchers.hasSize(3));
+	}
+
+	@Test
+	public final void testGetLabTestsByKeyset() {
+		KeysetPage<LabTest> firstPage = dao.getLabTests(null, null, null, null, null, null, null, null, false, null, 2);
+		assertThat(firstPage.getResults(), Matchers.contains(harryGxp, harryCxr));
+		assertTrue(firstPage.hasMoreResults());
+		KeysetPage<LabTest> secondPage = dao.getLabTests(null, null, null, null, null, null, null, null, false,
+		    firstPage.getContinuationToken(), 2);
+		assertThat(secondPage.getResults(), Matchers.contains(hermioneGxp));
+		assertNull(secondPage.getContinuationToken());
+	}
+
+	@Test
+	public final void testGetLabTestSamplesByKeysetBreaksTiesById() {
+		// Samples 2 and 3 share the same date of creation
+		KeysetPage<LabTestSample> firstPage = dao.getLabTestSamples(null, null, null, null, null, null, null, null, false,
+		    null, 2);
+		assertThat(firstPage.getResults(), Matchers.hasSize(2));
+		assertEquals(Integer.valueOf(1), firstPage.getResults().get(0).getLabTestSampleId());
+		assertEquals(Integer.valueOf(2), firstPage.getResults().get(1).getLabTestSampleId());
+		KeysetPage<LabTestSample> secondPage = dao.getLabTestSamples(null, null, null, null, null, null, null, null,
+		    false, firstPage.getContinuationToken(), 2);
+		assertThat(secondPage.getResults(), Matchers.hasSize(1));
+		assertEquals(Integer.valueOf(3), secondPage.getResults().get(0).getLabTestSampleId());
+		assertTrue(!secondPage.hasMoreResults());
+	}
+
+	@Test(expected = APIException.class)
+	public final void testGetLabTestsByKeyset_shouldRejectInvalidToken() {
+		dao.getLabTests(null, null, null, null, null, null, null, null, false, "not-a-token", 2);
+	}
+
 	@Test
 	public final void testGetLabTestSample() {
 		LabTestSample retrivedObject = dao.getLabTestSample(harrySample.getId());
@@ -228,6 +348,146 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertEquals(geneXpert, retrivedObject);
 	}
 
+	@Test
+	public final void testGetLabTestSummaries() {
+		List<LabTestSummary> list = dao.getLabTestSummaries(harry, false);
+		assertThat(list, Matchers.hasSize(2));
+		LabTestSummary summary = list.get(0);
+		assertEquals(harryGxp.getTestOrderId(), summary.getTestOrderId());
+		assertEquals(harryGxp.getUuid(), summary.getUuid());
+		assertEquals("GXP-IRS12345", summary.getLabReferenceNumber());
+		assertEquals(geneXpert.getName(), summary.getTestTypeName());
+		assertEquals(4, summary.getResultCount());
+		assertTrue(summary.isResultFilled());
+		assertEquals(2, list.get(1).getResultCount());
+	}
+
+	@Test
+	public final void testGetLabTestSamplesOfManyTests() {
+		Map<Integer, List<LabTestSample>> samples = dao.getLabTestSamples(Arrays.asList(harryGxp, harryCxr, hermioneGxp),
+		    false);
+		assertThat(samples.keySet(), Matchers.contains(100, 200, 300));
+		assertThat(samples.get(100), Matchers.contains(harrySample));
+		assertThat(samples.get(200), Matchers.empty());
+		assertThat(samples.get(300), Matchers.hasSize(2));
+	}
+
+	@Test
+	public final void testGetLabTestAttributesOfManyTests() {
+		Map<Integer, List<LabTestAttribute>> attributes = dao.getLabTestAttributes(Arrays.asList(harryGxp, harryCxr));
+		assertThat(attributes.get(100), Matchers.hasSize(4));
+		assertThat(attributes.get(200), Matchers.hasSize(2));
+	}
+
+	@Test
+	public final void testStreamLabTestAttributes() {
+		final List<Integer> ids = new ArrayList<Integer>();
+		int count = dao.streamLabTestAttributes(false, new LabDataCallback<LabTestAttribute>() {
+
+			@Override
+			public void process(LabTestAttribute labTestAttribute) {
+				ids.add(labTestAttribute.getId());
+			}
+		});
+		assertEquals(8, count);
+		assertThat(ids, Matchers.contains(1, 2, 3, 4, 5, 6, 7, 8));
+	}
+
+	@Test
+	public final void testStreamLabTests_shouldLoadLazyAssociations() {
+		Context.clearSession();
+		final List<Integer> patientIds = new ArrayList<Integer>();
+		dao.streamLabTests(false, new LabDataCallback<LabTest>() {
+
+			@Override
+			public void process(LabTest labTest) {
+				patientIds.add(labTest.getOrder().getPatient().getPatientId());
+			}
+		});
+		assertThat(patientIds, Matchers.hasSize(3));
+	}
+
+	@Test
+	public final void testVoidAndUnvoidLabTestSamples() {
+		List<LabTest> labTests = Arrays.asList(harryGxp, hermioneGxp);
+		User user = Context.getAuthenticatedUser();
+		assertEquals(3, dao.voidLabTestSamples(labTests, "Test voided", user, new Date()));
+		// Voided samples are left alone
+		assertEquals(0, dao.voidLabTestSamples(labTests, "Voided again", user, new Date()));
+		Context.clearSession();
+		assertThat(dao.getLabTestSamples(hermioneGxp, false), Matchers.empty());
+		LabTestSample sample = dao.getLabTestSample(1);
+		assertTrue(sample.getVoided());
+		assertEquals("Test voided", sample.getVoidReason());
+		assertEquals(user, sample.getVoidedBy());
+
+		assertEquals(0, dao.unvoidLabTestSamples(labTests, "Some other reason"));
+		assertEquals(3, dao.unvoidLabTestSamples(labTests, "Test voided"));
+		Context.clearSession();
+		assertThat(dao.getLabTestSamples(hermioneGxp, false), Matchers.hasSize(2));
+		sample = dao.getLabTestSample(1);
+		assertFalse(sample.getVoided());
+		assertNull(sample.getVoidedBy());
+		assertNull(sample.getDateVoided());
+		assertEquals("Previously voided for reason: Test voided", sample.getVoidReason());
+	}
+
+	@Test
+	public final void testVoidLabTestsAndSetLabTestType() {
+		List<LabTest> labTests = Arrays.asList(harryGxp, hermioneGxp);
+		assertEquals(2, dao.voidLabTests(labTests, "Test voided", Context.getAuthenticatedUser(), new Date()));
+		assertEquals(0, dao.voidLabTests(labTests, "Voided again", Context.getAuthenticatedUser(), new Date()));
+		assertEquals(2, dao.setLabTestType(labTests, chestXRay));
+		Context.clearSession();
+		LabTest labTest = dao.getLabTest(300);
+		assertTrue(labTest.getVoided());
+		assertEquals("Test voided", labTest.getVoidReason());
+		assertEquals(chestXRay, labTest.getLabTestType());
+	}
+
+	@Test
+	public final void testVoidAndUnvoidLabTests_shouldUpdateLoadedObjects() {
+		LabTest labTest = dao.getLabTest(100);
+		LabTestSample sample = dao.getLabTestSample(1);
+		List<LabTest> labTests = Arrays.asList(labTest);
+		User user = Context.getAuthenticatedUser();
+		Date dateVoided = new Date();
+		assertEquals(1, dao.voidLabTestSamples(labTests, "Test voided", user, dateVoided));
+		assertEquals(1, dao.voidLabTests(labTests, "Test voided", user, dateVoided));
+		assertTrue(labTest.getVoided());
+		assertEquals("Test voided", labTest.getVoidReason());
+		assertTrue(sample.getVoided());
+		assertEquals(user, sample.getVoidedBy());
+
+		assertEquals(1, dao.unvoidLabTestSamples(labTests, "Test voided"));
+		assertEquals(1, dao.unvoidLabTests(labTests));
+		assertFalse(labTest.getVoided());
+		assertNull(labTest.getVoidReason());
+		assertFalse(sample.getVoided());
+		assertEquals("Previously voided for reason: Test voided", sample.getVoidReason());
+		Context.flushSession();
+		Context.clearSession();
+		assertFalse(dao.getLabTest(100).getVoided());
+		assertNull(dao.getLabTestSample(1).getDateVoided());
+	}
+
+	@Test
+	public final void testSetLabTestType_shouldUpdateLoadedTests() {
+		LabTest labTest = dao.getLabTest(100);
+		assertEquals(1, dao.setLabTestType(Arrays.asList(labTest), chestXRay));
+		assertEquals(chestXRay, labTest.getLabTestType());
+	}
+
+	@Test
+	public final void testPurgeLabTestAttributesInBatches() {
+		assertEquals(1, dao.purgeLabTestAttributes(cartridgeId, 1));
+		assertEquals(1, dao.purgeLabTestAttributes(cartridgeId, 1));
+		assertEquals(0, dao.purgeLabTestAttributes(cartridgeId, 1));
+		Context.clearSession();
+		assertThat(dao.getLabTestAttributes(cartridgeId, null, null, null, true), Matchers.empty());
+		assertNotNull(dao.getLabTestAttribute(2));
+	}
+
 	@Test
 	public final void testGetNLabTests() {
 		List<LabTest> list = dao.getNLabTests(harry, 2, true, false, false);
@@ -245,6 +505,29 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertEquals(processedSamples.get(0).getStatus(), LabTestSampleStatus.PROCESSED);
 	}
 
+	@Test
+	public final void testGetNLabTests_shouldReturnLatestFirst() {
+		List<LabTest> list = dao.getNLabTests(harry, 1, false, true, false);
+		assertThat(list, Matchers.contains(harryCxr));
+	}
+
+	@Test
+	public final void testGetNLabTests_shouldNotRepeatOverlappingHeadAndTail() {
+		List<LabTest> list = dao.getNLabTests(harry, 2, true, true, false);
+		assertThat(list, Matchers.contains(harryGxp, harryCxr));
+	}
+
+	@Test
+	public final void testGetNLabTestSamples_shouldBreakTiesById() {
+		// Both of Hermione's samples were created at the same time
+		List<LabTestSample> latest = dao.getNLabTestSamples(hermione, null, 1, false, true, false);
+		assertThat(latest, Matchers.hasSize(1));
+		assertEquals(Integer.valueOf(3), latest.get(0).getLabTestSampleId());
+		List<LabTestSample> both = dao.getNLabTestSamples(hermione, null, 1, true, true, false);
+		assertThat(both, Matchers.hasSize(2));
+		assertEquals(Integer.valueOf(2), both.get(0).getLabTestSampleId());
+	}
+
 	@Test
 	public final void testPurgeLabTest() {
 		/*
@@ -385,6 +668,138 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		    Matchers.hasProperty("uuid", org.hamcrest.Matchers.is(resultLabTestAttribute.getUuid())));
 	}
 
+	@Test
+	public final void testGetLabTestAttributesByNumericValue() {
+		LabTestAttributeType scoreType = dao.getLabTestAttributeType(cad4tbScore.getId());
+		LabTestAttribute inRange = new LabTestAttribute();
+		inRange.setLabTest(harryCxr);
+		inRange.setAttributeType(scoreType);
+		inRange.setValueReferenceInternal("12.5");
+		inRange.setCreator(Context.getAuthenticatedUser());
+		inRange.setDateCreated(new Date());
+		dao.saveLabTestAttribute(inRange);
+		LabTestAttribute notNumeric = new LabTestAttribute();
+		notNumeric.setLabTest(harryCxr);
+		notNumeric.setAttributeType(scoreType);
+		notNumeric.setValueReferenceInternal("pending");
+		notNumeric.setCreator(Context.getAuthenticatedUser());
+		notNumeric.setDateCreated(new Date());
+		dao.saveLabTestAttribute(notNumeric);
+		assertEquals(Double.valueOf(12.5), inRange.getValueNumeric());
+		assertNull(notNumeric.getValueNumeric());
+		List<LabTestAttribute> list = dao.getLabTestAttributesByNumericValue(scoreType, 10d, 20d, false);
+		assertThat(list, Matchers.contains(inRange));
+		assertThat(dao.getLabTestAttributesByNumericValue(scoreType, 20d, null, false), Matchers.empty());
+	}
+
+	@Test
+	public final void testGetLabTestAttributesByDatetimeValue() throws Exception {
+		LabTestAttributeType dateType = new LabTestAttributeType();
+		dateType.setLabTestType(chestXRay);
+		dateType.setName("Date Read");
+		dateType.setDescription("Date on which the film was read");
+		dateType.setDatatypeClassname("org.openmrs.customdatatype.datatype.DateDatatype");
+		dateType.setMinOccurs(0);
+		dateType.setMaxOccurs(1);
+		dao.saveLabTestAttributeType(dateType);
+		LabTestAttribute inRange = saveAttribute(harryCxr, dateType, "2018-10-03");
+		LabTestAttribute outOfRange = saveAttribute(harryCxr, dateType, "2018-12-25 10:30:00");
+		LabTestAttribute notDate = saveAttribute(harryCxr, dateType, "yesterday");
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		assertEquals(format.parse("2018-10-03"), inRange.getValueDatetime());
+		assertNull(notDate.getValueDatetime());
+		List<LabTestAttribute> list = dao.getLabTestAttributesByDatetimeValue(dateType, format.parse("2018-10-01"),
+		    format.parse("2018-11-01"), false);
+		assertThat(list, Matchers.contains(inRange));
+		assertThat(dao.getLabTestAttributesByDatetimeValue(dateType, format.parse("2018-11-01"), null, false),
+		    Matchers.contains(outOfRange));
+	}
+
+	@Test
+	public final void testGetLabTestAttributesByCodedValue() {
+		LabTestAttributeType codedType = dao.getLabTestAttributeType(mtbResult.getId());
+		Concept concept = Context.getConceptService().getConcept(5497);
+		LabTestAttribute byId = saveAttribute(hermioneGxp, codedType, "5497");
+		LabTestAttribute byUuid = saveAttribute(harryCxr, codedType, concept.getUuid());
+		LabTestAttribute unknown = saveAttribute(harryCxr, codedType, "not-a-concept-uuid");
+		assertEquals(Integer.valueOf(5497), byUuid.getValueCoded());
+		assertNull(unknown.getValueCoded());
+		assertThat(dao.getLabTestAttributesByCodedValue(codedType, concept, false), Matchers.contains(byId, byUuid));
+	}
+
+	@Test
+	public final void testGetLabTestAttributesByBooleanValue() {
+		LabTestAttributeType booleanType = dao.getLabTestAttributeType(xrayFilmPrinted.getId());
+		LabTestAttribute printed = saveAttribute(harryCxr, booleanType, "true");
+		LabTestAttribute notPrinted = saveAttribute(harryCxr, booleanType, "FALSE");
+		LabTestAttribute notBoolean = saveAttribute(harryCxr, booleanType, "maybe");
+		assertNull(notBoolean.getValueBoolean());
+		assertThat(dao.getLabTestAttributesByBooleanValue(booleanType, true, false), Matchers.contains(printed));
+		assertThat(dao.getLabTestAttributesByBooleanValue(booleanType, false, false), Matchers.contains(notPrinted));
+	}
+
+	@Test
+	public final void testSaveLabTestAttributes_shouldResolveConceptUuids() {
+		LabTestAttributeType codedType = dao.getLabTestAttributeType(mtbResult.getId());
+		Concept concept = Context.getConceptService().getConcept(5497);
+		List<LabTestAttribute> labTestAttributes = new ArrayList<LabTestAttribute>();
+		for (String valueReference : Arrays.asList(concept.getUuid(), "5089", "not-a-concept-uuid")) {
+			LabTestAttribute labTestAttribute = new LabTestAttribute();
+			labTestAttribute.setLabTest(hermioneGxp);
+			labTestAttribute.setAttributeType(codedType);
+			labTestAttribute.setValueReferenceInternal(valueReference);
+			labTestAttribute.setCreator(Context.getAuthenticatedUser());
+			labTestAttribute.setDateCreated(new Date());
+			labTestAttributes.add(labTestAttribute);
+		}
+		dao.saveLabTestAttributes(labTestAttributes, 2);
+		assertEquals(Integer.valueOf(5497), labTestAttributes.get(0).getValueCoded());
+		assertEquals(Integer.valueOf(5089), labTestAttributes.get(1).getValueCoded());
+		assertNull(labTestAttributes.get(2).getValueCoded());
+	}
+
+	@Test
+	public final void testGetDueLabTestVoidQueueItems_shouldHoldBackItemsAfterFailedItemOfSameOrder() {
+		Date now = new Date();
+		LabTestVoidQueueItem failed = saveVoidQueueItem(100, LabTestVoidQueueItem.Action.VOID, now);
+		failed.setFailed(true);
+		saveVoidQueueItem(100, LabTestVoidQueueItem.Action.UNVOID, now);
+		LabTestVoidQueueItem other = saveVoidQueueItem(300, LabTestVoidQueueItem.Action.VOID, now);
+		List<LabTestVoidQueueItem> due = dao.getDueLabTestVoidQueueItems(new Date(now.getTime() + 1000), 10);
+		assertThat(due, Matchers.contains(other));
+	}
+
+	@Test
+	public final void testGetLabTestVoidQueueSize_shouldCountFailedAndRetryingItemsApart() {
+		Date now = new Date();
+		LabTestVoidQueueItem failed = saveVoidQueueItem(100, LabTestVoidQueueItem.Action.VOID, now);
+		failed.setAttempts(10);
+		failed.setFailed(true);
+		LabTestVoidQueueItem retrying = saveVoidQueueItem(200, LabTestVoidQueueItem.Action.VOID, now);
+		retrying.setAttempts(1);
+		saveVoidQueueItem(300, LabTestVoidQueueItem.Action.VOID, now);
+		assertEquals(3, dao.getLabTestVoidQueueSize(false));
+		assertEquals(1, dao.getLabTestVoidQueueSize(true));
+		assertEquals(1, dao.getRetryingLabTestVoidQueueSize());
+	}
+
+	private LabTestVoidQueueItem saveVoidQueueItem(Integer orderId, LabTestVoidQueueItem.Action action, Date date) {
+		LabTestVoidQueueItem item = new LabTestVoidQueueItem(orderId, action, "Testing");
+		item.setDateCreated(date);
+		item.setNextAttemptDate(date);
+		return dao.saveLabTestVoidQueueItem(item);
+	}
+
+	private LabTestAttribute saveAttribute(LabTest labTest, LabTestAttributeType attributeType, String valueReference) {
+		LabTestAttribute labTestAttribute = new LabTestAttribute();
+		labTestAttribute.setLabTest(labTest);
+		labTestAttribute.setAttributeType(attributeType);
+		labTestAttribute.setValueReferenceInternal(valueReference);
+		labTestAttribute.setCreator(Context.getAuthenticatedUser());
+		labTestAttribute.setDateCreated(new Date());
+		return dao.saveLabTestAttribute(labTestAttribute);
+	}
+
 	@Test
 	public final void testSaveLabTestAttributeType() {
 		LabTestAttributeType attributeType = new LabTestAttributeType();
@@ -439,4 +854,70 @@ public class CommonLabTestDAOTest extends CommonLabTestBase {
 		assertThat(savedTestType, Matchers.hasProperty("uuid", org.hamcrest.Matchers.is(testType.getUuid())));
 		assertThat(savedTestType, Matchers.hasProperty("creator", org.hamcrest.Matchers.is(testType.getCreator())));
 	}
+
+	@Test
+	public final void testGetQueryStatistics_shouldCountLoadsOfLabTests() {
+		dao.setQueryStatisticsEnabled(true);
+		try {
+			dao.clearQueryStatistics();
+			Context.clearSession();
+			dao.getLabTest(100);
+			LabQueryStatistics statistics = dao.getQueryStatistics();
+			assertTrue(statistics.isEnabled());
+			LabQueryStatistics.EntityRow labTestRow = null;
+			for (LabQueryStatistics.EntityRow row : statistics.getEntities()) {
+				assertTrue(row.getName().startsWith("org.openmrs.module.commonlabtest."));
+				if (row.getName().equals(LabTest.class.getName())) {
+					labTestRow = row;
+				}
+			}
+			assertNotNull(labTestRow);
+			assertTrue(labTestRow.getLoadCount() >= 1);
+		}
+		finally {
+			dao.setQueryStatisticsEnabled(false);
+		}
+	}
+
+	@Test
+	public final void testSlowQueryLogger_shouldRecordQueriesWithParameters() {
+		long threshold = slowQueryLogger.getThresholdMillis();
+		slowQueryLogger.setThresholdMillis(0);
+		slowQueryLogger.setRecordParameters(true);
+		try {
+			slowQueryLogger.clear();
+			dao.setLabTestType(Arrays.asList(harryGxp), geneXpert);
+			List<SlowQuery> slowQueries = slowQueryLogger.getRecentQueries();
+			assertEquals(1, slowQueries.size());
+			assertTrue(slowQueries.get(0).getQuery().contains("set labTestType = :labTestType"));
+			assertTrue(slowQueries.get(0).getParameters().contains("testOrderIds=[100]"));
+			dao.getLabTestCountByFilePath("report.pdf");
+			slowQueries = slowQueryLogger.getRecentQueries();
+			assertEquals(2, slowQueries.size());
+			assertTrue(slowQueries.get(0).getQuery().contains("filePath=report.pdf"));
+		}
+		finally {
+			slowQueryLogger.setThresholdMillis(threshold);
+			slowQueryLogger.setRecordParameters(false);
+		}
+	}
+
+	@Test
+	public final void testSlowQueryLogger_shouldLeaveOutValuesByDefault() {
+		long threshold = slowQueryLogger.getThresholdMillis();
+		slowQueryLogger.setThresholdMillis(0);
+		try {
+			slowQueryLogger.clear();
+			dao.setLabTestType(Arrays.asList(harryGxp), geneXpert);
+			dao.getLabTestCountByFilePath("report.pdf");
+			List<SlowQuery> slowQueries = slowQueryLogger.getRecentQueries();
+			assertEquals(2, slowQueries.size());
+			assertNull(slowQueries.get(1).getParameters());
+			assertFalse(slowQueries.get(0).getQuery().contains("report.pdf"));
+			assertTrue(slowQueries.get(0).getQuery().contains("CommonLabTestDAOImpl.getLabTestCountByFilePath"));
+		}
+		finally {
+			slowQueryLogger.setThresholdMillis(threshold);
+		}
+	}
 }
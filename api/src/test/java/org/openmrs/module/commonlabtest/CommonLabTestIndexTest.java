@@ -0,0 +1,298 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.module.commonlabtest.api.dao.impl.CommonLabTestDAOImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Verifies against the in-memory H2 database that the queries issued by
+ * {@link org.openmrs.module.commonlabtest.api.dao.impl.CommonLabTestDAOImpl} are served by the
+ * indexes declared in liquibase.xml. The SQL generated by the DAO is captured from the query
+ * statistics of H2 and explained with its parameters inlined. The test schema is generated by
+ * Hibernate, so the indexes are read from the changelog and created before each test. H2 commits
+ * DDL, hence all data is deleted after each test.
+ */
+public class CommonLabTestIndexTest extends CommonLabTestBase {
+
+	@Autowired
+	CommonLabTestDAOImpl dao;
+
+	@Before
+	public void runBeforeEachTest() throws Exception {
+		ChangelogIndexes.create(getConnection());
+		super.initTestData();
+		// Prefix searches are issued as on the case-insensitive collation of MySQL
+		dao.setCaseInsensitiveCollation(true);
+	}
+
+	@After
+	public void runAfterEachTest() throws Exception {
+		dao.setCaseInsensitiveCollation(null);
+		deleteAllData();
+	}
+
+	@Test
+	public final void labTestsByReferenceNumber_shouldUseIndex() throws Exception {
+		String sql = captureSql("lab_reference_number like", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTests(null, null, null, "GXP-IRS", null, null, null, null, false);
+			}
+		});
+		assertUsesIndex(inline(sql, "GXP-IRS%", false), "commonlabtest_test", "commonlabtest_test_reference_number_idx");
+	}
+
+	@Test
+	public final void labTestsByDateCreated_shouldUseIndex() throws Exception {
+		String sql = captureSql("order by this_.date_created", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getNLabTests(null, 2, true, false, false);
+			}
+		});
+		assertUsesIndex(inline(sql, false, 2), "commonlabtest_test", "commonlabtest_test_date_created_idx");
+	}
+
+	/**
+	 * Lab tests have no patient column, so no index of theirs can cover the patient and the date of
+	 * creation together. The window of a patient is found through the patient index of the core orders
+	 * table instead, and the few tests of one patient are sorted after
+	 */
+	@Test
+	public final void labTestsOfPatientByDateCreated_shouldNotScanTables() throws Exception {
+		String sql = captureSql("order by this_.date_created", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getNLabTests(harry, 2, false, true, false);
+			}
+		});
+		assertNoTableScan(inline(sql, harry.getPatientId(), false, 2), "commonlabtest_test", "orders");
+	}
+
+	@Test
+	public final void samplesByIdentifier_shouldUseIndex() throws Exception {
+		String sql = captureSql("lab_sample_identifier like", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestSamples(null, null, "GXP-IRS12345", null, null, null, null, null, false);
+			}
+		});
+		assertUsesIndex(inline(sql, "GXP-IRS12345%", false), "commonlabtest_sample",
+		    "commonlabtest_sample_identifier_idx");
+	}
+
+	@Test
+	public final void samplesByStatus_shouldUseIndex() throws Exception {
+		String sql = captureSql("order by this_.date_created", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestSamples(null, null, null, null, LabTestSampleStatus.ACCEPTED, null, null, null,
+				    false, null, 10);
+			}
+		});
+		assertUsesIndex(inline(sql, "ACCEPTED", false, 11), "commonlabtest_sample", "commonlabtest_sample_status_idx");
+	}
+
+	/**
+	 * The windows of getNLabTestSamples(...) are always of one patient, so as for lab tests they are
+	 * found through the orders of the patient, and then the samples of their tests
+	 * 
+	 * @see #labTestsOfPatientByDateCreated_shouldNotScanTables()
+	 */
+	@Test
+	public final void samplesOfPatientByStatus_shouldNotScanTables() throws Exception {
+		String sql = captureSql("order by this_.date_created", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getNLabTestSamples(hermione, LabTestSampleStatus.ACCEPTED, 2, false, true, false);
+			}
+		});
+		assertNoTableScan(inline(sql, hermione.getPatientId(), "ACCEPTED", false, 2), "commonlabtest_sample",
+		    "commonlabtest_test", "orders");
+	}
+
+	@Test
+	public final void samplesByLabTest_shouldUseIndex() throws Exception {
+		String sql = captureSql("from commonlabtest_sample", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestSamples(hermioneGxp, false);
+			}
+		});
+		assertUsesIndex(inline(sql, 300, false), "commonlabtest_sample", "commonlabtest_sample_test_voided_idx");
+	}
+
+	@Test
+	public final void attributesByLabTest_shouldUseIndex() throws Exception {
+		String sql = captureSql("from commonlabtest_attribute", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestAttributes(100);
+			}
+		});
+		assertUsesIndex(inline(sql, 100), "commonlabtest_attribute", "commonlabtest_attribute_test_voided_idx");
+	}
+
+	@Test
+	public final void attributesByTypeAndValue_shouldUseIndex() throws Exception {
+		String sql = captureSql("value_reference like", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestAttributes(cartridgeId, "13", null, null, false);
+			}
+		});
+		assertUsesIndex(inline(sql, 1, "13%", false), "commonlabtest_attribute",
+		    "commonlabtest_attribute_type_value_idx");
+	}
+
+	@Test
+	public final void attributesByTypeAndNumericRange_shouldUseIndex() throws Exception {
+		String sql = captureSql("value_numeric", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestAttributesByNumericValue(cartridgeId, 10D, 20D, false);
+			}
+		});
+		assertUsesIndex(inline(sql, 1, 10D, 20D, false), "commonlabtest_attribute",
+		    "commonlabtest_attribute_type_numeric_idx");
+	}
+
+	@Test
+	public final void attributesByTypeAndCodedValue_shouldUseIndex() throws Exception {
+		String sql = captureSql("value_coded", new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return dao.getLabTestAttributesByCodedValue(mtbResult, new Concept(1065), false);
+			}
+		});
+		assertUsesIndex(inline(sql, 2, 1065, false), "commonlabtest_attribute", "commonlabtest_attribute_type_coded_idx");
+	}
+
+	/**
+	 * Runs given call with the query statistics of H2 switched on, and returns the only select
+	 * statement it issued that contains the given fragment
+	 */
+	private String captureSql(String fragment, Callable<Object> call) throws Exception {
+		execute("SET QUERY_STATISTICS FALSE");
+		execute("SET QUERY_STATISTICS TRUE");
+		List<String> statements = new ArrayList<String>();
+		try {
+			call.call();
+			Statement statement = getConnection().createStatement();
+			try {
+				ResultSet resultSet = statement
+				        .executeQuery("SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS");
+				while (resultSet.next()) {
+					String sql = resultSet.getString(1);
+					if (sql.toLowerCase().startsWith("select") && sql.toLowerCase().contains(fragment)) {
+						statements.add(sql);
+					}
+				}
+			}
+			finally {
+				statement.close();
+			}
+		}
+		finally {
+			execute("SET QUERY_STATISTICS FALSE");
+		}
+		assertEquals("Expected one statement with " + fragment + ": " + statements, 1, statements.size());
+		return statements.get(0);
+	}
+
+	/**
+	 * Replaces the parameter markers of given SQL with given values, in order
+	 */
+	private String inline(String sql, Object... parameters) {
+		StringBuilder inlined = new StringBuilder();
+		int parameter = 0;
+		for (char c : sql.toCharArray()) {
+			if (c != '?') {
+				inlined.append(c);
+			} else if (parameters[parameter] instanceof String) {
+				inlined.append('\'').append(parameters[parameter++]).append('\'');
+			} else {
+				inlined.append(parameters[parameter++]);
+			}
+		}
+		assertEquals("Parameters of " + sql, parameters.length, parameter);
+		return inlined.toString();
+	}
+
+	private void execute(String sql) throws Exception {
+		Statement statement = getConnection().createStatement();
+		try {
+			statement.execute(sql);
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Asserts that the execution plan of given query reads the given table through the given index
+	 */
+	private void assertUsesIndex(String sql, String tableName, String indexName) throws Exception {
+		String plan = explain(sql).toUpperCase();
+		assertTrue("Expected " + indexName + " in plan: " + plan, plan.contains(indexName.toUpperCase()));
+		assertFalse("Unexpected table scan in plan: " + plan, plan.contains(tableName.toUpperCase() + ".TABLESCAN"));
+	}
+
+	/**
+	 * Asserts that the execution plan of given query reads none of the given tables in full
+	 */
+	private void assertNoTableScan(String sql, String... tableNames) throws Exception {
+		String plan = explain(sql).toUpperCase();
+		for (String tableName : tableNames) {
+			assertFalse("Unexpected table scan in plan: " + plan, plan.contains(tableName.toUpperCase() + ".TABLESCAN"));
+		}
+	}
+
+	private String explain(String sql) throws Exception {
+		Statement statement = getConnection().createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("EXPLAIN " + sql);
+			StringBuilder plan = new StringBuilder();
+			while (resultSet.next()) {
+				plan.append(resultSet.getString(1)).append('\n');
+			}
+			return plan.toString();
+		}
+		finally {
+			statement.close();
+		}
+	}
+}
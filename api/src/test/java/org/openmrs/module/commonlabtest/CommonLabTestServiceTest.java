@@ -10,10 +10,15 @@
 package org.openmrs.module.commonlabtest;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.times;
@@ -23,12 +28,16 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -36,12 +45,16 @@ import org.openmrs.Concept;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
+import org.openmrs.User;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.db.hibernate.HibernateOrderDAO;
+import org.openmrs.module.commonlabtest.api.AttributeTypeLayout;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.api.LabTestMetadata;
 import org.openmrs.module.commonlabtest.api.dao.impl.CommonLabTestDAOImpl;
 import org.openmrs.module.commonlabtest.api.impl.CommonLabTestServiceImpl;
+import org.openmrs.module.commonlabtest.api.impl.LabTestMetadataRegistry;
 
 /**
  * This is a unit test, which verifies logic in CommonLabTestService. It doesn't extend
@@ -58,6 +71,9 @@ public class CommonLabTestServiceTest extends CommonLabTestBase {
 	@Mock
 	HibernateOrderDAO orderDao;
 
+	@Mock
+	LabTestMetadataRegistry metadataRegistry;
+
 	@Before
 	public void initMockito() throws Exception {
 		super.initTestData();
@@ -365,9 +381,50 @@ public class CommonLabTestServiceTest extends CommonLabTestBase {
 		labTestType = service.saveLabTestType(labTestType);
 		assertEquals(labTestType, geneXpert);
 		verify(dao, times(1)).saveLabTestType(any(LabTestType.class));
+		verify(metadataRegistry, times(1)).invalidate();
+		verifyNoMoreInteractions(dao);
+	}
+
+	@Test
+	public final void testGetLabTestMetadata() {
+		when(metadataRegistry.getSnapshot()).thenReturn(new LabTestMetadata(1, labTestTypes, labTestAttributeTypes));
+		LabTestMetadata metadata = service.getLabTestMetadata();
+		assertEquals(geneXpert, metadata.getLabTestTypeByUuid(geneXpert.getUuid()));
+		assertEquals(chestXRay, metadata.getLabTestTypeByShortName("CXR"));
+		assertThat(metadata.getLabTestTypes(LabTestGroup.RADIOLOGY), Matchers.contains(chestXRay));
+		// Retired attribute types are left out
+		assertThat(metadata.getLabTestAttributeTypes(chestXRay), Matchers.contains(cxrResult, radiologistRemarks));
 		verifyNoMoreInteractions(dao);
 	}
 
+	@Test
+	public final void testLabTestMetadata_shouldHoldCopies() {
+		LabTestMetadata metadata = new LabTestMetadata(1, labTestTypes, labTestAttributeTypes);
+		LabTestType labTestType = metadata.getLabTestTypeByUuid(geneXpert.getUuid());
+		assertNotSame(geneXpert, labTestType);
+		assertEquals(geneXpert.getName(), labTestType.getName());
+		LabTestAttributeType attributeType = metadata.getLabTestAttributeTypeByUuid(cartridgeId.getUuid());
+		assertNotSame(cartridgeId, attributeType);
+		assertSame(labTestType, attributeType.getLabTestType());
+	}
+
+	@Test
+	public final void testGetAttributeTypeLayout() {
+		mtbResult.setGroupName("Results");
+		mtbResult.setMultisetName("MTB");
+		rifResult.setGroupName("Results");
+		LabTestMetadata metadata = new LabTestMetadata(1, labTestTypes, labTestAttributeTypes);
+		List<AttributeTypeLayout.Node> nodes = metadata.getAttributeTypeLayout(geneXpert).getNodes();
+		assertThat(nodes, Matchers.hasSize(2));
+		assertEquals(cartridgeId, nodes.get(0).getAttributeType());
+		AttributeTypeLayout.Node group = nodes.get(1);
+		assertEquals("Results", group.getName());
+		assertEquals("MTB", group.getChildren().get(0).getName());
+		assertEquals(mtbResult, group.getChildren().get(0).getChildren().get(0).getAttributeType());
+		assertEquals(rifResult, group.getChildren().get(1).getAttributeType());
+		assertThat(group.getAttributeTypes(), Matchers.contains(mtbResult, rifResult));
+	}
+
 	@Test
 	public final void testRetireLabTestType() {
 		when(dao.saveLabTestType(any(LabTestType.class))).thenReturn(chestXRay);
@@ -400,6 +457,72 @@ public class CommonLabTestServiceTest extends CommonLabTestBase {
 		verifyNoMoreInteractions(dao);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public final void testSaveLabTestResults() {
+		Map<Integer, List<LabTestAttribute>> existing = new HashMap<Integer, List<LabTestAttribute>>();
+		existing.put(harryGxp.getTestOrderId(), Arrays.asList(harryCartridgeId, harryMtbResult));
+		when(dao.getLabTestAttributes(any(Collection.class))).thenReturn(existing);
+		LabTestAttribute sameCartridgeId = new LabTestAttribute();
+		sameCartridgeId.setAttributeType(cartridgeId);
+		sameCartridgeId.setValueReferenceInternal(harryCartridgeId.getValueReference());
+		LabTestAttribute newMtbResult = new LabTestAttribute();
+		newMtbResult.setAttributeType(mtbResult);
+		newMtbResult.setValueReferenceInternal("MTB NOT DETECTED");
+		Map<LabTest, Collection<LabTestAttribute>> results = new HashMap<LabTest, Collection<LabTestAttribute>>();
+		results.put(harryGxp, Arrays.asList(sameCartridgeId, newMtbResult));
+
+		service.saveLabTestResults(results);
+		ArgumentCaptor<List> saved = ArgumentCaptor.forClass(List.class);
+		verify(dao, times(1)).getLabTestAttributes(any(Collection.class));
+		verify(dao, times(1)).saveLabTestAttributes(saved.capture(), anyInt());
+		verifyNoMoreInteractions(dao);
+		assertThat((List<LabTestAttribute>) saved.getValue(), Matchers.contains(harryMtbResult, newMtbResult));
+		assertTrue(harryMtbResult.getVoided());
+		assertFalse(harryCartridgeId.getVoided());
+		assertEquals(harryGxp, newMtbResult.getLabTest());
+		assertNotNull(newMtbResult.getCreator());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public final void testSaveLabTestResults_shouldVoidDuplicatesOfReplacedAttribute() {
+		LabTestAttribute olderCartridgeId = new LabTestAttribute();
+		olderCartridgeId.setLabTest(harryGxp);
+		olderCartridgeId.setAttributeType(cartridgeId);
+		olderCartridgeId.setValueReferenceInternal("201805071100");
+		Map<Integer, List<LabTestAttribute>> existing = new HashMap<Integer, List<LabTestAttribute>>();
+		existing.put(harryGxp.getTestOrderId(), Arrays.asList(harryCartridgeId, olderCartridgeId));
+		when(dao.getLabTestAttributes(any(Collection.class))).thenReturn(existing);
+		LabTestAttribute newCartridgeId = new LabTestAttribute();
+		newCartridgeId.setAttributeType(cartridgeId);
+		newCartridgeId.setValueReferenceInternal("201805071300");
+		Map<LabTest, Collection<LabTestAttribute>> results = new HashMap<LabTest, Collection<LabTestAttribute>>();
+		results.put(harryGxp, Arrays.asList(newCartridgeId));
+
+		service.saveLabTestResults(results);
+		ArgumentCaptor<List> saved = ArgumentCaptor.forClass(List.class);
+		verify(dao, times(1)).saveLabTestAttributes(saved.capture(), anyInt());
+		assertThat((List<LabTestAttribute>) saved.getValue(),
+		    Matchers.contains(harryCartridgeId, olderCartridgeId, newCartridgeId));
+		assertTrue(harryCartridgeId.getVoided());
+		assertTrue(olderCartridgeId.getVoided());
+		assertFalse(newCartridgeId.getVoided());
+	}
+
+	@Test
+	public final void testRetryLabTestVoidQueueItem_shouldGiveUpAfterTenAttempts() {
+		LabTestVoidQueueItem item = new LabTestVoidQueueItem(harryGxp.getTestOrderId(), LabTestVoidQueueItem.Action.VOID,
+		        "Testing");
+		item.setAttempts(8);
+		service.retryLabTestVoidQueueItem(item, "Lock wait timeout exceeded");
+		assertFalse(item.getFailed());
+		service.retryLabTestVoidQueueItem(item, "Lock wait timeout exceeded");
+		assertTrue(item.getFailed());
+		assertEquals(Integer.valueOf(10), item.getAttempts());
+		verify(dao, times(2)).saveLabTestVoidQueueItem(item);
+	}
+
 	@Test
 	public final void testDeleteLabTestAttribute() {
 		doNothing().when(dao).purgeLabTestAttribute(any(LabTestAttribute.class));
@@ -410,15 +533,13 @@ public class CommonLabTestServiceTest extends CommonLabTestBase {
 
 	@Test
 	public final void testDeleteLabTestAttributeType() {
-		when(dao.getLabTestAttributes(any(LabTestAttributeType.class), isNull(String.class), isNull(Date.class),
-		    isNull(Date.class), any(Boolean.class))).thenReturn(Arrays.asList(harryCartridgeId, hermioneCartridgeId));
+		when(dao.getLabTestAttributesCount(any(LabTestAttributeType.class))).thenReturn(2L);
+		when(dao.purgeLabTestAttributes(any(LabTestAttributeType.class), anyInt())).thenReturn(2, 0);
 		doNothing().when(dao).purgeLabTestAttributeType(any(LabTestAttributeType.class));
-		doNothing().when(dao).purgeLabTestAttribute(any(LabTestAttribute.class));
 		service.deleteLabTestAttributeType(cartridgeId, true);
-		verify(dao, times(1)).getLabTestAttributes(any(LabTestAttributeType.class), isNull(String.class), isNull(Date.class),
-		    isNull(Date.class), any(Boolean.class));
+		verify(dao, times(1)).getLabTestAttributesCount(any(LabTestAttributeType.class));
+		verify(dao, times(2)).purgeLabTestAttributes(any(LabTestAttributeType.class), anyInt());
 		verify(dao, times(1)).purgeLabTestAttributeType(any(LabTestAttributeType.class));
-		verify(dao, times(2)).purgeLabTestAttribute(any(LabTestAttribute.class));
 		verifyNoMoreInteractions(dao);
 	}
 
@@ -472,4 +593,36 @@ public class CommonLabTestServiceTest extends CommonLabTestBase {
 		verifyNoMoreInteractions(dao);
 
 	}
+
+	@Test
+	public final void testVoidLabTests() {
+		harryGxp.getOrder().setVoided(true);
+		harryGxp.getOrder().setVoidReason("Encounter voided earlier");
+		List<LabTest> labTests = Arrays.asList(harryGxp, harryCxr);
+		service.voidLabTests(labTests, "Encounter voided");
+		verify(dao, times(1)).voidLabTestSamples(any(Collection.class), any(String.class), any(User.class),
+		    any(Date.class));
+		verify(dao, times(1)).voidLabTestAttributes(any(Collection.class), any(String.class), any(User.class),
+		    any(Date.class));
+		verify(dao, times(1)).voidLabTests(eq(labTests), eq("Encounter voided"), any(User.class), any(Date.class));
+		verifyNoMoreInteractions(dao);
+		// Orders which are voided already are left alone
+		assertEquals("Encounter voided earlier", harryGxp.getOrder().getVoidReason());
+		assertTrue(harryCxr.getOrder().getVoided());
+		assertEquals("Encounter voided", harryCxr.getOrder().getVoidReason());
+	}
+
+	@Test
+	public final void testUnvoidLabTests() {
+		harryGxp.setVoided(true);
+		harryGxp.setVoidReason("Encounter voided");
+		harryCxr.setVoided(true);
+		harryCxr.setVoidReason("Encounter voided");
+		List<LabTest> labTests = Arrays.asList(harryGxp, harryCxr);
+		service.unvoidLabTests(labTests);
+		verify(dao, times(1)).unvoidLabTestSamples(any(Collection.class), any(String.class));
+		verify(dao, times(1)).unvoidLabTestAttributes(any(Collection.class), any(String.class));
+		verify(dao, times(1)).unvoidLabTests(labTests);
+		verifyNoMoreInteractions(dao);
+	}
 }
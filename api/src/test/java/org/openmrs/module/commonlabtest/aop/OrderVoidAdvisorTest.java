@@ -12,21 +12,25 @@ package org.openmrs.module.commonlabtest.aop;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
 import org.openmrs.Encounter;
+import org.openmrs.GlobalProperty;
 import org.openmrs.Order;
 import org.openmrs.api.EncounterService;
 import org.openmrs.api.OrderService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
 import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.aop.common.AOPContextSensitiveTest;
 import org.openmrs.module.commonlabtest.aop.common.TestAOP;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.task.ProcessLabTestVoidQueueTask;
 
 /**
  * @author tahira.niazi@ihsinformatics.com
@@ -129,4 +133,51 @@ public class OrderVoidAdvisorTest extends AOPContextSensitiveTest {
 
 	}
 
+	@Test
+	public void voidEncounter_asyncVoidShouldQueueLabTestUntilTaskRuns() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(CommonLabTestActivator.ASYNC_VOID, "true"));
+		Encounter encounter = encounterService.getEncounter(DEMO_ENCOUNTER_ID);
+		LabTest labTest = commonLabTestService.getLabTest(DEMO_LAB_TEST_ID);
+
+		encounterService.voidEncounter(encounter, "Testing AOP");
+		assertFalse(labTest.getVoided());
+		assertTrue(commonLabTestService.getLabTestVoidQueueSize(false) > 0);
+
+		new ProcessLabTestVoidQueueTask().execute();
+		assertEquals(0, commonLabTestService.getLabTestVoidQueueSize(false));
+		assertTrue(commonLabTestService.getLabTest(DEMO_LAB_TEST_ID).getVoided());
+	}
+
+	@Test
+	public void unvoidEncounter_asyncUnvoidShouldLeaveResultsVoidedForOtherReasons() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(CommonLabTestActivator.ASYNC_VOID, "true"));
+		commonLabTestService.voidLabTestAttribute(commonLabTestService.getLabTestAttribute(DEMO_LAB_TEST_ATTRIBUTE2_ID),
+		    "Replaced by batch result");
+		Encounter encounter = encounterService.getEncounter(DEMO_ENCOUNTER_ID);
+		encounterService.voidEncounter(encounter, "Testing AOP");
+		new ProcessLabTestVoidQueueTask().execute();
+		assertTrue(commonLabTestService.getLabTest(DEMO_LAB_TEST_ID).getVoided());
+
+		encounterService.unvoidEncounter(encounterService.getEncounter(DEMO_ENCOUNTER_ID));
+		new ProcessLabTestVoidQueueTask().execute();
+		assertEquals(0, commonLabTestService.getLabTestVoidQueueSize(false));
+		assertFalse(commonLabTestService.getLabTest(DEMO_LAB_TEST_ID).getVoided());
+		assertFalse(commonLabTestService.getLabTestAttribute(DEMO_LAB_TEST_ATTRIBUTE1_ID).getVoided());
+		assertTrue(commonLabTestService.getLabTestAttribute(DEMO_LAB_TEST_ATTRIBUTE2_ID).getVoided());
+	}
+
+	@Test
+	public void voidEncounter_shouldIgnoreOrdersOfOtherTypes() {
+		Context.getAdministrationService()
+		        .saveGlobalProperty(new GlobalProperty(CommonLabTestActivator.ASYNC_VOID, "true"));
+		Context.getAdministrationService().saveGlobalProperty(
+		    new GlobalProperty(CommonLabTestActivator.LAB_ORDER_TYPE_UUID, "00000000-0000-0000-0000-000000000000"));
+		Encounter encounter = encounterService.getEncounter(DEMO_ENCOUNTER_ID);
+
+		encounterService.voidEncounter(encounter, "Testing AOP");
+		assertEquals(0, commonLabTestService.getLabTestVoidQueueSize(false));
+	}
+
 }
@@ -0,0 +1,77 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.liquibase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.commonlabtest.CommonLabTestBase;
+
+/**
+ * Runs the change against the attributes of the test dataset, which are loaded without typed values
+ */
+public class TypedValuesBackfillChangeTest extends CommonLabTestBase {
+
+	private static final String SELECT_TYPED_VALUES = "SELECT value_numeric, value_datetime, value_coded, value_boolean"
+	        + " FROM commonlabtest_attribute WHERE test_attribute_id = ?";
+
+	private Database database;
+
+	@Before
+	public void runBeforeEachTest() throws Exception {
+		super.initTestData();
+		database = mock(Database.class);
+		when(database.getConnection()).thenReturn(new JdbcConnection(getConnection()));
+	}
+
+	@Test
+	public final void execute_shouldFillTypedValuesFromValueReferences() throws Exception {
+		TypedValuesBackfillChange change = new TypedValuesBackfillChange();
+		change.execute(database);
+		// Coded MTB and RIF results, and the numeric CAD4TB score
+		assertEquals(Integer.valueOf(1138), getTypedValues(2)[2]);
+		assertEquals(Integer.valueOf(526778038), getTypedValues(3)[2]);
+		assertEquals(Integer.valueOf(2018220454), getTypedValues(7)[2]);
+		assertEquals(Double.valueOf(140), getTypedValues(8)[0]);
+		assertEquals("Filled typed values of 4 lab test attributes", change.getConfirmationMessage());
+	}
+
+	@Test
+	public final void execute_shouldLeaveTextValuesAlone() throws Exception {
+		new TypedValuesBackfillChange().execute(database);
+		for (Object value : getTypedValues(1)) {
+			assertNull(value);
+		}
+	}
+
+	private Object[] getTypedValues(int labTestAttributeId) throws Exception {
+		PreparedStatement statement = getConnection().prepareStatement(SELECT_TYPED_VALUES);
+		try {
+			statement.setInt(1, labTestAttributeId);
+			ResultSet resultSet = statement.executeQuery();
+			resultSet.next();
+			return new Object[] { resultSet.getObject(1), resultSet.getObject(2), resultSet.getObject(3),
+			        resultSet.getObject(4) };
+		}
+		finally {
+			statement.close();
+		}
+	}
+}
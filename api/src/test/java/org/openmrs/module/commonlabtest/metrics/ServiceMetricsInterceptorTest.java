@@ -0,0 +1,101 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.api.APIException;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+
+public class ServiceMetricsInterceptorTest {
+
+	private InMemoryServiceMetricsRegistry registry;
+
+	private ServiceMetricsInterceptor interceptor;
+
+	@Before
+	public void setUp() {
+		registry = new InMemoryServiceMetricsRegistry();
+		interceptor = new ServiceMetricsInterceptor(registry);
+	}
+
+	@Test
+	public void shouldRecordCallsAndRowsOfMethod() throws Throwable {
+		Method method = CommonLabTestService.class.getMethod("getLabTests", Patient.class, boolean.class);
+		List<LabTest> labTests = Arrays.asList(new LabTest(), new LabTest(), new LabTest());
+		interceptor.invoke(invocation(method, labTests));
+		interceptor.invoke(invocation(method, labTests));
+
+		List<MethodMetrics> methodMetrics = registry.getMethodMetrics();
+		assertEquals(1, methodMetrics.size());
+		MethodMetrics metrics = methodMetrics.get(0);
+		assertEquals("getLabTests(Patient,boolean)", metrics.getMethod());
+		assertEquals(2, metrics.getCalls());
+		assertEquals(6, metrics.getRows());
+		assertEquals(0, metrics.getErrorCount());
+		long[] buckets = metrics.getLatencyBuckets();
+		assertEquals(2, buckets[buckets.length - 1]);
+	}
+
+	@Test
+	public void shouldRecordExceptionOfMethod() throws Throwable {
+		Method method = CommonLabTestService.class.getMethod("getLabTests", Patient.class, boolean.class);
+		MethodInvocation invocation = mock(MethodInvocation.class);
+		when(invocation.getMethod()).thenReturn(method);
+		when(invocation.proceed()).thenThrow(new APIException("failed"));
+		try {
+			interceptor.invoke(invocation);
+			fail("The exception should be thrown again");
+		}
+		catch (APIException e) {}
+
+		MethodMetrics metrics = registry.getMethodMetrics().get(0);
+		assertEquals(1, metrics.getCalls());
+		assertEquals(1, metrics.getErrorCount());
+		assertEquals(Long.valueOf(1), metrics.getErrors().get("APIException"));
+	}
+
+	@Test
+	public void shouldBoundNumberOfLabels() {
+		for (int i = 0; i < InMemoryServiceMetricsRegistry.MAX_METHODS + 10; i++) {
+			registry.record("method" + i, 1000, 1, "Exception" + i % (InMemoryServiceMetricsRegistry.MAX_EXCEPTIONS + 5));
+			registry.record("method0", 1000, 1, "Exception" + i);
+		}
+
+		List<MethodMetrics> methodMetrics = registry.getMethodMetrics();
+		assertEquals(InMemoryServiceMetricsRegistry.MAX_METHODS + 1, methodMetrics.size());
+		for (MethodMetrics metrics : methodMetrics) {
+			if (metrics.getMethod().equals(InMemoryServiceMetricsRegistry.OTHER)) {
+				assertEquals(10, metrics.getCalls());
+			} else if (metrics.getMethod().equals("method0")) {
+				assertEquals(InMemoryServiceMetricsRegistry.MAX_EXCEPTIONS + 1, metrics.getErrors().size());
+			}
+		}
+	}
+
+	private MethodInvocation invocation(Method method, Object result) throws Throwable {
+		MethodInvocation invocation = mock(MethodInvocation.class);
+		when(invocation.getMethod()).thenReturn(method);
+		when(invocation.proceed()).thenReturn(result);
+		return invocation;
+	}
+}
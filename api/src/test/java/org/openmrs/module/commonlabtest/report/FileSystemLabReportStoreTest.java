@@ -0,0 +1,80 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.api.APIException;
+
+public class FileSystemLabReportStoreTest {
+
+	private static final String ABC_SHA256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileSystemLabReportStore store;
+
+	@Before
+	public void setUp() {
+		store = new FileSystemLabReportStore(new ReportFileWriter(folder.getRoot(), Collections.singleton(".pdf"), 0));
+	}
+
+	@Test
+	public final void testStoreShardsByDigest() throws Exception {
+		ReportFile reportFile = store.store(new ByteArrayInputStream("abc".getBytes("UTF-8")), "report.pdf");
+
+		File expected = new File(folder.getRoot(), "ba" + File.separator + "78" + File.separator + ABC_SHA256);
+		assertEquals(expected, reportFile.getFile());
+		assertEquals(ABC_SHA256, reportFile.getSha256());
+		assertTrue(expected.isFile());
+		assertTrue(store.contains(expected));
+		assertFalse(store.contains(folder.getRoot().getParentFile()));
+	}
+
+	@Test
+	public final void testStoreKeepsOneFileForSameContent() throws Exception {
+		ReportFile first = store.store(new ByteArrayInputStream("abc".getBytes("UTF-8")), "first.pdf");
+		ReportFile second = store.store(new ByteArrayInputStream("abc".getBytes("UTF-8")), "second.pdf");
+
+		assertEquals(first.getFile(), second.getFile());
+		// Only the shard directory is left in the root, no temporary files
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	@Test
+	public final void testStoreKeepsFilesOfSameName() throws Exception {
+		ReportFile first = store.store(new ByteArrayInputStream("abc".getBytes("UTF-8")), "report.pdf");
+		ReportFile second = store.store(new ByteArrayInputStream("xyz".getBytes("UTF-8")), "report.pdf");
+
+		assertFalse(first.getFile().equals(second.getFile()));
+		assertTrue(first.getFile().isFile());
+	}
+
+	@Test(expected = APIException.class)
+	public final void testStoreRejectsDisallowedExtension() throws Exception {
+		store.store(new ByteArrayInputStream(new byte[1]), "report.exe");
+	}
+
+	@Test
+	public final void testWithoutLimitsAcceptsAnyExtension() throws Exception {
+		assertTrue(store.withoutLimits().store(new ByteArrayInputStream(new byte[1]), "report.exe").getFile().isFile());
+	}
+}
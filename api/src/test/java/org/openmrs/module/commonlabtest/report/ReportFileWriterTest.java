@@ -0,0 +1,81 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openmrs.api.APIException;
+
+public class ReportFileWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ReportFileWriter writer;
+
+	@Before
+	public void setUp() {
+		writer = new ReportFileWriter(folder.getRoot(), ReportFileWriter.parseExtensions(".pdf ,.JPG"), 5);
+	}
+
+	@Test
+	public final void testParseExtensions() {
+		Set<String> extensions = ReportFileWriter.parseExtensions(".bmp ,.jpg ,.GIF,png,");
+		assertEquals(4, extensions.size());
+		assertTrue(extensions.contains(".gif"));
+		assertTrue(extensions.contains(".png"));
+	}
+
+	@Test
+	public final void testWrite() throws Exception {
+		ReportFile reportFile = writer.write(new ByteArrayInputStream("abc".getBytes("UTF-8")), "C:\\scans\\x ray.PDF");
+
+		assertEquals(new File(folder.getRoot(), "x-ray.PDF"), reportFile.getFile());
+		assertEquals("abc", new String(Files.readAllBytes(reportFile.getFile().toPath()), "UTF-8"));
+		assertEquals(3, reportFile.getSize());
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", reportFile.getSha256());
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	@Test
+	public final void testWriteRejectsDisallowedExtension() throws Exception {
+		try {
+			writer.write(new ByteArrayInputStream(new byte[1]), "script.sh");
+			fail();
+		}
+		catch (APIException e) {
+			assertEquals(0, folder.getRoot().list().length);
+		}
+	}
+
+	@Test
+	public final void testWriteRejectsLargeFileWithoutLeavingTempFile() throws Exception {
+		try {
+			writer.write(new ByteArrayInputStream(new byte[6]), "scan.jpg");
+			fail();
+		}
+		catch (APIException e) {
+			assertFalse(new File(folder.getRoot(), "scan.jpg").exists());
+			assertEquals(0, folder.getRoot().list().length);
+		}
+	}
+}
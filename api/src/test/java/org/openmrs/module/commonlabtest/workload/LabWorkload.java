@@ -0,0 +1,147 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.workload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Summary of the rows written by {@link LabWorkloadGenerator}: how many there are of each, and a
+ * uniform sample of their ids and uuids, bounded in size however large the workload is, for tests
+ * and benchmarks to query with
+ */
+public class LabWorkload {
+
+	private long patientCount;
+
+	private long labTestCount;
+
+	private long sampleCount;
+
+	private long attributeCount;
+
+	private final Reservoir<Integer> patientIds;
+
+	private final Reservoir<Integer> testOrderIds;
+
+	private final Reservoir<String> labTestUuids;
+
+	private final Reservoir<String> sampleUuids;
+
+	private final Reservoir<String> attributeUuids;
+
+	LabWorkload(int sampleSize, long seed) {
+		Random random = new Random(seed);
+		patientIds = new Reservoir<Integer>(sampleSize, random);
+		testOrderIds = new Reservoir<Integer>(sampleSize, random);
+		labTestUuids = new Reservoir<String>(sampleSize, random);
+		sampleUuids = new Reservoir<String>(sampleSize, random);
+		attributeUuids = new Reservoir<String>(sampleSize, random);
+	}
+
+	void addPatient(Integer patientId) {
+		patientCount++;
+		patientIds.add(patientId);
+	}
+
+	void addLabTest(Integer testOrderId, String uuid) {
+		labTestCount++;
+		testOrderIds.add(testOrderId);
+		labTestUuids.add(uuid);
+	}
+
+	void addSample(String uuid) {
+		sampleCount++;
+		sampleUuids.add(uuid);
+	}
+
+	void addAttribute(String uuid) {
+		attributeCount++;
+		attributeUuids.add(uuid);
+	}
+
+	public long getPatientCount() {
+		return patientCount;
+	}
+
+	public long getLabTestCount() {
+		return labTestCount;
+	}
+
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	public long getAttributeCount() {
+		return attributeCount;
+	}
+
+	public List<Integer> getPatientIds() {
+		return patientIds.getItems();
+	}
+
+	public List<Integer> getTestOrderIds() {
+		return testOrderIds.getItems();
+	}
+
+	public List<String> getLabTestUuids() {
+		return labTestUuids.getItems();
+	}
+
+	public List<String> getSampleUuids() {
+		return sampleUuids.getItems();
+	}
+
+	public List<String> getAttributeUuids() {
+		return attributeUuids.getItems();
+	}
+
+	@Override
+	public String toString() {
+		return patientCount + " patients, " + labTestCount + " lab tests, " + sampleCount + " samples, "
+		        + attributeCount + " results";
+	}
+
+	/**
+	 * Keeps a uniform random sample of the items added to it (reservoir sampling)
+	 */
+	private static class Reservoir<T> {
+
+		private final int size;
+
+		private final Random random;
+
+		private final List<T> items = new ArrayList<T>();
+
+		private long seen;
+
+		Reservoir(int size, Random random) {
+			this.size = size;
+			this.random = random;
+		}
+
+		void add(T item) {
+			seen++;
+			if (items.size() < size) {
+				items.add(item);
+			} else {
+				long index = (long) (random.nextDouble() * seen);
+				if (index < size) {
+					items.set((int) index, item);
+				}
+			}
+		}
+
+		List<T> getItems() {
+			return items;
+		}
+	}
+}
@@ -0,0 +1,877 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.workload;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.openmrs.module.commonlabtest.LabTestGroup;
+import org.openmrs.module.commonlabtest.LabTestSampleStatus;
+
+/**
+ * Generates a synthetic lab workload of any size, for load and scale testing. Patients are
+ * registered over a period of days and ordered lab tests throughout it; the lab test types, one or
+ * more per {@link LabTestGroup}, are drawn with the weights they have in a typical TB and primary
+ * care lab. Samples of the tests requiring a specimen go through the {@link LabTestSampleStatus}
+ * transitions according to the time left until the end of the period: recent samples are still
+ * COLLECTED or ACCEPTED, some are REJECTED and collected again, and the others are PROCESSED. Results
+ * are recorded for processed samples and for tests not requiring one, with values matching the
+ * datatype of each attribute type, including the typed value columns. The number of specimens per
+ * test and of results per test can be raised, e.g. to load the tables of samples and results more
+ * than the others.
+ * <p>
+ * Rows are written with JDBC batches, bypassing Hibernate and the service layer. The generator only
+ * needs the reference data of a standard OpenMRS database (a user, provider, concepts, an encounter
+ * type, the test order type and a care setting); the lab test types and attribute types are looked
+ * up by name and created if missing. The output only depends on the seed and the settings, but a
+ * seed can be loaded only once into a database, as it determines the uuids. Against MySQL, add
+ * {@code rewriteBatchedStatements=true} to the JDBC URL and set a commit interval, e.g. with
+ * {@link #main(String[])}.
+ */
+public class LabWorkloadGenerator {
+
+	public static final long DEFAULT_SEED = 20181018L;
+
+	/** Number of lab tests whose rows are sent to the database in one batch */
+	private static final int BATCH_SIZE = 1000;
+
+	private static final long HOUR = 60L * 60 * 1000;
+
+	private static final long DAY = 24 * HOUR;
+
+	private static final String FREE_TEXT = "org.openmrs.customdatatype.datatype.FreeTextDatatype";
+
+	private static final String REGEX_TEXT = "org.openmrs.customdatatype.datatype.RegexValidatedTextDatatype";
+
+	private static final String FLOAT = "org.openmrs.customdatatype.datatype.FloatDatatype";
+
+	private static final String BOOLEAN = "org.openmrs.customdatatype.datatype.BooleanDatatype";
+
+	private static final String DATE = "org.openmrs.customdatatype.datatype.DateDatatype";
+
+	private static final String CONCEPT = "org.openmrs.customdatatype.datatype.ConceptDatatype";
+
+	private static final String[] REJECTION_REASONS = { "Insufficient quantity", "Contaminated", "Leaking container",
+	        "Unlabelled specimen" };
+
+	private static final TestTemplate[] CATALOGUE = {
+	        new TestTemplate("GeneXpert MTB/RIF", "GXPW", LabTestGroup.BACTERIOLOGY, true, 20,
+	                new AttributeTemplate("Cartridge ID", FREE_TEXT, "[0-9]{9,12}"),
+	                new AttributeTemplate("MTB Result", CONCEPT, null), new AttributeTemplate("RIF Result", CONCEPT, null)),
+	        new TestTemplate("Sputum Smear Microscopy", "AFBW", LabTestGroup.MICROBIOLOGY, true, 15,
+	                new AttributeTemplate("Smear Result", REGEX_TEXT, "NEGATIVE|SCANTY|1\\+|2\\+|3\\+", "NEGATIVE",
+	                        "NEGATIVE", "NEGATIVE", "NEGATIVE", "NEGATIVE", "NEGATIVE", "SCANTY", "1+", "2+", "3+")),
+	        new TestTemplate("Complete Blood Count", "CBCW", LabTestGroup.HEMATOLOGY, true, 20,
+	                new AttributeTemplate("Hemoglobin", FLOAT, "4-20"), new AttributeTemplate("WBC Count", FLOAT, "1-30"),
+	                new AttributeTemplate("Platelet Count", FLOAT, "20-800")),
+	        new TestTemplate("Chest X-Ray", "CXRW", LabTestGroup.RADIOLOGY, false, 15,
+	                new AttributeTemplate("Chest X-Ray Result", REGEX_TEXT, "(AB)?NORMAL|ERROR", "NORMAL", "NORMAL",
+	                        "NORMAL", "ABNORMAL", "ABNORMAL", "ERROR"),
+	                new AttributeTemplate("Radiologist Remarks", FREE_TEXT, null, "No active disease",
+	                        "Cavitation in upper lobe", "Hilar lymphadenopathy", "Pleural effusion", "Repeat advised"),
+	                new AttributeTemplate("CAD4TB Score", FLOAT, "1-100")),
+	        new TestTemplate("Urine Routine Examination", "UREW", LabTestGroup.URINALYSIS, true, 10,
+	                new AttributeTemplate("Protein Present", BOOLEAN, null, "false", "false", "false", "true"),
+	                new AttributeTemplate("Glucose Present", BOOLEAN, null, "false", "false", "false", "false", "true")),
+	        new TestTemplate("Liver Function Test", "LFTW", LabTestGroup.BIOCHEMISTRY, true, 10,
+	                new AttributeTemplate("ALT", FLOAT, "5-300"), new AttributeTemplate("AST", FLOAT, "5-300")),
+	        new TestTemplate("HIV Rapid Test", "HIVW", LabTestGroup.SEROLOGY, true, 5,
+	                new AttributeTemplate("HIV Result", CONCEPT, null)),
+	        new TestTemplate("TB Culture", "CULW", LabTestGroup.MICROBIOLOGY, true, 3,
+	                new AttributeTemplate("Inoculation Date", DATE, null), new AttributeTemplate("Culture Result", CONCEPT,
+	                        null)),
+	        new TestTemplate("Abdominal Ultrasound", "USGW", LabTestGroup.SONOLOGY, false, 2,
+	                new AttributeTemplate("Findings", FREE_TEXT, null, "Normal study", "Hepatomegaly",
+	                        "Ascites", "Enlarged lymph nodes")) };
+
+	private final long seed;
+
+	private final Random random;
+
+	private int patients = 1000;
+
+	private int testsPerPatient = 5;
+
+	private int samplesPerTest = 1;
+
+	private int attributesPerTest;
+
+	private Date start = Timestamp.valueOf("2016-01-01 00:00:00");
+
+	private int days = 1000;
+
+	private double rejectionRate = 0.08;
+
+	private double lossRate = 0.03;
+
+	private double voidRate = 0.01;
+
+	private int commitInterval;
+
+	private int sampleSize = 10000;
+
+	public LabWorkloadGenerator() {
+		this(DEFAULT_SEED);
+	}
+
+	public LabWorkloadGenerator(long seed) {
+		this.seed = seed;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Generates lab workload into a database, e.g. {@code jdbc:mysql://localhost:3306/openmrs?rewriteBatchedStatements=true
+	 * user password 1000000 5}
+	 *
+	 * @param args JDBC URL, user, password, and optionally the number of patients, mean number of
+	 *            lab tests per patient, specimens per test, results per test and the seed
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("Usage: LabWorkloadGenerator <jdbc url> <user> <password> [patients] [tests per patient]"
+			        + " [samples per test] [results per test] [seed]");
+			System.exit(1);
+		}
+		LabWorkloadGenerator generator = new LabWorkloadGenerator(args.length > 7 ? Long.parseLong(args[7])
+		        : DEFAULT_SEED);
+		if (args.length > 3) {
+			generator.setPatients(Integer.parseInt(args[3]));
+		}
+		if (args.length > 4) {
+			generator.setTestsPerPatient(Integer.parseInt(args[4]));
+		}
+		if (args.length > 5) {
+			generator.setSamplesPerTest(Integer.parseInt(args[5]));
+		}
+		if (args.length > 6) {
+			generator.setAttributesPerTest(Integer.parseInt(args[6]));
+		}
+		generator.setCommitInterval(10);
+		Connection connection = DriverManager.getConnection(args[0], args[1], args[2]);
+		try {
+			connection.setAutoCommit(false);
+			long started = System.currentTimeMillis();
+			LabWorkload workload = generator.generate(connection);
+			connection.commit();
+			System.out.println("Generated " + workload + " in " + (System.currentTimeMillis() - started) / 1000 + " s");
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Writes the workload. The connection is committed every {@link #setCommitInterval(int)}
+	 * batches if it is not in auto-commit mode, and is not closed.
+	 *
+	 * @return the number of rows written and a sample of their ids and uuids
+	 */
+	public LabWorkload generate(Connection connection) throws SQLException {
+		References references = new References(connection);
+		List<TestType> testTypes = getTestTypes(connection, references);
+		int totalWeight = 0;
+		for (TestType testType : testTypes) {
+			totalWeight += testType.template.weight;
+		}
+		LabWorkload workload = new LabWorkload(sampleSize, seed);
+		Batch batch = new Batch(connection);
+		try {
+			int personId = nextId(connection, "person", "person_id");
+			int encounterId = nextId(connection, "encounter", "encounter_id");
+			int orderId = nextId(connection, "orders", "order_id");
+			int sampleId = nextId(connection, "commonlabtest_sample", "test_sample_id");
+			int attributeId = nextId(connection, "commonlabtest_attribute", "test_attribute_id");
+			long end = start.getTime() + days * DAY;
+			int batches = 0;
+			for (int p = 0; p < patients; p++, personId++) {
+				Timestamp registered = new Timestamp(start.getTime() + (long) (random.nextDouble() * days * DAY));
+				batch.addPatient(personId, registered, random.nextBoolean() ? "M" : "F", new java.sql.Date(
+				        registered.getTime() - (365L * (1 + random.nextInt(80))) * DAY), uuid());
+				workload.addPatient(personId);
+				int tests = testsPerPatient < 1 ? 0 : 1 + random.nextInt(2 * testsPerPatient - 1);
+				for (int t = 0; t < tests; t++, encounterId++, orderId++) {
+					TestType testType = pick(testTypes, totalWeight);
+					Timestamp ordered = new Timestamp(registered.getTime()
+					        + (long) (random.nextDouble() * (end - registered.getTime())));
+					String labTestUuid = uuid();
+					batch.addOrder(encounterId, orderId, personId, testType, references, ordered, uuid(), uuid());
+					batch.addLabTest(orderId, testType.testTypeId, ordered, random.nextDouble() < voidRate, labTestUuid);
+					workload.addLabTest(orderId, labTestUuid);
+
+					Timestamp resulted = null;
+					if (testType.template.requiresSpecimen) {
+						int collections = 0;
+						// Each specimen goes through the transitions on its own, the last one processed results the test
+						for (int specimen = 0; specimen < samplesPerTest; specimen++) {
+							Timestamp collected = new Timestamp(ordered.getTime() + random.nextInt(4) * HOUR);
+							for (int s = 1; collected.getTime() < end; s++) {
+								LabTestSampleStatus status = LabTestSampleStatus.COLLECTED;
+								Timestamp processed = null;
+								String comments = null;
+								if (collected.getTime() + DAY < end) {
+									if (s < 3 && random.nextDouble() < rejectionRate) {
+										status = LabTestSampleStatus.REJECTED;
+										comments = REJECTION_REASONS[random.nextInt(REJECTION_REASONS.length)];
+									} else {
+										status = LabTestSampleStatus.ACCEPTED;
+										processed = new Timestamp(collected.getTime() + DAY + random.nextInt(48) * HOUR);
+										if (processed.getTime() < end && random.nextDouble() >= lossRate) {
+											status = LabTestSampleStatus.PROCESSED;
+											if (resulted == null || processed.after(resulted)) {
+												resulted = processed;
+											}
+										} else {
+											processed = null;
+										}
+									}
+								}
+								String sampleUuid = uuid();
+								batch.addSample(sampleId, orderId, status, orderId + "-" + ++collections, references,
+								    1 + random.nextInt(5), collected, processed, comments, sampleUuid);
+								workload.addSample(sampleUuid);
+								sampleId++;
+								if (status != LabTestSampleStatus.REJECTED) {
+									break;
+								}
+								// Collected again the next day
+								collected = new Timestamp(collected.getTime() + DAY + random.nextInt(8) * HOUR);
+							}
+						}
+					} else {
+						long resultTime = ordered.getTime() + DAY + random.nextInt(48) * HOUR;
+						if (resultTime < end && random.nextDouble() >= lossRate) {
+							resulted = new Timestamp(resultTime);
+						}
+					}
+					if (resulted != null) {
+						int types = testType.attributeTypeIds.length;
+						int results = attributesPerTest > 0 ? attributesPerTest : types;
+						for (int r = 0; r < results; r++, attributeId++) {
+							int a = r % types;
+							// Results beyond one per attribute type amend the earlier ones, which are voided
+							Timestamp recorded = new Timestamp(resulted.getTime() + (r / types) * HOUR);
+							String attributeUuid = uuid();
+							batch.addAttribute(attributeId, orderId, testType.attributeTypeIds[a],
+							    testType.template.attributes[a], references, recorded, r + types < results, attributeUuid);
+							workload.addAttribute(attributeUuid);
+						}
+					}
+					if (batch.size() >= BATCH_SIZE) {
+						batch.execute();
+						if (commitInterval > 0 && ++batches % commitInterval == 0 && !connection.getAutoCommit()) {
+							connection.commit();
+						}
+					}
+				}
+			}
+			batch.execute();
+		}
+		finally {
+			batch.close();
+		}
+		return workload;
+	}
+
+	/**
+	 * @return the lab test types of the catalogue, created along with their attribute types if the
+	 *         database does not have them yet
+	 */
+	private List<TestType> getTestTypes(Connection connection, References references) throws SQLException {
+		List<TestType> testTypes = new ArrayList<TestType>();
+		for (TestTemplate template : CATALOGUE) {
+			Integer testTypeId = queryId(connection, "SELECT test_type_id FROM commonlabtest_type WHERE short_name = ?"
+			        + " AND name = ?", template.shortName, template.name);
+			if (testTypeId == null) {
+				testTypeId = nextId(connection, "commonlabtest_type", "test_type_id");
+				PreparedStatement insert = connection.prepareStatement("INSERT INTO commonlabtest_type (test_type_id,"
+				        + " name, short_name, test_group, requires_specimen, reference_concept_id, description, creator,"
+				        + " date_created, retired, uuid) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+				try {
+					insert.setInt(1, testTypeId);
+					insert.setString(2, template.name);
+					insert.setString(3, template.shortName);
+					insert.setString(4, template.group.name());
+					insert.setBoolean(5, template.requiresSpecimen);
+					insert.setInt(6, references.conceptIds.get(random.nextInt(references.conceptIds.size())));
+					insert.setString(7, "Generated lab test type");
+					insert.setInt(8, references.creatorId);
+					insert.setTimestamp(9, new Timestamp(start.getTime()));
+					insert.setBoolean(10, false);
+					insert.setString(11, uuid());
+					insert.executeUpdate();
+				}
+				finally {
+					insert.close();
+				}
+			}
+			TestType testType = new TestType(testTypeId, template, getReferenceConceptId(connection, testTypeId));
+			for (int i = 0; i < template.attributes.length; i++) {
+				testType.attributeTypeIds[i] = getAttributeTypeId(connection, references, testTypeId,
+				    template.attributes[i], i + 1);
+			}
+			testTypes.add(testType);
+		}
+		return testTypes;
+	}
+
+	private int getReferenceConceptId(Connection connection, int testTypeId) throws SQLException {
+		Integer conceptId = queryId(connection,
+		    "SELECT reference_concept_id FROM commonlabtest_type WHERE test_type_id = ?", testTypeId);
+		// Orders of the type need a concept, so a type without one cannot be generated for
+		if (conceptId == null) {
+			throw new IllegalStateException("The lab test type " + testTypeId + " has no reference concept");
+		}
+		return conceptId;
+	}
+
+	private int getAttributeTypeId(Connection connection, References references, int testTypeId,
+	        AttributeTemplate template, int sortWeight) throws SQLException {
+		Integer attributeTypeId = queryId(connection, "SELECT test_attribute_type_id FROM commonlabtest_attribute_type"
+		        + " WHERE test_type_id = ? AND name = ? AND retired = ?", testTypeId, template.name, false);
+		if (attributeTypeId != null) {
+			return attributeTypeId;
+		}
+		attributeTypeId = nextId(connection, "commonlabtest_attribute_type", "test_attribute_type_id");
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO commonlabtest_attribute_type"
+		        + " (test_attribute_type_id, test_type_id, name, datatype, min_occurs, max_occurs, datatype_config,"
+		        + " sort_weight, description, creator, date_created, retired, uuid)"
+		        + " VALUES (?, ?, ?, ?, 0, 1, ?, ?, ?, ?, ?, ?, ?)");
+		try {
+			insert.setInt(1, attributeTypeId);
+			insert.setInt(2, testTypeId);
+			insert.setString(3, template.name);
+			insert.setString(4, template.datatype);
+			insert.setString(5, template.config);
+			insert.setInt(6, sortWeight);
+			insert.setString(7, "Generated attribute type");
+			insert.setInt(8, references.creatorId);
+			insert.setTimestamp(9, new Timestamp(start.getTime()));
+			insert.setBoolean(10, false);
+			insert.setString(11, uuid());
+			insert.executeUpdate();
+		}
+		finally {
+			insert.close();
+		}
+		return attributeTypeId;
+	}
+
+	private TestType pick(List<TestType> testTypes, int totalWeight) {
+		int weight = random.nextInt(totalWeight);
+		for (TestType testType : testTypes) {
+			weight -= testType.template.weight;
+			if (weight < 0) {
+				return testType;
+			}
+		}
+		return testTypes.get(testTypes.size() - 1);
+	}
+
+	/**
+	 * @return a random version 4 uuid, drawn from the seeded random numbers
+	 */
+	private String uuid() {
+		long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(msb, lsb).toString();
+	}
+
+	private static int nextId(Connection connection, String table, String column) throws SQLException {
+		Integer max = queryId(connection, "SELECT MAX(" + column + ") FROM " + table);
+		return max == null ? 1 : max + 1;
+	}
+
+	/**
+	 * @return the integer in the first column of the first row, null if there are no rows or it is
+	 *         NULL
+	 */
+	private static Integer queryId(Connection connection, String sql, Object... parameters) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		try {
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+			ResultSet resultSet = statement.executeQuery();
+			try {
+				if (resultSet.next()) {
+					int id = resultSet.getInt(1);
+					return resultSet.wasNull() ? null : id;
+				}
+				return null;
+			}
+			finally {
+				resultSet.close();
+			}
+		}
+		finally {
+			statement.close();
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getPatients() {
+		return patients;
+	}
+
+	public void setPatients(int patients) {
+		this.patients = patients;
+	}
+
+	public int getTestsPerPatient() {
+		return testsPerPatient;
+	}
+
+	/**
+	 * @param testsPerPatient mean number of lab tests ordered for a patient; each patient gets between
+	 *            1 and twice as many, less one
+	 */
+	public void setTestsPerPatient(int testsPerPatient) {
+		this.testsPerPatient = testsPerPatient;
+	}
+
+	public int getSamplesPerTest() {
+		return samplesPerTest;
+	}
+
+	/**
+	 * @param samplesPerTest number of specimens collected for a lab test requiring one, e.g. 2 for spot
+	 *            and morning sputum; a rejected specimen is collected again on top of them
+	 */
+	public void setSamplesPerTest(int samplesPerTest) {
+		this.samplesPerTest = samplesPerTest;
+	}
+
+	public int getAttributesPerTest() {
+		return attributesPerTest;
+	}
+
+	/**
+	 * @param attributesPerTest number of results recorded for a resulted lab test, 0 for one per
+	 *            attribute type of its test type. Fewer only record the first attribute types; more
+	 *            record them again an hour apart, voiding the earlier values as amended
+	 */
+	public void setAttributesPerTest(int attributesPerTest) {
+		this.attributesPerTest = attributesPerTest;
+	}
+
+	public Date getStart() {
+		return start;
+	}
+
+	public void setStart(Date start) {
+		this.start = start;
+	}
+
+	public int getDays() {
+		return days;
+	}
+
+	/**
+	 * @param days length of the period over which patients are registered and tests ordered
+	 */
+	public void setDays(int days) {
+		this.days = days;
+	}
+
+	/**
+	 * @param rejectionRate share of the samples rejected by the lab
+	 */
+	public void setRejectionRate(double rejectionRate) {
+		this.rejectionRate = rejectionRate;
+	}
+
+	/**
+	 * @param lossRate share of the accepted samples, or of tests without a specimen, never resulted
+	 */
+	public void setLossRate(double lossRate) {
+		this.lossRate = lossRate;
+	}
+
+	/**
+	 * @param voidRate share of the lab tests voided, as entered in error
+	 */
+	public void setVoidRate(double voidRate) {
+		this.voidRate = voidRate;
+	}
+
+	/**
+	 * @param commitInterval number of batches after which the connection is committed, 0 to leave
+	 *            committing to the caller
+	 */
+	public void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+	}
+
+	/**
+	 * @param sampleSize number of ids and uuids of each kind kept in the {@link LabWorkload}
+	 */
+	public void setSampleSize(int sampleSize) {
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Prepared statements of the rows of a batch of lab tests, executed parents first
+	 */
+	private class Batch {
+
+		private final PreparedStatement person;
+
+		private final PreparedStatement patient;
+
+		private final PreparedStatement encounter;
+
+		private final PreparedStatement order;
+
+		private final PreparedStatement labTest;
+
+		private final PreparedStatement sample;
+
+		private final PreparedStatement attribute;
+
+		private final List<PreparedStatement> statements = new ArrayList<PreparedStatement>();
+
+		private int size;
+
+		Batch(Connection connection) throws SQLException {
+			person = prepare(connection, "INSERT INTO person (person_id, gender, birthdate, birthdate_estimated, dead,"
+			        + " creator, date_created, voided, uuid, deathdate_estimated) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			patient = prepare(connection, "INSERT INTO patient (patient_id, creator, date_created, voided,"
+			        + " allergy_status) VALUES (?, ?, ?, ?, 'Unknown')");
+			encounter = prepare(connection, "INSERT INTO encounter (encounter_id, encounter_type, patient_id,"
+			        + " encounter_datetime, creator, date_created, voided, uuid) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+			order = prepare(connection, "INSERT INTO orders (order_id, order_type_id, concept_id, orderer, encounter_id,"
+			        + " date_activated, order_action, creator, date_created, voided, patient_id, uuid, urgency,"
+			        + " order_number, care_setting) VALUES (?, ?, ?, ?, ?, ?, 'NEW', ?, ?, ?, ?, ?, 'ROUTINE', ?, ?)");
+			labTest = prepare(connection, "INSERT INTO commonlabtest_test (test_order_id, test_type_id,"
+			        + " lab_reference_number, creator, date_created, voided, voided_by, date_voided, void_reason, uuid)"
+			        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			sample = prepare(connection, "INSERT INTO commonlabtest_sample (test_sample_id, test_order_id,"
+			        + " specimen_type, specimen_site, status, lab_sample_identifier, collector, creator, quantity, units,"
+			        + " collection_date, processed_date, comments, date_created, voided, uuid)"
+			        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 'ml', ?, ?, ?, ?, ?, ?)");
+			attribute = prepare(connection, "INSERT INTO commonlabtest_attribute (test_attribute_id, test_order_id,"
+			        + " attribute_type_id, value_reference, value_numeric, value_datetime, value_coded, value_boolean,"
+			        + " creator, date_created, voided, uuid, voided_by, date_voided, void_reason)"
+			        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		}
+
+		private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+			PreparedStatement statement = connection.prepareStatement(sql);
+			statements.add(statement);
+			return statement;
+		}
+
+		void addPatient(int personId, Timestamp registered, String gender, java.sql.Date birthdate, String uuid)
+		        throws SQLException {
+			person.setInt(1, personId);
+			person.setString(2, gender);
+			person.setDate(3, birthdate);
+			person.setBoolean(4, false);
+			person.setBoolean(5, false);
+			person.setInt(6, 1);
+			person.setTimestamp(7, registered);
+			person.setBoolean(8, false);
+			person.setString(9, uuid);
+			person.setBoolean(10, false);
+			person.addBatch();
+			patient.setInt(1, personId);
+			patient.setInt(2, 1);
+			patient.setTimestamp(3, registered);
+			patient.setBoolean(4, false);
+			patient.addBatch();
+		}
+
+		void addOrder(int encounterId, int orderId, int patientId, TestType testType, References references,
+		        Timestamp ordered, String encounterUuid, String orderUuid) throws SQLException {
+			encounter.setInt(1, encounterId);
+			encounter.setInt(2, references.encounterTypeId);
+			encounter.setInt(3, patientId);
+			encounter.setTimestamp(4, ordered);
+			encounter.setInt(5, references.creatorId);
+			encounter.setTimestamp(6, ordered);
+			encounter.setBoolean(7, false);
+			encounter.setString(8, encounterUuid);
+			encounter.addBatch();
+			order.setInt(1, orderId);
+			order.setInt(2, references.orderTypeId);
+			order.setInt(3, testType.referenceConceptId);
+			order.setInt(4, references.providerIds.get(random.nextInt(references.providerIds.size())));
+			order.setInt(5, encounterId);
+			order.setTimestamp(6, ordered);
+			order.setInt(7, references.creatorId);
+			order.setTimestamp(8, ordered);
+			order.setBoolean(9, false);
+			order.setInt(10, patientId);
+			order.setString(11, orderUuid);
+			order.setString(12, testType.template.shortName + "-" + orderId);
+			order.setInt(13, references.careSettingId);
+			order.addBatch();
+		}
+
+		void addLabTest(int testOrderId, int testTypeId, Timestamp ordered, boolean voided, String uuid)
+		        throws SQLException {
+			labTest.setInt(1, testOrderId);
+			labTest.setInt(2, testTypeId);
+			labTest.setString(3, "LAB-" + testOrderId);
+			labTest.setInt(4, 1);
+			labTest.setTimestamp(5, ordered);
+			labTest.setBoolean(6, voided);
+			if (voided) {
+				labTest.setInt(7, 1);
+				labTest.setTimestamp(8, new Timestamp(ordered.getTime() + HOUR));
+				labTest.setString(9, "Entered in error");
+			} else {
+				labTest.setNull(7, Types.INTEGER);
+				labTest.setNull(8, Types.TIMESTAMP);
+				labTest.setNull(9, Types.VARCHAR);
+			}
+			labTest.setString(10, uuid);
+			labTest.addBatch();
+			size++;
+		}
+
+		void addSample(int sampleId, int testOrderId, LabTestSampleStatus status, String identifier,
+		        References references, double quantity, Timestamp collected, Timestamp processed, String comments,
+		        String uuid) throws SQLException {
+			sample.setInt(1, sampleId);
+			sample.setInt(2, testOrderId);
+			sample.setInt(3, references.conceptIds.get(0));
+			sample.setInt(4, references.conceptIds.get(references.conceptIds.size() - 1));
+			sample.setString(5, status.name());
+			sample.setString(6, identifier);
+			sample.setInt(7, references.providerIds.get(random.nextInt(references.providerIds.size())));
+			sample.setInt(8, 1);
+			sample.setDouble(9, quantity);
+			sample.setTimestamp(10, collected);
+			sample.setTimestamp(11, processed);
+			sample.setString(12, comments);
+			sample.setTimestamp(13, collected);
+			sample.setBoolean(14, false);
+			sample.setString(15, uuid);
+			sample.addBatch();
+		}
+
+		void addAttribute(int attributeId, int testOrderId, int attributeTypeId, AttributeTemplate template,
+		        References references, Timestamp resulted, boolean amended, String uuid) throws SQLException {
+			attribute.setInt(1, attributeId);
+			attribute.setInt(2, testOrderId);
+			attribute.setInt(3, attributeTypeId);
+			attribute.setNull(5, Types.DOUBLE);
+			attribute.setNull(6, Types.TIMESTAMP);
+			attribute.setNull(7, Types.INTEGER);
+			attribute.setNull(8, Types.BOOLEAN);
+			if (FLOAT.equals(template.datatype)) {
+				String[] range = template.config.split("-");
+				double min = Double.parseDouble(range[0]);
+				double max = Double.parseDouble(range[1]);
+				// Normally distributed about the middle of the range
+				double value = Math.max(min, Math.min(max, (min + max) / 2 + random.nextGaussian() * (max - min) / 6));
+				value = Math.round(value * 10) / 10.0;
+				attribute.setString(4, String.valueOf(value));
+				attribute.setDouble(5, value);
+			} else if (DATE.equals(template.datatype)) {
+				Calendar date = Calendar.getInstance();
+				date.setTimeInMillis(resulted.getTime() - random.nextInt(3) * DAY);
+				date.set(Calendar.HOUR_OF_DAY, 0);
+				date.set(Calendar.MINUTE, 0);
+				date.set(Calendar.SECOND, 0);
+				date.set(Calendar.MILLISECOND, 0);
+				attribute.setString(4, new SimpleDateFormat("yyyy-MM-dd").format(date.getTime()));
+				attribute.setTimestamp(6, new Timestamp(date.getTimeInMillis()));
+			} else if (CONCEPT.equals(template.datatype)) {
+				int index = random.nextInt(references.conceptIds.size());
+				attribute.setString(4, references.conceptUuids.get(index));
+				attribute.setInt(7, references.conceptIds.get(index));
+			} else if (BOOLEAN.equals(template.datatype)) {
+				String value = template.values[random.nextInt(template.values.length)];
+				attribute.setString(4, value);
+				attribute.setBoolean(8, Boolean.parseBoolean(value));
+			} else if (template.values.length > 0) {
+				attribute.setString(4, template.values[random.nextInt(template.values.length)]);
+			} else {
+				// Digits, as of a cartridge or serial number
+				StringBuilder digits = new StringBuilder();
+				for (int i = 9 + random.nextInt(4); i > 0; i--) {
+					digits.append(random.nextInt(10));
+				}
+				attribute.setString(4, digits.toString());
+			}
+			attribute.setInt(9, 1);
+			attribute.setTimestamp(10, resulted);
+			attribute.setBoolean(11, amended);
+			attribute.setString(12, uuid);
+			if (amended) {
+				attribute.setInt(13, 1);
+				attribute.setTimestamp(14, new Timestamp(resulted.getTime() + HOUR));
+				attribute.setString(15, "Amended");
+			} else {
+				attribute.setNull(13, Types.INTEGER);
+				attribute.setNull(14, Types.TIMESTAMP);
+				attribute.setNull(15, Types.VARCHAR);
+			}
+			attribute.addBatch();
+		}
+
+		int size() {
+			return size;
+		}
+
+		void execute() throws SQLException {
+			for (PreparedStatement statement : statements) {
+				statement.executeBatch();
+			}
+			size = 0;
+		}
+
+		void close() throws SQLException {
+			for (PreparedStatement statement : statements) {
+				statement.close();
+			}
+		}
+	}
+
+	/**
+	 * Ids of the OpenMRS reference data the generated rows refer to
+	 */
+	private static class References {
+
+		private final int creatorId;
+
+		private final int encounterTypeId;
+
+		private final int orderTypeId;
+
+		private final int careSettingId;
+
+		private final List<Integer> providerIds = new ArrayList<Integer>();
+
+		private final List<Integer> conceptIds = new ArrayList<Integer>();
+
+		private final List<String> conceptUuids = new ArrayList<String>();
+
+		References(Connection connection) throws SQLException {
+			creatorId = require(queryId(connection, "SELECT MIN(user_id) FROM users"), "user");
+			encounterTypeId = require(queryId(connection, "SELECT MIN(encounter_type_id) FROM encounter_type"
+			        + " WHERE retired = ?", false), "encounter type");
+			Integer testOrderTypeId = queryId(connection, "SELECT MIN(order_type_id) FROM order_type"
+			        + " WHERE java_class_name = 'org.openmrs.TestOrder'");
+			orderTypeId = require(testOrderTypeId != null ? testOrderTypeId : queryId(connection,
+			    "SELECT MIN(order_type_id) FROM order_type"), "order type");
+			careSettingId = require(queryId(connection, "SELECT MIN(care_setting_id) FROM care_setting"), "care setting");
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet providers = statement.executeQuery("SELECT provider_id FROM provider ORDER BY provider_id");
+				while (providers.next()) {
+					providerIds.add(providers.getInt(1));
+				}
+				providers.close();
+				statement.setMaxRows(50);
+				ResultSet concepts = statement.executeQuery("SELECT concept_id, uuid FROM concept ORDER BY concept_id");
+				while (concepts.next()) {
+					conceptIds.add(concepts.getInt(1));
+					conceptUuids.add(concepts.getString(2));
+				}
+				concepts.close();
+			}
+			finally {
+				statement.close();
+			}
+			if (providerIds.isEmpty() || conceptIds.isEmpty()) {
+				throw new IllegalStateException("The database has no providers or no concepts to refer to");
+			}
+		}
+
+		private static int require(Integer id, String name) {
+			if (id == null) {
+				throw new IllegalStateException("The database has no " + name + " to refer to");
+			}
+			return id;
+		}
+	}
+
+	private static class TestType {
+
+		private final int testTypeId;
+
+		private final TestTemplate template;
+
+		private final int referenceConceptId;
+
+		private final int[] attributeTypeIds;
+
+		TestType(int testTypeId, TestTemplate template, int referenceConceptId) {
+			this.testTypeId = testTypeId;
+			this.template = template;
+			this.referenceConceptId = referenceConceptId;
+			this.attributeTypeIds = new int[template.attributes.length];
+		}
+	}
+
+	private static class TestTemplate {
+
+		private final String name;
+
+		private final String shortName;
+
+		private final LabTestGroup group;
+
+		private final boolean requiresSpecimen;
+
+		/** Relative share of the lab tests ordered of this type */
+		private final int weight;
+
+		private final AttributeTemplate[] attributes;
+
+		TestTemplate(String name, String shortName, LabTestGroup group, boolean requiresSpecimen, int weight,
+		    AttributeTemplate... attributes) {
+			this.name = name;
+			this.shortName = shortName;
+			this.group = group;
+			this.requiresSpecimen = requiresSpecimen;
+			this.weight = weight;
+			this.attributes = attributes;
+		}
+	}
+
+	private static class AttributeTemplate {
+
+		private final String name;
+
+		private final String datatype;
+
+		private final String config;
+
+		/** Values to choose from, repeated to make some more likely */
+		private final String[] values;
+
+		AttributeTemplate(String name, String datatype, String config, String... values) {
+			this.name = name;
+			this.datatype = datatype;
+			this.config = config;
+			this.values = values;
+		}
+	}
+}
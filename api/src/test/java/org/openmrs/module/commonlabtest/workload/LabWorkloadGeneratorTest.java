@@ -0,0 +1,156 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.workload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.customdatatype.CustomDatatype;
+import org.openmrs.customdatatype.CustomDatatypeUtil;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestAttribute;
+import org.openmrs.module.commonlabtest.LabTestSample;
+import org.openmrs.module.commonlabtest.LabTestSampleStatus;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+/**
+ * Generates a small workload into the in-memory H2 database and reads it back through the service
+ */
+public class LabWorkloadGeneratorTest extends BaseModuleContextSensitiveTest {
+
+	private CommonLabTestService service;
+
+	private LabWorkload workload;
+
+	@Before
+	public void runBeforeEachTest() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+		service = Context.getService(CommonLabTestService.class);
+		LabWorkloadGenerator generator = new LabWorkloadGenerator(42L);
+		generator.setPatients(50);
+		generator.setTestsPerPatient(4);
+		workload = generator.generate(getConnection());
+		Context.clearSession();
+	}
+
+	@Test
+	public final void testGenerateWritesEveryLabTest() {
+		assertEquals(50, workload.getPatientCount());
+		assertTrue(workload.getLabTestCount() >= 50);
+		assertEquals(workload.getLabTestCount(), workload.getTestOrderIds().size());
+		for (Integer testOrderId : workload.getTestOrderIds()) {
+			LabTest labTest = service.getLabTest(testOrderId);
+			assertNotNull(labTest);
+			assertNotNull(labTest.getLabTestType().getTestGroup());
+			assertEquals(labTest.getOrder().getPatient().getPatientId(), labTest.getOrder().getEncounter().getPatient()
+			        .getPatientId());
+		}
+		for (String uuid : workload.getSampleUuids()) {
+			assertNotNull(service.getLabTestSampleByUuid(uuid));
+		}
+	}
+
+	@Test
+	public final void testGenerateFollowsSampleStatusTransitions() {
+		for (Integer testOrderId : workload.getTestOrderIds()) {
+			LabTest labTest = service.getLabTest(testOrderId);
+			List<LabTestSample> samples = service.getLabTestSamples(labTest, false);
+			if (!labTest.getLabTestType().getRequiresSpecimen()) {
+				assertTrue(samples.isEmpty());
+				continue;
+			}
+			boolean processed = false;
+			for (LabTestSample sample : samples) {
+				if (sample.getStatus() == LabTestSampleStatus.PROCESSED) {
+					assertNotNull(sample.getProcessedDate());
+					assertFalse(sample.getProcessedDate().before(sample.getCollectionDate()));
+					processed = true;
+				} else {
+					assertNull(sample.getProcessedDate());
+				}
+			}
+			// Results are only recorded once a sample is processed
+			assertEquals(processed, !service.getLabTestAttributes(testOrderId).isEmpty());
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public final void testGenerateWritesValuesOfAttributeTypeDatatype() {
+		assertTrue(workload.getAttributeCount() > 0);
+		for (String uuid : workload.getAttributeUuids()) {
+			LabTestAttribute attribute = service.getLabTestAttributeByUuid(uuid);
+			@SuppressWarnings("rawtypes")
+			CustomDatatype datatype = CustomDatatypeUtil.getDatatype(attribute.getAttributeType());
+			Object value = datatype.fromReferenceString(attribute.getValueReference());
+			assertNotNull(value);
+			// Throws InvalidCustomValueException if the value does not match the datatype config
+			datatype.validate(value);
+		}
+	}
+
+	@Test
+	public final void testGenerateWritesVersion4Uuids() {
+		for (String uuid : workload.getLabTestUuids()) {
+			assertEquals(4, UUID.fromString(uuid).version());
+			assertEquals(2, UUID.fromString(uuid).variant());
+		}
+	}
+
+	@Test
+	public final void testGenerateWritesSamplesAndResultsPerTest() throws Exception {
+		LabWorkloadGenerator generator = new LabWorkloadGenerator(43L);
+		generator.setPatients(20);
+		generator.setTestsPerPatient(4);
+		generator.setSamplesPerTest(2);
+		generator.setAttributesPerTest(4);
+		LabWorkload amended = generator.generate(getConnection());
+		Context.clearSession();
+
+		assertTrue(amended.getAttributeCount() > 0);
+		assertEquals(0, amended.getAttributeCount() % 4);
+		int maxSamples = 0;
+		for (Integer testOrderId : amended.getTestOrderIds()) {
+			List<LabTestSample> samples = service.getLabTestSamples(service.getLabTest(testOrderId), true);
+			Set<String> identifiers = new HashSet<String>();
+			for (LabTestSample sample : samples) {
+				identifiers.add(sample.getSampleIdentifier());
+			}
+			assertEquals(samples.size(), identifiers.size());
+			maxSamples = Math.max(maxSamples, samples.size());
+		}
+		assertTrue(maxSamples >= 2);
+		// Amended results are voided, leaving one current result per attribute type
+		int voided = 0;
+		Set<String> current = new HashSet<String>();
+		for (String uuid : amended.getAttributeUuids()) {
+			LabTestAttribute attribute = service.getLabTestAttributeByUuid(uuid);
+			if (attribute.getVoided()) {
+				voided++;
+			} else {
+				assertTrue(current.add(attribute.getLabTest().getTestOrderId() + "-"
+				        + attribute.getAttributeType().getId()));
+			}
+		}
+		assertTrue(voided > 0);
+	}
+}
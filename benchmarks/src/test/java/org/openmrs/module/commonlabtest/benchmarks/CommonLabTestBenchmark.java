@@ -0,0 +1,84 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.benchmarks;
+
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openmrs.module.commonlabtest.ChangelogIndexes;
+import org.openmrs.module.commonlabtest.workload.LabWorkload;
+import org.openmrs.module.commonlabtest.workload.LabWorkloadGenerator;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.test.context.transaction.TestTransaction;
+
+/**
+ * Generates a lab workload into the in-memory database and runs the {@link CommonLabTestQueries}
+ * benchmarks in this JVM, so that they share the Spring context and database of the test. The
+ * schema is the one Hibernate generates for the tests, plus the indexes of the module's
+ * liquibase.xml. The size of the workload and the number of iterations are set by system
+ * properties, e.g.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmark.patients=10000 -Dbenchmark.testsPerPatient=10
+ * </pre>
+ *
+ * and the results are written to target/jmh-result.json, to be compared with those of other
+ * releases.
+ */
+public class CommonLabTestBenchmark extends BaseModuleContextSensitiveTest {
+
+	private static final Log log = LogFactory.getLog(CommonLabTestBenchmark.class);
+
+	/** Workload generated for the benchmarks running in this JVM */
+	static volatile LabWorkload workload;
+
+	@After
+	public void deleteWorkload() throws Exception {
+		workload = null;
+		deleteAllData();
+	}
+
+	@Test
+	public void runBenchmarks() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+		Connection connection = getConnection();
+		ChangelogIndexes.create(connection);
+		LabWorkloadGenerator generator = new LabWorkloadGenerator(Long.getLong("benchmark.seed",
+		    LabWorkloadGenerator.DEFAULT_SEED));
+		generator.setPatients(Integer.getInteger("benchmark.patients", 1000));
+		generator.setTestsPerPatient(Integer.getInteger("benchmark.testsPerPatient", 5));
+		generator.setSamplesPerTest(Integer.getInteger("benchmark.samplesPerTest", generator.getSamplesPerTest()));
+		generator.setAttributesPerTest(Integer.getInteger("benchmark.attributesPerTest", generator.getAttributesPerTest()));
+		long start = System.currentTimeMillis();
+		LabWorkload generated = generator.generate(connection);
+		log.info("Generated " + generated + " in " + (System.currentTimeMillis() - start) + " ms");
+		assertFalse(generated.getTestOrderIds().isEmpty());
+		// The benchmark threads have sessions of their own, which only see committed data
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+		workload = generated;
+
+		Options options = new OptionsBuilder().include(CommonLabTestQueries.class.getName()).forks(0)
+		        .warmupIterations(Integer.getInteger("benchmark.warmupIterations", 3))
+		        .measurementIterations(Integer.getInteger("benchmark.iterations", 5))
+		        .threads(Integer.getInteger("benchmark.threads", 1)).resultFormat(ResultFormatType.JSON)
+		        .result(System.getProperty("benchmark.resultFile", "target/jmh-result.json")).build();
+		new Runner(options).run();
+	}
+}
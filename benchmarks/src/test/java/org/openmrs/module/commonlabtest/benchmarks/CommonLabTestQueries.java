@@ -0,0 +1,137 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.commonlabtest.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestAttribute;
+import org.openmrs.module.commonlabtest.LabTestSample;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.workload.LabWorkload;
+
+/**
+ * JMH benchmarks of the lab test queries, run through {@link CommonLabTestService} against the
+ * workload generated by {@link org.openmrs.module.commonlabtest.workload.LabWorkloadGenerator}. Each
+ * invocation queries the next patient, lab test or uuid sampled from the workload in turn, and the
+ * Hibernate session is cleared after it, so that every query reaches the database rather than the
+ * first-level cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommonLabTestQueries {
+
+	private CommonLabTestService service;
+
+	private LabWorkload workload;
+
+	private List<Patient> patients;
+
+	private List<LabTest> labTests;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void openSession() {
+		workload = CommonLabTestBenchmark.workload;
+		if (workload == null) {
+			throw new IllegalStateException("Lab test benchmarks must be run by CommonLabTestBenchmark");
+		}
+		Context.openSession();
+		Context.authenticate("admin", "test");
+		service = Context.getService(CommonLabTestService.class);
+		patients = new ArrayList<Patient>();
+		for (Integer patientId : workload.getPatientIds()) {
+			patients.add(Context.getPatientService().getPatient(patientId));
+		}
+		labTests = new ArrayList<LabTest>();
+		for (Integer testOrderId : workload.getTestOrderIds()) {
+			labTests.add(service.getLabTest(testOrderId));
+		}
+		Context.clearSession();
+	}
+
+	@TearDown(Level.Invocation)
+	public void clearSession() {
+		Context.clearSession();
+		next++;
+	}
+
+	@TearDown(Level.Trial)
+	public void closeSession() {
+		Context.closeSession();
+	}
+
+	@Benchmark
+	public List<LabTest> getLabTestsByPatient() {
+		return service.getLabTests(patient(), false);
+	}
+
+	@Benchmark
+	public List<LabTest> getLabTestsByCriteria() {
+		LabTest labTest = labTest();
+		return service.getLabTests(labTest.getLabTestType(), patient(), null, null, null, null, null, null, false);
+	}
+
+	@Benchmark
+	public List<LabTestSample> getLabTestSamplesByLabTest() {
+		return service.getLabTestSamples(labTest(), false);
+	}
+
+	/**
+	 * getNLabTests of the DAO is reached through the latest lab test of a patient
+	 */
+	@Benchmark
+	public LabTest getLatestLabTest() {
+		return service.getLatestLabTest(patient());
+	}
+
+	@Benchmark
+	public List<LabTestAttribute> getLabTestAttributesByPatient() {
+		return service.getLabTestAttributes(patient(), false);
+	}
+
+	@Benchmark
+	public LabTest getLabTestByUuid() {
+		return service.getLabTestByUuid(workload.getLabTestUuids().get(next % workload.getLabTestUuids().size()));
+	}
+
+	@Benchmark
+	public LabTestSample getLabTestSampleByUuid() {
+		return service.getLabTestSampleByUuid(workload.getSampleUuids().get(next % workload.getSampleUuids().size()));
+	}
+
+	@Benchmark
+	public LabTestAttribute getLabTestAttributeByUuid() {
+		return service.getLabTestAttributeByUuid(workload.getAttributeUuids().get(next % workload.getAttributeUuids().size()));
+	}
+
+	private Patient patient() {
+		return patients.get(next % patients.size());
+	}
+
+	private LabTest labTest() {
+		return labTests.get(next % labTests.size());
+	}
+}
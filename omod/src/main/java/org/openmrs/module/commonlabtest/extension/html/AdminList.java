@@ -46,6 +46,7 @@ public class AdminList extends AdministrationSectionExt {
 		Map<String, String> map = new HashMap<String, String>();
 		map.put("/module/commonlabtest/manageLabTestTypes.form", "commonlabtest.labtesttype.manage");
 		map.put("/module/commonlabtest/manageLabTestAttributeTypes.form", "commonlabtest.labtestattributetype.manage");
+		map.put("/module/commonlabtest/queryStatistics.form", "commonlabtest.querystatistics.manage");
 		return map;
 	}
 
@@ -8,9 +8,8 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
-import org.openmrs.module.commonlabtest.LabTest;
-import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.api.LabTestSummary;
 import org.openmrs.web.controller.PortletController;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -35,38 +34,33 @@ public class LabTestOrderPortletController extends PortletController {
 			Patient patient = Context.getPatientService().getPatient(id);
 			JsonArray orderJsonArray = new JsonArray();
 			if (patient != null) {
-				List<LabTest> testList = Context.getService(CommonLabTestService.class).getLabTests(patient, false);
-				if (testList != null && !testList.isEmpty()) {
-					for (LabTest labTest : testList) {
-						JsonObject childJsonObject = new JsonObject();
-						childJsonObject.addProperty("id", labTest.getTestOrderId());
-						childJsonObject.addProperty("requiredSpecimen", labTest.getLabTestType().getRequiresSpecimen());
-						childJsonObject.addProperty("testTypeName", labTest.getLabTestType().getName());
-						childJsonObject.addProperty("encounterName",
-						    labTest.getOrder().getEncounter().getEncounterType().getName());
-						SimpleDateFormat formatter = new SimpleDateFormat("dd MMMM yyyy");
-						String encounterDate = formatter.format(labTest.getOrder().getEncounter().getEncounterDatetime());
-						childJsonObject.addProperty("encounterDate", encounterDate);
-						childJsonObject.addProperty("labReferenceNumber", labTest.getLabReferenceNumber());
-						childJsonObject.addProperty("testGroup", labTest.getLabTestType().getTestGroup().name());
-						childJsonObject.addProperty("dateCreated", labTest.getDateCreated().toString());
-						childJsonObject.addProperty("createdBy", labTest.getCreator().getUsername());
-						childJsonObject.addProperty("encounterType",
-						    labTest.getOrder().getEncounter().getEncounterType().getName().toString());
-						childJsonObject.addProperty("changedBy",
-						    (labTest.getChangedBy() == null) ? "" : labTest.getChangedBy().getUsername());
-						childJsonObject.addProperty("uuid", labTest.getUuid());
-						List<LabTestAttribute> labTestAttribute = Context.getService(CommonLabTestService.class)
-						        .getLabTestAttributes(labTest.getTestOrderId());
-						if (labTestAttribute != null && labTestAttribute.size() > 0) {
-							childJsonObject.addProperty("resultFilled", Boolean.TRUE);
-							childJsonObject.addProperty("resultDate", labTestAttribute.get(0).getDateCreated().toString());
-						} else {
-							childJsonObject.addProperty("resultFilled", Boolean.FALSE);
-							childJsonObject.addProperty("resultDate", "");
-						}
-						orderJsonArray.add(childJsonObject);
+				// Read all columns of the listing in one query rather than loading every test with its results
+				List<LabTestSummary> testList = Context.getService(CommonLabTestService.class).getLabTestSummaries(patient,
+				    false);
+				SimpleDateFormat formatter = new SimpleDateFormat("dd MMMM yyyy");
+				for (LabTestSummary labTest : testList) {
+					JsonObject childJsonObject = new JsonObject();
+					childJsonObject.addProperty("id", labTest.getTestOrderId());
+					childJsonObject.addProperty("requiredSpecimen", labTest.getRequiresSpecimen());
+					childJsonObject.addProperty("testTypeName", labTest.getTestTypeName());
+					childJsonObject.addProperty("encounterName", labTest.getEncounterTypeName());
+					String encounterDate = formatter.format(labTest.getEncounterDatetime());
+					childJsonObject.addProperty("encounterDate", encounterDate);
+					childJsonObject.addProperty("labReferenceNumber", labTest.getLabReferenceNumber());
+					childJsonObject.addProperty("testGroup", labTest.getTestGroup().name());
+					childJsonObject.addProperty("dateCreated", labTest.getDateCreated().toString());
+					childJsonObject.addProperty("createdBy", labTest.getCreatedBy());
+					childJsonObject.addProperty("encounterType", labTest.getEncounterTypeName());
+					childJsonObject.addProperty("changedBy", (labTest.getChangedBy() == null) ? "" : labTest.getChangedBy());
+					childJsonObject.addProperty("uuid", labTest.getUuid());
+					if (labTest.isResultFilled()) {
+						childJsonObject.addProperty("resultFilled", Boolean.TRUE);
+						childJsonObject.addProperty("resultDate", labTest.getResultDate().toString());
+					} else {
+						childJsonObject.addProperty("resultFilled", Boolean.FALSE);
+						childJsonObject.addProperty("resultDate", "");
 					}
+					orderJsonArray.add(childJsonObject);
 				}
 				boolean anyTestRequireSample = false;
 				for (JsonElement element : orderJsonArray) {
@@ -0,0 +1,201 @@
+package org.openmrs.module.commonlabtest.web.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestReport;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Serves the report file uploaded with the results of a lab test. The file is copied from its
+ * channel to the response, so memory use does not depend on the size of the file. A single byte
+ * range can be requested to resume a download, and a client holding a current copy of the file gets
+ * a 304 response without the body.
+ */
+@Controller
+public class LabTestReportDownloadController {
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+	@RequestMapping(method = { RequestMethod.GET, RequestMethod.HEAD }, value = "/module/commonlabtest/downloadLabTestReport.form")
+	public void download(HttpServletRequest request, HttpServletResponse response, @RequestParam Integer testOrderId)
+	        throws IOException {
+		CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+		LabTest labTest = commonLabTestService.getLabTest(testOrderId);
+		if (labTest == null || StringUtils.isBlank(labTest.getFilePath())) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Lab test has no report file");
+			return;
+		}
+		File file = new File(labTest.getFilePath());
+		if (!file.isFile() || !file.canRead()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Report file not found");
+			return;
+		}
+		long length = file.length();
+		// HTTP dates have a resolution of seconds
+		long lastModified = file.lastModified() / 1000 * 1000;
+		String eTag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+		response.setHeader("Accept-Ranges", "bytes");
+		response.setHeader("ETag", eTag);
+		response.setDateHeader("Last-Modified", lastModified);
+		if (isNotModified(request, eTag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		long start = 0;
+		long end = length - 1;
+		String range = request.getHeader("Range");
+		if (range != null && isRangeCurrent(request, eTag, lastModified)) {
+			long[] bounds = parseRange(range, length);
+			if (bounds == null) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (bounds.length == 2) {
+				start = bounds[0];
+				end = bounds[1];
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+		// Files in the report store are named by their digest, so use the name they were uploaded with
+		LabTestReport labTestReport = commonLabTestService.getLabTestReport(labTest);
+		String filename = labTestReport == null ? file.getName() : labTestReport.getFilename();
+		String contentType = URLConnection.guessContentTypeFromName(filename);
+		response.setContentType(contentType == null ? DEFAULT_CONTENT_TYPE : contentType);
+		response.setHeader("Content-Disposition", "inline; filename=\"" + filename.replace("\"", "") + "\"");
+		// Set as a header, since setContentLength() takes an int
+		response.setHeader("Content-Length", String.valueOf(end - start + 1));
+		if (RequestMethod.HEAD.name().equals(request.getMethod())) {
+			return;
+		}
+		transfer(file, start, end - start + 1, response);
+	}
+
+	/**
+	 * @return true if the client's copy of the file is current, per If-None-Match or else
+	 *         If-Modified-Since
+	 */
+	private boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+		return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+	}
+
+	/**
+	 * @return false if If-Range names another version of the file, in which case the whole file is sent
+	 */
+	private boolean isRangeCurrent(HttpServletRequest request, String eTag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.trim().startsWith("\"")) {
+			return ifRange.trim().equals(eTag);
+		}
+		return getDateHeader(request, "If-Range") == lastModified;
+	}
+
+	/**
+	 * @param range value of the Range header, e.g. bytes=0-499, bytes=500- or bytes=-500
+	 * @return first and last byte of the range; an empty array if the header cannot be served as a
+	 *         single range, so the whole file is to be sent; or null if the range is not satisfiable
+	 */
+	long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes=") || range.indexOf(',') != -1) {
+			return new long[0];
+		}
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash == -1) {
+			return new long[0];
+		}
+		long start;
+		long end;
+		try {
+			if (dash == 0) {
+				long suffix = Long.parseLong(spec.substring(1));
+				if (suffix == 0) {
+					return null;
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash));
+				end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)),
+				    length - 1);
+			}
+		}
+		catch (NumberFormatException e) {
+			return new long[0];
+		}
+		if (start >= length || start > end) {
+			return null;
+		}
+		return new long[] { start, end };
+	}
+
+	private long getDateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		}
+		catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	private void transfer(File file, long position, long count, HttpServletResponse response) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long transferred = 0;
+			while (transferred < count) {
+				long bytes = channel.transferTo(position + transferred, count - transferred, out);
+				if (bytes <= 0) {
+					break;
+				}
+				transferred += bytes;
+			}
+			response.flushBuffer();
+		}
+		catch (IOException e) {
+			// Mostly the client going away in the middle of a download
+			log.debug("Download of " + file.getName() + " aborted", e);
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
+}
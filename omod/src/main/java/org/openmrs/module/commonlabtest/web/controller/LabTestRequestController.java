@@ -19,6 +19,7 @@ import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestGroup;
 import org.openmrs.module.commonlabtest.LabTestType;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.api.LabTestMetadata;
 import org.openmrs.web.WebConstants;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
@@ -58,25 +59,17 @@ public class LabTestRequestController {
 			}
 		});
 
+		LabTestMetadata metadata = commonLabTestService.getLabTestMetadata();
 		for (LabTestGroup labTestGroup : labTestGroupList) {
 			JsonObject labTestGroupObj = new JsonObject();
 			JsonArray jsonChildArray = new JsonArray();
-			List<LabTestType> labTestTypeList = commonLabTestService.getLabTestTypes(null, null, labTestGroup, null, null,
-			    Boolean.FALSE);
-			if (!(labTestTypeList.size() > 0) || labTestTypeList.isEmpty() || labTestTypeList.isEmpty()) {
+			// Already sorted by name
+			List<LabTestType> labTestTypeList = metadata.getLabTestTypes(labTestGroup);
+			if (labTestTypeList.isEmpty()) {
 				continue; // skip the current iteration.
 			} else if (labTestTypeList.size() == 1 && labTestGroup.equals(LabTestGroup.OTHER)) {
 				continue;
 			}
-			if (labTestTypeList.size() > 0) {
-				Collections.sort(labTestTypeList, new Comparator<LabTestType>() {
-
-					@Override
-					public int compare(LabTestType s1, LabTestType s2) {
-						return s1.getName().compareToIgnoreCase(s2.getName());
-					}
-				});
-			}
 
 			labTestGroupObj.addProperty("testGroup", labTestGroup.name());
 			for (LabTestType labTestType : labTestTypeList) {
@@ -1,33 +1,37 @@
 package org.openmrs.module.commonlabtest.web.controller;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Concept;
 import org.openmrs.ConceptAnswer;
+import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.commonlabtest.LabTest;
 import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
+import org.openmrs.module.commonlabtest.LabTestReport;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
+import org.openmrs.module.commonlabtest.api.AttributeTypeLayout;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
 import org.openmrs.web.WebConstants;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
-import org.springframework.util.FileCopyUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -62,19 +66,13 @@ public class LabTestResultController {
 			return "redirect:../../patientDashboard.form?patientId=" + patientId;
 		}
 
-		List<LabTestAttributeType> attributeTypeList = new ArrayList<LabTestAttributeType>();
-		attributeTypeList = commonLabTestService.getLabTestAttributeTypes(labTest.getLabTestType(), Boolean.FALSE);
-		Collections.sort(attributeTypeList, new Comparator<LabTestAttributeType>() {
-
-			@Override
-			public int compare(LabTestAttributeType labTestAttributeTypeFirst,
-			        LabTestAttributeType labTestAttributeTypeSecond) {
-				return labTestAttributeTypeFirst.getSortWeight().compareTo(labTestAttributeTypeSecond.getSortWeight());
-			}
-		});
+		// Attribute types come sorted and grouped from the metadata snapshot
+		AttributeTypeLayout layout = commonLabTestService.getLabTestMetadata()
+		        .getAttributeTypeLayout(labTest.getLabTestType());
+		List<LabTestAttributeType> attributeTypeList = layout.getAttributeTypes();
 
 		List<LabTestAttribute> labTestAttributes = commonLabTestService.getLabTestAttributes(testOrderId);
-		JsonArray resultantAttributeTypeList = getAttributeTypeList(attributeTypeList, testOrderId, labTestAttributes);
+		JsonArray resultantAttributeTypeList = getAttributeTypeList(layout, getAttributesByType(labTestAttributes));
 
 		if (!labTestAttributes.isEmpty() && !attributeTypeList.isEmpty()) {
 			boolean updateMode = false;
@@ -87,7 +85,8 @@ public class LabTestResultController {
 			model.addAttribute("testTypeName", "" + attributeTypeList.get(0).getLabTestType().getName());
 			if (updateMode) {
 				model.addAttribute("update", Boolean.TRUE);
-				model.addAttribute("filepath", labTest.getFilePath());
+				model.addAttribute("filepath", StringUtils.isBlank(labTest.getFilePath()) ? "" : request.getContextPath()
+				        + "/module/commonlabtest/downloadLabTestReport.form?testOrderId=" + testOrderId);
 			} else {
 				model.addAttribute("update", Boolean.FALSE);
 				model.addAttribute("filepath", "");
@@ -120,10 +119,11 @@ public class LabTestResultController {
 			return "redirect:../../login.htm";
 		}
 		LabTest labTest = commonLabTestService.getLabTest(testOrderId);
-		List<LabTestAttributeType> attributeTypeList = Context.getService(CommonLabTestService.class)
-		        .getLabTestAttributeTypes(labTest.getLabTestType(), false);
+		List<LabTestAttributeType> attributeTypeList = commonLabTestService.getLabTestMetadata()
+		        .getLabTestAttributeTypes(labTest.getLabTestType());
 
-		List<LabTestAttribute> existingLabTestAttributes = commonLabTestService.getLabTestAttributes(testOrderId);
+		Map<Integer, LabTestAttribute> existingLabTestAttributes = getAttributesByType(
+		    commonLabTestService.getLabTestAttributes(testOrderId));
 		String testAtrrId;
 		String status;
 		try {
@@ -139,13 +139,14 @@ public class LabTestResultController {
 					testAttribute = commonLabTestService.getLabTestAttribute(Integer.parseInt(testAtrrId));
 				} else {
 					testAttribute.setLabTest(labTest);
-					testAttribute.setAttributeType(labTestAttributeType);
+					// The metadata snapshot holds read-only copies
+					testAttribute.setAttributeType(
+					    commonLabTestService.getLabTestAttributeType(labTestAttributeType.getId()));
 				}
 				if (dataTypeName.equals("org.openmrs.customdatatype.datatype.ConceptDatatype")
 				        || dataTypeName.equals("Coded")) {
 					valueReference = request.getParameter("concept." + labTestAttributeType.getId());
-					LabTestAttribute existAttributeinner = getExistingAttributeValue(existingLabTestAttributes,
-					    labTestAttributeType.getId());
+					LabTestAttribute existAttributeinner = existingLabTestAttributes.get(labTestAttributeType.getId());
 					if (existAttributeinner == null && (valueReference == null || valueReference.isEmpty())) {
 						continue;
 					} else if (existAttributeinner != null && (valueReference == null || valueReference.isEmpty())) {
@@ -174,8 +175,7 @@ public class LabTestResultController {
 				        || dataTypeName.equals("org.openmrs.customdatatype.datatype.LongFreeTextDatatype")) {
 
 					valueReference = request.getParameter("valueText." + labTestAttributeType.getId());
-					LabTestAttribute existAttributeinner = getExistingAttributeValue(existingLabTestAttributes,
-					    labTestAttributeType.getId());
+					LabTestAttribute existAttributeinner = existingLabTestAttributes.get(labTestAttributeType.getId());
 					if (existAttributeinner == null && (valueReference == null || valueReference.isEmpty())) {
 						continue;
 					} else if (existAttributeinner != null && (valueReference == null || valueReference.isEmpty())) {
@@ -194,8 +194,7 @@ public class LabTestResultController {
 				} else if (dataTypeName.equals("org.openmrs.customdatatype.datatype.FloatDatatype")
 				        || dataTypeName.equals("Numeric")) {
 					valueReference = request.getParameter("float." + labTestAttributeType.getId());
-					LabTestAttribute existAttributeinner = getExistingAttributeValue(existingLabTestAttributes,
-					    labTestAttributeType.getId());
+					LabTestAttribute existAttributeinner = existingLabTestAttributes.get(labTestAttributeType.getId());
 					if (existAttributeinner == null && (valueReference == null || valueReference.isEmpty())) {
 						continue;
 					} else if (existAttributeinner != null && (valueReference == null || valueReference.isEmpty())) {
@@ -214,8 +213,7 @@ public class LabTestResultController {
 				} else if (dataTypeName.endsWith("org.openmrs.customdatatype.datatype.DateDatatype")
 				        || dataTypeName.equals("Datetime") || dataTypeName.equals("Date")) {
 					valueReference = request.getParameter("date." + labTestAttributeType.getId());
-					LabTestAttribute existAttributeinner = getExistingAttributeValue(existingLabTestAttributes,
-					    labTestAttributeType.getId());
+					LabTestAttribute existAttributeinner = existingLabTestAttributes.get(labTestAttributeType.getId());
 					if (existAttributeinner == null && (valueReference == null || valueReference.isEmpty())) {
 						continue;
 					} else if (existAttributeinner != null && (valueReference == null || valueReference.isEmpty())) {
@@ -233,8 +231,7 @@ public class LabTestResultController {
 					}
 				} else if (dataTypeName.equals("org.openmrs.customdatatype.datatype.RegexValidatedTextDatatype")) {
 					valueReference = request.getParameter("regex." + labTestAttributeType.getId());
-					LabTestAttribute existAttributeinner = getExistingAttributeValue(existingLabTestAttributes,
-					    labTestAttributeType.getId());
+					LabTestAttribute existAttributeinner = existingLabTestAttributes.get(labTestAttributeType.getId());
 					if (existAttributeinner == null && (valueReference == null || valueReference.isEmpty())) {
 						continue;
 					} else if (existAttributeinner != null && (valueReference == null || valueReference.isEmpty())) {
@@ -255,17 +252,26 @@ public class LabTestResultController {
 			}
 			// save the file
 			if (documentTypeFile == null || documentTypeFile.isEmpty()) {} else {
+				// Stream the upload to disk rather than holding it in memory
+				InputStream in = null;
 				try {
-					String fileDirectory = Context.getAdministrationService()
-					        .getGlobalProperty("commonlabtest.fileDirectory");
-					FileCopyUtils.copy(documentTypeFile.getBytes(), new FileOutputStream(
-					        fileDirectory + "/" + documentTypeFile.getOriginalFilename().replace(" ", "-")));
-					String name = documentTypeFile.getOriginalFilename().replace(" ", "-");
-					labTest.setFilePath(fileDirectory + "/" + name);
-					Context.getService(CommonLabTestService.class).saveLabTest(labTest); // need to review this lines
+					in = documentTypeFile.getInputStream();
+					LabTestReport labTestReport = commonLabTestService.saveLabTestReport(labTest, in,
+					    documentTypeFile.getOriginalFilename());
+					if (log.isDebugEnabled()) {
+						log.debug("Saved report file " + labTestReport + " of lab test " + testOrderId);
+					}
+				}
+				catch (APIException e) {
+					log.error("Unable to save report file of lab test " + testOrderId, e);
+					request.getSession().setAttribute(WebConstants.OPENMRS_ERROR_ATTR, e.getMessage());
 				}
 				catch (IOException e) {
-					e.printStackTrace();
+					log.error("Unable to save report file of lab test " + testOrderId, e);
+					request.getSession().setAttribute(WebConstants.OPENMRS_ERROR_ATTR, "Could not save the report file");
+				}
+				finally {
+					IOUtils.closeQuietly(in);
 				}
 			}
 			// change the sample status ...
@@ -341,7 +347,7 @@ public class LabTestResultController {
 	}
 
 	public JsonObject getAttributeTypeJsonObj(LabTestAttributeType labTestAttributeType,
-	        List<LabTestAttribute> testAttributes) {
+	        Map<Integer, LabTestAttribute> testAttributes) {
 		JsonObject objAttrType = new JsonObject();
 		objAttrType.addProperty("name", labTestAttributeType.getName());
 		objAttrType.addProperty("minOccurs", labTestAttributeType.getMinOccurs());
@@ -351,14 +357,10 @@ public class LabTestResultController {
 		objAttrType.addProperty("hint", (labTestAttributeType.getHint() == null) ? "" : labTestAttributeType.getHint());
 
 		if (testAttributes.size() > 0) {
-			for (LabTestAttribute labTestAttribute : testAttributes) {
-				if (!labTestAttribute.getVoided()) {
-					if (labTestAttribute.getAttributeType().getLabTestAttributeTypeId() == labTestAttributeType
-					        .getLabTestAttributeTypeId()) {
-						objAttrType.addProperty("value", labTestAttribute.getValueReference());
-						objAttrType.addProperty("testAttributeId", labTestAttribute.getId());
-					}
-				}
+			LabTestAttribute labTestAttribute = testAttributes.get(labTestAttributeType.getLabTestAttributeTypeId());
+			if (labTestAttribute != null) {
+				objAttrType.addProperty("value", labTestAttribute.getValueReference());
+				objAttrType.addProperty("testAttributeId", labTestAttribute.getId());
 			}
 		} else {
 			objAttrType.addProperty("value", "");
@@ -393,104 +395,52 @@ public class LabTestResultController {
 		return objAttrType;
 	}
 
-	public JsonArray getAttributeTypeList(List<LabTestAttributeType> labTestAttributeTypeList, int testOrderId,
-	        List<LabTestAttribute> labTestAttributes) {
-
-		List<String> holderGroupIdList = new ArrayList<String>();
+	/**
+	 * Converts the layout of attribute types into the group, multiset and attribute type hierarchy
+	 * shown by the result form, in a single pass
+	 */
+	public JsonArray getAttributeTypeList(AttributeTypeLayout layout, Map<Integer, LabTestAttribute> labTestAttributes) {
 		JsonArray parentJsonArray = new JsonArray();
-		JsonObject labTestGroupObj;
-		for (LabTestAttributeType labTestAttributeType : labTestAttributeTypeList) {
-			labTestGroupObj = new JsonObject();
+		for (AttributeTypeLayout.Node node : layout.getNodes()) {
+			if (!node.isGroup()) {
+				parentJsonArray.add(getAttributeTypeJsonObj(node.getAttributeType(), labTestAttributes));
+				continue;
+			}
+			JsonObject labTestGroupObj = new JsonObject();
 			JsonArray jsonChildArray = new JsonArray();
-			String groupName = labTestAttributeType.getGroupName();
-			if (groupName != null && !groupName.isEmpty()) {
-				if (holderGroupIdList.contains(groupName)) {
+			labTestGroupObj.addProperty("groupName", node.getName());
+			for (AttributeTypeLayout.Node child : node.getChildren()) {
+				if (!child.isGroup()) {
+					jsonChildArray.add(getAttributeTypeJsonObj(child.getAttributeType(), labTestAttributes));
 					continue;
 				}
-				holderGroupIdList.add(labTestAttributeType.getGroupName());
-				labTestGroupObj.addProperty("groupName", labTestAttributeType.getGroupName());
-				List<LabTestAttributeType> childLabTestATList = getFilterAttributeTypes(labTestAttributeType,
-				    labTestAttributeTypeList);
-				JsonObject labTestSubGroupObj;
-				List<String> holderSubGroupIdList = new ArrayList<String>();
-				for (LabTestAttributeType labTestAttributeTypechld : childLabTestATList) {
-					labTestSubGroupObj = new JsonObject();
-					JsonArray jsonSubGroupArray = new JsonArray();
-					String subGroupName = labTestAttributeTypechld.getMultisetName();
-					if (subGroupName != null && !subGroupName.isEmpty()) {
-						if (holderSubGroupIdList.contains(subGroupName)) {
-							continue;
-						}
-						holderSubGroupIdList.add(subGroupName);
-						labTestSubGroupObj.addProperty("subGroupName", subGroupName);
-						List<LabTestAttributeType> subGroupLabTestATList = getFilterSubGroupAttributeTypes(subGroupName,
-						    childLabTestATList);
-						for (LabTestAttributeType labTestAttributeTypeSb : subGroupLabTestATList) {
-							jsonSubGroupArray.add(getAttributeTypeJsonObj(labTestAttributeTypeSb, labTestAttributes));
-						}
-						labTestSubGroupObj.add("subDetails", jsonSubGroupArray);
-						jsonChildArray.add(labTestSubGroupObj);
-					} else {
-						jsonChildArray.add(getAttributeTypeJsonObj(labTestAttributeTypechld, labTestAttributes));
-					}
+				JsonObject labTestSubGroupObj = new JsonObject();
+				JsonArray jsonSubGroupArray = new JsonArray();
+				labTestSubGroupObj.addProperty("subGroupName", child.getName());
+				for (LabTestAttributeType labTestAttributeType : child.getAttributeTypes()) {
+					jsonSubGroupArray.add(getAttributeTypeJsonObj(labTestAttributeType, labTestAttributes));
 				}
-				labTestGroupObj.add("details", jsonChildArray);
-				parentJsonArray.add(labTestGroupObj);
-
-			} else {
-				parentJsonArray.add(getAttributeTypeJsonObj(labTestAttributeType, labTestAttributes));
+				labTestSubGroupObj.add("subDetails", jsonSubGroupArray);
+				jsonChildArray.add(labTestSubGroupObj);
 			}
+			labTestGroupObj.add("details", jsonChildArray);
+			parentJsonArray.add(labTestGroupObj);
 		}
 		return parentJsonArray;
 	}
 
-	private List<LabTestAttributeType> getFilterAttributeTypes(LabTestAttributeType labTestAttributeType,
-	        List<LabTestAttributeType> listLabTestAttributeType) {
-		List<LabTestAttributeType> filterLabTestAttributeTypes = new ArrayList<LabTestAttributeType>();
-
-		if (!listLabTestAttributeType.isEmpty()) {
-			for (LabTestAttributeType filterLabTestAttributeType : listLabTestAttributeType) {
-				String groupName = filterLabTestAttributeType.getGroupName();
-				if (groupName != null && !groupName.isEmpty()) {
-					if (groupName.equals(labTestAttributeType.getGroupName())) {
-						filterLabTestAttributeTypes.add(filterLabTestAttributeType);
-					}
-				}
-
-			}
-
-		}
-
-		return filterLabTestAttributeTypes;
-	}
-
-	private List<LabTestAttributeType> getFilterSubGroupAttributeTypes(String multisetName,
-	        List<LabTestAttributeType> listLabTestAttributeType) {
-		List<LabTestAttributeType> filterLabTestAttributeTypes = new ArrayList<LabTestAttributeType>();
-
-		if (!listLabTestAttributeType.isEmpty()) {
-			for (LabTestAttributeType filterLabTestAttributeType : listLabTestAttributeType) {
-				String multisetNames = filterLabTestAttributeType.getMultisetName();
-				if (multisetNames != null && !multisetNames.isEmpty()) {
-					if (multisetNames.equals(multisetName)) {
-						filterLabTestAttributeTypes.add(filterLabTestAttributeType);
-					}
-				}
-			}
-		}
-		return filterLabTestAttributeTypes;
-	}
-
-	private LabTestAttribute getExistingAttributeValue(List<LabTestAttribute> labTestAttributes, int attributeTypeId) {
-		if (labTestAttributes != null && labTestAttributes.size() > 0) {
-			for (int i = 0; i < labTestAttributes.size(); i++) {
-				if (!labTestAttributes.get(i).getVoided()
-				        && labTestAttributes.get(i).getAttributeType().getId() == attributeTypeId) {
-					return labTestAttributes.get(i);
-				}
+	/**
+	 * Indexes the non-voided attributes by their attribute type Id, keeping the first one of each type
+	 */
+	private Map<Integer, LabTestAttribute> getAttributesByType(List<LabTestAttribute> labTestAttributes) {
+		Map<Integer, LabTestAttribute> attributesByType = new HashMap<Integer, LabTestAttribute>();
+		for (LabTestAttribute labTestAttribute : labTestAttributes) {
+			Integer attributeTypeId = labTestAttribute.getAttributeType().getId();
+			if (!labTestAttribute.getVoided() && !attributesByType.containsKey(attributeTypeId)) {
+				attributesByType.put(attributeTypeId, labTestAttribute);
 			}
 		}
-		return null;
+		return attributesByType;
 	}
 
 	private LabTestAttribute existingTestAttribute(LabTestAttribute labTestAttribute) {
@@ -1,7 +1,8 @@
 package org.openmrs.module.commonlabtest.web.controller;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -12,8 +13,9 @@ import org.openmrs.module.commonlabtest.LabTestAttribute;
 import org.openmrs.module.commonlabtest.LabTestAttributeType;
 import org.openmrs.module.commonlabtest.LabTestSample;
 import org.openmrs.module.commonlabtest.LabTestSampleStatus;
-import org.openmrs.module.commonlabtest.LabTestType;
+import org.openmrs.module.commonlabtest.api.AttributeTypeLayout;
 import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.api.LabTestMetadata;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -42,17 +44,6 @@ public class LabTestResultViewController {
 		JsonArray testResultArray = new JsonArray();
 		commonLabTestService = Context.getService(CommonLabTestService.class);
 		try {
-			for (LabTestAttributeType attribut : commonLabTestService.getLabTestAttributeTypes(labTest.getLabTestType(),
-			    Boolean.TRUE)) {
-				for (int i = 0; i < testAttributes.size(); i++) {
-					if (!testAttributes.get(i).getVoided()) {
-						if (testAttributes.get(i).getAttributeType().getLabTestAttributeTypeId() == attribut
-						        .getLabTestAttributeTypeId()) {
-							testAttributes.get(i).setAttributeType(attribut);
-						}
-					}
-				}
-			}
 			testSample = commonLabTestService.getLabTestSamples(labTest, Boolean.FALSE);
 			for (LabTestSample labTestSample : testSample) {
 				JsonObject objTestSample = new JsonObject();
@@ -64,9 +55,9 @@ public class LabTestResultViewController {
 			}
 			if (testAttributes != null && !testAttributes.isEmpty()) {
 				LabTestAttributeType labTestAttributeType = testAttributes.get(0).getAttributeType();
-				List<LabTestAttributeType> labTestAttributeTypes = commonLabTestService
-				        .getLabTestAttributeTypes(labTestAttributeType.getLabTestType(), Boolean.FALSE);
-				testResultArray = getAttributeTypeList(labTestAttributeTypes, testOrderId, testAttributes);
+				AttributeTypeLayout layout = commonLabTestService.getLabTestMetadata()
+				        .getAttributeTypeLayout(labTestAttributeType.getLabTestType());
+				testResultArray = getAttributeTypeList(layout, getAttributesByType(testAttributes));
 			}
 		}
 		catch (Exception e) {
@@ -117,9 +108,9 @@ public class LabTestResultViewController {
 	@ResponseBody
 	public String getLabTestAttributeType(@RequestParam Integer testTypeId) {
 		commonLabTestService = Context.getService(CommonLabTestService.class);
-		LabTestType labTestType = commonLabTestService.getLabTestType(testTypeId);
-		List<LabTestAttributeType> labTestAttributeType = commonLabTestService.getLabTestAttributeTypes(labTestType,
-		    Boolean.FALSE);
+		LabTestMetadata metadata = commonLabTestService.getLabTestMetadata();
+		List<LabTestAttributeType> labTestAttributeType = metadata
+		        .getLabTestAttributeTypes(metadata.getLabTestType(testTypeId));
 
 		JsonObject testAttributeList = new JsonObject();
 		JsonArray testAttributeArray = new JsonArray();
@@ -170,68 +161,47 @@ public class LabTestResultViewController {
 		return true;
 	}
 
-	public JsonArray getAttributeTypeList(List<LabTestAttributeType> labTestAttributeTypeList, int testOrderId,
-	        List<LabTestAttribute> labTestAttributes) {
-		List<String> holderGroupIdList = new ArrayList<String>();
+	/**
+	 * Converts the layout of attribute types into the group and result hierarchy shown by the result
+	 * view, in a single pass
+	 */
+	public JsonArray getAttributeTypeList(AttributeTypeLayout layout, Map<Integer, LabTestAttribute> labTestAttributes) {
 		JsonArray parentJsonArray = new JsonArray();
-		JsonObject labTestGroupObj;
-		for (LabTestAttributeType labTestAttributeType : labTestAttributeTypeList) {
-			labTestGroupObj = new JsonObject();
+		for (AttributeTypeLayout.Node node : layout.getNodes()) {
+			if (!node.isGroup()) {
+				parentJsonArray.add(getLabTestAttributeObj(getFilterAttribute(node.getAttributeType(), labTestAttributes)));
+				continue;
+			}
+			JsonObject labTestGroupObj = new JsonObject();
 			JsonArray jsonGroupArray = new JsonArray();
-			String groupName = labTestAttributeType.getGroupName();
-			if (groupName != null && !groupName.isEmpty()) {
-				if (holderGroupIdList.contains(groupName)) {
-					continue;
-				}
-				holderGroupIdList.add(labTestAttributeType.getGroupName());
-				labTestGroupObj.addProperty("groupName", labTestAttributeType.getGroupName());
-				List<LabTestAttributeType> groupLabTestATList = getFilterAttributeTypes(labTestAttributeType,
-				    labTestAttributeTypeList);
-				for (LabTestAttributeType labTestAttributeTypeResults : groupLabTestATList) {
-					LabTestAttribute labTestAttributeResult = getFilterAttribute(labTestAttributeTypeResults,
-					    labTestAttributes);
-					jsonGroupArray.add(getLabTestAttributeObj(labTestAttributeResult));
-				}
-				labTestGroupObj.add("groups", jsonGroupArray);
-				parentJsonArray.add(labTestGroupObj);
-
-			} else {
-				LabTestAttribute labTestAttributeResult = getFilterAttribute(labTestAttributeType, labTestAttributes);
-				parentJsonArray.add(getLabTestAttributeObj(labTestAttributeResult));
+			labTestGroupObj.addProperty("groupName", node.getName());
+			for (LabTestAttributeType labTestAttributeType : node.getAttributeTypes()) {
+				jsonGroupArray.add(getLabTestAttributeObj(getFilterAttribute(labTestAttributeType, labTestAttributes)));
 			}
+			labTestGroupObj.add("groups", jsonGroupArray);
+			parentJsonArray.add(labTestGroupObj);
 		}
 		return parentJsonArray;
 	}
 
 	private LabTestAttribute getFilterAttribute(LabTestAttributeType labTestAttributeType,
-	        List<LabTestAttribute> LabTestAttribute) {
-		LabTestAttribute labTestAttributeResult = new LabTestAttribute();
-		if (!LabTestAttribute.isEmpty()) {
-			for (LabTestAttribute filterLabTestAttribute : LabTestAttribute) {
-				if (labTestAttributeType.getLabTestAttributeTypeId() == filterLabTestAttribute.getAttributeType()
-				        .getLabTestAttributeTypeId()) {
-					labTestAttributeResult = filterLabTestAttribute;
-					break;
-				}
-			}
-		}
-		return labTestAttributeResult;
+	        Map<Integer, LabTestAttribute> labTestAttributes) {
+		LabTestAttribute labTestAttributeResult = labTestAttributes.get(labTestAttributeType.getLabTestAttributeTypeId());
+		return labTestAttributeResult == null ? new LabTestAttribute() : labTestAttributeResult;
 	}
 
-	private List<LabTestAttributeType> getFilterAttributeTypes(LabTestAttributeType labTestAttributeType,
-	        List<LabTestAttributeType> listLabTestAttributeType) {
-		List<LabTestAttributeType> filterLabTestAttributeTypes = new ArrayList<LabTestAttributeType>();
-		if (!listLabTestAttributeType.isEmpty()) {
-			for (LabTestAttributeType filterLabTestAttributeType : listLabTestAttributeType) {
-				String groupName = filterLabTestAttributeType.getGroupName();
-				if (groupName != null && !groupName.isEmpty()) {
-					if (groupName.equals(labTestAttributeType.getGroupName())) {
-						filterLabTestAttributeTypes.add(filterLabTestAttributeType);
-					}
-				}
+	/**
+	 * Indexes the attributes by their attribute type Id, keeping the first one of each type
+	 */
+	private Map<Integer, LabTestAttribute> getAttributesByType(List<LabTestAttribute> labTestAttributes) {
+		Map<Integer, LabTestAttribute> attributesByType = new HashMap<Integer, LabTestAttribute>();
+		for (LabTestAttribute labTestAttribute : labTestAttributes) {
+			Integer attributeTypeId = labTestAttribute.getAttributeType().getId();
+			if (!attributesByType.containsKey(attributeTypeId)) {
+				attributesByType.put(attributeTypeId, labTestAttribute);
 			}
 		}
-		return filterLabTestAttributeTypes;
+		return attributesByType;
 	}
 
 	private JsonObject getLabTestAttributeObj(LabTestAttribute labTestAttribute) {
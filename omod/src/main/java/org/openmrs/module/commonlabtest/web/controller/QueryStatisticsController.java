@@ -0,0 +1,48 @@
+package org.openmrs.module.commonlabtest.web.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.ModelMap;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Shows the Hibernate statistics of the lab test data and the recent slow queries, e.g. to find a
+ * page which issues a query per lab test
+ */
+@Controller
+@RequestMapping(value = "/module/commonlabtest/queryStatistics.form")
+public class QueryStatisticsController {
+
+	/** Success form view name */
+	private final String SUCCESS_FORM_VIEW = "/module/commonlabtest/queryStatistics";
+
+	/** Logger for this class */
+	protected final Log log = LogFactory.getLog(getClass());
+
+	@RequestMapping(method = RequestMethod.GET)
+	public String showQueryStatistics(ModelMap model) {
+		model.put("statistics", Context.getService(CommonLabTestService.class).getQueryStatistics());
+		return SUCCESS_FORM_VIEW;
+	}
+
+	/**
+	 * @param action enable, disable or clear
+	 */
+	@RequestMapping(method = RequestMethod.POST)
+	public String updateQueryStatistics(@RequestParam String action) {
+		CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+		if ("enable".equals(action) || "disable".equals(action)) {
+			commonLabTestService.setQueryStatisticsEnabled("enable".equals(action));
+		} else if ("clear".equals(action)) {
+			commonLabTestService.clearQueryStatistics();
+		} else {
+			log.warn("Unknown query statistics action: " + action);
+		}
+		return "redirect:/module/commonlabtest/queryStatistics.form";
+	}
+}
@@ -0,0 +1,115 @@
+package org.openmrs.module.commonlabtest.web.resource;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestConfig;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.metrics.MethodMetrics;
+import org.openmrs.module.commonlabtest.metrics.ServiceMetricsRegistry;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Serves the metrics of the CommonLabTestService methods, and the size of the queue of lab tests to
+ * void, in the Prometheus text format, to be scraped with the credentials of a user who can view lab
+ * tests
+ */
+@Controller
+@RequestMapping("/rest/" + RestConstants.VERSION_1 + "/commonlab/metrics")
+public class CommonLabMetricsController {
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final String PREFIX = "commonlabtest_";
+
+	@RequestMapping(method = RequestMethod.GET)
+	public void getMetrics(HttpServletResponse response) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+		if (!Context.hasPrivilege(CommonLabTestConfig.VIEW_LAB_TEST_PRIVILEGE)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+		long queued = commonLabTestService.getLabTestVoidQueueSize(false);
+		long retrying = commonLabTestService.getRetryingLabTestVoidQueueSize();
+		long failed = commonLabTestService.getLabTestVoidQueueSize(true);
+		ServiceMetricsRegistry registry = Context.getRegisteredComponent("commonLabTestMetricsRegistry",
+		    ServiceMetricsRegistry.class);
+		StringBuilder out = new StringBuilder();
+		writeMetrics(out, registry);
+		header(out, "void_queue_items", "gauge", "Lab tests of voided or unvoided encounters waiting to be processed");
+		sample(out, "void_queue_items", null, queued);
+		header(out, "void_queue_retrying_items", "gauge", "Queued lab tests which failed and will be tried again");
+		sample(out, "void_queue_retrying_items", null, retrying);
+		header(out, "void_queue_failed_items", "gauge", "Queued lab tests given up after too many failed attempts");
+		sample(out, "void_queue_failed_items", null, failed);
+		response.setContentType(CONTENT_TYPE);
+		response.getWriter().write(out.toString());
+	}
+
+	void writeMetrics(StringBuilder out, ServiceMetricsRegistry registry) {
+		Iterable<MethodMetrics> methods = registry.getMethodMetrics();
+		header(out, "service_calls_total", "counter", "Calls of CommonLabTestService methods");
+		for (MethodMetrics metrics : methods) {
+			sample(out, "service_calls_total", labels(metrics, null), metrics.getCalls());
+		}
+		header(out, "service_errors_total", "counter", "Calls of CommonLabTestService methods which threw an exception");
+		for (MethodMetrics metrics : methods) {
+			for (Map.Entry<String, Long> error : metrics.getErrors().entrySet()) {
+				sample(out, "service_errors_total", labels(metrics, "exception=\"" + escape(error.getKey()) + "\""),
+				    error.getValue());
+			}
+		}
+		header(out, "service_rows_total", "counter", "Objects returned by CommonLabTestService methods");
+		for (MethodMetrics metrics : methods) {
+			sample(out, "service_rows_total", labels(metrics, null), metrics.getRows());
+		}
+		header(out, "service_latency_seconds", "histogram", "Duration of CommonLabTestService method calls");
+		for (MethodMetrics metrics : methods) {
+			long[] buckets = metrics.getLatencyBuckets();
+			for (int i = 0; i < buckets.length; i++) {
+				double bound = MethodMetrics.LATENCY_BUCKETS[i];
+				String le = Double.isInfinite(bound) ? "+Inf" : String.valueOf(bound);
+				sample(out, "service_latency_seconds_bucket", labels(metrics, "le=\"" + le + "\""), buckets[i]);
+			}
+			out.append(PREFIX).append("service_latency_seconds_sum").append(labels(metrics, null)).append(' ')
+			        .append(String.format(Locale.ROOT, "%.9f", metrics.getLatencySumNanos() / 1e9)).append('\n');
+			sample(out, "service_latency_seconds_count", labels(metrics, null), metrics.getCalls());
+		}
+	}
+
+	private void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+	}
+
+	private void sample(StringBuilder out, String name, String labels, long value) {
+		out.append(PREFIX).append(name);
+		if (labels != null) {
+			out.append(labels);
+		}
+		out.append(' ').append(value).append('\n');
+	}
+
+	private String labels(MethodMetrics metrics, String extra) {
+		StringBuilder labels = new StringBuilder("{method=\"").append(escape(metrics.getMethod())).append('"');
+		if (extra != null) {
+			labels.append(',').append(extra);
+		}
+		return labels.append('}').toString();
+	}
+
+	private String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,42 @@
+package org.openmrs.module.commonlabtest.web.resource;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestConfig;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Serves the same Hibernate statistics and slow queries as the query statistics admin page, as
+ * JSON, e.g. to compare them before and after a page is opened
+ */
+@Controller
+@RequestMapping("/rest/" + RestConstants.VERSION_1 + "/commonlab/querystatistics")
+public class LabQueryStatisticsController {
+
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").create();
+
+	@RequestMapping(method = RequestMethod.GET)
+	public void getQueryStatistics(HttpServletResponse response) throws IOException {
+		if (!Context.isAuthenticated()) {
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+		if (!Context.hasPrivilege(CommonLabTestConfig.EDIT_LAB_TEST_METADATA_PRIVILEGE)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		String json = gson.toJson(Context.getService(CommonLabTestService.class).getQueryStatistics());
+		response.setContentType("application/json;charset=UTF-8");
+		response.getWriter().write(json);
+	}
+}
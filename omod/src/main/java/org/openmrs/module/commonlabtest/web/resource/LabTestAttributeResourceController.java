@@ -21,7 +21,6 @@ import org.openmrs.module.webservices.rest.web.resource.api.PageableResult;
 import org.openmrs.module.webservices.rest.web.resource.impl.DataDelegatingCrudResource;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingCrudResource;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
-import org.openmrs.module.webservices.rest.web.resource.impl.NeedsPaging;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
@@ -111,9 +110,14 @@ public class LabTestAttributeResourceController extends DataDelegatingCrudResour
 
 	@Override
 	protected PageableResult doSearch(RequestContext context) {
-		String testId = context.getRequest().getParameter("testOrderId");
-		List<LabTestAttribute> attributes = commonLabTestService.getLabTestAttributes(Integer.parseInt(testId));
-		return new NeedsPaging<LabTestAttribute>(attributes, context);
+		Integer testOrderId = Integer.parseInt(context.getRequest().getParameter("testOrderId"));
+		List<LabTestAttribute> attributes = commonLabTestService.getLabTestAttributes(testOrderId, context.getStartIndex(),
+		    PagingUtil.getFetchSize(context));
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getLabTestAttributesCount(testOrderId);
+		}
+		return PagingUtil.toPagedResult(context, attributes, totalCount);
 	}
 
 	/**
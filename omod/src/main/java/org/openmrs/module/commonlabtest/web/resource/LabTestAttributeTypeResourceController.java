@@ -19,7 +19,6 @@ import org.openmrs.module.webservices.rest.web.representation.Representation;
 import org.openmrs.module.webservices.rest.web.resource.api.PageableResult;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
 import org.openmrs.module.webservices.rest.web.resource.impl.MetadataDelegatingCrudResource;
-import org.openmrs.module.webservices.rest.web.resource.impl.NeedsPaging;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
@@ -59,8 +58,13 @@ public class LabTestAttributeTypeResourceController extends MetadataDelegatingCr
 	protected PageableResult doSearch(RequestContext context) {
 		String testTypeUuid = context.getRequest().getParameter("testTypeUuid");
 		LabTestType labTestType = commonLabTestService.getLabTestTypeByUuid(testTypeUuid);
-		List<LabTestAttributeType> attributeTypes = commonLabTestService.getLabTestAttributeTypes(labTestType, true);
-		return new NeedsPaging<LabTestAttributeType>(attributeTypes, context);
+		List<LabTestAttributeType> attributeTypes = commonLabTestService.getLabTestAttributeTypes(labTestType, true,
+		    context.getStartIndex(), PagingUtil.getFetchSize(context));
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getLabTestAttributeTypesCount(labTestType, true);
+		}
+		return PagingUtil.toPagedResult(context, attributeTypes, totalCount);
 	}
 
 	@Override
@@ -134,8 +138,13 @@ public class LabTestAttributeTypeResourceController extends MetadataDelegatingCr
 
 	@Override
 	protected PageableResult doGetAll(RequestContext context) throws ResponseException {
-		List<LabTestAttributeType> list = commonLabTestService.getAllLabTestAttributeTypes(false);
-		return new NeedsPaging<LabTestAttributeType>(list, context);
+		List<LabTestAttributeType> list = commonLabTestService.getAllLabTestAttributeTypes(false, context.getStartIndex(),
+		    PagingUtil.getFetchSize(context));
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getAllLabTestAttributeTypesCount(false);
+		}
+		return PagingUtil.toPagedResult(context, list, totalCount);
 	}
 
 	/**
@@ -2,8 +2,10 @@ package org.openmrs.module.commonlabtest.web.resource;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,7 +28,6 @@ import org.openmrs.module.webservices.rest.web.representation.Representation;
 import org.openmrs.module.webservices.rest.web.resource.api.PageableResult;
 import org.openmrs.module.webservices.rest.web.resource.impl.DataDelegatingCrudResource;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
-import org.openmrs.module.webservices.rest.web.resource.impl.NeedsPaging;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
@@ -45,12 +46,30 @@ public class LabTestOrderResourceController extends DataDelegatingCrudResource<L
 	@Override
 	public LabTest getByUniqueId(String s) {
 		LabTest labTest = commonLabTestService.getLabTestByUuid(s);
-		labTest.setLabTestSamples(new HashSet<LabTestSample>(commonLabTestService.getLabTestSamples(labTest, false)));
-		labTest.setAttributes(
-		    new HashSet<LabTestAttribute>(commonLabTestService.getLabTestAttributes(labTest.getTestOrderId())));
+		if (labTest != null) {
+			setSamplesAndAttributes(Collections.singletonList(labTest));
+		}
 		return labTest;
 	}
 
+	/**
+	 * Fills in the samples and attributes of given lab tests with one batched query each, instead of
+	 * two queries per test
+	 *
+	 * @param labTests the {@link LabTest} objects
+	 */
+	private void setSamplesAndAttributes(List<LabTest> labTests) {
+		if (labTests.isEmpty()) {
+			return;
+		}
+		Map<Integer, List<LabTestSample>> samples = commonLabTestService.getLabTestSamples(labTests, false);
+		Map<Integer, List<LabTestAttribute>> attributes = commonLabTestService.getLabTestAttributes(labTests);
+		for (LabTest labTest : labTests) {
+			labTest.setLabTestSamples(new HashSet<LabTestSample>(samples.get(labTest.getTestOrderId())));
+			labTest.setAttributes(new HashSet<LabTestAttribute>(attributes.get(labTest.getTestOrderId())));
+		}
+	}
+
 	@Override
 	protected void delete(LabTest labTest, String s, RequestContext requestContext) throws ResponseException {
 		commonLabTestService.voidLabTest(labTest, s);
@@ -203,6 +222,15 @@ public class LabTestOrderResourceController extends DataDelegatingCrudResource<L
 	protected PageableResult doSearch(RequestContext context) {
 		String uuid = context.getRequest().getParameter("patient");
 		Patient patient = Context.getPatientService().getPatientByUuid(uuid);
-		return new NeedsPaging<LabTest>(commonLabTestService.getLabTests(patient, false), context);
+		List<LabTest> labTests = commonLabTestService.getLabTests(null, patient, null, null, null, null, null, null, false,
+		    context.getStartIndex(), PagingUtil.getFetchSize(context));
+		if (!(context.getRepresentation() instanceof RefRepresentation)) {
+			setSamplesAndAttributes(PagingUtil.getPage(context, labTests));
+		}
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getLabTestsCount(null, patient, null, null, null, null, null, null, false);
+		}
+		return PagingUtil.toPagedResult(context, labTests, totalCount);
 	}
 }
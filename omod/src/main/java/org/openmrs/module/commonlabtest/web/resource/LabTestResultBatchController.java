@@ -0,0 +1,165 @@
+package org.openmrs.module.commonlabtest.web.resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.APIException;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.CommonLabTestActivator;
+import org.openmrs.module.commonlabtest.LabTest;
+import org.openmrs.module.commonlabtest.LabTestAttribute;
+import org.openmrs.module.commonlabtest.LabTestAttributeType;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Accepts the results of a whole analyzer run, e.g. a plate, in one request:
+ *
+ * <pre>
+ * {"results": [{"labTest": "uuid", "attributes": [{"attributeType": "uuid", "valueReference": "value"}]}]}
+ * </pre>
+ *
+ * Lab tests are committed in chunks of about as many results as the
+ * {@link CommonLabTestActivator#RESULT_BATCH_SIZE} global property, each chunk in its own
+ * transaction, and the results of one lab test are never split. If a chunk fails, the response
+ * lists the lab tests already committed so that the client can resend the rest.
+ */
+@Controller
+@RequestMapping("/rest/" + RestConstants.VERSION_1 + "/commonlab/labtestresults/batch")
+public class LabTestResultBatchController {
+
+	protected final Log log = LogFactory.getLog(getClass());
+
+	@RequestMapping(method = RequestMethod.POST)
+	@ResponseBody
+	public String saveResults(@RequestBody String json, HttpServletResponse response) {
+		CommonLabTestService commonLabTestService = Context.getService(CommonLabTestService.class);
+		JsonObject responseObject = new JsonObject();
+		JsonArray committed = new JsonArray();
+		responseObject.add("committed", committed);
+		Map<LabTest, Collection<LabTestAttribute>> labTestResults;
+		try {
+			labTestResults = parseResults(commonLabTestService, json);
+		}
+		catch (JsonParseException e) {
+			return badRequest(response, responseObject, "Malformed request: " + e.getMessage());
+		}
+		catch (IllegalStateException e) {
+			return badRequest(response, responseObject, "Malformed request: " + e.getMessage());
+		}
+		catch (IllegalArgumentException e) {
+			return badRequest(response, responseObject, e.getMessage());
+		}
+		int batchSize = commonLabTestService.getResultBatchSize();
+		int saved = 0;
+		Map<LabTest, Collection<LabTestAttribute>> chunk = new LinkedHashMap<LabTest, Collection<LabTestAttribute>>();
+		int chunkSize = 0;
+		List<LabTest> labTests = new ArrayList<LabTest>(labTestResults.keySet());
+		for (int i = 0; i < labTests.size(); i++) {
+			LabTest labTest = labTests.get(i);
+			chunk.put(labTest, labTestResults.get(labTest));
+			chunkSize += labTestResults.get(labTest).size();
+			if (chunkSize < batchSize && i < labTests.size() - 1) {
+				continue;
+			}
+			try {
+				saved += commonLabTestService.saveLabTestResults(chunk).size();
+			}
+			catch (APIException e) {
+				log.error("Unable to save batch of lab test results", e);
+				responseObject.addProperty("saved", saved);
+				return badRequest(response, responseObject, e.getMessage());
+			}
+			catch (RuntimeException e) {
+				// Earlier chunks are committed whatever went wrong, so the client still needs the list
+				log.error("Unable to save batch of lab test results", e);
+				responseObject.addProperty("saved", saved);
+				response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				responseObject.addProperty("error", "Unable to save results: " + e.getMessage());
+				return responseObject.toString();
+			}
+			for (LabTest committedLabTest : chunk.keySet()) {
+				committed.add(new JsonPrimitive(committedLabTest.getUuid()));
+			}
+			chunk.clear();
+			chunkSize = 0;
+		}
+		responseObject.addProperty("saved", saved);
+		return responseObject.toString();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a property is missing, or a lab test or attribute type does
+	 *             not exist
+	 */
+	private Map<LabTest, Collection<LabTestAttribute>> parseResults(CommonLabTestService commonLabTestService,
+	        String json) {
+		JsonObject request = new JsonParser().parse(json).getAsJsonObject();
+		Map<LabTest, Collection<LabTestAttribute>> labTestResults = new LinkedHashMap<LabTest, Collection<LabTestAttribute>>();
+		Map<String, LabTestAttributeType> attributeTypes = new LinkedHashMap<String, LabTestAttributeType>();
+		for (JsonElement resultElement : getRequired(request, "results").getAsJsonArray()) {
+			JsonObject result = resultElement.getAsJsonObject();
+			String labTestUuid = getRequired(result, "labTest").getAsString();
+			LabTest labTest = commonLabTestService.getLabTestByUuid(labTestUuid);
+			if (labTest == null) {
+				throw new IllegalArgumentException("Lab test not found: " + labTestUuid);
+			}
+			Collection<LabTestAttribute> attributes = labTestResults.get(labTest);
+			if (attributes == null) {
+				attributes = new ArrayList<LabTestAttribute>();
+				labTestResults.put(labTest, attributes);
+			}
+			for (JsonElement attributeElement : getRequired(result, "attributes").getAsJsonArray()) {
+				JsonObject attributeObject = attributeElement.getAsJsonObject();
+				String attributeTypeUuid = getRequired(attributeObject, "attributeType").getAsString();
+				LabTestAttributeType attributeType = attributeTypes.get(attributeTypeUuid);
+				if (attributeType == null) {
+					attributeType = commonLabTestService.getLabTestAttributeTypeByUuid(attributeTypeUuid);
+					if (attributeType == null) {
+						throw new IllegalArgumentException("Lab test attribute type not found: " + attributeTypeUuid);
+					}
+					attributeTypes.put(attributeTypeUuid, attributeType);
+				}
+				LabTestAttribute attribute = new LabTestAttribute();
+				attribute.setLabTest(labTest);
+				attribute.setAttributeType(attributeType);
+				attribute.setValueReferenceInternal(getRequired(attributeObject, "valueReference").getAsString());
+				attributes.add(attribute);
+			}
+		}
+		return labTestResults;
+	}
+
+	private JsonElement getRequired(JsonObject object, String property) {
+		JsonElement element = object.get(property);
+		if (element == null || element.isJsonNull()) {
+			throw new IllegalArgumentException("Property '" + property + "' is required");
+		}
+		return element;
+	}
+
+	private String badRequest(HttpServletResponse response, JsonObject responseObject, String error) {
+		response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+		responseObject.addProperty("error", error);
+		return responseObject.toString();
+	}
+}
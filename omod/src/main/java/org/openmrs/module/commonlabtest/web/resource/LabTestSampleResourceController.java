@@ -24,7 +24,6 @@ import org.openmrs.module.webservices.rest.web.resource.api.PageableResult;
 import org.openmrs.module.webservices.rest.web.resource.api.Searchable;
 import org.openmrs.module.webservices.rest.web.resource.impl.DataDelegatingCrudResource;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
-import org.openmrs.module.webservices.rest.web.resource.impl.NeedsPaging;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
@@ -156,8 +155,13 @@ public class LabTestSampleResourceController extends DataDelegatingCrudResource<
 		LabTest labTest = labUuid != null ? commonLabTestService.getLabTestByUuid(labUuid) : null;
 		Patient patient = patientUuid != null ? Context.getPatientService().getPatientByUuid(patientUuid) : null;
 		Provider provider = collectorUuid != null ? Context.getProviderService().getProviderByUuid(collectorUuid) : null;
-		List<LabTestSample> list = commonLabTestService.getLabTestSamples(labTest, patient, null, sampleIdentifier, provider,
-		    fromDate, toDate, false);
-		return new NeedsPaging<LabTestSample>(list, context);
+		List<LabTestSample> list = commonLabTestService.getLabTestSamples(labTest, patient, sampleIdentifier, null, null,
+		    provider, fromDate, toDate, false, context.getStartIndex(), PagingUtil.getFetchSize(context));
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getLabTestSamplesCount(labTest, patient, sampleIdentifier, null, null,
+			    provider, fromDate, toDate, false);
+		}
+		return PagingUtil.toPagedResult(context, list, totalCount);
 	}
 }
@@ -18,7 +18,6 @@ import org.openmrs.module.webservices.rest.web.representation.Representation;
 import org.openmrs.module.webservices.rest.web.resource.api.PageableResult;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
 import org.openmrs.module.webservices.rest.web.resource.impl.MetadataDelegatingCrudResource;
-import org.openmrs.module.webservices.rest.web.resource.impl.NeedsPaging;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
@@ -102,8 +101,13 @@ public class LabTestTypeResourceController extends MetadataDelegatingCrudResourc
 
 	@Override
 	protected PageableResult doGetAll(RequestContext context) throws ResponseException {
-		List<LabTestType> list = commonLabTestService.getAllLabTestTypes(false);
-		return new NeedsPaging<LabTestType>(list, context);
+		List<LabTestType> list = commonLabTestService.getAllLabTestTypes(false, context.getStartIndex(),
+		    PagingUtil.getFetchSize(context));
+		Long totalCount = null;
+		if (PagingUtil.isTotalCountRequested(context)) {
+			totalCount = commonLabTestService.getAllLabTestTypesCount(false);
+		}
+		return PagingUtil.toPagedResult(context, list, totalCount);
 	}
 
 	/**
@@ -0,0 +1,59 @@
+package org.openmrs.module.commonlabtest.web.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmrs.module.webservices.rest.web.RequestContext;
+import org.openmrs.module.webservices.rest.web.resource.impl.AlreadyPaged;
+
+/**
+ * Helps the resources of this module page in the database instead of in memory. A resource asks
+ * the service for {@link #getFetchSize(RequestContext)} rows starting at the requested start index,
+ * i.e. one more than the page size so that it can tell whether a next page exists without a count
+ * query, and hands the rows to {@link #toPagedResult(RequestContext, List, Long)}
+ */
+final class PagingUtil {
+
+	private PagingUtil() {
+	}
+
+	/**
+	 * @param context the {@link RequestContext} object
+	 * @return number of rows to fetch for the requested page
+	 */
+	static Integer getFetchSize(RequestContext context) {
+		return context.getLimit() + 1;
+	}
+
+	/**
+	 * @param context the {@link RequestContext} object
+	 * @return true if the client asked for the total count of matching rows
+	 */
+	static boolean isTotalCountRequested(RequestContext context) {
+		return Boolean.TRUE.equals(context.getIncludeTotalCount());
+	}
+
+	/**
+	 * @param context the {@link RequestContext} object
+	 * @param fetched rows fetched with {@link #getFetchSize(RequestContext)}
+	 * @return view of the rows that belong to the current page, without the extra row
+	 */
+	static <T> List<T> getPage(RequestContext context, List<T> fetched) {
+		return fetched.subList(0, Math.min(fetched.size(), context.getLimit()));
+	}
+
+	/**
+	 * @param context the {@link RequestContext} object
+	 * @param fetched rows fetched with {@link #getFetchSize(RequestContext)}
+	 * @param totalCount total number of matching rows, or null if it was not requested
+	 * @return {@link AlreadyPaged} result of the current page
+	 */
+	static <T> AlreadyPaged<T> toPagedResult(RequestContext context, List<T> fetched, Long totalCount) {
+		List<T> results = fetched == null ? new ArrayList<T>() : fetched;
+		boolean hasMoreResults = results.size() > context.getLimit();
+		if (hasMoreResults) {
+			results = new ArrayList<T>(results.subList(0, context.getLimit()));
+		}
+		return new AlreadyPaged<T>(context, results, hasMoreResults, totalCount);
+	}
+}
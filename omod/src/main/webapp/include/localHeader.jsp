@@ -33,6 +33,11 @@
 		<a href="${pageContext.request.contextPath}/module/commonlabtest/manageLabTestAttributeTypes.form">
 		<spring:message code="commonlabtest.labtestattributetype.manage" /></a>
 	</li>
+	<li
+		<c:if test='<%=request.getRequestURI().contains("/queryStatistics")%>'>class="active"</c:if>>
+		<a href="${pageContext.request.contextPath}/module/commonlabtest/queryStatistics.form">
+		<spring:message code="commonlabtest.querystatistics.manage" /></a>
+	</li>
 	<%-- <li
 		<c:if test='<%=request.getRequestURI().contains("/manageLabTestSamples")%>'>class="active"</c:if>>
 		<a
@@ -0,0 +1,236 @@
+<%@ include file="/WEB-INF/template/include.jsp"%>
+<%@ include file="/WEB-INF/template/header.jsp"%>
+<%@ include
+	file="/WEB-INF/view/module/commonlabtest/include/localHeader.jsp"%>
+<openmrs:require privilege="Edit CommonLabTest Metadata"
+	redirect="/module/commonlabtest/queryStatistics.form"
+	otherwise="/login.htm" />
+
+<link type="text/css" rel="stylesheet"
+	href="/openmrs/moduleResources/commonlabtest/css/commonlabtest.css" />
+<link
+	href="/openmrs/moduleResources/commonlabtest/font-awesome/css/font-awesome.min.css"
+	rel="stylesheet" />
+<link
+	href="/openmrs/moduleResources/commonlabtest/css/bootstrap.min.css"
+	rel="stylesheet" />
+
+<style>
+body {
+	font-size: 12px;
+}
+
+input[type=submit] {
+	background-color: #1aac9b;
+	color: white;
+	padding: 8px 22px;
+	border: none;
+	border-radius: 2px;
+	cursor: pointer;
+}
+
+td.query {
+	font-family: monospace;
+	word-break: break-all;
+}
+</style>
+
+<!-- Heading -->
+<div>
+	<h2>
+		<b><spring:message code="commonlabtest.querystatistics.manage" /></b>
+	</h2>
+</div>
+<br>
+<openmrs:hasPrivilege privilege="Edit CommonLabTest Metadata">
+	<form method="post" style="display: inline">
+		<c:choose>
+			<c:when test="${statistics.enabled}">
+				<input type="hidden" name="action" value="disable" />
+				<input type="submit"
+					value="<spring:message code="commonlabtest.querystatistics.disable" />" />
+			</c:when>
+			<c:otherwise>
+				<input type="hidden" name="action" value="enable" />
+				<input type="submit"
+					value="<spring:message code="commonlabtest.querystatistics.enable" />" />
+			</c:otherwise>
+		</c:choose>
+	</form>
+	<form method="post" style="display: inline">
+		<input type="hidden" name="action" value="clear" /> <input
+			type="submit"
+			value="<spring:message code="commonlabtest.querystatistics.clear" />" />
+	</form>
+</openmrs:hasPrivilege>
+<br>
+<br>
+<c:choose>
+	<c:when test="${statistics.enabled}">
+		<p>
+			<spring:message code="commonlabtest.querystatistics.since" />
+			<openmrs:formatDate date="${statistics.startTime}" type="long" />
+		</p>
+		<p>
+			<spring:message code="commonlabtest.querystatistics.maxTime" />
+			: ${statistics.queryExecutionMaxTime} ms
+			<c:out value="${statistics.queryExecutionMaxTimeQueryString}" />
+		</p>
+	</c:when>
+	<c:otherwise>
+		<p>
+			<spring:message code="commonlabtest.querystatistics.disabled" />
+		</p>
+	</c:otherwise>
+</c:choose>
+
+<div class="boxHeader" style="background-color: #1aac9b">
+	<b><spring:message code="commonlabtest.querystatistics.entities" /></b>
+</div>
+<div class="box">
+	<table class="table table-striped table-bordered" style="width: 100%">
+		<thead>
+			<tr>
+				<th>Entity</th>
+				<th>Loads</th>
+				<th>Fetches</th>
+				<th>Inserts</th>
+				<th>Updates</th>
+				<th>Deletes</th>
+			</tr>
+		</thead>
+		<tbody>
+			<c:forEach var="row" items="${statistics.entities}">
+				<tr>
+					<td>${row.name}</td>
+					<td>${row.loadCount}</td>
+					<td>${row.fetchCount}</td>
+					<td>${row.insertCount}</td>
+					<td>${row.updateCount}</td>
+					<td>${row.deleteCount}</td>
+				</tr>
+			</c:forEach>
+		</tbody>
+	</table>
+</div>
+<br>
+<div class="boxHeader" style="background-color: #1aac9b">
+	<b><spring:message code="commonlabtest.querystatistics.collections" /></b>
+</div>
+<div class="box">
+	<table class="table table-striped table-bordered" style="width: 100%">
+		<thead>
+			<tr>
+				<th>Collection</th>
+				<th>Loads</th>
+				<th>Fetches</th>
+				<th>Updates</th>
+			</tr>
+		</thead>
+		<tbody>
+			<c:forEach var="row" items="${statistics.collections}">
+				<tr>
+					<td>${row.role}</td>
+					<td>${row.loadCount}</td>
+					<td>${row.fetchCount}</td>
+					<td>${row.updateCount}</td>
+				</tr>
+			</c:forEach>
+		</tbody>
+	</table>
+</div>
+<br>
+<div class="boxHeader" style="background-color: #1aac9b">
+	<b><spring:message code="commonlabtest.querystatistics.queries" /></b>
+</div>
+<div class="box">
+	<table class="table table-striped table-bordered" style="width: 100%">
+		<thead>
+			<tr>
+				<th>Query</th>
+				<th>Executions</th>
+				<th>Rows</th>
+				<th>Average (ms)</th>
+				<th>Max (ms)</th>
+				<th>Cache Hits</th>
+				<th>Cache Misses</th>
+			</tr>
+		</thead>
+		<tbody>
+			<c:forEach var="row" items="${statistics.queries}">
+				<tr>
+					<td class="query"><c:out value="${row.query}" /></td>
+					<td>${row.executionCount}</td>
+					<td>${row.executionRowCount}</td>
+					<td>${row.executionAvgTime}</td>
+					<td>${row.executionMaxTime}</td>
+					<td>${row.cacheHitCount}</td>
+					<td>${row.cacheMissCount}</td>
+				</tr>
+			</c:forEach>
+		</tbody>
+	</table>
+</div>
+<br>
+<div class="boxHeader" style="background-color: #1aac9b">
+	<b><spring:message code="commonlabtest.querystatistics.caches" /></b>
+</div>
+<div class="box">
+	<table class="table table-striped table-bordered" style="width: 100%">
+		<thead>
+			<tr>
+				<th>Region</th>
+				<th>Hits</th>
+				<th>Misses</th>
+				<th>Puts</th>
+				<th>Hit Ratio</th>
+			</tr>
+		</thead>
+		<tbody>
+			<c:forEach var="row" items="${statistics.caches}">
+				<tr>
+					<td>${row.region}</td>
+					<td>${row.hitCount}</td>
+					<td>${row.missCount}</td>
+					<td>${row.putCount}</td>
+					<td><fmt:formatNumber value="${row.hitRatio}" type="percent"
+							maxFractionDigits="1" /></td>
+				</tr>
+			</c:forEach>
+		</tbody>
+	</table>
+</div>
+<br>
+<div class="boxHeader" style="background-color: #1aac9b">
+	<b><spring:message code="commonlabtest.querystatistics.slowQueries" /></b>
+</div>
+<div class="box">
+	<p>
+		<spring:message code="commonlabtest.querystatistics.threshold"
+			arguments="${statistics.slowQueryThresholdMillis}" />
+	</p>
+	<table class="table table-striped table-bordered" style="width: 100%">
+		<thead>
+			<tr>
+				<th>Time</th>
+				<th>Duration (ms)</th>
+				<th>Query</th>
+				<th>Parameters</th>
+				<th>Exception</th>
+			</tr>
+		</thead>
+		<tbody>
+			<c:forEach var="row" items="${statistics.slowQueries}">
+				<tr>
+					<td><openmrs:formatDate date="${row.time}" type="long" /></td>
+					<td>${row.durationMillis}</td>
+					<td class="query"><c:out value="${row.query}" /></td>
+					<td class="query"><c:out value="${row.parameters}" /></td>
+					<td>${row.exception}</td>
+				</tr>
+			</c:forEach>
+		</tbody>
+	</table>
+</div>
+
+<%@ include file="/WEB-INF/template/footer.jsp"%>
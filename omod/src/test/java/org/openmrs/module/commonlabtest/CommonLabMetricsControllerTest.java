@@ -0,0 +1,48 @@
+package org.openmrs.module.commonlabtest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.web.resource.CommonLabMetricsController;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CommonLabMetricsControllerTest extends BaseModuleWebContextSensitiveTest {
+
+	@Autowired
+	CommonLabTestService commonLabTestService;
+
+	@Before
+	public void setUp() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+	}
+
+	@Test
+	public void shouldServeMetricsOfServiceCalls() throws Exception {
+		commonLabTestService.getAllLabTestTypes(false);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		new CommonLabMetricsController().getMetrics(response);
+
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals(CommonLabMetricsController.CONTENT_TYPE, response.getContentType());
+		String body = response.getContentAsString();
+		Assert.assertTrue(body.contains("# TYPE commonlabtest_service_latency_seconds histogram"));
+		Assert.assertTrue(body.contains("commonlabtest_service_calls_total{method=\"getAllLabTestTypes(boolean)\"}"));
+		Assert.assertTrue(body.contains("commonlabtest_service_latency_seconds_bucket{method=\"getAllLabTestTypes(boolean)\",le=\"+Inf\"}"));
+		Assert.assertTrue(body.contains("commonlabtest_void_queue_items "));
+	}
+
+	@Test
+	public void shouldRejectUnauthenticatedUser() throws Exception {
+		Context.logout();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		new CommonLabMetricsController().getMetrics(response);
+
+		Assert.assertEquals(401, response.getStatus());
+	}
+}
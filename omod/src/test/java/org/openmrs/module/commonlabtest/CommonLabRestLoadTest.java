@@ -0,0 +1,415 @@
+package org.openmrs.module.commonlabtest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.workload.LabWorkload;
+import org.openmrs.module.commonlabtest.workload.LabWorkloadGenerator;
+import org.openmrs.module.webservices.rest.SimpleObject;
+import org.openmrs.module.webservices.rest.web.RestControllerTestUtils;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Load test of the commonlab REST resources. Concurrent clients send a weighted mix of reads and
+ * writes to the lab test order, sample, attribute and type resources of a generated lab workload,
+ * and the latency of each endpoint is reported along with its throughput. The test fails if the
+ * 95th percentile latency of any endpoint exceeds its budget, or if any request fails.
+ * <p>
+ * Requests are dispatched in-process through the REST module's handler mappings, as in the other
+ * resource tests, so the latencies are those of the module, the REST layer and H2, without the
+ * network. It only runs with the loadtest profile, and is tuned by system properties:
+ *
+ * <pre>
+ * mvn -Ploadtest test -Dloadtest.threads=16 -Dloadtest.p95BudgetMillis=200 -Dloadtest.p95BudgetMillis.labtestorder.search=400
+ * </pre>
+ */
+public class CommonLabRestLoadTest extends RestControllerTestUtils {
+
+	private static final Log log = LogFactory.getLog(CommonLabRestLoadTest.class);
+
+	private static final String BUDGET_PROPERTY = "loadtest.p95BudgetMillis";
+
+	private final List<String> patientUuids = new ArrayList<String>();
+
+	private final List<String> labTestUuids = new ArrayList<String>();
+
+	private final List<Integer> testOrderIds = new ArrayList<Integer>();
+
+	private final List<String> labTestTypeUuids = new ArrayList<String>();
+
+	private String specimenTypeUuid;
+
+	private String specimenSiteUuid;
+
+	private String collectorUuid;
+
+	@After
+	public void deleteWorkload() throws Exception {
+		deleteAllData();
+	}
+
+	@Test
+	public void shouldServeMixedTrafficWithinLatencyBudget() throws Exception {
+		int threads = Integer.getInteger("loadtest.threads", 8);
+		int warmupRequests = Integer.getInteger("loadtest.warmupRequests", 50);
+		int requests = Integer.getInteger("loadtest.requests", 500);
+		loadWorkload();
+		// Clients have sessions of their own, which only see committed data
+		TestTransaction.flagForCommit();
+		TestTransaction.end();
+
+		List<Endpoint> endpoints = getEndpoints();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch warmedUp = new CountDownLatch(threads);
+		CountDownLatch started = new CountDownLatch(1);
+		List<Future<Map<String, Latencies>>> clients = new ArrayList<Future<Map<String, Latencies>>>();
+		for (int i = 0; i < threads; i++) {
+			clients.add(executor.submit(new Client(i, endpoints, warmupRequests, requests, warmedUp, started)));
+		}
+		warmedUp.await();
+		long start = System.nanoTime();
+		started.countDown();
+		Map<String, Latencies> results = new LinkedHashMap<String, Latencies>();
+		for (Endpoint endpoint : endpoints) {
+			results.put(endpoint.name, new Latencies());
+		}
+		try {
+			for (Future<Map<String, Latencies>> client : clients) {
+				for (Map.Entry<String, Latencies> entry : client.get().entrySet()) {
+					results.get(entry.getKey()).addAll(entry.getValue());
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		List<String> regressions = report(results, seconds);
+		Assert.assertTrue("Latency budget exceeded: " + regressions, regressions.isEmpty());
+	}
+
+	private void loadWorkload() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+		LabWorkloadGenerator generator = new LabWorkloadGenerator(Long.getLong("loadtest.seed",
+		    LabWorkloadGenerator.DEFAULT_SEED));
+		generator.setPatients(Integer.getInteger("loadtest.patients", 200));
+		generator.setTestsPerPatient(Integer.getInteger("loadtest.testsPerPatient", 5));
+		LabWorkload workload = generator.generate(getConnection());
+		log.info("Generated " + workload);
+		for (Integer patientId : workload.getPatientIds()) {
+			patientUuids.add(Context.getPatientService().getPatient(patientId).getUuid());
+		}
+		labTestUuids.addAll(workload.getLabTestUuids());
+		testOrderIds.addAll(workload.getTestOrderIds());
+		for (LabTestType labTestType : Context.getService(CommonLabTestService.class).getAllLabTestTypes(false)) {
+			labTestTypeUuids.add(labTestType.getUuid());
+		}
+		specimenTypeUuid = Context.getConceptService().getConcept(700).getUuid();
+		specimenSiteUuid = Context.getConceptService().getConcept(800).getUuid();
+		collectorUuid = Context.getProviderService().getProvider(300).getUuid();
+	}
+
+	/**
+	 * @return the endpoints, each with its share of the traffic
+	 */
+	private List<Endpoint> getEndpoints() {
+		return Arrays.asList(new Endpoint("labtestorder.search", 20) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				MockHttpServletRequest request = request(RequestMethod.GET, "commonlab/labtestorder");
+				request.addParameter("patient", pick(patientUuids, random));
+				return request;
+			}
+		}, new Endpoint("labtestorder.get", 20) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				return request(RequestMethod.GET, "commonlab/labtestorder/" + pick(labTestUuids, random));
+			}
+		}, new Endpoint("labtestorder.update", 5) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) throws Exception {
+				SimpleObject labTest = new SimpleObject();
+				labTest.add("labInstructions", "Load test " + client + "-" + n);
+				return newPostRequest("commonlab/labtestorder/" + pick(labTestUuids, random), labTest);
+			}
+		}, new Endpoint("labtestsample.search", 15) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				MockHttpServletRequest request = request(RequestMethod.GET, "commonlab/labtestsample");
+				request.addParameter("patient", pick(patientUuids, random));
+				return request;
+			}
+		}, new Endpoint("labtestsample.create", 5) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) throws Exception {
+				SimpleObject sample = new SimpleObject();
+				sample.add("labTest", pick(labTestUuids, random));
+				sample.add("sampleIdentifier", "LOAD-" + client + "-" + n);
+				sample.add("specimenType", specimenTypeUuid);
+				sample.add("specimenSite", specimenSiteUuid);
+				sample.add("collectionDate", "2018-10-18");
+				sample.add("collector", collectorUuid);
+				sample.add("status", LabTestSampleStatus.COLLECTED.name());
+				return newPostRequest("commonlab/labtestsample", sample);
+			}
+		}, new Endpoint("labtestattribute.search", 15) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				MockHttpServletRequest request = request(RequestMethod.GET, "commonlab/labtestattribute");
+				request.addParameter("testOrderId", String.valueOf(pick(testOrderIds, random)));
+				return request;
+			}
+		}, new Endpoint("labtesttype.getAll", 10) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				return request(RequestMethod.GET, "commonlab/labtesttype");
+			}
+		}, new Endpoint("labtesttype.get", 10) {
+
+			@Override
+			MockHttpServletRequest newRequest(Random random, int client, int n) {
+				return request(RequestMethod.GET, "commonlab/labtesttype/" + pick(labTestTypeUuids, random));
+			}
+		});
+	}
+
+	/**
+	 * Logs the latencies and throughput of each endpoint and writes them to the file set by the
+	 * loadtest.reportFile property, if any
+	 *
+	 * @return the endpoints over their latency budget or with failed requests
+	 */
+	private List<String> report(Map<String, Latencies> results, double seconds) throws IOException {
+		long defaultBudget = Long.getLong(BUDGET_PROPERTY, 250);
+		List<String> regressions = new ArrayList<String>();
+		StringBuilder table = new StringBuilder(String.format("%n%-26s %8s %6s %9s %8s %8s %8s %8s%n", "endpoint",
+		    "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "budget"));
+		StringBuilder csv = new StringBuilder("endpoint,requests,errors,throughput,p50,p95,p99,budget\n");
+		for (Map.Entry<String, Latencies> entry : results.entrySet()) {
+			String endpoint = entry.getKey();
+			Latencies latencies = entry.getValue();
+			long budget = Long.getLong(BUDGET_PROPERTY + "." + endpoint, defaultBudget);
+			double p50 = latencies.percentile(50);
+			double p95 = latencies.percentile(95);
+			double p99 = latencies.percentile(99);
+			double throughput = latencies.count() / seconds;
+			table.append(String.format("%-26s %8d %6d %9.1f %8.2f %8.2f %8.2f %8d%n", endpoint, latencies.count(),
+			    latencies.errors, throughput, p50, p95, p99, budget));
+			csv.append(String.format("%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%d%n", endpoint, latencies.count(), latencies.errors,
+			    throughput, p50, p95, p99, budget));
+			if (p95 > budget) {
+				regressions.add(String.format("%s p95 %.2f ms > %d ms", endpoint, p95, budget));
+			}
+			if (latencies.errors > 0) {
+				regressions.add(endpoint + " " + latencies.errors + " failed requests");
+			}
+		}
+		log.info(table);
+		String reportFile = System.getProperty("loadtest.reportFile");
+		if (reportFile != null) {
+			PrintWriter writer = new PrintWriter(new FileWriter(new File(reportFile)));
+			try {
+				writer.print(csv);
+			}
+			finally {
+				writer.close();
+			}
+		}
+		return regressions;
+	}
+
+	private static <T> T pick(List<T> list, Random random) {
+		return list.get(random.nextInt(list.size()));
+	}
+
+	private abstract class Endpoint {
+
+		private final String name;
+
+		private final int weight;
+
+		Endpoint(String name, int weight) {
+			this.name = name;
+			this.weight = weight;
+		}
+
+		/**
+		 * @param n number of the request of the client, to make values written unique
+		 */
+		abstract MockHttpServletRequest newRequest(Random random, int client, int n) throws Exception;
+	}
+
+	/**
+	 * Sends requests to endpoints picked by weight, in a session of its own
+	 */
+	private class Client implements Callable<Map<String, Latencies>> {
+
+		private final int id;
+
+		private final List<Endpoint> endpoints;
+
+		private final int warmupRequests;
+
+		private final int requests;
+
+		private final CountDownLatch warmedUp;
+
+		private final CountDownLatch started;
+
+		private final Random random;
+
+		Client(int id, List<Endpoint> endpoints, int warmupRequests, int requests, CountDownLatch warmedUp,
+		    CountDownLatch started) {
+			this.id = id;
+			this.endpoints = endpoints;
+			this.warmupRequests = warmupRequests;
+			this.requests = requests;
+			this.warmedUp = warmedUp;
+			this.started = started;
+			this.random = new Random(id);
+		}
+
+		@Override
+		public Map<String, Latencies> call() throws Exception {
+			Map<String, Latencies> results = new LinkedHashMap<String, Latencies>();
+			for (Endpoint endpoint : endpoints) {
+				results.put(endpoint.name, new Latencies());
+			}
+			Context.openSession();
+			try {
+				Context.authenticate("admin", "test");
+				try {
+					for (int n = 0; n < warmupRequests; n++) {
+						send(pickEndpoint(), n, null);
+					}
+				}
+				finally {
+					warmedUp.countDown();
+				}
+				started.await();
+				for (int n = 0; n < requests; n++) {
+					Endpoint endpoint = pickEndpoint();
+					send(endpoint, warmupRequests + n, results.get(endpoint.name));
+				}
+			}
+			finally {
+				Context.closeSession();
+			}
+			return results;
+		}
+
+		private void send(Endpoint endpoint, int n, Latencies latencies) throws Exception {
+			MockHttpServletRequest request = endpoint.newRequest(random, id, n);
+			long start = System.nanoTime();
+			boolean failed;
+			try {
+				MockHttpServletResponse response = handle(request);
+				failed = response.getStatus() >= 400;
+			}
+			catch (Exception e) {
+				log.warn(endpoint.name + " failed", e);
+				failed = true;
+			}
+			long nanos = System.nanoTime() - start;
+			// Each request starts from an empty session, as it would in the web application
+			Context.clearSession();
+			if (latencies != null) {
+				latencies.add(nanos, failed);
+			}
+		}
+
+		private Endpoint pickEndpoint() {
+			int totalWeight = 0;
+			for (Endpoint endpoint : endpoints) {
+				totalWeight += endpoint.weight;
+			}
+			int weight = random.nextInt(totalWeight);
+			for (Endpoint endpoint : endpoints) {
+				weight -= endpoint.weight;
+				if (weight < 0) {
+					return endpoint;
+				}
+			}
+			return endpoints.get(endpoints.size() - 1);
+		}
+	}
+
+	/**
+	 * Latencies of the requests to an endpoint, in nanoseconds
+	 */
+	private static class Latencies {
+
+		private long[] nanos = new long[256];
+
+		private int count;
+
+		private int errors;
+
+		void add(long latency, boolean failed) {
+			if (count == nanos.length) {
+				nanos = Arrays.copyOf(nanos, count * 2);
+			}
+			nanos[count++] = latency;
+			if (failed) {
+				errors++;
+			}
+		}
+
+		void addAll(Latencies other) {
+			for (int i = 0; i < other.count; i++) {
+				add(other.nanos[i], false);
+			}
+			errors += other.errors;
+		}
+
+		int count() {
+			return count;
+		}
+
+		/**
+		 * @return the latency in milliseconds below which the given percentage of the requests
+		 *         completed (nearest rank), 0 if there were no requests
+		 */
+		double percentile(double percentage) {
+			if (count == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(nanos, count);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percentage / 100 * count);
+			return sorted[Math.max(rank, 1) - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.openmrs.module.commonlabtest;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.web.resource.LabQueryStatisticsController;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class LabQueryStatisticsControllerTest extends BaseModuleWebContextSensitiveTest {
+
+	@Autowired
+	CommonLabTestService commonLabTestService;
+
+	@Before
+	public void setUp() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+	}
+
+	@Test
+	public void shouldServeStatisticsOfLabTestEntities() throws Exception {
+		commonLabTestService.setQueryStatisticsEnabled(true);
+		try {
+			Context.clearSession();
+			commonLabTestService.getLabTest(100);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+
+			new LabQueryStatisticsController().getQueryStatistics(response);
+
+			Assert.assertEquals(200, response.getStatus());
+			JsonObject statistics = new JsonParser().parse(response.getContentAsString()).getAsJsonObject();
+			Assert.assertTrue(statistics.get("enabled").getAsBoolean());
+			Assert.assertTrue(statistics.get("entities").getAsJsonArray().toString()
+			        .contains("org.openmrs.module.commonlabtest.LabTest\""));
+			Assert.assertTrue(statistics.has("slowQueries"));
+		}
+		finally {
+			commonLabTestService.setQueryStatisticsEnabled(false);
+		}
+	}
+
+	@Test
+	public void shouldRejectUnauthenticatedUser() throws Exception {
+		Context.logout();
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		new LabQueryStatisticsController().getQueryStatistics(response);
+
+		Assert.assertEquals(401, response.getStatus());
+	}
+}
@@ -75,6 +75,25 @@ public class LabTestOrderResourceControllerTest extends MainResourceControllerTe
 		Assert.assertEquals(getAllCount(), Util.getResultsSize(result));
 	}
 
+	@Test
+	public void shouldSearchByPatientOnePageAtATime() throws Exception {
+		MockHttpServletRequest request = request(RequestMethod.GET, getURI());
+		request.addParameter("patient", "993c46d2-5007-45e8-9512-969300717761");
+		request.addParameter("limit", "1");
+		request.addParameter("totalCount", "true");
+		SimpleObject result = deserialize(handle(request));
+		Assert.assertEquals(1, Util.getResultsSize(result));
+		Assert.assertEquals(getAllCount(), ((Number) PropertyUtils.getProperty(result, "totalCount")).longValue());
+		Assert.assertNotNull(PropertyUtils.getProperty(result, "links"));
+
+		request = request(RequestMethod.GET, getURI());
+		request.addParameter("patient", "993c46d2-5007-45e8-9512-969300717761");
+		request.addParameter("limit", "1");
+		request.addParameter("startIndex", "1");
+		result = deserialize(handle(request));
+		Assert.assertEquals(1, Util.getResultsSize(result));
+	}
+
 	@Test
 	public void shouldSave() throws Exception {
 		SimpleObject labTestOrder = new SimpleObject();
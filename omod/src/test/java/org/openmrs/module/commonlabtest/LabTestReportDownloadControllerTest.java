@@ -0,0 +1,123 @@
+package org.openmrs.module.commonlabtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.web.controller.LabTestReportDownloadController;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class LabTestReportDownloadControllerTest extends BaseModuleWebContextSensitiveTest {
+
+	private static final byte[] CONTENT = "0123456789".getBytes();
+
+	@Autowired
+	CommonLabTestService commonLabTestService;
+
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+		file = File.createTempFile("report", ".txt");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(CONTENT);
+		out.close();
+		commonLabTestService.getLabTest(100).setFilePath(file.getAbsolutePath());
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void shouldSendWholeFile() throws Exception {
+		MockHttpServletResponse response = download(new MockHttpServletRequest("GET", ""));
+
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("10", response.getHeader("Content-Length"));
+		Assert.assertEquals("0123456789", response.getContentAsString());
+		Assert.assertNotNull(response.getHeader("ETag"));
+	}
+
+	@Test
+	public void shouldSendRequestedRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.addHeader("Range", "bytes=2-5");
+
+		MockHttpServletResponse response = download(request);
+
+		Assert.assertEquals(206, response.getStatus());
+		Assert.assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+		Assert.assertEquals("2345", response.getContentAsString());
+	}
+
+	@Test
+	public void shouldSendSuffixRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.addHeader("Range", "bytes=-3");
+
+		MockHttpServletResponse response = download(request);
+
+		Assert.assertEquals(206, response.getStatus());
+		Assert.assertEquals("789", response.getContentAsString());
+	}
+
+	@Test
+	public void shouldRejectRangeBeyondFile() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.addHeader("Range", "bytes=10-");
+
+		MockHttpServletResponse response = download(request);
+
+		Assert.assertEquals(416, response.getStatus());
+		Assert.assertEquals("bytes */10", response.getHeader("Content-Range"));
+	}
+
+	@Test
+	public void shouldNotSendUnmodifiedFile() throws Exception {
+		String eTag = download(new MockHttpServletRequest("GET", "")).getHeader("ETag");
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.addHeader("If-None-Match", eTag);
+
+		MockHttpServletResponse response = download(request);
+
+		Assert.assertEquals(304, response.getStatus());
+		Assert.assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	public void shouldSendWholeFileIfRangeIsOutdated() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "");
+		request.addHeader("Range", "bytes=2-5");
+		request.addHeader("If-Range", "\"outdated\"");
+
+		MockHttpServletResponse response = download(request);
+
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals("0123456789", response.getContentAsString());
+	}
+
+	@Test
+	public void shouldReturnNotFoundWithoutFile() throws Exception {
+		commonLabTestService.getLabTest(100).setFilePath(null);
+
+		MockHttpServletResponse response = download(new MockHttpServletRequest("GET", ""));
+
+		Assert.assertEquals(404, response.getStatus());
+	}
+
+	private MockHttpServletResponse download(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		new LabTestReportDownloadController().download(request, response, 100);
+		return response;
+	}
+}
@@ -0,0 +1,58 @@
+package org.openmrs.module.commonlabtest;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.commonlabtest.api.CommonLabTestService;
+import org.openmrs.module.commonlabtest.web.resource.LabTestResultBatchController;
+import org.openmrs.web.test.BaseModuleWebContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class LabTestResultBatchControllerTest extends BaseModuleWebContextSensitiveTest {
+
+	@Autowired
+	CommonLabTestService commonLabTestService;
+
+	@Before
+	public void setUp() throws Exception {
+		executeDataSet("CommonLabTestService-initialData.xml");
+	}
+
+	@Test
+	public void shouldReplaceChangedResultsOfAllLabTests() throws Exception {
+		String json = "{\"results\": [{\"labTest\": \"d175e92e-47bf-11e8-943c-40b034c3cfee\", \"attributes\": ["
+		        + "{\"attributeType\": \"ecf166e5-478e-11e8-943c-40b034c3cfee\", \"valueReference\": \"1301\"}]},"
+		        + "{\"labTest\": \"d175e92e-dc93-11e8-d298-40b034c3cfee\", \"attributes\": ["
+		        + "{\"attributeType\": \"ecf166e5-478e-11e8-943c-40b034c3cfee\", \"valueReference\": \"987654321\"}]}]}";
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		String body = new LabTestResultBatchController().saveResults(json, response);
+
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertTrue(body.contains("d175e92e-dc93-11e8-d298-40b034c3cfee"));
+		LabTestAttributeType cartridgeId = commonLabTestService.getLabTestAttributeType(1);
+		List<LabTestAttribute> attributes = commonLabTestService.getLabTestAttributes(cartridgeId, null, null, null, false);
+		int count = 0;
+		for (LabTestAttribute attribute : attributes) {
+			if (attribute.getLabTest().getTestOrderId() == 300) {
+				Assert.assertEquals("987654321", attribute.getValueReference());
+				count++;
+			}
+		}
+		Assert.assertEquals(1, count);
+	}
+
+	@Test
+	public void shouldRejectUnknownLabTest() throws Exception {
+		String json = "{\"results\": [{\"labTest\": \"00000000-0000-0000-0000-000000000000\", \"attributes\": []}]}";
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		String body = new LabTestResultBatchController().saveResults(json, response);
+
+		Assert.assertEquals(400, response.getStatus());
+		Assert.assertTrue(body.contains("Lab test not found"));
+	}
+}